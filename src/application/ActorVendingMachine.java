@@ -0,0 +1,397 @@
+package application;
+
+import com.sun.istack.internal.NotNull;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import manager.DefaultCoinManager;
+import manager.DefaultProductSlotManager;
+import model.Money;
+import model.Sku;
+import operation.BasketItem;
+import operation.MaintenanceBatch;
+import operation.PurchaseResult;
+import operation.PurchaseSession;
+import util.Logger;
+import util.MpscRingBuffer;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Single-writer execution mode of the vending machine: every operation, consumer and maintenance alike, is a command
+ * queued in a bounded {@link MpscRingBuffer} and run by one owner thread, the only thread that ever touches the
+ * machine's {@link DefaultCoinManager} and {@link DefaultProductSlotManager}. Callers never contend on the managers'
+ * locks (the owner always finds them free); they only contend on the queue tail.
+ * <p>
+ * {@link #submit(Function)} returns a {@link CompletableFuture} of the command's outcome. The {@link IVendingMachine}
+ * methods submit the same way and wait for the outcome, rethrowing the exception the command raised. Futures are
+ * completed on the owner thread: dependent stages that do real work should use the {@code *Async} variants, so they
+ * do not hold up the commands queued behind.
+ * <p>
+ * The owner drains the queue in batches of up to the queue capacity and parks when it is empty. A full queue pushes
+ * back on the submitters, which wait for free space. The queue depth and batch statistics are exposed for monitoring.
+ */
+public final class ActorVendingMachine implements IVendingMachine, AutoCloseable {
+
+    //#region class constants
+    public static final int DEFAULT_COMMAND_QUEUE_CAPACITY = 1024;
+    private static final long FULL_QUEUE_BACKOFF_NANOS = 1_000;
+    private final Class TAG = this.getClass();
+    //#end region
+
+    //#region Class Variables
+    private final VendingMachine vendingMachine;
+    private final MpscRingBuffer<Command<?>> commands;
+    private final Thread owner;
+    private volatile boolean running = true;
+    //Set by the owner just before it parks, so submitters know to wake it
+    private volatile boolean ownerIdle;
+    //Submitters between their running check and their offer, see runCommands()
+    private final AtomicInteger activeSubmitters = new AtomicInteger();
+    //#endregion
+
+    //#region metrics (written by the owner only)
+    private volatile long processedCommandCount;
+    private volatile long drainedBatchCount;
+    private volatile int largestBatchSize;
+    //#endregion
+
+    //#region Class Constructor
+    private ActorVendingMachine() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    public ActorVendingMachine(final int productSlotSize, final Collection<Double> coinList) {
+        this(productSlotSize, coinList, DEFAULT_COMMAND_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param commandQueueCapacity number of commands that can wait for the owner thread, rounded up to a power of two
+     */
+    public ActorVendingMachine(final int productSlotSize, final Collection<Double> coinList, final int commandQueueCapacity) {
+        this.vendingMachine = new VendingMachine(
+                new DefaultCoinManager(coinList), new DefaultProductSlotManager(productSlotSize));
+        this.commands = new MpscRingBuffer<>(commandQueueCapacity);
+        this.owner = new Thread(this::runCommands, "vending-machine-actor");
+        this.owner.setDaemon(true);
+        this.owner.start();
+    }
+    //#endregion
+
+    /**
+     * Queue {@param command} to be run on the owner thread against the vending machine
+     *
+     * @return the outcome of {@param command}, completed exceptionally with the exception it raised, or with an
+     * {@link IllegalStateException} if the actor is closed
+     */
+    public <T> CompletableFuture<T> submit(@NotNull final Function<? super IVendingMachine, T> command) {
+        if (command == null) {
+            String errorMessage = "Command is required";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        Command<T> queuedCommand = new Command<>(command);
+        activeSubmitters.incrementAndGet();
+        try {
+            while (running) {
+                if (commands.offer(queuedCommand)) {
+                    if (ownerIdle) {
+                        LockSupport.unpark(owner);
+                    }
+                    return queuedCommand.future;
+                }
+                //Queue full: back off until the owner makes room
+                LockSupport.parkNanos(FULL_QUEUE_BACKOFF_NANOS);
+            }
+        } finally {
+            activeSubmitters.decrementAndGet();
+        }
+        String errorMessage = "Vending machine actor is closed";
+        Logger.error(TAG, errorMessage);
+        queuedCommand.future.completeExceptionally(new IllegalStateException(errorMessage));
+        return queuedCommand.future;
+    }
+
+    /**
+     * Stop accepting commands, run the ones already queued and stop the owner thread
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(owner);
+        try {
+            owner.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //#region metrics
+    /**
+     * @return approximate number of commands waiting for the owner thread
+     */
+    public int getQueueDepth() {
+        return commands.size();
+    }
+
+    public int getQueueCapacity() {
+        return commands.capacity();
+    }
+
+    public long getProcessedCommandCount() {
+        return processedCommandCount;
+    }
+
+    /**
+     * @return number of non-empty batches the owner thread has drained
+     */
+    public long getDrainedBatchCount() {
+        return drainedBatchCount;
+    }
+
+    public int getLargestBatchSize() {
+        return largestBatchSize;
+    }
+    //#endregion
+
+    //#region Consumer
+    @Override
+    public BigDecimal getProductPrice(final int productSlotId) {
+        return call(vendingMachine -> vendingMachine.getProductPrice(productSlotId));
+    }
+
+    @Override
+    public Collection<Double> buyProduct(final int productSlotId, final Collection<Double> coinCollection) {
+        return call(vendingMachine -> vendingMachine.buyProduct(productSlotId, coinCollection));
+    }
+
+    @Override
+    public CoinCounts buyProductWithCoinCounts(final int productSlotId, final CoinCounts coinCounts) {
+        return call(vendingMachine -> vendingMachine.buyProductWithCoinCounts(productSlotId, coinCounts));
+    }
+
+    @Override
+    public PurchaseResult tryBuyProduct(final int productSlotId, final CoinCounts coinCounts) {
+        return call(vendingMachine -> vendingMachine.tryBuyProduct(productSlotId, coinCounts));
+    }
+
+    @Override
+    public Collection<Double> buyProducts(final List<BasketItem> basketItems, final Collection<Double> coinCollection) {
+        return call(vendingMachine -> vendingMachine.buyProducts(basketItems, coinCollection));
+    }
+
+    @Override
+    public PurchaseResult tryBuyProducts(final List<BasketItem> basketItems, final CoinCounts coinCounts) {
+        return call(vendingMachine -> vendingMachine.tryBuyProducts(basketItems, coinCounts));
+    }
+
+    /**
+     * Coins are inserted on the calling thread (they only touch the session); the product is selected, and the
+     * purchase pre-checked, on the owner thread
+     */
+    @Override
+    public PurchaseSession beginSession() {
+        return new ActorSession(vendingMachine.beginSession());
+    }
+
+    @Override
+    public Collection<Double> buyBySku(final String skuCode, final Collection<Double> coinCollection) {
+        return call(vendingMachine -> vendingMachine.buyBySku(skuCode, coinCollection));
+    }
+
+    @Override
+    public CoinDenominations getCoinDenominations() {
+        //Immutable once the machine is built
+        return vendingMachine.getCoinDenominations();
+    }
+    //#endregion
+
+    //#region Maintenance
+    @Override
+    public int addProductToSlot(final BigDecimal price, final int inventorySize) {
+        return call(vendingMachine -> vendingMachine.addProductToSlot(price, inventorySize));
+    }
+
+    @Override
+    public int addProductToSlot(final Sku sku, final BigDecimal price, final int inventorySize) {
+        return call(vendingMachine -> vendingMachine.addProductToSlot(sku, price, inventorySize));
+    }
+
+    @Override
+    public void removeProductFromSlot(final int productSlotId) {
+        call(vendingMachine -> {
+            vendingMachine.removeProductFromSlot(productSlotId);
+            return null;
+        });
+    }
+
+    @Override
+    public void setProductInventorySize(final int productSlotId, final long newInventorySize) {
+        call(vendingMachine -> {
+            vendingMachine.setProductInventorySize(productSlotId, newInventorySize);
+            return null;
+        });
+    }
+
+    @Override
+    public long getProductInventorySize(final int productSlotId) {
+        return call(vendingMachine -> vendingMachine.getProductInventorySize(productSlotId));
+    }
+
+    @Override
+    public void setProductPrice(final int productSlotId, final BigDecimal productPrice) {
+        call(vendingMachine -> {
+            vendingMachine.setProductPrice(productSlotId, productPrice);
+            return null;
+        });
+    }
+
+    @Override
+    public void setCoinAvailableCount(final double coinValue, final int newAvailableCount) {
+        call(vendingMachine -> {
+            vendingMachine.setCoinAvailableCount(coinValue, newAvailableCount);
+            return null;
+        });
+    }
+
+    @Override
+    public long getCoinAvailableCount(final double coinValue) {
+        return call(vendingMachine -> vendingMachine.getCoinAvailableCount(coinValue));
+    }
+
+    @Override
+    public int[] applyMaintenanceBatch(final MaintenanceBatch maintenanceBatch) {
+        return call(vendingMachine -> vendingMachine.applyMaintenanceBatch(maintenanceBatch));
+    }
+    //#endregion
+
+    /**
+     * Submit {@param command} and wait for its outcome
+     */
+    private <T> T call(final Function<? super IVendingMachine, T> command) {
+        try {
+            return submit(command).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Body of the owner thread
+     */
+    private void runCommands() {
+        int batchLimit = commands.capacity();
+        while (running) {
+            if (drainBatch(batchLimit) > 0) {
+                continue;
+            }
+            //Announce the park before the last look at the queue: a submitter either sees the announcement and unparks
+            //the owner, or offered before that look and its command is found
+            ownerIdle = true;
+            if (commands.isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            ownerIdle = false;
+        }
+
+        //Closed: run what was accepted, including the commands of submitters that checked running before close().
+        //Submitters are counted before the queue is drained: a submitter counted out has offered before the drain,
+        //and one that comes in later finds the actor closed
+        while (true) {
+            int submitters = activeSubmitters.get();
+            if (drainBatch(batchLimit) == 0 && submitters == 0) {
+                break;
+            }
+            Thread.yield();
+        }
+    }
+
+    private int drainBatch(final int batchLimit) {
+        int batchSize = commands.drain(command -> {
+            //Counted before the command completes its future, so a caller sees its own command counted
+            processedCommandCount++;
+            command.run(vendingMachine);
+        }, batchLimit);
+        if (batchSize > 0) {
+            drainedBatchCount++;
+            if (batchSize > largestBatchSize) {
+                largestBatchSize = batchSize;
+            }
+        }
+        return batchSize;
+    }
+
+    private static final class Command<T> {
+
+        private final Function<? super IVendingMachine, T> function;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Command(final Function<? super IVendingMachine, T> function) {
+            this.function = function;
+        }
+
+        /**
+         * Whatever the command throws, errors included, fails its future only: the owner thread goes on with the next
+         * command
+         */
+        void run(final IVendingMachine vendingMachine) {
+            try {
+                future.complete(function.apply(vendingMachine));
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private final class ActorSession implements PurchaseSession {
+
+        private final PurchaseSession session;
+
+        ActorSession(final PurchaseSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public boolean insertCoin(final double coinValue) {
+            return session.insertCoin(coinValue);
+        }
+
+        @Override
+        public Money getInsertedAmount() {
+            return session.getInsertedAmount();
+        }
+
+        @Override
+        public boolean canBuy(final int productSlotId) {
+            return call(vendingMachine -> session.canBuy(productSlotId));
+        }
+
+        @Override
+        public PurchaseResult select(final int productSlotId) {
+            return call(vendingMachine -> session.select(productSlotId));
+        }
+
+        @Override
+        public CoinCounts cancel() {
+            return session.cancel();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return session.isOpen();
+        }
+    }
+}
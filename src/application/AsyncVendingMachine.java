@@ -0,0 +1,216 @@
+package application;
+
+import com.sun.istack.internal.NotNull;
+import manager.CoinCounts;
+import operation.BasketItem;
+import operation.PurchaseResult;
+import util.Logger;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Asynchronous facade of a {@link VendingMachine}: purchases run on an executor and complete a
+ * {@link CompletableFuture}, so request threads hand the purchase over instead of waiting on the managers' locks.
+ * <p>
+ * The default executor starts a virtual thread per purchase where the runtime has them
+ * ({@code Executors.newVirtualThreadPerTaskExecutor()}, looked up reflectively) and falls back to a cached pool of
+ * daemon threads otherwise. The managers guard their state with {@link java.util.concurrent.locks.ReentrantLock}s, not
+ * monitors, so a virtual thread blocked inside a purchase does not pin its carrier thread.
+ * <p>
+ * A purchase future can be cancelled, or time out, until the purchase reaches its settlement: the items taken and the
+ * change reserved are then put back. Once the coins are being settled, {@link CompletableFuture#cancel(boolean)}
+ * returns false and a timeout no longer fires; the future completes with the purchase result.
+ */
+public final class AsyncVendingMachine implements AutoCloseable {
+
+    //#region class constants
+    private final Class TAG = this.getClass();
+    //#end region
+
+    //#region Class Variables
+    private final VendingMachine vendingMachine;
+    private final Executor executor;
+    private final boolean executorOwned;
+    //#endregion
+
+    //#region Class Constructor
+    private AsyncVendingMachine() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    /**
+     * Run purchases on the default executor, shut down by {@link #close()}
+     */
+    public AsyncVendingMachine(@NotNull final VendingMachine vendingMachine) {
+        this(vendingMachine, newDefaultExecutor(), true);
+    }
+
+    /**
+     * Run purchases on {@param executor}, left running by {@link #close()}
+     */
+    public AsyncVendingMachine(@NotNull final VendingMachine vendingMachine, @NotNull final Executor executor) {
+        this(vendingMachine, executor, false);
+    }
+
+    private AsyncVendingMachine(final VendingMachine vendingMachine, final Executor executor, final boolean executorOwned) {
+        if (vendingMachine == null || executor == null) {
+            String errorMessage = "Vending machine and executor are required";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        this.vendingMachine = vendingMachine;
+        this.executor = executor;
+        this.executorOwned = executorOwned;
+    }
+    //#endregion
+
+    /**
+     * Asynchronous {@link VendingMachine#tryBuyProduct(int, CoinCounts)}
+     */
+    public CompletableFuture<PurchaseResult> buyProductAsync(final int productSlotId, final CoinCounts coinCounts) {
+        return submit(commitGate -> vendingMachine.tryBuyProduct(productSlotId, coinCounts, commitGate), 0, null);
+    }
+
+    /**
+     * Asynchronous {@link VendingMachine#tryBuyProduct(int, CoinCounts)}, completed exceptionally with a
+     * {@link TimeoutException} (and rolled back) if it has not reached its settlement within {@param timeout}
+     */
+    public CompletableFuture<PurchaseResult> buyProductAsync(final int productSlotId, final CoinCounts coinCounts,
+                                                             final long timeout, @NotNull final TimeUnit timeUnit) {
+        return submit(commitGate -> vendingMachine.tryBuyProduct(productSlotId, coinCounts, commitGate), timeout, timeUnit);
+    }
+
+    /**
+     * Asynchronous {@link VendingMachine#tryBuyProducts(List, CoinCounts)}
+     */
+    public CompletableFuture<PurchaseResult> buyProductsAsync(final List<BasketItem> basketItems, final CoinCounts coinCounts) {
+        return submit(commitGate -> vendingMachine.tryBuyProducts(basketItems, coinCounts, commitGate), 0, null);
+    }
+
+    /**
+     * Asynchronous {@link VendingMachine#tryBuyProducts(List, CoinCounts)} with a timeout, see
+     * {@link #buyProductAsync(int, CoinCounts, long, TimeUnit)}
+     */
+    public CompletableFuture<PurchaseResult> buyProductsAsync(final List<BasketItem> basketItems, final CoinCounts coinCounts,
+                                                              final long timeout, @NotNull final TimeUnit timeUnit) {
+        return submit(commitGate -> vendingMachine.tryBuyProducts(basketItems, coinCounts, commitGate), timeout, timeUnit);
+    }
+
+    /**
+     * Shut down the default executor. Purchases already submitted still complete.
+     */
+    @Override
+    public void close() {
+        if (executorOwned) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private CompletableFuture<PurchaseResult> submit(final Purchase purchase, final long timeout, final TimeUnit timeUnit) {
+        PurchaseFuture purchaseFuture = new PurchaseFuture();
+        if (timeUnit != null) {
+            ScheduledFuture<?> timeoutTask = TimeoutScheduler.INSTANCE.schedule(purchaseFuture::timeOut, timeout, timeUnit);
+            purchaseFuture.whenComplete((purchaseResult, throwable) -> timeoutTask.cancel(false));
+        }
+
+        try {
+            executor.execute(() -> {
+                //Cancelled or timed out while queued: nothing to roll back
+                if (purchaseFuture.isDone()) {
+                    return;
+                }
+                try {
+                    purchaseFuture.complete(purchase.run(purchaseFuture::tryCommit));
+                } catch (RuntimeException ex) {
+                    purchaseFuture.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            Logger.error(TAG, "Purchase rejected by the executor: " + ex.getMessage());
+            purchaseFuture.completeExceptionally(ex);
+        }
+        return purchaseFuture;
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task if the runtime supports them, else a cached pool of
+     * daemon threads
+     */
+    private static ExecutorService newDefaultExecutor() {
+        try {
+            ExecutorService executorService = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            Logger.info(AsyncVendingMachine.class, "Purchases run on virtual threads");
+            return executorService;
+        } catch (ReflectiveOperationException ex) {
+            Logger.info(AsyncVendingMachine.class, "Virtual threads not supported, purchases run on a cached thread pool");
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "vending-machine-purchase");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private interface Purchase {
+        PurchaseResult run(BooleanSupplier commitGate);
+    }
+
+    /**
+     * Future of one purchase, racing cancellation and timeout against the purchase reaching its settlement: whichever
+     * comes first wins, so a settled purchase is never reported as cancelled and vice versa.
+     */
+    private static final class PurchaseFuture extends CompletableFuture<PurchaseResult> {
+
+        private static final int PENDING = 0;
+        private static final int SETTLING = 1;
+        private static final int CALLED_OFF = 2;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        /**
+         * Commit gate of the purchase
+         */
+        boolean tryCommit() {
+            return state.compareAndSet(PENDING, SETTLING);
+        }
+
+        void timeOut() {
+            if (state.compareAndSet(PENDING, CALLED_OFF)) {
+                super.completeExceptionally(new TimeoutException("Purchase timed out before it was settled"));
+            }
+        }
+
+        /**
+         * Cancel the purchase if it has not reached its settlement. {@param mayInterruptIfRunning} has no effect: a
+         * running purchase notices the cancellation at its commit gate.
+         */
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            return state.compareAndSet(PENDING, CALLED_OFF) && super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * Lazily started daemon thread firing purchase timeouts
+     */
+    private static final class TimeoutScheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vending-machine-purchase-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package application;
+
+import com.sun.istack.internal.NotNull;
+import util.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a {@link VendingMachine#takeSnapshot()} at a fixed period on a background daemon thread, so the journal a
+ * restart replays never grows beyond one period of changes. A failed snapshot is logged and retried at the next
+ * period; the journal keeps every record until a snapshot succeeds.
+ */
+public final class SnapshotScheduler implements AutoCloseable {
+
+    //#region class constants
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final VendingMachine vendingMachine;
+    private final ScheduledExecutorService scheduler;
+
+    //#region Class Constructor
+    private SnapshotScheduler() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    public SnapshotScheduler(@NotNull final VendingMachine vendingMachine, final long period, @NotNull final TimeUnit unit) {
+        if (vendingMachine == null || unit == null || period < 1) {
+            String errorMessage = "Vending machine and a positive snapshot period are required";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        this.vendingMachine = vendingMachine;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vending-machine-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::takeSnapshot, period, period, unit);
+    }
+    //#endregion
+
+    /**
+     * Stop taking snapshots, waiting for one in progress to finish
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void takeSnapshot() {
+        try {
+            vendingMachine.takeSnapshot();
+        } catch (IOException | RuntimeException ex) {
+            //Thrown out of the task, it would cancel every later snapshot
+            Logger.error(TAG, "Snapshot failed: " + ex);
+        }
+    }
+}
@@ -1,124 +1,569 @@
 package application;
 
+import com.sun.istack.internal.NotNull;
+import manager.BoundedCoinChangeSolver;
+import manager.ChangeReservation;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import manager.CoinEscrow;
 import manager.CoinManager;
 import manager.DefaultCoinManager;
 import manager.DefaultProductSlotManager;
+import manager.ProductCatalog;
 import manager.ProductSlotManager;
+import manager.SlotChange;
+import model.Money;
 import model.Product;
+import model.ProductSnapshot;
+import model.Sku;
+import operation.BasketItem;
 import operation.ConsumerOperation;
+import operation.MaintenanceBatch;
 import operation.MaintenanceOperation;
+import operation.PurchaseResult;
+import operation.PurchaseSession;
+import persistence.Journal;
+import persistence.JournalEntry;
+import persistence.JournalHandler;
+import persistence.JournalReader;
+import persistence.MachineSnapshot;
 import util.Logger;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 import static util.Constants.*;
-import static util.NumbersUtil.compare;
-import static util.NumbersUtil.toDp;
 
 /**
  * Implementation of the Vending Machine that performs both {@link MaintenanceOperation} and {@link ConsumerOperation}
+ * <p>
+ * A purchase is a staged transaction with no machine-wide lock:
+ * <ol>
+ *     <li>validation (coins, price, purchasing power) - no lock,</li>
+ *     <li>the item is taken off its slot - slot lock only,</li>
+ *     <li>the change is reserved out of the available coins - coin ledger lock only,</li>
+ *     <li>the customer coins are credited and the reserved change debited - coin ledger lock only.</li>
+ * </ol>
+ * Each step releases its lock before the next one starts, and a failed step rolls back the earlier ones (the item is
+ * put back on its slot, the change reservation released). The lock order is slot, then coin ledger: a purchase never
+ * waits on a slot while it holds the coin ledger, so purchases from different slots with disjoint change needs
+ * proceed in parallel as far as the managers allow.
+ * <p>
+ * A basket purchase ({@link #tryBuyProducts(List, CoinCounts)}) runs the same stages once for the whole basket: its
+ * items are taken slot by slot in ascending slot order, then the change of the total price is reserved and settled in
+ * one go.
+ * <p>
+ * With a {@link Journal} attached, every state change is journaled as one record once it is applied: a purchase as the
+ * inventory and coin count deltas it made, a maintenance operation as the values it set. Purchases journal in parallel;
+ * a maintenance operation waits for the purchases in flight and holds the next ones back while it applies and journals
+ * its change, so the journal order replays to the same state. With {@link persistence.Durability#SYNC} an operation
+ * returns once its record is forced to disk, waited for after every lock is released. {@link #recover(CoinManager,
+ * ProductSlotManager, boolean, Journal)} rebuilds the state from the journal after a restart.
+ * <p>
+ * {@link #takeSnapshot()} saves the whole state as a {@link MachineSnapshot} so recovery only replays the records
+ * after it, and deletes the journal segments the snapshot covers. The state is copied under the exclusive journal
+ * order lock, which makes the copy a point-in-time image at a known record; the lock is held for the copy only (one
+ * immutable reference and SKU per slot with the default slot manager, one count per coin), not while the snapshot is
+ * encoded and written.
  * */
 public final class VendingMachine implements IVendingMachine {
 
     //#region class constants
-    private final Object BUY_PRODUCT_MONITOR_OBJECT = new Object();
     private final Class TAG = this.getClass();
     //#end region
 
     //#region Class Variables
     private final CoinManager coinManager;
     private final ProductSlotManager productSlotManager;
+    private final ProductCatalog productCatalog;
+    private final boolean escrowChangeEnabled;
+    //Null if the machine state is not journaled
+    private final Journal journal;
+    //Used with a journal only: shared by purchases, exclusive to maintenance
+    private final ReentrantReadWriteLock journalOrderLock = new ReentrantReadWriteLock();
+    private static final ThreadLocal<JournalEntry> JOURNAL_ENTRY = ThreadLocal.withInitial(JournalEntry::new);
     //#endregion
 
     //#region Class Constructor
     public VendingMachine(final int productSlotSize, final Collection<Double> coinList) {
-        this.coinManager = new DefaultCoinManager(coinList);
-        this.productSlotManager = new DefaultProductSlotManager(productSlotSize);
+        this(productSlotSize, coinList, false);
+    }
+
+    /**
+     * @param escrowChangeEnabled if true, the customer's inserted coins are held in a {@link CoinEscrow} and may be paid
+     *                            back as change (see {@link CoinManager#reserveChange(Money, CoinEscrow)})
+     */
+    public VendingMachine(final int productSlotSize, final Collection<Double> coinList, final boolean escrowChangeEnabled) {
+        this(new DefaultCoinManager(coinList), new DefaultProductSlotManager(productSlotSize), escrowChangeEnabled);
     }
 
     //Mostly useful for test instantiation
     public VendingMachine(final CoinManager coinManager, final ProductSlotManager productSlotManager) {
+        this(coinManager, productSlotManager, false);
+    }
+
+    public VendingMachine(final CoinManager coinManager, final ProductSlotManager productSlotManager, final boolean escrowChangeEnabled) {
+        this(coinManager, productSlotManager, escrowChangeEnabled, null);
+    }
+
+    /**
+     * @param journal journal every state change is appended to, null for none. The managers must hold the state the
+     *                journal replays to: empty managers with an empty journal, or see
+     *                {@link #recover(CoinManager, ProductSlotManager, boolean, Journal)}
+     */
+    public VendingMachine(final CoinManager coinManager, final ProductSlotManager productSlotManager,
+                          final boolean escrowChangeEnabled, final Journal journal) {
+        if (journal != null && !journal.getCoinDenominations().equals(coinManager.getCoinDenominations())) {
+            String errorMessage = ERROR_MESSAGE_JOURNAL_DENOMINATIONS_MISMATCH;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
         this.coinManager = coinManager;
         this.productSlotManager = productSlotManager;
+        this.productCatalog = new ProductCatalog(productSlotManager);
+        this.escrowChangeEnabled = escrowChangeEnabled;
+        this.journal = journal;
+    }
+
+    /**
+     * Rebuild the machine state recorded in {@param journal} into {@param coinManager} and {@param productSlotManager},
+     * which must be empty (no product, no coin), and return the machine journaling its next changes to
+     * {@param journal}. Must be called before anything is appended to {@param journal}.
+     * <p>
+     * The latest {@link MachineSnapshot} of the journal directory, if any, is loaded first (see
+     * {@link ProductSlotManager#restoreSlots(ProductSnapshot[])}); only the records after it are replayed.
+     *
+     * @throws IllegalStateException if the journal or snapshot is corrupted or does not replay onto the managers
+     */
+    public static VendingMachine recover(final CoinManager coinManager, final ProductSlotManager productSlotManager,
+                                         final boolean escrowChangeEnabled, @NotNull final Journal journal) throws IOException {
+        if (journal == null) {
+            String errorMessage = "Journal is required";
+            Logger.error(VendingMachine.class, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        VendingMachine vendingMachine = new VendingMachine(coinManager, productSlotManager, escrowChangeEnabled, journal);
+        CoinDenominations coinDenominations = coinManager.getCoinDenominations();
+        MachineSnapshot snapshot = MachineSnapshot.readLatest(journal.getDirectory(), coinDenominations);
+        long snapshotSequence = 0;
+        if (snapshot != null) {
+            vendingMachine.restore(snapshot);
+            snapshotSequence = snapshot.getSequence();
+        }
+        long lastSequence = JournalReader.replay(journal.getDirectory(), coinDenominations, snapshotSequence,
+                vendingMachine.new JournalReplay());
+        if (lastSequence != journal.getLastSequence()) {
+            String errorMessage = ERROR_MESSAGE_JOURNAL_REPLAY_MISMATCH;
+            Logger.error(VendingMachine.class, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        long replayedRecordCount = lastSequence - snapshotSequence;
+        Logger.info(VendingMachine.class, () -> "Machine state recovered from journal " + journal.getDirectory()
+                + " up to record " + lastSequence + " (" + replayedRecordCount + " record(s) replayed after the snapshot)");
+        return vendingMachine;
     }
     //#endregion
 
     //#region Consumer
     @Override
     public Collection<Double> buyProduct(final int productSlotIndex, final Collection<Double> coinCollection) {
-        synchronized (BUY_PRODUCT_MONITOR_OBJECT) {
-            //Check for empty coin list
-            if (coinCollection == null || coinCollection.isEmpty()) {
-                String errorMessage = ERROR_MESSAGE_COIN_IS_REQUIRED_FOR_PURCHASE_OPERATION;
-                Logger.error(TAG, errorMessage);
-                throw new IllegalArgumentException(errorMessage);
+        return buyProductWithCoinCounts(productSlotIndex, toCoinCounts(coinCollection)).toCoinList();
+    }
+
+    @Override
+    public CoinCounts buyProductWithCoinCounts(final int productSlotIndex, final CoinCounts coinCounts) {
+        return getChangeOrThrow(tryBuyProduct(productSlotIndex, coinCounts));
+    }
+
+    @Override
+    public PurchaseResult tryBuyProduct(final int productSlotIndex, final CoinCounts coinCounts) {
+        return tryBuyProduct(productSlotIndex, coinCounts, null);
+    }
+
+    /**
+     * @param commitGate asked once, right before the coins are settled, whether the purchase may still go ahead; if it
+     *                   answers false the purchase is rolled back and {@link PurchaseResult.Reason#CANCELLED} returned.
+     *                   Null for purchases that cannot be cancelled
+     */
+    PurchaseResult tryBuyProduct(final int productSlotIndex, final CoinCounts coinCounts, final BooleanSupplier commitGate) {
+        //Stage 1 (no lock) - validate the purchase
+        //Check for empty coin counts
+        if (coinCounts == null || coinCounts.isEmpty()) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.COIN_REQUIRED);
+        }
+
+        //check if provided coins are supported
+        if (!coinCounts.isCompatibleWith(coinManager.getCoinDenominations())) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.COIN_NOT_SUPPORTED);
+        }
+
+        return purchase(productSlotIndex, coinCounts, coinCounts.totalValue(), commitGate);
+    }
+
+    /**
+     * Purchase of one item with coins already checked against the supported denominations
+     *
+     * @param coinSum value of {@param coinCounts}
+     */
+    private PurchaseResult purchase(final int productSlotIndex, final CoinCounts coinCounts, final Money coinSum,
+                                    final BooleanSupplier commitGate) {
+        //Check if slot has item available for purchase (re-checked atomically when the item is taken). The product is
+        //read once, so a slot emptied concurrently is turned down rather than thrown on
+        ProductSnapshot product = productSlotManager.getSlotProduct(productSlotIndex);
+        if (product == null) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.INVALID_PRODUCT_SLOT);
+        }
+        if (product.getInventorySize() < 1) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.OUT_OF_STOCK);
+        }
+
+        //Check if product price is set
+        Money productPrice = product.getPriceAmount();
+        if (productPrice == null) {
+            Logger.error(TAG, String.format("Customer was interested in product on slot %d but the price has not been set", productSlotIndex));
+            return PurchaseResult.rejected(PurchaseResult.Reason.PRICE_NOT_SET);
+        }
+
+        //Check if the customer has the purchasing power
+        if (coinSum.compareTo(productPrice) < 0) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.INSUFFICIENT_MONEY);
+        }
+
+        //Stages 2 to 4
+        return claimAndSettle(new int[]{productSlotIndex}, new long[]{1}, coinCounts, coinSum.minus(productPrice), commitGate);
+    }
+
+    @Override
+    public Collection<Double> buyProducts(final List<BasketItem> basketItems, final Collection<Double> coinCollection) {
+        return getChangeOrThrow(tryBuyProducts(basketItems, toCoinCounts(coinCollection))).toCoinList();
+    }
+
+    @Override
+    public PurchaseResult tryBuyProducts(final List<BasketItem> basketItems, final CoinCounts coinCounts) {
+        return tryBuyProducts(basketItems, coinCounts, null);
+    }
+
+    /**
+     * @param commitGate see {@link #tryBuyProduct(int, CoinCounts, BooleanSupplier)}
+     */
+    PurchaseResult tryBuyProducts(final List<BasketItem> basketItems, final CoinCounts coinCounts, final BooleanSupplier commitGate) {
+        //Stage 1 (no lock) - validate the whole basket
+        if (basketItems == null || basketItems.isEmpty()) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.PRODUCT_REQUIRED);
+        }
+        if (coinCounts == null || coinCounts.isEmpty()) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.COIN_REQUIRED);
+        }
+        if (!coinCounts.isCompatibleWith(coinManager.getCoinDenominations())) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.COIN_NOT_SUPPORTED);
+        }
+
+        //Merge the lines of the same slot, in ascending slot order: concurrent baskets take their slots in the same
+        //order, and a slot is decremented once for its total quantity
+        TreeMap<Integer, Long> quantityBySlot = new TreeMap<>();
+        for (BasketItem basketItem : basketItems) {
+            if (basketItem == null) {
+                return PurchaseResult.rejected(PurchaseResult.Reason.PRODUCT_REQUIRED);
             }
+            quantityBySlot.merge(basketItem.getProductSlotId(), basketItem.getQuantity(), Long::sum);
+        }
+        int[] slots = new int[quantityBySlot.size()];
+        long[] quantities = new long[slots.length];
+        int line = 0;
+        for (Map.Entry<Integer, Long> entry : quantityBySlot.entrySet()) {
+            slots[line] = entry.getKey();
+            quantities[line++] = entry.getValue();
+        }
 
-            //check if provided coins are supported
-            if (!coinManager.areCoinsSupported(coinCollection)) {
-                String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
-                Logger.error(TAG, errorMessage);
-                throw new IllegalArgumentException(errorMessage);
+        //Total price, computed once for the basket
+        Money totalPrice = Money.ZERO;
+        for (int i = 0; i < slots.length; i++) {
+            ProductSnapshot product = productSlotManager.getSlotProduct(slots[i]);
+            if (product == null) {
+                return PurchaseResult.rejected(PurchaseResult.Reason.INVALID_PRODUCT_SLOT);
+            }
+            if (product.getInventorySize() < quantities[i]) {
+                return PurchaseResult.rejected(PurchaseResult.Reason.OUT_OF_STOCK);
             }
+            Money productPrice = product.getPriceAmount();
+            if (productPrice == null) {
+                Logger.error(TAG, String.format("Customer was interested in product on slot %d but the price has not been set", slots[i]));
+                return PurchaseResult.rejected(PurchaseResult.Reason.PRICE_NOT_SET);
+            }
+            totalPrice = totalPrice.plus(productPrice.times(quantities[i]));
+        }
 
-            //Check if slot has item available for purchase
-            long availableProductInventorySize = productSlotManager.getSlotProductInventorySize(productSlotIndex);
-            if (availableProductInventorySize < 1) {
-                String errorMessage = ERROR_MESSAGE_SLOT_OUT_OF_STOCK;
-                Logger.error(TAG, errorMessage);
-                throw new IllegalStateException(errorMessage);
+        Money coinSum = coinCounts.totalValue();
+        if (coinSum.compareTo(totalPrice) < 0) {
+            return PurchaseResult.rejected(PurchaseResult.Reason.INSUFFICIENT_MONEY);
+        }
+
+        //Stages 2 to 4 - one change solve and one settlement for the whole basket
+        return claimAndSettle(slots, quantities, coinCounts, coinSum.minus(totalPrice), commitGate);
+    }
+
+    @Override
+    public PurchaseSession beginSession() {
+        return new Session();
+    }
+
+    @Override
+    public Collection<Double> buyBySku(final String skuCode, final Collection<Double> coinCollection) {
+        CoinCounts coinCounts = toCoinCounts(coinCollection);
+
+        //A sampled slot may be sold out by a concurrent purchase before this one reaches it - pick again, at most
+        //once per slot stocking the SKU
+        int remainingAttempts = productCatalog.getSlotsOf(skuCode).length;
+        PurchaseResult purchaseResult;
+        do {
+            purchaseResult = tryBuyProduct(productCatalog.pickSlot(skuCode), coinCounts);
+        } while (purchaseResult.getReason() == PurchaseResult.Reason.OUT_OF_STOCK && --remainingAttempts > 0);
+        return getChangeOrThrow(purchaseResult).toCoinList();
+    }
+
+    @Override
+    public CoinDenominations getCoinDenominations() {
+        return coinManager.getCoinDenominations();
+    }
+
+    /**
+     * Stages 2 to 4 of a validated purchase, journaled as one record if the machine has a journal
+     *
+     * @param slots      slot of each purchase line, in ascending order
+     * @param quantities quantity of each purchase line
+     * @param change     amount to pay back to the customer
+     * @param commitGate see {@link #tryBuyProduct(int, CoinCounts, BooleanSupplier)}, may be null
+     */
+    private PurchaseResult claimAndSettle(final int[] slots, final long[] quantities, final CoinCounts coinCounts,
+                                          final Money change, final BooleanSupplier commitGate) {
+        PurchaseResult purchaseResult;
+        long journalSequence = 0;
+        //From the first item taken to the record appended, so no maintenance change lands in between
+        Lock journalOrder = lockJournalOrder(false);
+        try {
+            //Refuse the purchase before any item is taken if it could not be journaled
+            if (journal != null) {
+                journal.ensureWritable();
             }
 
-            //Check if product price is set
-            BigDecimal productPrice = productSlotManager.getSlotProductPrice(productSlotIndex);
-            if (productPrice == null) {
-                Logger.error(TAG, String.format("Customer was interested in product on slot %d but the price has not been set", productSlotIndex));
-                throw new IllegalStateException(ERROR_MESSAGE_TECHNICAL_ERROR);
+            //Stage 2 (slot, one at a time) - claim every item, or put back the ones already claimed. The stock check
+            //and the decrement are one atomic step
+            long[] stockings = new long[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                try {
+                    stockings[i] = productSlotManager.tryClaimInventory(slots[i], quantities[i]);
+                } catch (RuntimeException ex) {
+                    putBack(slots, quantities, stockings, i);
+                    //The slot was emptied after the purchase was validated
+                    if (productSlotManager.getSlotProduct(slots[i]) == null) {
+                        return PurchaseResult.rejected(PurchaseResult.Reason.INVALID_PRODUCT_SLOT);
+                    }
+                    throw ex;
+                }
+                if (stockings[i] == 0) {
+                    putBack(slots, quantities, stockings, i);
+                    return PurchaseResult.rejected(PurchaseResult.Reason.OUT_OF_STOCK);
+                }
             }
 
-            //Check if the customer has the purchasing power
-            BigDecimal coinSum = toDp(BigDecimal.valueOf(coinCollection.stream().mapToDouble(item -> item).sum()), 2);
-            int compValue = compare(coinSum, productPrice);
-            if (compValue < 0) {
-                String errorMessage = ERROR_MESSAGE_PRODUCT_PRICE_MORE_THAN_CUSTOMER_MONEY;
-                Logger.error(TAG, errorMessage);
-                throw new IllegalArgumentException(errorMessage);
+            //Stages 3 and 4 (coin ledger)
+            purchaseResult = settle(coinCounts, change, commitGate, slots, quantities, stockings);
+
+            if (journal != null && purchaseResult.isSuccessful()) {
+                JournalEntry journalEntry = newJournalEntry();
+                for (int i = 0; i < slots.length; i++) {
+                    journalEntry.adjustInventory(slots[i], -quantities[i]);
+                }
+                CoinCounts changeCoinCounts = purchaseResult.getChange();
+                for (int ordinal = 0; ordinal < coinCounts.getDenominations().size(); ordinal++) {
+                    int delta = coinCounts.countAt(ordinal) - changeCoinCounts.countAt(ordinal);
+                    if (delta != 0) {
+                        journalEntry.adjustCoinCount(ordinal, delta);
+                    }
+                }
+                try {
+                    journalSequence = journal.append(journalEntry);
+                } catch (IllegalStateException ex) {
+                    //The journal failed since it was checked: call the purchase off, unless its coins are already
+                    //paid out again, in which case the sale stands
+                    if (!tryUndoSettlement(coinCounts, changeCoinCounts)) {
+                        Logger.error(TAG, ERROR_MESSAGE_JOURNAL_RECORD_LOST);
+                        return purchaseResult;
+                    }
+                    putBack(slots, quantities, stockings, slots.length);
+                    throw ex;
+                }
             }
+        } finally {
+            if (journalOrder != null) {
+                journalOrder.unlock();
+            }
+        }
+        if (journalSequence > 0) {
+            awaitAppliedDurable(journalSequence);
+        }
+        return purchaseResult;
+    }
+
+    /**
+     * Reverse the coin settlement of a purchase: pay the inserted {@param coinCounts} back out of the available coins
+     * and return the {@param changeCoinCounts} to them
+     *
+     * @return false if the inserted coins are no longer all available, nothing is reversed then
+     */
+    private boolean tryUndoSettlement(final CoinCounts coinCounts, final CoinCounts changeCoinCounts) {
+        try {
+            coinManager.balanceCoins(changeCoinCounts, coinCounts);
+            return true;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Stages 3 and 4 of a purchase whose item(s) have been taken off their slot(s)
+     *
+     * @param change     amount to pay back to the customer
+     * @param commitGate see {@link #tryBuyProduct(int, CoinCounts, BooleanSupplier)}, may be null
+     * @param slots      slots the items were taken off, put back if the purchase fails
+     * @param quantities quantity taken off each of {@param slots}
+     * @param stockings  stocking id of the product each of {@param quantities} was taken from
+     */
+    private PurchaseResult settle(final CoinCounts coinCounts, final Money change, final BooleanSupplier commitGate,
+                                  final int[] slots, final long[] quantities, final long[] stockings) {
+        //Stage 3 (coin ledger) - hold the customer change out of the available coins, so no other purchase can be
+        //handed the same coins. In escrow mode the inserted coins stay apart from the available coins and may be handed
+        //back as change
+        ChangeReservation changeReservation;
+        try {
+            changeReservation = coinManager.tryReserveChange(change,
+                    escrowChangeEnabled ? new CoinEscrow(coinCounts) : null);
+        } catch (RuntimeException ex) {
+            putBack(slots, quantities, stockings, slots.length);
+            throw ex;
+        }
+        if (changeReservation == null) {
+            putBack(slots, quantities, stockings, slots.length);
+            return PurchaseResult.rejected(PurchaseResult.Reason.NO_CHANGE);
+        }
 
-            Collection<Double> customerChangeCombination = new ArrayList<>();
-            if (compValue > 0) {
-                //Customer has change to collect
-                customerChangeCombination = coinManager.getPossibleCoinCombination(coinSum.subtract(productPrice));
+        //Last point at which the purchase can be called off
+        if (commitGate != null && !commitGate.getAsBoolean()) {
+            coinManager.releaseChange(changeReservation);
+            putBack(slots, quantities, stockings, slots.length);
+            return PurchaseResult.rejected(PurchaseResult.Reason.CANCELLED);
+        }
+
+        //Stage 4 (coin ledger) - settle: take the customer coins in, pay the reserved change out
+        try {
+            coinManager.commitChange(changeReservation, coinCounts);
+        } catch (RuntimeException ex) {
+            if (changeReservation.isPending()) {
+                coinManager.releaseChange(changeReservation);
             }
+            putBack(slots, quantities, stockings, slots.length);
+            throw ex;
+        }
 
-            //Balance inventory
-            productSlotManager.updateSlotProductInventorySize(productSlotIndex, --availableProductInventorySize);
+        //return customer change
+        return PurchaseResult.success(changeReservation.getCoinCounts());
+    }
 
-            //Balance coin
-            coinManager.balanceCoins(coinCollection, customerChangeCombination);
+    /**
+     * Return the items of the first {@param count} basket lines to their slots. Items whose product was removed from
+     * its slot in the meantime are dropped, never credited to a product added in its place
+     */
+    private void putBack(final int[] slots, final long[] quantities, final long[] stockings, final int count) {
+        for (int i = 0; i < count; i++) {
+            productSlotManager.tryReturnInventory(slots[i], quantities[i], stockings[i]);
+        }
+    }
 
-            //return customer change
-            return customerChangeCombination;
+    /**
+     * Validate and count {@param coinCollection}
+     */
+    private CoinCounts toCoinCounts(final Collection<Double> coinCollection) {
+        //Check for empty coin list
+        if (coinCollection == null || coinCollection.isEmpty()) {
+            String errorMessage = ERROR_MESSAGE_COIN_IS_REQUIRED_FOR_PURCHASE_OPERATION;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
         }
+
+        //check if provided coins are supported
+        if (!coinManager.areCoinsSupported(coinCollection)) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        return coinManager.toCoinCounts(coinCollection);
+    }
+
+    /**
+     * @return the change of a successful {@param purchaseResult}
+     * @throws IllegalArgumentException or {@link IllegalStateException} (see {@link PurchaseResult.Reason#isInvalidRequest()})
+     *                                  if the purchase was rejected
+     */
+    private CoinCounts getChangeOrThrow(final PurchaseResult purchaseResult) {
+        if (purchaseResult.isSuccessful()) {
+            return purchaseResult.getChange();
+        }
+        PurchaseResult.Reason reason = purchaseResult.getReason();
+        String errorMessage = reason.getErrorMessage();
+        Logger.error(TAG, errorMessage);
+        if (reason.isInvalidRequest()) {
+            throw new IllegalArgumentException(errorMessage);
+        }
+        throw new IllegalStateException(errorMessage);
     }
+
     //#endregion
 
     //#region Maintenance
     @Override
-    public void addProductToSlot(final BigDecimal price, final int inventorySize) {
-        productSlotManager.addProductToSlot(new Product(price, inventorySize));
+    public int addProductToSlot(final BigDecimal price, final int inventorySize) {
+        Product product = new Product(price, inventorySize);
+        return applyJournaled(() -> productSlotManager.addProductToSlot(product),
+                (productSlotIndex, journalEntry) -> journalEntry.addProduct(productSlotIndex,
+                        toMinorUnits(product.getPriceAmount()), product.getInventorySize()));
+    }
+
+    @Override
+    public int addProductToSlot(final Sku sku, final BigDecimal price, final int inventorySize) {
+        Product product = new Product(price, inventorySize);
+        return applyJournaled(() -> productCatalog.addProductToSlot(sku, product),
+                (productSlotIndex, journalEntry) -> journalEntry
+                        .addProduct(productSlotIndex, toMinorUnits(product.getPriceAmount()), product.getInventorySize())
+                        .catalogSku(productSlotIndex, sku.getCode(), sku.getName()));
     }
 
     @Override
     public void removeProductFromSlot(int productSlotId) {
-        productSlotManager.removeProductAtSlot(productSlotId);
+        applyJournaled(() -> {
+            productCatalog.removeProductAtSlot(productSlotId);
+            return null;
+        }, (nothing, journalEntry) -> journalEntry.removeProduct(productSlotId));
     }
 
     @Override
     public void setProductInventorySize(final int productSlotIndex, final long newInventorySize) {
-        productSlotManager.updateSlotProductInventorySize(productSlotIndex, newInventorySize);
+        applyJournaled(() -> {
+            productSlotManager.updateSlotProductInventorySize(productSlotIndex, newInventorySize);
+            return null;
+        }, (nothing, journalEntry) -> journalEntry.setInventorySize(productSlotIndex, newInventorySize));
     }
 
     @Override
@@ -128,22 +573,418 @@ public final class VendingMachine implements IVendingMachine {
 
     @Override
     public void setProductPrice(final int productSlotIndex, final BigDecimal productPrice) {
-        productSlotManager.setSlotProductPrice(productSlotIndex, productPrice);
+        applyJournaled(() -> {
+            productSlotManager.setSlotProductPrice(productSlotIndex, productPrice);
+            //The price as the slot holds it, rounded to the currency scale
+            return productSlotManager.getSlotProductPriceAmount(productSlotIndex);
+        }, (price, journalEntry) -> journalEntry.setPrice(productSlotIndex, toMinorUnits(price)));
     }
 
     @Override
     public void setCoinAvailableCount(final double coinValue, final int newAvailableCount) {
-        coinManager.setCoinAvailableCount(coinValue, newAvailableCount);
+        applyJournaled(() -> {
+            coinManager.setCoinAvailableCount(coinValue, newAvailableCount);
+            return null;
+        }, (nothing, journalEntry) -> journalEntry.setCoinCount(
+                coinManager.getCoinDenominations().ordinalOf(coinValue), newAvailableCount));
     }
 
     @Override
     public long getCoinAvailableCount(double coinValue) {
         return coinManager.getCoinAvailableCount(coinValue);
     }
+
+    @Override
+    public int[] applyMaintenanceBatch(@NotNull final MaintenanceBatch maintenanceBatch) {
+        if (maintenanceBatch == null) {
+            String errorMessage = "Maintenance batch is required";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        //Coins are checked before the slots change, so a batch is never half applied
+        Map<Double, Integer> coinAvailableCounts = maintenanceBatch.getCoinAvailableCounts();
+        if (!coinAvailableCounts.isEmpty() && !coinManager.areCoinsSupported(coinAvailableCounts.keySet())) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        List<SlotChange> slotChanges = maintenanceBatch.getSlotChanges();
+        int[] addedSlots = applyJournaled(() -> {
+            int[] newSlots = slotChanges.isEmpty() ? new int[0] : productSlotManager.applySlotChanges(slotChanges);
+            for (SlotChange slotChange : slotChanges) {
+                if (slotChange.getType() == SlotChange.Type.REMOVE_PRODUCT) {
+                    productCatalog.uncatalogSlot(slotChange.getProductSlotIndex());
+                }
+            }
+            if (!coinAvailableCounts.isEmpty()) {
+                coinManager.setCoinAvailableCounts(coinAvailableCounts);
+            }
+            return newSlots;
+        }, (newSlots, journalEntry) -> {
+            //Replayed as the same changes one at a time: an added product goes to the first free slot either way
+            int addedProductCount = 0;
+            for (SlotChange slotChange : slotChanges) {
+                switch (slotChange.getType()) {
+                    case ADD_PRODUCT:
+                        journalEntry.addProduct(newSlots[addedProductCount++], toMinorUnits(slotChange.getPrice()),
+                                slotChange.getInventorySize());
+                        break;
+                    case REMOVE_PRODUCT:
+                        journalEntry.removeProduct(slotChange.getProductSlotIndex());
+                        break;
+                    case SET_PRICE:
+                        journalEntry.setPrice(slotChange.getProductSlotIndex(), toMinorUnits(slotChange.getPrice()));
+                        break;
+                    default:
+                        journalEntry.setInventorySize(slotChange.getProductSlotIndex(), slotChange.getInventorySize());
+                }
+            }
+            CoinDenominations coinDenominations = coinManager.getCoinDenominations();
+            for (Map.Entry<Double, Integer> coinAvailableCount : coinAvailableCounts.entrySet()) {
+                journalEntry.setCoinCount(coinDenominations.ordinalOf(coinAvailableCount.getKey()), coinAvailableCount.getValue());
+            }
+        });
+
+        Logger.info(TAG, () -> "Maintenance batch applied: " + maintenanceBatch + ", added product slots: " + Arrays.toString(addedSlots));
+        return addedSlots;
+    }
     //#endregion
 
     @Override
     public BigDecimal getProductPrice(final int productSlotIndex) {
         return productSlotManager.getSlotProductPrice(productSlotIndex);
     }
+
+    //#region Journal
+    /**
+     * Save the machine state as a {@link MachineSnapshot} in the journal directory, then delete the older snapshots and
+     * the journal segments it covers. Purchases only wait for the state to be copied, not for it to be written.
+     *
+     * @return sequence of the last journal record the snapshot includes
+     * @throws IllegalStateException if the machine has no journal
+     */
+    public long takeSnapshot() throws IOException {
+        if (journal == null) {
+            String errorMessage = "Snapshots need a journal";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        CoinDenominations coinDenominations = coinManager.getCoinDenominations();
+        int[] coinCounts = new int[coinDenominations.size()];
+        ProductSnapshot[] slots;
+        Sku[] skus;
+        long sequence;
+        Lock journalOrder = lockJournalOrder(true);
+        try {
+            sequence = journal.getLastSequence();
+            for (int ordinal = 0; ordinal < coinCounts.length; ordinal++) {
+                coinCounts[ordinal] = coinManager.getCoinAvailableCount(coinDenominations.valueAt(ordinal));
+            }
+            slots = productSlotManager.snapshotSlots();
+            skus = new Sku[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                skus[i] = slots[i] == null ? null : productCatalog.getSkuAtSlot(i);
+            }
+            //The records after the snapshot go to a new segment, so the ones before can be deleted next time
+            journal.rollSegment();
+        } finally {
+            journalOrder.unlock();
+        }
+
+        //The records the snapshot includes must be on disk before it, or recovery could restart the sequence below it
+        journal.sync();
+        Path snapshotFile = MachineSnapshot.of(sequence, CoinCounts.of(coinDenominations, coinCounts), slots, skus)
+                .writeTo(journal.getDirectory());
+        int deletedSnapshotCount = MachineSnapshot.deleteOlderThan(journal.getDirectory(), sequence);
+        int deletedSegmentCount = journal.deleteSegmentsUpTo(sequence);
+        Logger.info(TAG, () -> "Snapshot " + snapshotFile + " taken at record " + sequence + ", deleted "
+                + deletedSnapshotCount + " older snapshot(s) and " + deletedSegmentCount + " journal segment(s)");
+        return sequence;
+    }
+
+    /**
+     * Load {@param snapshot} into the managers and catalog, which must be empty
+     */
+    private void restore(final MachineSnapshot snapshot) {
+        CoinDenominations coinDenominations = coinManager.getCoinDenominations();
+        CoinCounts coinCounts = snapshot.getCoinCounts();
+        Map<Double, Integer> coinAvailableCounts = new HashMap<>();
+        for (int ordinal = 0; ordinal < coinDenominations.size(); ordinal++) {
+            coinAvailableCounts.put(coinDenominations.boxedValueAt(ordinal), coinCounts.countAt(ordinal));
+        }
+        coinManager.setCoinAvailableCounts(coinAvailableCounts);
+        productSlotManager.restoreSlots(snapshot.getSlots());
+        Sku[] skus = snapshot.getSkus();
+        for (int i = 0; i < skus.length; i++) {
+            if (skus[i] != null) {
+                productCatalog.catalogSlot(skus[i], i);
+            }
+        }
+    }
+    /**
+     * @return the journal order lock, locked shared (purchases) or {@param exclusive} (maintenance); null if the
+     * machine has no journal
+     */
+    private Lock lockJournalOrder(final boolean exclusive) {
+        if (journal == null) {
+            return null;
+        }
+        Lock lock = exclusive ? journalOrderLock.writeLock() : journalOrderLock.readLock();
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Apply the maintenance {@param change} and, if the machine has a journal, journal it as the operations
+     * {@param toJournalEntry} adds for the change's result
+     *
+     * @return result of {@param change}
+     */
+    private <T> T applyJournaled(final Supplier<T> change, final BiConsumer<? super T, JournalEntry> toJournalEntry) {
+        if (journal == null) {
+            return change.get();
+        }
+        T result;
+        long journalSequence;
+        Lock journalOrder = lockJournalOrder(true);
+        try {
+            //Refuse the change before it is applied if it could not be journaled
+            journal.ensureWritable();
+            result = change.get();
+            JournalEntry journalEntry = newJournalEntry();
+            toJournalEntry.accept(result, journalEntry);
+            try {
+                journalSequence = journal.append(journalEntry);
+            } catch (IllegalStateException ex) {
+                //The journal failed since it was checked; the change is applied and cannot be taken back generically
+                Logger.error(TAG, ERROR_MESSAGE_JOURNAL_RECORD_LOST);
+                return result;
+            }
+        } finally {
+            journalOrder.unlock();
+        }
+        awaitAppliedDurable(journalSequence);
+        return result;
+    }
+
+    /**
+     * Wait until record {@param journalSequence} of a change already applied is durable. The change cannot be called
+     * off any more, so a journal failing now is logged rather than thrown; every later change is refused up front
+     */
+    private void awaitAppliedDurable(final long journalSequence) {
+        try {
+            journal.awaitDurable(journalSequence);
+        } catch (IllegalStateException ex) {
+            Logger.error(TAG, ERROR_MESSAGE_JOURNAL_RECORD_LOST);
+        }
+    }
+
+    /**
+     * @return this thread's journal entry, cleared (appending copies it, so it is reused record after record)
+     */
+    private static JournalEntry newJournalEntry() {
+        JournalEntry journalEntry = JOURNAL_ENTRY.get();
+        journalEntry.clear();
+        return journalEntry;
+    }
+
+    private static long toMinorUnits(final Money price) {
+        return price == null ? -1 : price.getMinorUnits();
+    }
+
+    /**
+     * Applies replayed journal records straight to the managers, without journaling them again
+     */
+    private final class JournalReplay implements JournalHandler {
+
+        private final CoinDenominations coinDenominations = coinManager.getCoinDenominations();
+        //Coin deltas of the current record, balanced in one go when it ends
+        private final int[] creditCounts = new int[coinDenominations.size()];
+        private final int[] debitCounts = new int[coinDenominations.size()];
+        private boolean coinsAdjusted;
+
+        @Override
+        public void beginTransaction(final long sequence) {
+        }
+
+        @Override
+        public void addProduct(final int productSlotIndex, final long priceMinorUnits, final long inventorySize) {
+            Money price = priceMinorUnits < 0 ? null : Money.ofMinorUnits(priceMinorUnits);
+            if (productSlotManager.addProductToSlot(Product.of(price, inventorySize)) != productSlotIndex) {
+                throw replayMismatch();
+            }
+        }
+
+        @Override
+        public void catalogSku(final int productSlotIndex, final String skuCode, final String skuName) {
+            productCatalog.catalogSlot(Sku.of(skuCode, skuName), productSlotIndex);
+        }
+
+        @Override
+        public void removeProduct(final int productSlotIndex) {
+            productCatalog.removeProductAtSlot(productSlotIndex);
+        }
+
+        @Override
+        public void setPrice(final int productSlotIndex, final long priceMinorUnits) {
+            productSlotManager.setSlotProductPriceAmount(productSlotIndex, Money.ofMinorUnits(priceMinorUnits));
+        }
+
+        @Override
+        public void setInventorySize(final int productSlotIndex, final long inventorySize) {
+            productSlotManager.updateSlotProductInventorySize(productSlotIndex, inventorySize);
+        }
+
+        @Override
+        public void adjustInventory(final int productSlotIndex, final long delta) {
+            if (delta >= 0) {
+                productSlotManager.incrementInventory(productSlotIndex, delta);
+            } else if (!productSlotManager.tryDecrementInventory(productSlotIndex, -delta)) {
+                throw replayMismatch();
+            }
+        }
+
+        @Override
+        public void setCoinCount(final int coinOrdinal, final int count) {
+            balanceAdjustedCoins();
+            coinManager.setCoinAvailableCount(coinDenominations.valueAt(coinOrdinal), count);
+        }
+
+        @Override
+        public void adjustCoinCount(final int coinOrdinal, final int delta) {
+            if (delta > 0) {
+                creditCounts[coinOrdinal] += delta;
+            } else {
+                debitCounts[coinOrdinal] -= delta;
+            }
+            coinsAdjusted = true;
+        }
+
+        @Override
+        public void endTransaction(final long sequence) {
+            balanceAdjustedCoins();
+        }
+
+        private void balanceAdjustedCoins() {
+            if (!coinsAdjusted) {
+                return;
+            }
+            coinManager.balanceCoins(CoinCounts.of(coinDenominations, creditCounts), CoinCounts.of(coinDenominations, debitCounts));
+            Arrays.fill(creditCounts, 0);
+            Arrays.fill(debitCounts, 0);
+            coinsAdjusted = false;
+        }
+
+        private IllegalStateException replayMismatch() {
+            String errorMessage = ERROR_MESSAGE_JOURNAL_REPLAY_MISMATCH;
+            Logger.error(TAG, errorMessage);
+            return new IllegalStateException(errorMessage);
+        }
+    }
+    //#endregion
+
+    /**
+     * Coins are resolved to their denomination ordinal as they are inserted, and counted and summed in minor units, so
+     * {@link #select(int)} hands {@link #purchase(int, CoinCounts, Money, BooleanSupplier)} coins that are already
+     * checked and summed.
+     */
+    private final class Session implements PurchaseSession {
+
+        private final CoinDenominations coinDenominations = coinManager.getCoinDenominations();
+        private final int[] insertedCounts = new int[coinDenominations.size()];
+        private long insertedMinorUnits;
+        private boolean open = true;
+
+        //Escrow mode only, built on first use: pre-checks the change over the available and the inserted coins
+        private BoundedCoinChangeSolver escrowChangeSolver;
+        private int[] escrowAvailableCounts;
+        private int[] escrowChangeCounts;
+
+        @Override
+        public boolean insertCoin(final double coinValue) {
+            assertOpen();
+            int ordinal = coinDenominations.ordinalOf(coinValue);
+            if (ordinal < 0) {
+                return false;
+            }
+            insertedCounts[ordinal]++;
+            insertedMinorUnits += coinDenominations.minorUnitsAt(ordinal);
+            return true;
+        }
+
+        @Override
+        public Money getInsertedAmount() {
+            return Money.ofMinorUnits(insertedMinorUnits, coinDenominations.getScale());
+        }
+
+        @Override
+        public boolean canBuy(final int productSlotIndex) {
+            if (!open) {
+                return false;
+            }
+            ProductSnapshot product = productSlotManager.getSlotProduct(productSlotIndex);
+            if (product == null || product.getPriceAmount() == null) {
+                return false;
+            }
+            Money change = getInsertedAmount().minus(product.getPriceAmount());
+            if (change.isNegative()) {
+                return false;
+            }
+            //In escrow mode the inserted coins may pay the change too: pre-check over them and the available coin(s)
+            return escrowChangeEnabled ? canMakeChangeWithInsertedCoins(change) : coinManager.canMakeChange(change);
+        }
+
+        /**
+         * The available coin(s) are read one denomination at a time, so the answer is a pre-check: the purchase itself
+         * reserves the change atomically
+         */
+        private boolean canMakeChangeWithInsertedCoins(final Money change) {
+            if (escrowChangeSolver == null) {
+                escrowChangeSolver = new BoundedCoinChangeSolver(coinDenominations.toMinorUnitsArray());
+                escrowAvailableCounts = new int[coinDenominations.size()];
+                escrowChangeCounts = new int[coinDenominations.size()];
+            }
+            for (int ordinal = 0; ordinal < escrowAvailableCounts.length; ordinal++) {
+                escrowAvailableCounts[ordinal] = coinManager.getCoinAvailableCount(coinDenominations.valueAt(ordinal))
+                        + insertedCounts[ordinal];
+            }
+            return escrowChangeSolver.canSolve(change.getMinorUnits(), escrowAvailableCounts, escrowChangeCounts);
+        }
+
+        @Override
+        public PurchaseResult select(final int productSlotIndex) {
+            assertOpen();
+            if (insertedMinorUnits == 0) {
+                return PurchaseResult.rejected(PurchaseResult.Reason.COIN_REQUIRED);
+            }
+            PurchaseResult purchaseResult = purchase(productSlotIndex,
+                    CoinCounts.of(coinDenominations, insertedCounts), getInsertedAmount(), null);
+            if (purchaseResult.isSuccessful()) {
+                open = false;
+            }
+            return purchaseResult;
+        }
+
+        @Override
+        public CoinCounts cancel() {
+            assertOpen();
+            open = false;
+            return CoinCounts.of(coinDenominations, insertedCounts);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        private void assertOpen() {
+            if (!open) {
+                String errorMessage = ERROR_MESSAGE_PURCHASE_SESSION_CLOSED;
+                Logger.error(TAG, errorMessage);
+                throw new IllegalStateException(errorMessage);
+            }
+        }
+    }
 }
@@ -0,0 +1,138 @@
+package application.tests;
+
+import application.ActorVendingMachine;
+import manager.CoinCounts;
+import operation.PurchaseResult;
+import operation.PurchaseSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static util.Constants.*;
+
+class ActorVendingMachineTest {
+
+    private final int PRODUCT_SLOT_SIZE = 5;
+    private final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+
+    private ActorVendingMachine actorVendingMachine;
+
+    @BeforeEach
+    void setUp() {
+        actorVendingMachine = new ActorVendingMachine(PRODUCT_SLOT_SIZE, SUPPORTED_COINS, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        actorVendingMachine.close();
+    }
+
+    @Test
+    void buyProduct_withValidInput_runsOnTheOwnerThread() {
+        actorVendingMachine.setCoinAvailableCount(0.2, 2);
+        int productSlotId = actorVendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+
+        Collection<Double> change = actorVendingMachine.buyProduct(productSlotId, Collections.singletonList(1.0));
+
+        Assertions.assertEquals(Arrays.asList(0.2, 0.2), new ArrayList<>(change));
+        Assertions.assertEquals(0, actorVendingMachine.getProductInventorySize(productSlotId));
+        Assertions.assertEquals("vending-machine-actor",
+                actorVendingMachine.submit(vendingMachine -> Thread.currentThread().getName()).join());
+    }
+
+    @Test
+    void buyProduct_commandThrows_exceptionIsRethrownToTheCaller() {
+        IllegalArgumentException thrown = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> actorVendingMachine.buyProduct(0, Collections.emptyList()));
+        Assertions.assertEquals(ERROR_MESSAGE_COIN_IS_REQUIRED_FOR_PURCHASE_OPERATION, thrown.getMessage());
+
+        CompletableFuture<Long> future = actorVendingMachine.submit(vendingMachine -> vendingMachine.getProductInventorySize(4));
+        CompletionException completionException = Assertions.assertThrows(CompletionException.class, future::join);
+        Assertions.assertTrue(completionException.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void submit_commandThrowsAnError_futureFailsAndTheOwnerThreadCarriesOn() {
+        CompletableFuture<Integer> future = actorVendingMachine.submit(vendingMachine -> {
+            throw new OutOfMemoryError("command failed");
+        });
+        CompletionException thrown = Assertions.assertThrows(CompletionException.class, future::join);
+        Assertions.assertTrue(thrown.getCause() instanceof OutOfMemoryError);
+
+        int productSlotId = actorVendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+        Assertions.assertEquals(1, actorVendingMachine.getProductInventorySize(productSlotId));
+    }
+
+    @Test
+    void submit_manyConcurrentProducers_everyCommandRunsOnceAndMetricsAddUp() throws Exception {
+        int productSlotId = actorVendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), 100);
+        CoinCounts oneCoin = CoinCounts.of(actorVendingMachine.getCoinDenominations(), Collections.singletonList(1.0));
+
+        List<CompletableFuture<PurchaseResult>> purchases = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 8; p++) {
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    purchases.add(actorVendingMachine.submit(vendingMachine -> vendingMachine.tryBuyProduct(productSlotId, oneCoin)));
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        int successful = 0;
+        for (CompletableFuture<PurchaseResult> purchase : purchases) {
+            if (purchase.get(5, TimeUnit.SECONDS).isSuccessful()) {
+                successful++;
+            }
+        }
+        Assertions.assertEquals(160, purchases.size());
+        Assertions.assertEquals(100, successful);
+        Assertions.assertEquals(0, actorVendingMachine.getProductInventorySize(productSlotId));
+        Assertions.assertEquals(100, actorVendingMachine.getCoinAvailableCount(1.0));
+
+        //1 setup command, 160 purchases, 2 reads
+        Assertions.assertEquals(163, actorVendingMachine.getProcessedCommandCount());
+        Assertions.assertEquals(8, actorVendingMachine.getQueueCapacity());
+        Assertions.assertTrue(actorVendingMachine.getLargestBatchSize() <= 8);
+        //The batch of the last read may not be recorded yet
+        Assertions.assertTrue(actorVendingMachine.getDrainedBatchCount() >= 162 / 8);
+    }
+
+    @Test
+    void submit_afterClose_futureFailsWithIllegalStateException() {
+        actorVendingMachine.close();
+
+        CompletableFuture<Integer> future = actorVendingMachine.submit(vendingMachine -> 1);
+
+        CompletionException thrown = Assertions.assertThrows(CompletionException.class, future::join);
+        Assertions.assertTrue(thrown.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void purchaseSession_selectedOnTheOwnerThread_purchaseSucceeds() {
+        int productSlotId = actorVendingMachine.addProductToSlot(BigDecimal.valueOf(0.5), 1);
+        PurchaseSession session = actorVendingMachine.beginSession();
+        session.insertCoin(0.2);
+        session.insertCoin(0.2);
+        session.insertCoin(0.1);
+
+        Assertions.assertTrue(session.canBuy(productSlotId));
+        Assertions.assertTrue(session.select(productSlotId).isSuccessful());
+        Assertions.assertEquals(0, actorVendingMachine.getProductInventorySize(productSlotId));
+        Assertions.assertEquals(2, actorVendingMachine.getCoinAvailableCount(0.2));
+    }
+}
@@ -0,0 +1,136 @@
+package application.tests;
+
+import application.AsyncVendingMachine;
+import application.VendingMachine;
+import manager.ChangeReservation;
+import manager.CoinCounts;
+import manager.CoinEscrow;
+import manager.DefaultCoinManager;
+import manager.DefaultProductSlotManager;
+import model.Money;
+import operation.PurchaseResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+class AsyncVendingMachineTest {
+
+    private final int PRODUCT_SLOT_SIZE = 5;
+    private final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+
+    //Tasks are queued and run by the test, so it decides what happens before a purchase starts
+    private final Queue<Runnable> queuedPurchases = new ArrayDeque<>();
+    //Called while the change is reserved, i.e. after the item was taken and before the coins are settled
+    private final AtomicReference<Runnable> onChangeReserved = new AtomicReference<>();
+
+    private VendingMachine vendingMachine;
+    private AsyncVendingMachine asyncVendingMachine;
+
+    @BeforeEach
+    void setUp() {
+        DefaultCoinManager coinManager = new DefaultCoinManager(SUPPORTED_COINS) {
+            @Override
+            public ChangeReservation tryReserveChange(final Money amount, final CoinEscrow escrow) {
+                ChangeReservation changeReservation = super.tryReserveChange(amount, escrow);
+                Runnable callback = onChangeReserved.get();
+                if (callback != null) {
+                    callback.run();
+                }
+                return changeReservation;
+            }
+        };
+        vendingMachine = new VendingMachine(coinManager, new DefaultProductSlotManager(PRODUCT_SLOT_SIZE));
+        asyncVendingMachine = new AsyncVendingMachine(vendingMachine, queuedPurchases::add);
+        vendingMachine.setCoinAvailableCount(0.2, 2);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+    }
+
+    @Test
+    void buyProductAsync_withValidInput_futureCompletesWithTheChange() throws Exception {
+        CompletableFuture<PurchaseResult> purchase = asyncVendingMachine.buyProductAsync(0, oneCoin());
+        Assertions.assertFalse(purchase.isDone());
+
+        runQueuedPurchases();
+
+        Assertions.assertTrue(purchase.get().isSuccessful());
+        Assertions.assertEquals(2, purchase.get().getChange().countOf(0.2));
+        Assertions.assertEquals(0, vendingMachine.getProductInventorySize(0));
+        //Settled: too late to cancel
+        Assertions.assertFalse(purchase.cancel(true));
+        Assertions.assertFalse(purchase.isCancelled());
+    }
+
+    @Test
+    void buyProductAsync_cancelledWhileQueued_nothingIsBought() {
+        CompletableFuture<PurchaseResult> purchase = asyncVendingMachine.buyProductAsync(0, oneCoin());
+
+        Assertions.assertTrue(purchase.cancel(false));
+        runQueuedPurchases();
+
+        Assertions.assertTrue(purchase.isCancelled());
+        assertNothingChanged();
+    }
+
+    @Test
+    void buyProductAsync_cancelledBeforeSettlement_purchaseIsRolledBack() {
+        AtomicReference<CompletableFuture<PurchaseResult>> purchase = new AtomicReference<>();
+        onChangeReserved.set(() -> Assertions.assertTrue(purchase.get().cancel(true)));
+        purchase.set(asyncVendingMachine.buyProductAsync(0, oneCoin()));
+
+        runQueuedPurchases();
+
+        Assertions.assertTrue(purchase.get().isCancelled());
+        assertNothingChanged();
+    }
+
+    @Test
+    void buyProductAsync_notStartedWithinTimeout_futureTimesOutAndNothingIsBought() throws InterruptedException {
+        CompletableFuture<PurchaseResult> purchase = asyncVendingMachine.buyProductAsync(0, oneCoin(), 10, TimeUnit.MILLISECONDS);
+
+        ExecutionException thrown = Assertions.assertThrows(ExecutionException.class, () -> purchase.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(thrown.getCause() instanceof TimeoutException);
+        runQueuedPurchases();
+
+        assertNothingChanged();
+    }
+
+    @Test
+    void buyProductAsync_defaultExecutor_purchaseCompletes() throws Exception {
+        try (AsyncVendingMachine defaultAsyncVendingMachine = new AsyncVendingMachine(vendingMachine)) {
+            PurchaseResult purchaseResult = defaultAsyncVendingMachine.buyProductAsync(0, oneCoin(), 5, TimeUnit.SECONDS)
+                    .get(5, TimeUnit.SECONDS);
+
+            Assertions.assertTrue(purchaseResult.isSuccessful());
+            Assertions.assertEquals(0, vendingMachine.getProductInventorySize(0));
+        }
+    }
+
+    private CoinCounts oneCoin() {
+        return CoinCounts.of(vendingMachine.getCoinDenominations(), Collections.singletonList(1.0));
+    }
+
+    private void runQueuedPurchases() {
+        Runnable purchase;
+        while ((purchase = queuedPurchases.poll()) != null) {
+            purchase.run();
+        }
+    }
+
+    private void assertNothingChanged() {
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(2, vendingMachine.getCoinAvailableCount(0.2));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(1.0));
+    }
+}
@@ -1,16 +1,35 @@
 package application.tests;
 
 import application.VendingMachine;
+import manager.AtomicCoinManager;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import manager.CoinManager;
 import manager.DefaultCoinManager;
 import manager.DefaultProductSlotManager;
+import manager.ProductSlotManager;
+import manager.StripedProductSlotManager;
+import model.Money;
+import model.Product;
+import model.ProductSnapshot;
+import model.Sku;
+import operation.BasketItem;
+import operation.MaintenanceBatch;
+import operation.PurchaseResult;
+import operation.PurchaseSession;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static util.Constants.*;
 import static util.NumbersUtil.getCountOfItem;
@@ -218,4 +237,446 @@ class VendingMachineTest {
         Assertions.assertEquals(Collections.singletonList(supportedCoinTwo), coinCombination);
     }
 
-}
\ No newline at end of file
+    @Test
+    void buyProduct_escrowChangeEnabledAndNoChangeCoinAvailable_customerCoinIsReturnedAsChange() {
+        VendingMachine escrowVendingMachine = new VendingMachine(
+                new DefaultCoinManager(SUPPORTED_COINS),
+                new DefaultProductSlotManager(PRODUCT_SLOT_SIZE),
+                true
+        );
+        escrowVendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), 1);
+
+        Collection<Double> coinCombination = escrowVendingMachine.buyProduct(0, Arrays.asList(1.0, 0.5));
+
+        Assertions.assertEquals(Collections.singletonList(0.5), coinCombination);
+        Assertions.assertEquals(1, escrowVendingMachine.getCoinAvailableCount(1.0));
+        Assertions.assertEquals(0, escrowVendingMachine.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(0, escrowVendingMachine.getProductInventorySize(0));
+    }
+
+    @Test
+    void buyProduct_escrowChangeDisabledAndNoChangeCoinAvailable_throwsIllegalStateException() {
+        Exception exception = null;
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), 1);
+        try {
+            vendingMachine.buyProduct(0, Arrays.asList(1.0, 0.5));
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalStateException);
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(1.0));
+    }
+
+    @Test
+    void buyProductWithCoinCounts_withValidInput_changeIsReturnedAsCoinCounts() {
+        vendingMachine.setCoinAvailableCount(0.2, 2);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+
+        CoinCounts coinCounts = CoinCounts.of(vendingMachine.getCoinDenominations(), Collections.singletonList(1.0));
+        CoinCounts change = vendingMachine.buyProductWithCoinCounts(0, coinCounts);
+
+        Assertions.assertEquals(2, change.countOf(0.2));
+        Assertions.assertEquals(Money.of(0.4), change.totalValue());
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(0.2));
+        Assertions.assertEquals(1, vendingMachine.getCoinAvailableCount(1.0));
+    }
+
+    @Test
+    void buyBySku_skuInSeveralSlots_sellsUntilEverySlotIsEmpty() {
+        Sku sku = Sku.of("COLA-33", "Cola 33cl");
+        int firstSlot = vendingMachine.addProductToSlot(sku, BigDecimal.valueOf(1.0), 1);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(2.0), 5);
+        int secondSlot = vendingMachine.addProductToSlot(sku, BigDecimal.valueOf(1.0), 2);
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(vendingMachine.buyBySku("COLA-33", Collections.singletonList(1.0)).isEmpty());
+        }
+        Assertions.assertEquals(0, vendingMachine.getProductInventorySize(firstSlot));
+        Assertions.assertEquals(0, vendingMachine.getProductInventorySize(secondSlot));
+        Assertions.assertEquals(5, vendingMachine.getProductInventorySize(1));
+
+        IllegalStateException exception = Assertions.assertThrows(IllegalStateException.class,
+                () -> vendingMachine.buyBySku("COLA-33", Collections.singletonList(1.0)));
+        Assertions.assertEquals(ERROR_MESSAGE_SLOT_OUT_OF_STOCK, exception.getLocalizedMessage());
+        Assertions.assertEquals(3, vendingMachine.getCoinAvailableCount(1.0));
+    }
+
+    @Test
+    void buyBySku_unknownSku_throwsIllegalArgumentException() {
+        Sku sku = Sku.of("COLA-33", "Cola 33cl");
+        int slot = vendingMachine.addProductToSlot(sku, BigDecimal.valueOf(1.0), 1);
+        vendingMachine.removeProductFromSlot(slot);
+
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> vendingMachine.buyBySku("COLA-33", Collections.singletonList(1.0)));
+        Assertions.assertEquals(ERROR_MESSAGE_UNKNOWN_PRODUCT_SKU, exception.getLocalizedMessage());
+    }
+
+    @Test
+    void applyMaintenanceBatch_validBatch_allChangesAreApplied() {
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), 1);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(2.0), 1);
+
+        int[] addedSlots = vendingMachine.applyMaintenanceBatch(MaintenanceBatch.builder()
+                .setProductInventorySize(0, 10)
+                .setProductPrice(0, BigDecimal.valueOf(1.5))
+                .removeProduct(1)
+                .addProduct(BigDecimal.valueOf(0.5), 4)
+                .addProduct(BigDecimal.valueOf(0.7), 6)
+                .setCoinAvailableCount(0.1, 20)
+                .setCoinAvailableCount(0.5, 8)
+                .build());
+
+        Assertions.assertArrayEquals(new int[]{1, 2}, addedSlots);
+        Assertions.assertEquals(10, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(0, BigDecimal.valueOf(1.5).compareTo(vendingMachine.getProductPrice(0)));
+        Assertions.assertEquals(4, vendingMachine.getProductInventorySize(1));
+        Assertions.assertEquals(6, vendingMachine.getProductInventorySize(2));
+        Assertions.assertEquals(20, vendingMachine.getCoinAvailableCount(0.1));
+        Assertions.assertEquals(8, vendingMachine.getCoinAvailableCount(0.5));
+    }
+
+    @Test
+    void applyMaintenanceBatch_lastChangeIsInvalid_nothingIsApplied() {
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), 1);
+        Exception exception = null;
+        try {
+            vendingMachine.applyMaintenanceBatch(MaintenanceBatch.builder()
+                    .setProductInventorySize(0, 10)
+                    .addProduct(BigDecimal.valueOf(0.5), 4)
+                    .setCoinAvailableCount(0.1, 20)
+                    .removeProduct(3)
+                    .build());
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_INVALID_PRODUCT_SLOT, exception.getLocalizedMessage());
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> vendingMachine.getProductInventorySize(1));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(0.1));
+    }
+
+    @Test
+    void applyMaintenanceBatch_unsupportedCoin_nothingIsApplied() {
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), 1);
+        Exception exception = null;
+        try {
+            vendingMachine.applyMaintenanceBatch(MaintenanceBatch.builder()
+                    .setProductInventorySize(0, 10)
+                    .setCoinAvailableCount(0.1, 20)
+                    .setCoinAvailableCount(2.0, 5)
+                    .build());
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_COIN_NOT_SUPPORTED, exception.getLocalizedMessage());
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(0.1));
+    }
+
+    @Test
+    void applyMaintenanceBatch_negativeCoinCount_rejectedWhenBuilt() {
+        Exception exception = null;
+        try {
+            MaintenanceBatch.builder().setCoinAvailableCount(0.1, -1);
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_COIN_COUNT_CANNOT_GO_TO_NEGATIVE, exception.getLocalizedMessage());
+    }
+
+    @Test
+    void buyProduct_concurrentBuyersWithDefaultManagers_noOversellAndNoNegativeCoinCount() throws InterruptedException {
+        assertConcurrentPurchasesAreConsistent(new DefaultCoinManager(SUPPORTED_COINS), new DefaultProductSlotManager(PRODUCT_SLOT_SIZE));
+    }
+
+    @Test
+    void buyProduct_concurrentBuyersWithLockFreeManagers_noOversellAndNoNegativeCoinCount() throws InterruptedException {
+        assertConcurrentPurchasesAreConsistent(new AtomicCoinManager(SUPPORTED_COINS), new StripedProductSlotManager(PRODUCT_SLOT_SIZE));
+    }
+
+    /**
+     * More buyers than items and than change coins: every purchase either completes in full or leaves no trace
+     */
+    private void assertConcurrentPurchasesAreConsistent(final CoinManager coinManager,
+                                                        final ProductSlotManager productSlotManager) throws InterruptedException {
+        final int THREAD_COUNT = 8;
+        final int PURCHASES_PER_THREAD = 40;
+        final int INVENTORY_SIZE_PER_SLOT = 30;
+        VendingMachine machine = new VendingMachine(coinManager, productSlotManager);
+        for (int slot = 0; slot < PRODUCT_SLOT_SIZE; slot++) {
+            machine.addProductToSlot(BigDecimal.valueOf(0.6), INVENTORY_SIZE_PER_SLOT);
+        }
+        machine.setCoinAvailableCount(0.1, 60);
+        machine.setCoinAvailableCount(0.2, 60);
+        Money initialCoinValue = availableCoinValue(machine);
+
+        AtomicInteger purchases = new AtomicInteger();
+        ConcurrentLinkedQueue<Exception> unexpectedExceptions = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int firstSlot = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < PURCHASES_PER_THREAD; i++) {
+                    try {
+                        Collection<Double> change = machine.buyProduct((firstSlot + i) % PRODUCT_SLOT_SIZE, Collections.singletonList(1.0));
+                        if (Money.of(0.4).compareTo(coinManager.getCoinsValue(change)) != 0) {
+                            unexpectedExceptions.add(new IllegalStateException("Wrong change: " + change));
+                        }
+                        purchases.incrementAndGet();
+                    } catch (IllegalStateException ex) {
+                        //Out of stock or no change left - the purchase must have been rolled back
+                    } catch (Exception ex) {
+                        unexpectedExceptions.add(ex);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertTrue(unexpectedExceptions.isEmpty(), "Unexpected: " + unexpectedExceptions);
+        long remainingItems = 0;
+        for (int slot = 0; slot < PRODUCT_SLOT_SIZE; slot++) {
+            long inventorySize = machine.getProductInventorySize(slot);
+            Assertions.assertTrue(inventorySize >= 0);
+            remainingItems += inventorySize;
+        }
+        for (Double coin : SUPPORTED_COINS) {
+            Assertions.assertTrue(machine.getCoinAvailableCount(coin) >= 0);
+        }
+        Assertions.assertTrue(purchases.get() > 0);
+        Assertions.assertEquals(PRODUCT_SLOT_SIZE * INVENTORY_SIZE_PER_SLOT - purchases.get(), remainingItems);
+        //Each purchase leaves the product price in the coin float, nothing else does
+        Assertions.assertEquals(initialCoinValue.plus(Money.of(0.6).times(purchases.get())), availableCoinValue(machine));
+    }
+
+    private Money availableCoinValue(final VendingMachine machine) {
+        Money total = Money.ZERO;
+        for (Double coin : SUPPORTED_COINS) {
+            total = total.plus(Money.of(coin).times(machine.getCoinAvailableCount(coin)));
+        }
+        return total;
+    }
+
+    @Test
+    void tryBuyProduct_purchaseTurnedDown_rejectionReasonIsReturnedAndNothingChanges() {
+        CoinDenominations coinDenominations = vendingMachine.getCoinDenominations();
+        CoinCounts oneCoin = CoinCounts.of(coinDenominations, Collections.singletonList(1.0));
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(2.0), 1);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), 0);
+
+        Assertions.assertEquals(PurchaseResult.Reason.COIN_REQUIRED,
+                vendingMachine.tryBuyProduct(0, CoinCounts.none(coinDenominations)).getReason());
+        Assertions.assertEquals(PurchaseResult.Reason.INVALID_PRODUCT_SLOT, vendingMachine.tryBuyProduct(4, oneCoin).getReason());
+        Assertions.assertEquals(PurchaseResult.Reason.OUT_OF_STOCK, vendingMachine.tryBuyProduct(2, oneCoin).getReason());
+        Assertions.assertEquals(PurchaseResult.Reason.INSUFFICIENT_MONEY, vendingMachine.tryBuyProduct(1, oneCoin).getReason());
+
+        PurchaseResult noChange = vendingMachine.tryBuyProduct(0, oneCoin);
+        Assertions.assertFalse(noChange.isSuccessful());
+        Assertions.assertNull(noChange.getChange());
+        Assertions.assertEquals(PurchaseResult.Reason.NO_CHANGE, noChange.getReason());
+        //Rejections are preallocated
+        Assertions.assertSame(noChange, PurchaseResult.rejected(PurchaseResult.Reason.NO_CHANGE));
+
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(1.0));
+    }
+
+    @Test
+    void tryBuyProduct_productReplacedBeforeRollback_replacementIsNotCredited() {
+        //The product is swapped for another one right after the purchase claims its item
+        VendingMachine swappingMachine = new VendingMachine(new DefaultCoinManager(SUPPORTED_COINS),
+                new DefaultProductSlotManager(PRODUCT_SLOT_SIZE) {
+                    @Override
+                    public long tryClaimInventory(final int productSlotIndex, final long count) {
+                        long stocking = super.tryClaimInventory(productSlotIndex, count);
+                        removeProductAtSlot(productSlotIndex);
+                        addProductToSlot(new Product(BigDecimal.valueOf(0.6), 4));
+                        return stocking;
+                    }
+                });
+        swappingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+
+        //0.4 change owed, no coin to pay it with: the claimed item cannot go back to the removed product
+        Assertions.assertEquals(PurchaseResult.Reason.NO_CHANGE, swappingMachine.tryBuyProduct(0,
+                CoinCounts.of(swappingMachine.getCoinDenominations(), Collections.singletonList(1.0))).getReason());
+
+        Assertions.assertEquals(4, swappingMachine.getProductInventorySize(0));
+    }
+
+    @Test
+    void tryBuyProduct_slotEmptiedAfterItIsRead_isTurnedDownWithoutThrowing() {
+        //The product is removed right after the purchase reads it, before its item is claimed
+        VendingMachine emptyingMachine = new VendingMachine(new DefaultCoinManager(SUPPORTED_COINS),
+                new DefaultProductSlotManager(PRODUCT_SLOT_SIZE) {
+                    @Override
+                    public ProductSnapshot getSlotProduct(final int productSlotIndex) {
+                        ProductSnapshot product = super.getSlotProduct(productSlotIndex);
+                        if (product != null) {
+                            removeProductAtSlot(productSlotIndex);
+                        }
+                        return product;
+                    }
+                });
+        emptyingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 3);
+        emptyingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 3);
+        CoinCounts twoCoins = CoinCounts.of(emptyingMachine.getCoinDenominations(), Arrays.asList(1.0, 0.2));
+
+        Assertions.assertEquals(PurchaseResult.Reason.INVALID_PRODUCT_SLOT,
+                emptyingMachine.tryBuyProduct(0, twoCoins).getReason());
+        Assertions.assertEquals(PurchaseResult.Reason.INVALID_PRODUCT_SLOT,
+                emptyingMachine.tryBuyProducts(Collections.singletonList(BasketItem.of(1, 2)), twoCoins).getReason());
+        Assertions.assertEquals(0, emptyingMachine.getCoinAvailableCount(1.0));
+    }
+
+    @Test
+    void tryBuyProduct_withValidInput_successCarriesTheChange() {
+        vendingMachine.setCoinAvailableCount(0.2, 2);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+
+        PurchaseResult purchaseResult = vendingMachine.tryBuyProduct(0,
+                CoinCounts.of(vendingMachine.getCoinDenominations(), Collections.singletonList(1.0)));
+
+        Assertions.assertTrue(purchaseResult.isSuccessful());
+        Assertions.assertNull(purchaseResult.getReason());
+        Assertions.assertEquals(2, purchaseResult.getChange().countOf(0.2));
+        Assertions.assertEquals(0, vendingMachine.getProductInventorySize(0));
+    }
+
+    @Test
+    void buyProducts_withValidInput_allItemsAreTakenAndOneChangeIsReturned() {
+        vendingMachine.setCoinAvailableCount(0.1, 1);
+        vendingMachine.setCoinAvailableCount(0.2, 1);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 3);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.5), 2);
+
+        //slot 0 listed twice: 0.6 * 2 + 0.5 = 1.7
+        Collection<Double> change = vendingMachine.buyProducts(
+                Arrays.asList(BasketItem.of(0, 1), BasketItem.of(1, 1), BasketItem.of(0, 1)),
+                Arrays.asList(1.0, 1.0));
+
+        Assertions.assertEquals(2, change.size());
+        Assertions.assertTrue(change.containsAll(Arrays.asList(0.1, 0.2)));
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(1));
+        Assertions.assertEquals(2, vendingMachine.getCoinAvailableCount(1.0));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(0.1));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(0.2));
+    }
+
+    @Test
+    void tryBuyProducts_oneItemCannotBeBought_nothingIsTaken() {
+        CoinCounts twoCoins = CoinCounts.of(vendingMachine.getCoinDenominations(), Arrays.asList(1.0, 1.0));
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.8), 2);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.8), 1);
+
+        Assertions.assertEquals(PurchaseResult.Reason.PRODUCT_REQUIRED,
+                vendingMachine.tryBuyProducts(Collections.emptyList(), twoCoins).getReason());
+        Assertions.assertEquals(PurchaseResult.Reason.INVALID_PRODUCT_SLOT,
+                vendingMachine.tryBuyProducts(Arrays.asList(BasketItem.of(0, 1), BasketItem.of(4, 1)), twoCoins).getReason());
+        Assertions.assertEquals(PurchaseResult.Reason.OUT_OF_STOCK,
+                vendingMachine.tryBuyProducts(Arrays.asList(BasketItem.of(0, 1), BasketItem.of(1, 2)), twoCoins).getReason());
+        Assertions.assertEquals(PurchaseResult.Reason.INSUFFICIENT_MONEY,
+                vendingMachine.tryBuyProducts(Arrays.asList(BasketItem.of(0, 2), BasketItem.of(1, 1)), twoCoins).getReason());
+        //0.1 change owed, no coin to pay it with: the claimed items go back
+        Assertions.assertEquals(PurchaseResult.Reason.NO_CHANGE,
+                vendingMachine.tryBuyProducts(Arrays.asList(BasketItem.of(0, 2), BasketItem.of(1, 1)),
+                        CoinCounts.of(vendingMachine.getCoinDenominations(), Arrays.asList(1.0, 1.0, 0.1, 0.1, 0.1, 0.2))).getReason());
+
+        Assertions.assertEquals(2, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(1));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(1.0));
+    }
+
+    @Test
+    void buyProducts_invalidQuantity_throwsIllegalArgumentException() {
+        IllegalArgumentException thrown = Assertions.assertThrows(IllegalArgumentException.class, () -> BasketItem.of(0, 0));
+        Assertions.assertEquals(ERROR_MESSAGE_INVALID_PURCHASE_QUANTITY, thrown.getMessage());
+    }
+
+    @Test
+    void purchaseSession_coinsInsertedOneAtATime_purchaseSettlesWithRunningTotal() {
+        vendingMachine.setCoinAvailableCount(0.1, 1);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+        PurchaseSession session = vendingMachine.beginSession();
+
+        Assertions.assertTrue(session.insertCoin(0.5));
+        Assertions.assertFalse(session.canBuy(0));
+        Assertions.assertEquals(PurchaseResult.Reason.INSUFFICIENT_MONEY, session.select(0).getReason());
+        Assertions.assertTrue(session.isOpen());
+        Assertions.assertFalse(session.insertCoin(0.05));
+        Assertions.assertTrue(session.insertCoin(0.2));
+        Assertions.assertEquals(Money.of(0.7), session.getInsertedAmount());
+        Assertions.assertTrue(session.canBuy(0));
+
+        PurchaseResult purchaseResult = session.select(0);
+
+        Assertions.assertTrue(purchaseResult.isSuccessful());
+        Assertions.assertEquals(1, purchaseResult.getChange().countOf(0.1));
+        Assertions.assertFalse(session.isOpen());
+        Assertions.assertEquals(0, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(1, vendingMachine.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(1, vendingMachine.getCoinAvailableCount(0.2));
+        Assertions.assertThrows(IllegalStateException.class, () -> session.insertCoin(1.0));
+    }
+
+    @Test
+    void purchaseSession_noChangeAvailable_preCheckFailsAndCancelReturnsTheCoins() {
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 1);
+        PurchaseSession session = vendingMachine.beginSession();
+        session.insertCoin(1.0);
+
+        Assertions.assertFalse(session.canBuy(0));
+        Assertions.assertEquals(PurchaseResult.Reason.NO_CHANGE, session.select(0).getReason());
+        CoinCounts returnedCoins = session.cancel();
+
+        Assertions.assertEquals(Collections.singletonList(1.0), returnedCoins.toCoinList());
+        Assertions.assertFalse(session.isOpen());
+        Assertions.assertEquals(1, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(1.0));
+        IllegalStateException thrown = Assertions.assertThrows(IllegalStateException.class, session::cancel);
+        Assertions.assertEquals(ERROR_MESSAGE_PURCHASE_SESSION_CLOSED, thrown.getMessage());
+    }
+
+    @Test
+    void purchaseSession_escrowChangeEnabled_preCheckCountsTheInsertedCoins() {
+        VendingMachine escrowVendingMachine = new VendingMachine(
+                new DefaultCoinManager(SUPPORTED_COINS),
+                new DefaultProductSlotManager(PRODUCT_SLOT_SIZE),
+                true
+        );
+        escrowVendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 2);
+
+        //0.4 change: neither the empty float nor the inserted 1.0 can pay it
+        PurchaseSession noChangeSession = escrowVendingMachine.beginSession();
+        noChangeSession.insertCoin(1.0);
+        Assertions.assertFalse(noChangeSession.canBuy(0));
+        Assertions.assertEquals(PurchaseResult.Reason.NO_CHANGE, noChangeSession.select(0).getReason());
+        noChangeSession.cancel();
+
+        //0.4 change paid back out of the inserted 0.2 coins
+        PurchaseSession session = escrowVendingMachine.beginSession();
+        session.insertCoin(0.5);
+        session.insertCoin(0.1);
+        session.insertCoin(0.2);
+        session.insertCoin(0.2);
+        Assertions.assertTrue(session.canBuy(0));
+        Assertions.assertTrue(session.select(0).isSuccessful());
+    }
+}
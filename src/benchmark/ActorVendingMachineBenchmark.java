@@ -0,0 +1,92 @@
+package benchmark;
+
+import application.ActorVendingMachine;
+import application.IVendingMachine;
+import application.VendingMachine;
+import manager.CoinCounts;
+import util.LogLevel;
+import util.Logger;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Throughput of purchases made concurrently by 1, 4, 16 and 64 producer threads against the lock-based
+ * {@link VendingMachine} and the single-writer {@link ActorVendingMachine}, both over the default managers.
+ * <p>
+ * Each producer buys from its own slot (products are spread over the slots) and pays the exact price, so every
+ * purchase succeeds and no change is computed. Logging runs at {@link LogLevel#WARN}, so purchases log nothing.
+ * <p>
+ * Run with: {@code java -cp out benchmark.ActorVendingMachineBenchmark [purchasesPerProducer]}
+ */
+public class ActorVendingMachineBenchmark {
+
+    private static final int[] PRODUCER_COUNTS = {1, 4, 16, 64};
+    private static final int PRODUCT_SLOT_SIZE = 16;
+    private static final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+
+    public static void main(String[] args) throws InterruptedException {
+        int purchasesPerProducer = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Logger.setLevel(LogLevel.WARN);
+
+        for (int producerCount : PRODUCER_COUNTS) {
+            VendingMachine vendingMachine = new VendingMachine(PRODUCT_SLOT_SIZE, SUPPORTED_COINS);
+            stock(vendingMachine);
+            run(vendingMachine, producerCount, purchasesPerProducer / 10); //warm-up
+            long lockBasedNanos = run(vendingMachine, producerCount, purchasesPerProducer);
+
+            long actorNanos;
+            String actorMetrics;
+            try (ActorVendingMachine actorVendingMachine = new ActorVendingMachine(PRODUCT_SLOT_SIZE, SUPPORTED_COINS)) {
+                stock(actorVendingMachine);
+                run(actorVendingMachine, producerCount, purchasesPerProducer / 10); //warm-up
+                actorNanos = run(actorVendingMachine, producerCount, purchasesPerProducer);
+                actorMetrics = String.format("%d commands in %d batches, largest batch %d",
+                        actorVendingMachine.getProcessedCommandCount(), actorVendingMachine.getDrainedBatchCount(),
+                        actorVendingMachine.getLargestBatchSize());
+            }
+
+            long purchases = (long) producerCount * purchasesPerProducer;
+            Logger.warn(null, String.format("%2d producer(s): lock-based %10.0f purchases/s, actor %10.0f purchases/s (%s)",
+                    producerCount, purchases * 1e9 / lockBasedNanos, purchases * 1e9 / actorNanos, actorMetrics));
+        }
+    }
+
+    private static void stock(IVendingMachine vendingMachine) {
+        for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+            vendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * @return elapsed nanoseconds until every producer has made {@param purchasesPerProducer} purchases
+     */
+    private static long run(IVendingMachine vendingMachine, int producerCount, int purchasesPerProducer)
+            throws InterruptedException {
+        CoinCounts exactPrice = CoinCounts.of(vendingMachine.getCoinDenominations(), Collections.singletonList(1.0));
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producerCount);
+        for (int p = 0; p < producerCount; p++) {
+            final int productSlotId = p % PRODUCT_SLOT_SIZE;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < purchasesPerProducer; i++) {
+                        vendingMachine.tryBuyProduct(productSlotId, exactPrice);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - startNanos;
+    }
+}
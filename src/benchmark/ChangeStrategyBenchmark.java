@@ -0,0 +1,76 @@
+package benchmark;
+
+import manager.ChangeStrategy;
+import manager.DefaultCoinManager;
+import util.Logger;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Micro benchmark of the per-call latency of {@link DefaultCoinManager#getPossibleCoinCombination(BigDecimal)}
+ * for each {@link ChangeStrategy}.
+ * <p>
+ * Run with: {@code java -cp out benchmark.ChangeStrategyBenchmark [iterations]}
+ */
+public class ChangeStrategyBenchmark {
+
+    private static final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.01, 0.02, 0.05, 0.1, 0.2, 0.5, 1.0, 2.0);
+    private static final int[] COIN_COUNTS = {50, 50, 40, 40, 30, 20, 10, 5};
+    private static final BigDecimal[] CHANGE_AMOUNTS = {
+            BigDecimal.valueOf(0.6), BigDecimal.valueOf(0.99), BigDecimal.valueOf(1.37),
+            BigDecimal.valueOf(2.5), BigDecimal.valueOf(4.88), BigDecimal.valueOf(7.03)
+    };
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        for (ChangeStrategy strategy : ChangeStrategy.values()) {
+            DefaultCoinManager coinManager = newCoinManager(strategy);
+            run(coinManager, iterations / 10); //warm-up
+            long failures = 0;
+            long start = System.nanoTime();
+            failures += run(coinManager, iterations);
+            long elapsed = System.nanoTime() - start;
+            Logger.info(String.format("%-36s %8.1f ns/call (%d calls, %d failed)",
+                    strategy, (double) elapsed / iterations, iterations, failures));
+        }
+
+        //Float where greedy runs out of coins on a payable amount
+        Collection<Double> coins = Arrays.asList(0.2, 0.5);
+        for (ChangeStrategy strategy : ChangeStrategy.values()) {
+            DefaultCoinManager coinManager = new DefaultCoinManager(coins, strategy);
+            coinManager.setCoinAvailableCount(0.5, 1);
+            coinManager.setCoinAvailableCount(0.2, 3);
+            String outcome;
+            try {
+                outcome = String.valueOf(coinManager.getPossibleCoinCombination(BigDecimal.valueOf(0.6)));
+            } catch (IllegalStateException ex) {
+                outcome = "FAILED: " + ex.getMessage();
+            }
+            Logger.info(String.format("%-36s 0.6 from {0.5, 0.2, 0.2, 0.2} -> %s", strategy, outcome));
+        }
+    }
+
+    private static DefaultCoinManager newCoinManager(ChangeStrategy strategy) {
+        DefaultCoinManager coinManager = new DefaultCoinManager(SUPPORTED_COINS, strategy);
+        int i = 0;
+        for (Double coin : SUPPORTED_COINS) {
+            coinManager.setCoinAvailableCount(coin, COIN_COUNTS[i++]);
+        }
+        return coinManager;
+    }
+
+    private static long run(DefaultCoinManager coinManager, int iterations) {
+        long failures = 0;
+        for (int i = 0; i < iterations; i++) {
+            try {
+                coinManager.getPossibleCoinCombination(CHANGE_AMOUNTS[i % CHANGE_AMOUNTS.length]);
+            } catch (IllegalStateException ex) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+}
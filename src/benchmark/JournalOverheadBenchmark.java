@@ -0,0 +1,109 @@
+package benchmark;
+
+import application.VendingMachine;
+import manager.CoinDenominations;
+import manager.DefaultCoinManager;
+import manager.DefaultProductSlotManager;
+import persistence.Durability;
+import persistence.Journal;
+import persistence.MappedCoinManager;
+import persistence.MappedProductSlotManager;
+import persistence.MappedStateFile;
+import util.LogLevel;
+import util.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Latency of {@link VendingMachine#buyProduct(int, Collection)} without a journal, with a {@link Journal} of each
+ * {@link Durability} and with the state kept in a {@link MappedStateFile}, single-threaded, as p50 / p99 / p99.9 of
+ * the individual purchases.
+ * <p>
+ * Each purchase pays the exact price, so no change is computed. Logging runs at {@link LogLevel#WARN}, so purchases
+ * log nothing. The journal and the state file are written to a temporary directory, deleted afterwards.
+ * <p>
+ * Run with: {@code java -cp out benchmark.JournalOverheadBenchmark [purchases]}
+ */
+public class JournalOverheadBenchmark {
+
+    private static final int PRODUCT_SLOT_SIZE = 16;
+    private static final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+    private static final List<Double> EXACT_PRICE = Collections.singletonList(1.0);
+
+    public static void main(String[] args) throws IOException {
+        int purchases = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Logger.setLevel(LogLevel.WARN);
+
+        report("no journal", run(new VendingMachine(new DefaultCoinManager(SUPPORTED_COINS),
+                new DefaultProductSlotManager(PRODUCT_SLOT_SIZE)), purchases));
+        for (Durability durability : new Durability[]{Durability.ASYNC, Durability.BATCHED, Durability.SYNC}) {
+            //A forced write per purchase: fewer purchases keep the SYNC run short
+            int durabilityPurchases = durability == Durability.SYNC ? Math.max(1, purchases / 20) : purchases;
+            Path directory = Files.createTempDirectory("vending-machine-journal");
+            try (Journal journal = Journal.open(directory, new CoinDenominations(SUPPORTED_COINS), durability)) {
+                report("journal " + durability, run(new VendingMachine(new DefaultCoinManager(SUPPORTED_COINS),
+                        new DefaultProductSlotManager(PRODUCT_SLOT_SIZE), false, journal), durabilityPurchases));
+            } finally {
+                delete(directory);
+            }
+        }
+
+        Path directory = Files.createTempDirectory("vending-machine-state");
+        try (MappedStateFile stateFile = MappedStateFile.open(directory.resolve("state.map"),
+                new CoinDenominations(SUPPORTED_COINS), PRODUCT_SLOT_SIZE)) {
+            report("mapped state", run(new VendingMachine(
+                    new MappedCoinManager(new DefaultCoinManager(SUPPORTED_COINS), stateFile),
+                    new MappedProductSlotManager(new DefaultProductSlotManager(PRODUCT_SLOT_SIZE), stateFile)), purchases));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * @return latency of each purchase, in nanoseconds
+     */
+    private static long[] run(final VendingMachine vendingMachine, final int purchases) {
+        for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+            vendingMachine.addProductToSlot(BigDecimal.valueOf(1.0), Integer.MAX_VALUE);
+        }
+        for (int i = 0; i < purchases / 10; i++) { //warm-up
+            vendingMachine.buyProduct(i % PRODUCT_SLOT_SIZE, EXACT_PRICE);
+        }
+        long[] latencies = new long[purchases];
+        for (int i = 0; i < purchases; i++) {
+            long startNanos = System.nanoTime();
+            vendingMachine.buyProduct(i % PRODUCT_SLOT_SIZE, EXACT_PRICE);
+            latencies[i] = System.nanoTime() - startNanos;
+        }
+        return latencies;
+    }
+
+    private static void report(final String label, final long[] latencies) {
+        Arrays.sort(latencies);
+        Logger.warn(null, String.format("%-16s p50 %8.2f us, p99 %8.2f us, p99.9 %8.2f us (%d purchases)", label,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999), latencies.length));
+    }
+
+    private static double percentile(final long[] sortedLatencies, final double percentile) {
+        int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1);
+        return sortedLatencies[Math.max(0, index)] / 1_000.0;
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+}
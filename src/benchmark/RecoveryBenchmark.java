@@ -0,0 +1,108 @@
+package benchmark;
+
+import application.VendingMachine;
+import manager.CoinDenominations;
+import manager.DefaultCoinManager;
+import manager.DefaultProductSlotManager;
+import persistence.Durability;
+import persistence.Journal;
+import util.LogLevel;
+import util.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Startup time of {@link VendingMachine#recover} as the journal grows: for each journal length, the time to replay the
+ * whole journal, then the time to load a snapshot taken at its end plus a tail of {@value #TAIL_LENGTH} records.
+ * <p>
+ * The journal records single-item purchases paid with change, written with {@link Durability#ASYNC} to a temporary
+ * directory, deleted afterwards. Logging runs at {@link LogLevel#WARN}.
+ * <p>
+ * Run with: {@code java -cp out benchmark.RecoveryBenchmark [maxJournalLength]}
+ */
+public class RecoveryBenchmark {
+
+    private static final int PRODUCT_SLOT_SIZE = 16;
+    private static final int TAIL_LENGTH = 1_000;
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+    private static final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+    private static final CoinDenominations COIN_DENOMINATIONS = new CoinDenominations(SUPPORTED_COINS);
+    private static final List<Double> ONE_COIN = Collections.singletonList(1.0);
+
+    public static void main(String[] args) throws IOException {
+        int maxJournalLength = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Logger.setLevel(LogLevel.WARN);
+
+        for (int journalLength = maxJournalLength / 16; journalLength <= maxJournalLength; journalLength *= 2) {
+            Path directory = Files.createTempDirectory("vending-machine-recovery");
+            try {
+                try (Journal journal = open(directory)) {
+                    VendingMachine vendingMachine = recover(journal);
+                    vendingMachine.setCoinAvailableCount(0.1, Integer.MAX_VALUE / 2);
+                    for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.9), Integer.MAX_VALUE);
+                    }
+                    purchase(vendingMachine, journalLength);
+                }
+                recoverAndTime(directory); //warm-up
+                long fullReplayNanos = recoverAndTime(directory);
+
+                try (Journal journal = open(directory)) {
+                    VendingMachine vendingMachine = recover(journal);
+                    vendingMachine.takeSnapshot();
+                    purchase(vendingMachine, TAIL_LENGTH);
+                }
+                long snapshotNanos = recoverAndTime(directory);
+
+                Logger.warn(null, String.format("%8d records: full replay %9.1f ms, snapshot + %d-record tail %7.1f ms",
+                        journalLength, fullReplayNanos / 1e6, TAIL_LENGTH, snapshotNanos / 1e6));
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    private static Journal open(final Path directory) throws IOException {
+        return Journal.open(directory, COIN_DENOMINATIONS, Durability.ASYNC, SEGMENT_SIZE, Journal.DEFAULT_GROUP_COMMIT_INTERVAL_NANOS);
+    }
+
+    private static VendingMachine recover(final Journal journal) throws IOException {
+        return VendingMachine.recover(new DefaultCoinManager(SUPPORTED_COINS),
+                new DefaultProductSlotManager(PRODUCT_SLOT_SIZE), false, journal);
+    }
+
+    private static void purchase(final VendingMachine vendingMachine, final int purchases) {
+        for (int i = 0; i < purchases; i++) {
+            vendingMachine.buyProduct(i % PRODUCT_SLOT_SIZE, ONE_COIN);
+        }
+    }
+
+    /**
+     * @return nanoseconds to open the journal of {@param directory} and recover the machine from it
+     */
+    private static long recoverAndTime(final Path directory) throws IOException {
+        long startNanos = System.nanoTime();
+        try (Journal journal = open(directory)) {
+            recover(journal);
+            return System.nanoTime() - startNanos;
+        }
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+}
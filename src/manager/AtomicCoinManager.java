@@ -0,0 +1,426 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+import model.Money;
+import util.Logger;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static util.Constants.*;
+
+/**
+ * Lock-free {@link CoinManager} backed by an {@link AtomicIntegerArray} of per-denomination coin counts.
+ * <p>
+ * {@link #balanceCoins(CoinCounts, CoinCounts)} applies debits with compare-and-set loops that never let a count go
+ * negative (already applied debits are put back if a later one cannot be honoured) and then applies credits, so
+ * purchases that touch disjoint denominations never block or retry on each other.
+ * {@link #getCoinAvailableCount(double)} is a plain volatile read.
+ * <p>
+ * Change is computed from a point-in-time read of the counts. A concurrent purchase may spend the same coins in between,
+ * in which case debiting the change fails with {@link util.Constants#ERROR_MESSAGE_COIN_COUNT_CANNOT_GO_TO_NEGATIVE}
+ * and the counts are left as they were.
+ * <p>
+ * Writers never touch the {@link ChangeabilityIndex}: that would put an O(ceiling) update under a lock on every purchase.
+ * Instead {@link #canMakeChange(Money)} and {@link #maxChangeableAmount()} first catch the index up with the counts that
+ * changed since the previous query, so a query is a bit lookup whenever the float is unchanged.
+ */
+public class AtomicCoinManager implements CoinManager {
+
+    //#region class constants
+    private static final int MAX_RESERVATION_ATTEMPTS = 8;
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final CoinDenominations coinDenominations;
+    private final AtomicIntegerArray coinCounts;
+
+    //Guarded by CHANGEABILITY_INDEX_LOCK, caught up with coinCounts on query
+    private final ReentrantLock CHANGEABILITY_INDEX_LOCK = new ReentrantLock();
+    private final ChangeabilityIndex changeabilityIndex;
+
+    //Solver and buffers are per thread: nothing is shared between concurrent callers but the counts
+    private final ThreadLocal<Scratch> scratch;
+
+    //#region Class Constructor
+    private AtomicCoinManager() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    public AtomicCoinManager(@NotNull final Collection<Double> allowedCoinList) {
+        this(allowedCoinList, DEFAULT_CHANGEABILITY_CEILING_IN_MINOR_UNITS);
+    }
+
+    /**
+     * @param changeabilityCeiling highest change amount (in minor units) answered by {@link #canMakeChange(Money)}
+     *                             without running the change solver
+     */
+    public AtomicCoinManager(@NotNull final Collection<Double> allowedCoinList, final int changeabilityCeiling) {
+        if (allowedCoinList.isEmpty()) {
+            String errorMessage = "No coin specified";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        this.coinDenominations = new CoinDenominations(allowedCoinList);
+        this.coinCounts = new AtomicIntegerArray(coinDenominations.size());
+        this.changeabilityIndex = new ChangeabilityIndex(coinDenominations.toMinorUnitsArray(), changeabilityCeiling);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(coinDenominations));
+        Logger.info(TAG, () -> "Allowed coins: " + coinDenominations);
+    }
+    //#endregion
+
+    //#region maintenance
+    @Override
+    public void setCoinAvailableCount(final double coinValue, final int newAvailableCount) {
+        coinCounts.set(resolveOrdinal(coinValue), newAvailableCount);
+        Logger.info(TAG, () -> "Available coin updated: " + coinCounts);
+    }
+
+    /**
+     * Each count is set atomically, but the counts are not set as one step: a concurrent purchase may see some of
+     * the new counts before the others.
+     */
+    @Override
+    public void setCoinAvailableCounts(@NotNull final Map<Double, Integer> newAvailableCounts) {
+        int[] ordinals = resolveOrdinals(newAvailableCounts);
+        int i = 0;
+        for (Integer newAvailableCount : newAvailableCounts.values()) {
+            coinCounts.set(ordinals[i++], newAvailableCount);
+        }
+        Logger.info(TAG, () -> "Available coin updated: " + coinCounts);
+    }
+
+    @Override
+    public int getCoinAvailableCount(final double coinValue) {
+        return coinCounts.get(resolveOrdinal(coinValue));
+    }
+    //#endregion
+
+    @Override
+    public boolean areCoinsSupported(final Collection<Double> coinList) {
+        if (coinList == null || coinList.isEmpty()) {
+            Logger.error(TAG, "Coin list is empty. It is required for operation");
+            throw new IllegalArgumentException(ERROR_MESSAGE_COIN_LIST_IS_REQUIRED);
+        }
+
+        for (Double coin : coinList) {
+            if (coin == null || coinDenominations.ordinalOf(coin) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Money getCoinsValue(@NotNull final Collection<Double> coinList) {
+        if (coinList == null) {
+            Logger.error(TAG, "Coin list is empty. It is required for operation");
+            throw new IllegalArgumentException(ERROR_MESSAGE_COIN_LIST_IS_REQUIRED);
+        }
+        long total = 0;
+        for (Double coin : coinList) {
+            total += coinDenominations.minorUnitsAt(resolveOrdinal(coin));
+        }
+        return Money.ofMinorUnits(total, coinDenominations.getScale());
+    }
+
+    @Override
+    public CoinDenominations getCoinDenominations() {
+        return coinDenominations;
+    }
+
+    @Override
+    public CoinCounts getChangeCoinCounts(@NotNull final Money amount) {
+        validateChangeAmount(amount);
+        Scratch buffers = scratch.get();
+        solveChange(amount.getMinorUnits(), null, buffers, true);
+        return CoinCounts.of(coinDenominations, buffers.changeCounts);
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount) {
+        return reserve(amount, null, true);
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount, @NotNull final CoinEscrow escrow) {
+        if (escrow == null) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return reserve(amount, escrow, true);
+    }
+
+    @Override
+    public ChangeReservation tryReserveChange(@NotNull final Money amount, final CoinEscrow escrow) {
+        return reserve(amount, escrow, false);
+    }
+
+    private ChangeReservation reserve(final Money amount, final CoinEscrow escrow, final boolean throwIfNoChange) {
+        validateChangeAmount(amount);
+        Scratch buffers = scratch.get();
+        if (escrow != null && !escrow.countCoins(coinDenominations, buffers.escrowCounts)) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        int[] deltas = buffers.deltas;
+        //Optimistic: solve on a point-in-time read, then try to take the coins; solve again if another purchase won
+        for (int attempt = 1; ; attempt++) {
+            if (!solveChange(amount.getMinorUnits(), escrow == null ? null : buffers.escrowCounts, buffers, throwIfNoChange)) {
+                return null;
+            }
+
+            //Draw on the escrow first, the rest is taken from the available coins
+            for (int i = 0; i < deltas.length; i++) {
+                int fromEscrow = escrow == null ? 0 : Math.min(buffers.changeCounts[i], buffers.escrowCounts[i]);
+                deltas[i] = fromEscrow - buffers.changeCounts[i];
+            }
+            if (tryApplyDeltas(deltas)) {
+                Logger.info(TAG, () -> "Updated (RESERVED) Coin State: " + coinCounts);
+                CoinCounts changeCoins = CoinCounts.of(coinDenominations, buffers.changeCounts);
+                if (escrow == null) {
+                    return new ChangeReservation(this, amount, changeCoins);
+                }
+                for (int i = 0; i < deltas.length; i++) {
+                    buffers.counts[i] = -deltas[i];
+                    buffers.escrowCounts[i] = buffers.changeCounts[i] + deltas[i];
+                }
+                return new ChangeReservation(this, amount, changeCoins, escrow,
+                        CoinCounts.of(coinDenominations, buffers.escrowCounts), CoinCounts.of(coinDenominations, buffers.counts));
+            }
+            if (attempt == MAX_RESERVATION_ATTEMPTS) {
+                noChange(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, throwIfNoChange);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void balanceCoins(@NotNull final CoinCounts creditCoinCounts, @NotNull final CoinCounts debitCoinCounts) {
+        if (creditCoinCounts == null) {
+            String errorMessage = ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        if (debitCoinCounts == null) {
+            String errorMessage = ERROR_MESSAGE_DEBIT_COIN_LIST_REQUIRED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        if (!creditCoinCounts.isCompatibleWith(coinDenominations) || !debitCoinCounts.isCompatibleWith(coinDenominations)) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        int[] deltas = scratch.get().deltas;
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = creditCoinCounts.countAt(i) - debitCoinCounts.countAt(i);
+        }
+
+        if (!tryApplyDeltas(deltas)) {
+            String errorMessage = ERROR_MESSAGE_COIN_COUNT_CANNOT_GO_TO_NEGATIVE;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+
+        Logger.info(TAG, () -> "Updated Coin State: " + coinCounts);
+    }
+
+    @Override
+    public boolean canMakeChange(@NotNull final Money amount) {
+        validateChangeAmount(amount);
+        if (amount.getMinorUnits() <= changeabilityIndex.getCeiling()) {
+            CHANGEABILITY_INDEX_LOCK.lock();
+            try {
+                catchUpChangeabilityIndex();
+                return changeabilityIndex.canMakeChange((int) amount.getMinorUnits());
+            } finally {
+                CHANGEABILITY_INDEX_LOCK.unlock();
+            }
+        }
+
+        //Beyond the index ceiling: fall back to the solver, on a point-in-time read of the counts
+        Scratch buffers = scratch.get();
+        for (int i = 0; i < buffers.counts.length; i++) {
+            buffers.counts[i] = coinCounts.get(i);
+        }
+        return buffers.solver.canSolve(amount.getMinorUnits(), buffers.counts, buffers.changeCounts);
+    }
+
+    @Override
+    public Money maxChangeableAmount() {
+        CHANGEABILITY_INDEX_LOCK.lock();
+        try {
+            catchUpChangeabilityIndex();
+            return Money.ofMinorUnits(changeabilityIndex.maxChangeableAmount(), coinDenominations.getScale());
+        } finally {
+            CHANGEABILITY_INDEX_LOCK.unlock();
+        }
+    }
+
+    private void catchUpChangeabilityIndex() {
+        CHANGEABILITY_INDEX_LOCK.lock();
+        try {
+            for (int i = 0; i < coinCounts.length(); i++) {
+                changeabilityIndex.setCount(i, coinCounts.get(i));
+            }
+        } finally {
+            CHANGEABILITY_INDEX_LOCK.unlock();
+        }
+    }
+
+    private void validateChangeAmount(final Money amount) {
+        if (amount == null || amount.isNegative() || amount.getScale() != coinDenominations.getScale()) {
+            String errorMessage = ERROR_MESSAGE_INVALID_AMOUNT_PROVIDED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+
+    /**
+     * Solve {@param amountInMinorUnits} against a point-in-time read of the counts (plus {@param escrowCounts}, if any)
+     * into {@code buffers.changeCounts}
+     *
+     * @param throwIfNoChange if false, an amount the coins cannot pay out yields false instead of an exception
+     * @return true if {@code buffers.changeCounts} holds the change
+     */
+    private boolean solveChange(final long amountInMinorUnits, final int[] escrowCounts, final Scratch buffers,
+                                final boolean throwIfNoChange) {
+        long totalAvailableCoinValue = 0;
+        for (int i = 0; i < buffers.counts.length; i++) {
+            buffers.counts[i] = coinCounts.get(i) + (escrowCounts == null ? 0 : escrowCounts[i]);
+            totalAvailableCoinValue += (long) coinDenominations.minorUnitsAt(i) * buffers.counts[i];
+        }
+
+        if (amountInMinorUnits == totalAvailableCoinValue) {
+            //Total change amount is EQUAL TO the total value of available coins
+            System.arraycopy(buffers.counts, 0, buffers.changeCounts, 0, buffers.counts.length);
+            return true;
+        } else if (amountInMinorUnits > totalAvailableCoinValue) {
+            //Total change amount is MORE THAN the total value of available coins
+            return noChange(ERROR_MESSAGE_INSUFFICIENT_COIN_S_FOR_CHANGE, throwIfNoChange);
+        }
+
+        return buffers.solver.solve((int) amountInMinorUnits, buffers.counts, buffers.changeCounts)
+                || noChange(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, throwIfNoChange);
+    }
+
+    /**
+     * @return false, the "no change" outcome, unless {@param throwIfNoChange} is set
+     */
+    private boolean noChange(final String errorMessage, final boolean throwIfNoChange) {
+        if (throwIfNoChange) {
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        return false;
+    }
+
+    /**
+     * Apply per-ordinal count changes. Debits go first so a failed debit never leaves credited coins behind.
+     *
+     * @return false, with the counts untouched, if any debit would take a count below zero
+     */
+    private boolean tryApplyDeltas(final int[] deltas) {
+        for (int i = 0; i < deltas.length; i++) {
+            if (deltas[i] < 0 && !tryDebit(i, -deltas[i])) {
+                for (int j = 0; j < i; j++) {
+                    if (deltas[j] < 0) {
+                        coinCounts.addAndGet(j, -deltas[j]); //reverse operation
+                    }
+                }
+                return false;
+            }
+        }
+
+        for (int i = 0; i < deltas.length; i++) {
+            if (deltas[i] > 0) {
+                coinCounts.addAndGet(i, deltas[i]);
+            }
+        }
+        return true;
+    }
+
+    private boolean tryDebit(final int ordinal, final int count) {
+        while (true) {
+            int current = coinCounts.get(ordinal);
+            if (current < count) {
+                return false;
+            }
+            if (coinCounts.compareAndSet(ordinal, current, current - count)) {
+                return true;
+            }
+        }
+    }
+
+    private int resolveOrdinal(final Double coinValue) {
+        if (coinValue == null) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return resolveOrdinal(coinValue.doubleValue());
+    }
+
+    /**
+     * @return ordinal of each coin of {@param coinToCountMap}, in the map's iteration order
+     */
+    /**
+     * Validate every entry of {@param coinToCountMap} before any count is set
+     *
+     * @return ordinal of each coin of {@param coinToCountMap}, in iteration order
+     */
+    private int[] resolveOrdinals(final Map<Double, Integer> coinToCountMap) {
+        if (coinToCountMap == null) {
+            String errorMessage = ERROR_MESSAGE_INVALID_COIN_COUNT;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        int[] ordinals = new int[coinToCountMap.size()];
+        int i = 0;
+        for (Map.Entry<Double, Integer> entry : coinToCountMap.entrySet()) {
+            ordinals[i++] = resolveOrdinal(entry.getKey() == null ? Double.NaN : entry.getKey());
+            if (entry.getValue() == null || entry.getValue() < 0) {
+                String errorMessage = ERROR_MESSAGE_INVALID_COIN_COUNT;
+                Logger.error(TAG, errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+        }
+        return ordinals;
+    }
+
+    private int resolveOrdinal(final double coinValue) {
+        int ordinal = coinDenominations.ordinalOf(coinValue);
+        if (ordinal < 0) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return ordinal;
+    }
+
+    private static final class Scratch {
+        private final BoundedCoinChangeSolver solver;
+        private final int[] counts;
+        private final int[] changeCounts;
+        private final int[] deltas;
+        private final int[] escrowCounts;
+
+        private Scratch(final CoinDenominations coinDenominations) {
+            this.solver = new BoundedCoinChangeSolver(coinDenominations.toMinorUnitsArray());
+            this.counts = new int[coinDenominations.size()];
+            this.changeCounts = new int[coinDenominations.size()];
+            this.deltas = new int[coinDenominations.size()];
+            this.escrowCounts = new int[coinDenominations.size()];
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-coin change solver for a bounded coin float.
+ * <p>
+ * The solver works on integer minor units (e.g. pence) and runs a layered bounded-knapsack dynamic programme:
+ * layer {@code i} holds, for every amount up to the requested one, the least number of coins that sums up to the amount
+ * using only the first {@code i} denominations and never more than the available count of each of them.
+ * Each layer is computed in O(amount) with a sliding-window minimum per residue class of the denomination, so a solve
+ * costs O(denominationCount * amount) regardless of how many coins the float holds.
+ * <p>
+ * The DP table and the sliding window are scratch buffers owned by the solver and grown on demand, hence a solver
+ * instance is NOT thread-safe. The owner is expected to guard it (e.g. with its coin access lock).
+ */
+public final class BoundedCoinChangeSolver {
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    //Ascending, minor units
+    private final int[] denominations;
+
+    //#region scratch buffers
+    private int capacity = -1;
+    private int[] table = new int[0];
+    private int[] window = new int[0];
+    private int[] windowKeys = new int[0];
+    //#endregion
+
+    /**
+     * @param denominations coin denominations in minor units, sorted in ascending order
+     */
+    public BoundedCoinChangeSolver(@NotNull final int[] denominations) {
+        if (denominations == null || denominations.length == 0) {
+            throw new IllegalArgumentException("No coin denomination specified");
+        }
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] <= 0 || (i > 0 && denominations[i] < denominations[i - 1])) {
+                throw new IllegalArgumentException("Coin denominations must be positive and sorted in ascending order");
+            }
+        }
+        this.denominations = Arrays.copyOf(denominations, denominations.length);
+    }
+
+    /**
+     * Query variant of {@link #solve(int, int[], int[])} that takes any amount: an amount above the value of the
+     * available coins is answered false without building the table, and so is one too large for the table (which only
+     * makes the machine refuse change it might have paid out)
+     *
+     * @param amount          value (in minor units) to pay out
+     * @param availableCounts available count of each denomination, indexed like the solver denominations
+     * @param result          receives the number of coins of each denomination that make up the change
+     * @return true if a combination exists, false otherwise
+     */
+    public boolean canSolve(final long amount, @NotNull final int[] availableCounts, @NotNull final int[] result) {
+        long availableValue = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            availableValue += (long) denominations[i] * Math.max(availableCounts[i], 0);
+        }
+        if (amount > availableValue || amount > Integer.MAX_VALUE / (denominations.length + 1) - 1) {
+            return false;
+        }
+        return solve((int) amount, availableCounts, result);
+    }
+
+    /**
+     * Compute the minimum-coin combination that sums up to {@param amount}
+     *
+     * @param amount          value (in minor units) whose coin combination is computed
+     * @param availableCounts available count of each denomination, indexed like the solver denominations
+     * @param result          receives the number of coins of each denomination that make up the change
+     * @return true if a combination exists, false otherwise (in which case {@param result} is left zeroed)
+     */
+    public boolean solve(final int amount, @NotNull final int[] availableCounts, @NotNull final int[] result) {
+        final int n = denominations.length;
+        if (amount < 0 || availableCounts.length < n || result.length < n) {
+            throw new IllegalArgumentException("Invalid solver input");
+        }
+        Arrays.fill(result, 0, n, 0);
+        if (amount == 0) {
+            return true;
+        }
+
+        ensureCapacity(amount);
+        final int width = amount + 1;
+
+        //Layer 0: nothing but zero is reachable without coins
+        table[0] = 0;
+        Arrays.fill(table, 1, width, UNREACHABLE);
+
+        for (int i = 1; i <= n; i++) {
+            fillLayer(i, width, denominations[i - 1], Math.max(availableCounts[i - 1], 0));
+        }
+
+        if (table[n * width + amount] == UNREACHABLE) {
+            return false;
+        }
+
+        //Walk back from the highest denomination, taking as many of it as the optimum allows
+        int remaining = amount;
+        for (int i = n; i >= 1 && remaining > 0; i--) {
+            final int denomination = denominations[i - 1];
+            final int target = table[i * width + remaining];
+            final int previousLayer = (i - 1) * width;
+            for (int k = Math.min(Math.max(availableCounts[i - 1], 0), remaining / denomination); k >= 0; k--) {
+                int previous = table[previousLayer + remaining - k * denomination];
+                if (previous != UNREACHABLE && previous + k == target) {
+                    result[i - 1] = k;
+                    remaining -= k * denomination;
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of denominations the solver was built with
+     */
+    public int getDenominationCount() {
+        return denominations.length;
+    }
+
+    private void fillLayer(final int layer, final int width, final int denomination, final int count) {
+        final int current = layer * width;
+        final int previous = (layer - 1) * width;
+
+        if (count == 0) {
+            System.arraycopy(table, previous, table, current, width);
+            return;
+        }
+
+        if ((long) count * denomination >= width - 1) {
+            //Count never binds within the amount: plain unbounded recurrence
+            for (int a = 0; a < width; a++) {
+                int best = table[previous + a];
+                if (a >= denomination) {
+                    int withCoin = table[current + a - denomination];
+                    if (withCoin != UNREACHABLE && withCoin + 1 < best) {
+                        best = withCoin + 1;
+                    }
+                }
+                table[current + a] = best;
+            }
+            return;
+        }
+
+        //For each residue r, positions r + j*d form a chain; best(j) = min over j-count <= j' <= j of (prev(j') - j') + j
+        final int residues = Math.min(denomination, width);
+        for (int r = 0; r < residues; r++) {
+            int head = 0;
+            int tail = 0;
+            for (int j = 0, a = r; a < width; j++, a += denomination) {
+                int candidate = table[previous + a];
+                if (candidate != UNREACHABLE) {
+                    int key = candidate - j;
+                    while (tail > head && windowKeys[tail - 1] >= key) {
+                        tail--;
+                    }
+                    window[tail] = j;
+                    windowKeys[tail++] = key;
+                }
+                while (tail > head && window[head] < j - count) {
+                    head++;
+                }
+                table[current + a] = tail > head ? windowKeys[head] + j : UNREACHABLE;
+            }
+        }
+    }
+
+    private void ensureCapacity(final int amount) {
+        if (amount <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(amount, capacity * 2);
+        long cells = (long) (denominations.length + 1) * (newCapacity + 1);
+        if (cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount too large for change computation");
+        }
+        table = new int[(int) cells];
+        window = new int[newCapacity + 1];
+        windowKeys = new int[newCapacity + 1];
+        capacity = newCapacity;
+    }
+}
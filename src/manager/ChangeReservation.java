@@ -0,0 +1,162 @@
+package manager;
+
+import model.Money;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token for change coins held out of a {@link CoinManager}'s available coins by {@link CoinManager#reserveChange(Money)}.
+ * <p>
+ * When reserved against a {@link CoinEscrow}, part of the change may come from the customer's own escrowed coins
+ * ({@link #getCoinCountsFromEscrow()}); only the rest ({@link #getCoinCountsFromAvailableCoins()}) is held out of the
+ * available coins.
+ * <p>
+ * A reservation is settled exactly once: either committed (the customer receives the coins and the customer's coins are
+ * credited) with {@link CoinManager#commitChange(ChangeReservation, CoinCounts)}, or released (the coins go back to the
+ * available coins) with {@link CoinManager#releaseChange(ChangeReservation)}.
+ */
+public final class ChangeReservation {
+
+    private static final int PENDING = 0;
+    private static final int COMMITTED = 1;
+    private static final int RELEASED = 2;
+    private static final int COMMITTING = 3;
+
+    private final CoinManager issuer;
+    private final Money amount;
+    private final CoinCounts coinCounts;
+    private final CoinEscrow escrow;
+    private final CoinCounts coinCountsFromEscrow;
+    private final CoinCounts coinCountsFromAvailableCoins;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    //Built on first use, only for callers still working with coin lists
+    private volatile List<Double> coins;
+
+    ChangeReservation(final CoinManager issuer, final Money amount, final CoinCounts coinCounts) {
+        this.issuer = issuer;
+        this.amount = amount;
+        this.coinCounts = coinCounts;
+        this.escrow = null;
+        this.coinCountsFromEscrow = CoinCounts.none(coinCounts.getDenominations());
+        this.coinCountsFromAvailableCoins = coinCounts;
+    }
+
+    ChangeReservation(final CoinManager issuer, final Money amount, final CoinCounts coinCounts,
+                      final CoinEscrow escrow, final CoinCounts coinCountsFromEscrow, final CoinCounts coinCountsFromAvailableCoins) {
+        this.issuer = issuer;
+        this.amount = amount;
+        this.coinCounts = coinCounts;
+        this.escrow = escrow;
+        this.coinCountsFromEscrow = coinCountsFromEscrow;
+        this.coinCountsFromAvailableCoins = coinCountsFromAvailableCoins;
+    }
+
+    /**
+     * @return value of the reserved change
+     */
+    public Money getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return reserved change, as number of coin(s) per denomination
+     */
+    public CoinCounts getCoinCounts() {
+        return coinCounts;
+    }
+
+    /**
+     * @return reserved change coin(s), highest denomination first
+     */
+    public List<Double> getCoins() {
+        List<Double> coinList = coins;
+        if (coinList == null) {
+            coinList = Collections.unmodifiableList(coinCounts.toCoinList());
+            coins = coinList;
+        }
+        return coinList;
+    }
+
+    /**
+     * @return the escrow the change was reserved against, null if the change only draws on the available coins
+     */
+    public CoinEscrow getEscrow() {
+        return escrow;
+    }
+
+    /**
+     * @return part of the change paid back from the customer's escrowed coins
+     */
+    public CoinCounts getCoinCountsFromEscrow() {
+        return coinCountsFromEscrow;
+    }
+
+    /**
+     * @return part of the change held out of the vending machine's available coins
+     */
+    public CoinCounts getCoinCountsFromAvailableCoins() {
+        return coinCountsFromAvailableCoins;
+    }
+
+    /**
+     * Coin list adapter of {@link #getCoinCountsFromEscrow()}
+     */
+    public List<Double> getCoinsFromEscrow() {
+        return coinCountsFromEscrow.toCoinList();
+    }
+
+    /**
+     * Coin list adapter of {@link #getCoinCountsFromAvailableCoins()}
+     */
+    public List<Double> getCoinsFromAvailableCoins() {
+        return coinCountsFromAvailableCoins.toCoinList();
+    }
+
+    public boolean isPending() {
+        return state.get() == PENDING;
+    }
+
+    public boolean isCommitted() {
+        return state.get() == COMMITTED;
+    }
+
+    public boolean isReleased() {
+        return state.get() == RELEASED;
+    }
+
+    boolean isIssuedBy(final CoinManager coinManager) {
+        return issuer == coinManager;
+    }
+
+    /**
+     * Claim the reservation for a commit; it is only committed once {@link #completeCommit(boolean)} reports the coins
+     * were settled
+     */
+    boolean beginCommit() {
+        return state.compareAndSet(PENDING, COMMITTING);
+    }
+
+    /**
+     * @param settled true if the coins were settled; false puts the reservation back to pending, so it can be released
+     */
+    void completeCommit(final boolean settled) {
+        state.set(settled ? COMMITTED : PENDING);
+    }
+
+    boolean markReleased() {
+        return state.compareAndSet(PENDING, RELEASED);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeReservation{" +
+                "amount=" + amount +
+                ", coins=" + coinCounts +
+                ", coinsFromEscrow=" + coinCountsFromEscrow +
+                ", state=" + state.get() +
+                '}';
+    }
+}
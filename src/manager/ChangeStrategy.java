@@ -0,0 +1,19 @@
+package manager;
+
+/**
+ * Strategies a {@link CoinManager} can use to compute the coin combination of a customer change
+ */
+public enum ChangeStrategy {
+    /**
+     * Greedy strategy that depletes the highest coin denomination first.
+     * It is cheap on "canonical" coin sets, but can fail on amounts that are actually payable
+     * (e.g. 0.6 from {0.5, 0.2, 0.2, 0.2}).
+     */
+    DEPLETE_HIGHEST_DENOMINATION_FIRST,
+
+    /**
+     * Bounded-knapsack dynamic programme over integer minor units (see {@link BoundedCoinChangeSolver}).
+     * Always finds the combination with the fewest coins when one exists.
+     */
+    MINIMUM_COIN_COUNT
+}
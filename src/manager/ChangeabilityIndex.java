@@ -0,0 +1,154 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+
+/**
+ * Incrementally maintained set of every amount (in minor units, up to a fixed ceiling) the coin float can pay out
+ * exactly.
+ * <p>
+ * The index keeps, for every amount {@code a <= ceiling}, the number of distinct coin combinations summing up to
+ * {@code a} modulo the Mersenne prime 2^61-1, i.e. the coefficients of the generating function
+ * {@code prod_i (1 - x^((c_i + 1) * d_i)) / (1 - x^d_i)} for denomination {@code d_i} with {@code c_i} coins available.
+ * A count change of one denomination replaces one factor: the old one is divided out and the new one multiplied in,
+ * each as a single O(ceiling) pass, and the exactly-payable bitset is refreshed in the same passes. Queries are then a
+ * single bit lookup.
+ * <p>
+ * An amount with no combination always has a zero count, so the index never reports an amount as payable when it is
+ * not. (The reverse would need the number of combinations to be an exact multiple of 2^61-1, and would only make the
+ * machine refuse a sale it could have made.)
+ * <p>
+ * The index is NOT thread-safe. The owner is expected to guard it (e.g. with its coin access lock).
+ */
+public final class ChangeabilityIndex {
+
+    private static final long MODULUS = (1L << 61) - 1;
+
+    //Ascending, minor units
+    private final int[] denominations;
+    private final int[] counts;
+    private final int ceiling;
+
+    private final long[] combinationCounts;
+    private final long[] changeableBits;
+    private int maxChangeableAmount;
+
+    /**
+     * @param denominations coin denominations in minor units, sorted in ascending order
+     * @param ceiling       highest amount (in minor units) tracked by the index
+     */
+    public ChangeabilityIndex(@NotNull final int[] denominations, final int ceiling) {
+        if (denominations == null || denominations.length == 0) {
+            throw new IllegalArgumentException("No coin denomination specified");
+        }
+        if (ceiling < 0) {
+            throw new IllegalArgumentException("Changeability ceiling cannot be negative");
+        }
+        for (int denomination : denominations) {
+            if (denomination <= 0) {
+                throw new IllegalArgumentException("Coin denominations must be positive");
+            }
+        }
+        this.denominations = denominations.clone();
+        this.counts = new int[denominations.length];
+        this.ceiling = ceiling;
+        this.combinationCounts = new long[ceiling + 1];
+        this.changeableBits = new long[(ceiling >> 6) + 1];
+
+        //Empty float: only zero can be paid out
+        combinationCounts[0] = 1;
+        changeableBits[0] = 1L;
+        maxChangeableAmount = 0;
+    }
+
+    /**
+     * @return highest amount (in minor units) tracked by the index
+     */
+    public int getCeiling() {
+        return ceiling;
+    }
+
+    /**
+     * @param amount amount in minor units, at most {@link #getCeiling()}
+     * @return true if the float can pay out exactly {@param amount}
+     */
+    public boolean canMakeChange(final int amount) {
+        if (amount < 0 || amount > ceiling) {
+            throw new IllegalArgumentException("Amount is outside the changeability index");
+        }
+        return (changeableBits[amount >> 6] & (1L << amount)) != 0;
+    }
+
+    /**
+     * @return the highest amount (in minor units, at most {@link #getCeiling()}) the float can pay out exactly
+     */
+    public int maxChangeableAmount() {
+        return maxChangeableAmount;
+    }
+
+    /**
+     * Update the available count of one denomination. A no-op when the count is unchanged.
+     *
+     * @param ordinal  position of the denomination, as passed to the constructor
+     * @param newCount number of coins of the denomination now in the float (negative counts are treated as zero)
+     */
+    public void setCount(final int ordinal, final int newCount) {
+        int count = Math.max(newCount, 0);
+        int oldCount = counts[ordinal];
+        if (count == oldCount) {
+            return;
+        }
+        counts[ordinal] = count;
+
+        long denomination = denominations[ordinal];
+        long oldStride = (oldCount + 1L) * denomination;
+        long newStride = (count + 1L) * denomination;
+        if (oldStride <= ceiling) {
+            divideByOneMinusXPow((int) oldStride);
+        }
+        if (newStride <= ceiling) {
+            multiplyByOneMinusXPow((int) newStride);
+        }
+        refreshChangeableBits();
+    }
+
+    //#region generating function arithmetic (mod 2^61-1)
+
+    /**
+     * f(x) /= (1 - x^stride), i.e. f[a] += f[a - stride] in ascending order
+     */
+    private void divideByOneMinusXPow(final int stride) {
+        for (int a = stride; a <= ceiling; a++) {
+            long sum = combinationCounts[a] + combinationCounts[a - stride];
+            combinationCounts[a] = sum >= MODULUS ? sum - MODULUS : sum;
+        }
+    }
+
+    /**
+     * f(x) *= (1 - x^stride), i.e. f[a] -= f[a - stride] in descending order
+     */
+    private void multiplyByOneMinusXPow(final int stride) {
+        for (int a = ceiling; a >= stride; a--) {
+            long difference = combinationCounts[a] - combinationCounts[a - stride];
+            combinationCounts[a] = difference < 0 ? difference + MODULUS : difference;
+        }
+    }
+    //#endregion
+
+    private void refreshChangeableBits() {
+        maxChangeableAmount = 0;
+        for (int word = 0; word < changeableBits.length; word++) {
+            long bits = 0;
+            int base = word << 6;
+            int limit = Math.min(64, ceiling - base + 1);
+            for (int bit = 0; bit < limit; bit++) {
+                if (combinationCounts[base + bit] != 0) {
+                    bits |= 1L << bit;
+                }
+            }
+            changeableBits[word] = bits;
+            if (bits != 0) {
+                maxChangeableAmount = base + 63 - Long.numberOfLeadingZeros(bits);
+            }
+        }
+    }
+}
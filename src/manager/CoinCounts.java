@@ -0,0 +1,159 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+import model.Money;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static util.Constants.ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+
+/**
+ * Immutable number of coins per denomination of a {@link CoinDenominations} table.
+ * <p>
+ * A compact alternative to a {@code Collection<Double>} holding one boxed value per physical coin: its size is the
+ * number of supported denominations, however many coins it stands for, so crediting or debiting it costs one step per
+ * denomination.
+ */
+public final class CoinCounts {
+
+    private final CoinDenominations denominations;
+    private final int[] counts;
+
+    private CoinCounts(final CoinDenominations denominations, final int[] counts) {
+        this.denominations = denominations;
+        this.counts = counts;
+    }
+
+    //#region factories
+    /**
+     * @return no coin of any of the {@param denominations}
+     */
+    public static CoinCounts none(@NotNull final CoinDenominations denominations) {
+        return new CoinCounts(denominations, new int[denominations.size()]);
+    }
+
+    /**
+     * @param denominations supported denominations
+     * @param counts        number of coins of each denomination, indexed by ordinal (copied)
+     */
+    public static CoinCounts of(@NotNull final CoinDenominations denominations, @NotNull final int[] counts) {
+        if (counts == null || counts.length != denominations.size()) {
+            throw new IllegalArgumentException("One count per denomination is required");
+        }
+        for (int count : counts) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Coin count cannot be negative");
+            }
+        }
+        return new CoinCounts(denominations, Arrays.copyOf(counts, counts.length));
+    }
+
+    /**
+     * @param denominations supported denominations
+     * @param coinList      coin(s) to count
+     * @throws IllegalArgumentException if any of the coins is not supported
+     */
+    public static CoinCounts of(@NotNull final CoinDenominations denominations, @NotNull final Collection<Double> coinList) {
+        int[] counts = new int[denominations.size()];
+        if (coinList == null || !denominations.countCoins(coinList, counts)) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_COIN_NOT_SUPPORTED);
+        }
+        return new CoinCounts(denominations, counts);
+    }
+    //#endregion
+
+    public CoinDenominations getDenominations() {
+        return denominations;
+    }
+
+    /**
+     * @return number of coins of the denomination at {@param ordinal}
+     */
+    public int countAt(final int ordinal) {
+        return counts[ordinal];
+    }
+
+    /**
+     * @return number of {@param coinValue} coins, 0 if the coin is not supported
+     */
+    public int countOf(final double coinValue) {
+        int ordinal = denominations.ordinalOf(coinValue);
+        return ordinal < 0 ? 0 : counts[ordinal];
+    }
+
+    /**
+     * @return number of physical coins
+     */
+    public int totalCoinCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public Money totalValue() {
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += (long) denominations.minorUnitsAt(i) * counts[i];
+        }
+        return Money.ofMinorUnits(total, denominations.getScale());
+    }
+
+    public boolean isEmpty() {
+        for (int count : counts) {
+            if (count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the counts into {@param target}, indexed by ordinal
+     */
+    public void copyTo(@NotNull final int[] target) {
+        System.arraycopy(counts, 0, target, 0, counts.length);
+    }
+
+    /**
+     * @return true if the counts are expressed over {@param otherDenominations}
+     */
+    public boolean isCompatibleWith(@NotNull final CoinDenominations otherDenominations) {
+        return denominations == otherDenominations || denominations.equals(otherDenominations);
+    }
+
+    /**
+     * @return one list entry per physical coin, highest denomination first
+     */
+    public List<Double> toCoinList() {
+        return denominations.toCoinList(counts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CoinCounts that = (CoinCounts) o;
+        return Arrays.equals(counts, that.counts) && isCompatibleWith(that.denominations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(denominations.valueAt(i)).append('=').append(counts[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,143 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+
+import model.Money;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import static util.Constants.CURRENCY_DECIMAL_PLACES;
+
+/**
+ * Immutable, ascending table of the coin denominations a vending machine supports.
+ * <p>
+ * Coins are resolved to their ordinal (position in the table) once, at the edge of an operation, so that per-denomination
+ * state can be kept in primitive arrays indexed by ordinal.
+ */
+public final class CoinDenominations {
+
+    private final double[] values;
+    private final Double[] boxedValues;
+    private final int[] minorUnits;
+
+    /**
+     * @param allowedCoinList supported coin values, in the currency scale {@link util.Constants#CURRENCY_DECIMAL_PLACES}
+     *                        shared by product prices and every amount of the machine
+     */
+    public CoinDenominations(@NotNull final Collection<Double> allowedCoinList) {
+        if (allowedCoinList == null || allowedCoinList.isEmpty()) {
+            throw new IllegalStateException("No coin specified");
+        }
+        TreeSet<Double> sortedCoins = new TreeSet<>(allowedCoinList);
+        this.boxedValues = sortedCoins.toArray(new Double[0]);
+        this.values = new double[boxedValues.length];
+        this.minorUnits = new int[boxedValues.length];
+        for (int i = 0; i < boxedValues.length; i++) {
+            values[i] = boxedValues[i];
+            minorUnits[i] = Math.toIntExact(Money.of(values[i], CURRENCY_DECIMAL_PLACES).getMinorUnits());
+            if (minorUnits[i] <= 0) {
+                throw new IllegalStateException("Coin value must be at least one minor currency unit");
+            }
+        }
+    }
+
+    /**
+     * @return number of supported denominations
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param coinValue value of the coin
+     * @return ordinal of {@param coinValue}, or -1 if the coin is not supported
+     */
+    public int ordinalOf(final double coinValue) {
+        int ordinal = Arrays.binarySearch(values, coinValue);
+        return ordinal < 0 ? -1 : ordinal;
+    }
+
+    public double valueAt(final int ordinal) {
+        return values[ordinal];
+    }
+
+    /**
+     * @return the cached boxed value of the denomination, so that building coin lists does not allocate
+     */
+    public Double boxedValueAt(final int ordinal) {
+        return boxedValues[ordinal];
+    }
+
+    public int minorUnitsAt(final int ordinal) {
+        return minorUnits[ordinal];
+    }
+
+    /**
+     * @return number of minor-unit decimal places of the currency the denominations are expressed in
+     */
+    public int getScale() {
+        return CURRENCY_DECIMAL_PLACES;
+    }
+
+    /**
+     * @return copy of the denominations in minor units, in ascending order
+     */
+    public int[] toMinorUnitsArray() {
+        return Arrays.copyOf(minorUnits, minorUnits.length);
+    }
+
+    /**
+     * Count the coin(s) of {@param coinList} per denomination ordinal
+     *
+     * @param coinList coin(s) to count
+     * @param counts   receives the number of coins of each denomination, indexed by ordinal
+     * @return false if any of the coins is not supported (in which case {@param counts} is incomplete)
+     */
+    public boolean countCoins(@NotNull final Collection<Double> coinList, @NotNull final int[] counts) {
+        Arrays.fill(counts, 0, values.length, 0);
+        for (Double coin : coinList) {
+            int ordinal = coin == null ? -1 : ordinalOf(coin);
+            if (ordinal < 0) {
+                return false;
+            }
+            counts[ordinal]++;
+        }
+        return true;
+    }
+
+    /**
+     * @param counts number of coins of each denomination, indexed by ordinal
+     * @return the coin(s) as a list, highest denomination first (as a customer would count them)
+     */
+    public List<Double> toCoinList(@NotNull final int[] counts) {
+        List<Double> coinList = new ArrayList<>();
+        for (int i = values.length - 1; i >= 0; i--) {
+            for (int j = 0; j < counts[i]; j++) {
+                coinList.add(boxedValues[i]);
+            }
+        }
+        return coinList;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CoinDenominations that = (CoinDenominations) o;
+        return Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
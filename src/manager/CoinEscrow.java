@@ -0,0 +1,106 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The coin(s) a customer inserted for ONE purchase, kept apart from the vending machine's available coins until the
+ * purchase is settled.
+ * <p>
+ * Change may be paid back from the escrow (see {@link CoinManager#reserveChange(model.Money, CoinEscrow)}), but the
+ * escrowed coins never enter the pool other purchases draw from before the purchase is committed, and a failed purchase
+ * refunds exactly {@link #getCoins()}.
+ */
+public final class CoinEscrow {
+
+    //Counts per denomination; null for an escrow built from a coin list, counted against the coin manager on use
+    private final CoinCounts coinCounts;
+    private volatile List<Double> coins;
+
+    /**
+     * @param insertedCoinCounts the coin(s) inserted by the customer, as counts per denomination
+     */
+    public CoinEscrow(@NotNull final CoinCounts insertedCoinCounts) {
+        if (insertedCoinCounts == null) {
+            throw new IllegalArgumentException("Inserted coin list is required");
+        }
+        this.coinCounts = insertedCoinCounts;
+    }
+
+    /**
+     * Coin list adapter of {@link #CoinEscrow(CoinCounts)}
+     */
+    public CoinEscrow(@NotNull final Collection<Double> insertedCoins) {
+        if (insertedCoins == null) {
+            throw new IllegalArgumentException("Inserted coin list is required");
+        }
+        List<Double> coinList = Collections.unmodifiableList(new ArrayList<>(insertedCoins));
+        if (coinList.contains(null)) {
+            throw new IllegalArgumentException("Inserted coin list is required");
+        }
+        this.coinCounts = null;
+        this.coins = coinList;
+    }
+
+    /**
+     * @return the coin(s) held in the escrow, highest denomination first for an escrow built from counts
+     */
+    public List<Double> getCoins() {
+        List<Double> coinList = coins;
+        if (coinList == null) {
+            coinList = Collections.unmodifiableList(coinCounts.toCoinList());
+            coins = coinList;
+        }
+        return coinList;
+    }
+
+    /**
+     * Copy the escrowed coin counts into {@param target}: one copy per denomination for an escrow built from counts over
+     * {@param denominations}, one step per coin otherwise
+     *
+     * @param target receives the number of escrowed coins of each denomination, indexed by ordinal
+     * @return false if any escrowed coin is not one of {@param denominations}
+     */
+    public boolean countCoins(@NotNull final CoinDenominations denominations, @NotNull final int[] target) {
+        if (coinCounts != null && coinCounts.isCompatibleWith(denominations)) {
+            coinCounts.copyTo(target);
+            return true;
+        }
+        return denominations.countCoins(getCoins(), target);
+    }
+
+    /**
+     * @param coinCounts coin(s) to compare, as counts per denomination
+     * @return true if {@param coinCounts} holds exactly the escrowed coin(s)
+     */
+    public boolean holds(final CoinCounts coinCounts) {
+        if (coinCounts == null) {
+            return false;
+        }
+        if (this.coinCounts != null && this.coinCounts.isCompatibleWith(coinCounts.getDenominations())) {
+            return this.coinCounts.equals(coinCounts);
+        }
+        CoinDenominations denominations = coinCounts.getDenominations();
+        int[] escrowCounts = new int[denominations.size()];
+        if (!denominations.countCoins(getCoins(), escrowCounts)) {
+            return false;
+        }
+        for (int i = 0; i < escrowCounts.length; i++) {
+            if (escrowCounts[i] != coinCounts.countAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "CoinEscrow{" +
+                "coins=" + (coinCounts != null ? coinCounts : coins) +
+                '}';
+    }
+}
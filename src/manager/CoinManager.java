@@ -1,14 +1,24 @@
 package manager;
 
 import com.sun.istack.internal.NotNull;
+import model.Money;
+import util.Logger;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Map;
+
+import static util.Constants.*;
 
 /**
  * Contract for the component that manages the coin type(s) the vending machine supports
  */
 public interface CoinManager {
+    /**
+     * @return the coin denomination(s) the vending machine supports, used to build {@link CoinCounts}
+     */
+    CoinDenominations getCoinDenominations();
+
     /**
      * Set the available count of a supported coin
      *
@@ -17,6 +27,14 @@ public interface CoinManager {
      */
     void setCoinAvailableCount(final double coinValue, final int newAvailableCount);
 
+    /**
+     * Set the available count of several supported coins as one maintenance step. Every coin is validated before any
+     * count is set: if one coin is not supported, no count is changed.
+     *
+     * @param newAvailableCounts the number of each coin value available after operation
+     */
+    void setCoinAvailableCounts(@NotNull final Map<Double, Integer> newAvailableCounts);
+
     /**
      * Get the number of available unit(s) of a coin type
      *
@@ -33,21 +51,193 @@ public interface CoinManager {
      */
     boolean areCoinsSupported(@NotNull final Collection<Double> coinList);
 
+    /**
+     * Compute the total value of the coin(s) in {@param coinList}
+     *
+     * @param coinList coin(s) to sum up
+     * @return total value of {@param coinList}
+     */
+    Money getCoinsValue(@NotNull final Collection<Double> coinList);
+
     /**
      * Generate the combination of coin(s) that sum up to {@param amount} from available coin(s)
      *
      * @param amount value whose coin combination is generated
-     * @return coin combination that sum up to {@param amount} from the coin(s) available in the vending machine
+     * @return number of coin(s) per denomination that sum up to {@param amount} from the coin(s) available in the vending machine
+     */
+    CoinCounts getChangeCoinCounts(@NotNull final Money amount);
+
+    /**
+     * Coin list adapter of {@link #getChangeCoinCounts(Money)}
+     *
+     * @return coin combination that sum up to {@param amount}, highest denomination first
+     */
+    default Collection<Double> getChangeCoinCombination(@NotNull final Money amount) {
+        return getChangeCoinCounts(amount).toCoinList();
+    }
+
+    /**
+     * {@link BigDecimal} adapter of {@link #getChangeCoinCombination(Money)}
      */
-    Collection<Double> getPossibleCoinCombination(@NotNull final BigDecimal amount);
+    default Collection<Double> getPossibleCoinCombination(@NotNull final BigDecimal amount) {
+        return getChangeCoinCombination(amount == null ? null : Money.of(amount));
+    }
 
     /**
-     * Balances the supported coin(s) count based on {@param creditCoinList} and {@param debitCoinList}.
-     * Number of occurrence of coins in the two lists increment/decrement the count of the corresponding coin in the vending machine.
+     * Check, without computing the coin combination, whether the available coin(s) can pay out exactly {@param amount}.
+     * Amounts up to the coin manager's changeability ceiling are answered from a {@link ChangeabilityIndex} kept up to
+     * date with the available coin(s).
      *
-     * @param creditCoinList list of coin whose number of occurrence increment the count of the corresponding coin in the vending machine
+     * @param amount value of the change
+     * @return true if a coin combination that sums up to {@param amount} exists
+     */
+    boolean canMakeChange(@NotNull final Money amount);
+
+    /**
+     * @return the highest amount, up to the coin manager's changeability ceiling, the available coin(s) can pay out exactly
+     */
+    Money maxChangeableAmount();
+
+    /**
+     * Balances the supported coin(s) count based on {@param creditCoinCounts} and {@param debitCoinCounts}.
+     * The count of each denomination is incremented by its credit count and decremented by its debit count, in one step
+     * per denomination. Either the whole operation is applied or, if any count would go negative, none of it.
      *
-     * @param debitCoinList  list of coin whose number of occurrence decrement the count of the corresponding coin in the vending machine
+     * @param creditCoinCounts number of coin(s) per denomination to add to the vending machine
+     *
+     * @param debitCoinCounts  number of coin(s) per denomination to remove from the vending machine
      */
-    void balanceCoins(Collection<Double> creditCoinList, Collection<Double> debitCoinList);
+    void balanceCoins(@NotNull CoinCounts creditCoinCounts, @NotNull CoinCounts debitCoinCounts);
+
+    /**
+     * Coin list adapter of {@link #balanceCoins(CoinCounts, CoinCounts)}
+     */
+    default void balanceCoins(final Collection<Double> creditCoinList, final Collection<Double> debitCoinList) {
+        if (creditCoinList == null) {
+            Logger.error(getClass(), ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED);
+            throw new IllegalArgumentException(ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED);
+        }
+
+        if (debitCoinList == null) {
+            Logger.error(getClass(), ERROR_MESSAGE_DEBIT_COIN_LIST_REQUIRED);
+            throw new IllegalArgumentException(ERROR_MESSAGE_DEBIT_COIN_LIST_REQUIRED);
+        }
+
+        balanceCoins(toCoinCounts(creditCoinList), toCoinCounts(debitCoinList));
+    }
+
+    /**
+     * @param coinList coin(s) to count
+     * @return {@param coinList} as counts over {@link #getCoinDenominations()}
+     */
+    default CoinCounts toCoinCounts(@NotNull final Collection<Double> coinList) {
+        CoinDenominations coinDenominations = getCoinDenominations();
+        int[] counts = new int[coinDenominations.size()];
+        if (coinList == null || !coinDenominations.countCoins(coinList, counts)) {
+            Logger.error(getClass(), ERROR_MESSAGE_COIN_NOT_SUPPORTED);
+            throw new IllegalArgumentException(ERROR_MESSAGE_COIN_NOT_SUPPORTED);
+        }
+        return CoinCounts.of(coinDenominations, counts);
+    }
+
+    /**
+     * Generate the combination of coin(s) that sum up to {@param amount} from available coin(s) and hold them out of the
+     * available coin(s) until the returned reservation is committed or released.
+     * Computing and holding the change is atomic, so a concurrent purchase can never be handed the same coins.
+     *
+     * @param amount value of the change to reserve
+     * @return reservation of coin(s) that sum up to {@param amount}
+     */
+    ChangeReservation reserveChange(@NotNull final Money amount);
+
+    /**
+     * Escrow-aware variant of {@link #reserveChange(Money)}: the change is computed over the customer's escrowed coin(s)
+     * and the available coin(s), drawing on the escrowed coin(s) first. Only the part taken from the available coin(s)
+     * is held out of them; the escrowed coin(s) stay out of the available coin(s) until the reservation is committed.
+     *
+     * @param amount value of the change to reserve
+     * @param escrow coin(s) the customer inserted for this purchase
+     * @return reservation of coin(s) that sum up to {@param amount}
+     */
+    ChangeReservation reserveChange(@NotNull final Money amount, @NotNull final CoinEscrow escrow);
+
+    /**
+     * Exception-free variant of {@link #reserveChange(Money)} and {@link #reserveChange(Money, CoinEscrow)} for the
+     * purchase path, where a float that cannot pay out the change is an expected outcome rather than an error
+     *
+     * @param amount change to hold
+     * @param escrow coin(s) inserted by the customer that may be paid back as change, null to pay out of the available
+     *               coins only
+     * @return the reservation, null if the coins cannot pay out {@param amount} exactly
+     * @throws IllegalArgumentException if {@param amount} is invalid or {@param escrow} holds an unsupported coin
+     */
+    ChangeReservation tryReserveChange(@NotNull final Money amount, final CoinEscrow escrow);
+
+    /**
+     * Settle a pending reservation: the reserved coin(s) leave the vending machine and {@param creditCoinCounts} is added
+     * to the available coin(s). For an escrow reservation, {@param creditCoinCounts} must be the escrowed coin(s); the
+     * ones paid back as change are not added.
+     *
+     * @param reservation      reservation returned by {@link #reserveChange(Money)} of this coin manager
+     * @param creditCoinCounts coin(s) submitted by the customer
+     */
+    default void commitChange(@NotNull final ChangeReservation reservation, @NotNull final CoinCounts creditCoinCounts) {
+        String errorMessage = null;
+        if (creditCoinCounts == null) {
+            errorMessage = ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED;
+        } else if (!creditCoinCounts.isCompatibleWith(getCoinDenominations())) {
+            errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+        } else if (reservation == null || !reservation.isIssuedBy(this)) {
+            errorMessage = ERROR_MESSAGE_INVALID_CHANGE_RESERVATION;
+        } else if (reservation.getEscrow() != null && !reservation.getEscrow().holds(creditCoinCounts)) {
+            errorMessage = ERROR_MESSAGE_CREDIT_COINS_DO_NOT_MATCH_ESCROW;
+        }
+        if (errorMessage != null) {
+            Logger.error(getClass(), errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        if (!reservation.beginCommit()) {
+            Logger.error(getClass(), ERROR_MESSAGE_CHANGE_RESERVATION_ALREADY_SETTLED);
+            throw new IllegalStateException(ERROR_MESSAGE_CHANGE_RESERVATION_ALREADY_SETTLED);
+        }
+        //Only committed once the coins are settled: a failed settlement leaves the reservation pending, to be released
+        boolean settled = false;
+        try {
+            balanceCoins(creditCoinCounts, reservation.getCoinCountsFromEscrow());
+            settled = true;
+        } finally {
+            reservation.completeCommit(settled);
+        }
+    }
+
+    /**
+     * Coin list adapter of {@link #commitChange(ChangeReservation, CoinCounts)}
+     */
+    default void commitChange(@NotNull final ChangeReservation reservation, @NotNull final Collection<Double> creditCoinList) {
+        if (creditCoinList == null) {
+            Logger.error(getClass(), ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED);
+            throw new IllegalArgumentException(ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED);
+        }
+        commitChange(reservation, toCoinCounts(creditCoinList));
+    }
+
+    /**
+     * Cancel a pending reservation and return the reserved coin(s) to the available coin(s).
+     * The escrowed coin(s) of an escrow reservation are NOT added; they are refunded to the customer by the caller.
+     *
+     * @param reservation reservation returned by {@link #reserveChange(Money)} of this coin manager
+     */
+    default void releaseChange(@NotNull final ChangeReservation reservation) {
+        if (reservation == null || !reservation.isIssuedBy(this)) {
+            Logger.error(getClass(), ERROR_MESSAGE_INVALID_CHANGE_RESERVATION);
+            throw new IllegalArgumentException(ERROR_MESSAGE_INVALID_CHANGE_RESERVATION);
+        }
+
+        if (!reservation.markReleased()) {
+            Logger.error(getClass(), ERROR_MESSAGE_CHANGE_RESERVATION_ALREADY_SETTLED);
+            throw new IllegalStateException(ERROR_MESSAGE_CHANGE_RESERVATION_ALREADY_SETTLED);
+        }
+        balanceCoins(reservation.getCoinCountsFromAvailableCoins(), CoinCounts.none(getCoinDenominations()));
+    }
 }
@@ -1,11 +1,13 @@
 package manager;
 
 import com.sun.istack.internal.NotNull;
+import model.Money;
 import util.Logger;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static util.Constants.*;
 import static util.NumbersUtil.compare;
@@ -13,16 +15,31 @@ import static util.NumbersUtil.toDp;
 
 /**
  * Default implementation of {@link CoinManager}
+ * <p>
+ * The coin state is guarded by a {@link ReentrantLock} rather than a monitor: a virtual thread that blocks while holding
+ * it (e.g. on the logging I/O) unmounts instead of pinning its carrier thread.
  */
 public class DefaultCoinManager implements CoinManager {
 
     //#region class constants
-    private final Object COIN_ACCESS_MONITOR_OBJECT = new Object();
+    private final ReentrantLock COIN_ACCESS_LOCK = new ReentrantLock();
     private final Class TAG = this.getClass();
     //#end region
 
     private volatile Map<Double, Integer> coinToCountMap = Collections.synchronizedMap(new HashMap<>());
 
+    private final ChangeStrategy changeStrategy;
+    private final CoinDenominations coinDenominations;
+
+    //Guarded by COIN_ACCESS_LOCK, refreshed whenever coinToCountMap changes
+    private final ChangeabilityIndex changeabilityIndex;
+
+    //#region minimum-coin-count strategy state (guarded by COIN_ACCESS_LOCK)
+    private BoundedCoinChangeSolver changeSolver;
+    private int[] solverAvailableCounts;
+    private int[] solverChangeCounts;
+    //#endregion
+
     //#region Class Constructor
     private DefaultCoinManager() {
         //Added in case an instantiation is attempted using reflection
@@ -30,31 +47,83 @@ public class DefaultCoinManager implements CoinManager {
     }
 
     public DefaultCoinManager(@NotNull final Collection<Double> allowedCoinList) {
+        this(allowedCoinList, ChangeStrategy.MINIMUM_COIN_COUNT);
+    }
+
+    public DefaultCoinManager(@NotNull final Collection<Double> allowedCoinList, @NotNull final ChangeStrategy changeStrategy) {
+        this(allowedCoinList, changeStrategy, DEFAULT_CHANGEABILITY_CEILING_IN_MINOR_UNITS);
+    }
+
+    /**
+     * @param changeabilityCeiling highest change amount (in minor units) answered by {@link #canMakeChange(Money)}
+     *                             without running the change solver
+     */
+    public DefaultCoinManager(@NotNull final Collection<Double> allowedCoinList, @NotNull final ChangeStrategy changeStrategy,
+                              final int changeabilityCeiling) {
+        if (changeStrategy == null) {
+            String errorMessage = "No change strategy specified";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        this.changeStrategy = changeStrategy;
         if (allowedCoinList.isEmpty()) {
             String errorMessage = "No coin specified";
             Logger.error(TAG, errorMessage);
             throw new IllegalStateException(errorMessage);
         }
         allowedCoinList.forEach(coin -> coinToCountMap.put(coin, 0));
-        Logger.info(TAG, "Map-to-Count of allowed coins: " + coinToCountMap);
+        coinDenominations = new CoinDenominations(coinToCountMap.keySet());
+        changeabilityIndex = new ChangeabilityIndex(coinDenominations.toMinorUnitsArray(), changeabilityCeiling);
+        if (changeStrategy == ChangeStrategy.MINIMUM_COIN_COUNT) {
+            prepareChangeSolver();
+        }
+        Logger.info(TAG, () -> "Map-to-Count of allowed coins: " + coinToCountMap);
     }
     //#endregion
 
     //#region maintenance
     @Override
     public void setCoinAvailableCount(final double coinValue, final int newAvailableCount) {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
+        COIN_ACCESS_LOCK.lock();
+        try {
             validateCoinSupport(coinValue);
             coinToCountMap.put(coinValue, newAvailableCount);
-            Logger.info(TAG, "Available coin updated: " + coinToCountMap);
+            refreshChangeabilityIndex();
+            Logger.info(TAG, () -> "Available coin updated: " + coinToCountMap);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public void setCoinAvailableCounts(@NotNull final Map<Double, Integer> newAvailableCounts) {
+        if (newAvailableCounts == null) {
+            String errorMessage = ERROR_MESSAGE_INVALID_COIN_COUNT;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        COIN_ACCESS_LOCK.lock();
+        try {
+            for (Map.Entry<Double, Integer> entry : newAvailableCounts.entrySet()) {
+                validateCoinSupport(entry.getKey() == null ? Double.NaN : entry.getKey());
+                validateCoinCount(entry.getValue());
+            }
+            coinToCountMap.putAll(newAvailableCounts);
+            refreshChangeabilityIndex();
+            Logger.info(TAG, () -> "Available coin updated: " + coinToCountMap);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
         }
     }
 
     @Override
     public int getCoinAvailableCount(final double coinValue) {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
+        COIN_ACCESS_LOCK.lock();
+        try {
             validateCoinSupport(coinValue);
             return coinToCountMap.get(coinValue);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
         }
     }
     //#endregion
@@ -62,7 +131,8 @@ public class DefaultCoinManager implements CoinManager {
 
     @Override
     public boolean areCoinsSupported(Collection<Double> coinList) {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
+        COIN_ACCESS_LOCK.lock();
+        try {
             if (coinList == null || coinList.isEmpty()) {
                 Logger.error(TAG, "Coin list is empty. It is required for operation");
                 throw new IllegalArgumentException(ERROR_MESSAGE_COIN_LIST_IS_REQUIRED);
@@ -74,112 +144,280 @@ public class DefaultCoinManager implements CoinManager {
                 }
             }
             return true;
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public Money getCoinsValue(@NotNull final Collection<Double> coinList) {
+        if (coinList == null) {
+            Logger.error(TAG, "Coin list is empty. It is required for operation");
+            throw new IllegalArgumentException(ERROR_MESSAGE_COIN_LIST_IS_REQUIRED);
         }
+        long total = 0;
+        for (Double coin : coinList) {
+            int ordinal = coin == null ? -1 : coinDenominations.ordinalOf(coin);
+            if (ordinal < 0) {
+                String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+                Logger.error(TAG, errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+            total += coinDenominations.minorUnitsAt(ordinal);
+        }
+        return Money.ofMinorUnits(total, coinDenominations.getScale());
     }
 
     @Override
-    public Collection<Double> getPossibleCoinCombination(@NotNull final BigDecimal amount) {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
-            if (amount == null || amount.doubleValue() < 0.0) {
+    public CoinDenominations getCoinDenominations() {
+        return coinDenominations;
+    }
+
+    @Override
+    public CoinCounts getChangeCoinCounts(@NotNull final Money amount) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            return computeChangeCoinCounts(amount, coinToCountMap, true);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount) {
+        return reserve(amount, null, true);
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount, @NotNull final CoinEscrow escrow) {
+        if (escrow == null) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return reserve(amount, escrow, true);
+    }
+
+    @Override
+    public ChangeReservation tryReserveChange(@NotNull final Money amount, final CoinEscrow escrow) {
+        return reserve(amount, escrow, false);
+    }
+
+    private ChangeReservation reserve(final Money amount, final CoinEscrow escrow, final boolean throwIfNoChange) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            if (escrow == null) {
+                CoinCounts changeCoins = computeChangeCoinCounts(amount, coinToCountMap, throwIfNoChange);
+                if (changeCoins == null) {
+                    return null;
+                }
+                balanceCoins(CoinCounts.none(coinDenominations), changeCoins);
+                return new ChangeReservation(this, amount, changeCoins);
+            }
+
+            int[] escrowCounts = new int[coinDenominations.size()];
+            if (!escrow.countCoins(coinDenominations, escrowCounts)) {
+                String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+                Logger.error(TAG, errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+
+            //Escrowed coins only take part in this computation, they are not added to the available coins
+            Map<Double, Integer> combinedCoinToCountMap = new HashMap<>(coinToCountMap);
+            for (int i = 0; i < escrowCounts.length; i++) {
+                combinedCoinToCountMap.merge(coinDenominations.boxedValueAt(i), escrowCounts[i], Integer::sum);
+            }
+
+            CoinCounts changeCoins = computeChangeCoinCounts(amount, combinedCoinToCountMap, throwIfNoChange);
+            if (changeCoins == null) {
+                return null;
+            }
+
+            //Draw on the escrow first, the rest is held out of the available coins
+            int[] countsFromAvailableCoins = new int[escrowCounts.length];
+            for (int i = 0; i < escrowCounts.length; i++) {
+                escrowCounts[i] = Math.min(changeCoins.countAt(i), escrowCounts[i]);
+                countsFromAvailableCoins[i] = changeCoins.countAt(i) - escrowCounts[i];
+            }
+            CoinCounts coinsFromAvailableCoins = CoinCounts.of(coinDenominations, countsFromAvailableCoins);
+            balanceCoins(CoinCounts.none(coinDenominations), coinsFromAvailableCoins);
+            return new ChangeReservation(this, amount, changeCoins, escrow,
+                    CoinCounts.of(coinDenominations, escrowCounts), coinsFromAvailableCoins);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    /**
+     * @param throwIfNoChange if false, an amount the coins cannot pay out yields null instead of an exception
+     */
+    private CoinCounts computeChangeCoinCounts(final Money amount, final Map<Double, Integer> availableCoins,
+                                               final boolean throwIfNoChange) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            if (amount == null || amount.isNegative() || amount.getScale() != coinDenominations.getScale()) {
                 String errorMessage = ERROR_MESSAGE_INVALID_AMOUNT_PROVIDED;
                 Logger.error(TAG, errorMessage);
                 throw new IllegalArgumentException(errorMessage);
             }
 
-            if (amount.doubleValue() == 0.0) {
-                return new ArrayList<>();
+            if (amount.isZero()) {
+                return CoinCounts.none(coinDenominations);
             }
 
-            BigDecimal totalAvailableCoinValue = computeAvailableCoinTotalValue(coinToCountMap);
-            int compValue = amount.compareTo(totalAvailableCoinValue);
+            long totalAvailableCoinValue = computeAvailableCoinTotalValue(availableCoins);
+            int compValue = Long.compare(amount.getMinorUnits(), totalAvailableCoinValue);
             if (compValue == 0) {
                 //Total change amount is EQUAL TO the total value of available coins
-                return prepareAllAvailableCoins();
+                return prepareAllAvailableCoins(availableCoins);
             } else if (compValue > 0) {
                 //Total change amount is MORE THAN the total value of available coins
-                throwInsufficientAvailableCoinForChange();
+                return noChange(ERROR_MESSAGE_INSUFFICIENT_COIN_S_FOR_CHANGE, throwIfNoChange);
             }
 
             //There's a sufficient coin for change, generate coin combination
-            return generateChangeCoinCombination(amount);
+            CoinCounts changeCoins;
+            if (changeStrategy == ChangeStrategy.MINIMUM_COIN_COUNT) {
+                changeCoins = solveMinimumCoinCombination(amount, availableCoins);
+            } else {
+                List<Double> coinCombination = generateChangeCoinCombination(amount.toBigDecimal(), availableCoins);
+                changeCoins = coinCombination == null ? null : CoinCounts.of(coinDenominations, coinCombination);
+            }
+            return changeCoins != null ? changeCoins : noChange(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, throwIfNoChange);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
         }
     }
 
     @Override
-    public void balanceCoins(final Collection<Double> creditCoinList, final Collection<Double> debitCoinList) {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
-            Map<Double, Integer> duplicatedCoinToCountMap = new HashMap<>(coinToCountMap);
-            if (creditCoinList == null) {
+    public void balanceCoins(@NotNull final CoinCounts creditCoinCounts, @NotNull final CoinCounts debitCoinCounts) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            if (creditCoinCounts == null) {
                 String errorMessage = ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED;
                 Logger.error(TAG, errorMessage);
                 throw new IllegalArgumentException(errorMessage);
             }
 
-            if (debitCoinList == null) {
+            if (debitCoinCounts == null) {
                 String errorMessage = ERROR_MESSAGE_DEBIT_COIN_LIST_REQUIRED;
                 Logger.error(TAG, errorMessage);
                 throw new IllegalArgumentException(errorMessage);
             }
 
-            Logger.info(TAG, "Old Coin State: " + coinToCountMap);
-
-            int newCoinCount;
-
-            //Add credit coins
-            for (Double coin : creditCoinList) {
-                validateCoinSupport(coin);
-                newCoinCount = coinToCountMap.get(coin) + 1;
-                coinToCountMap.put(coin, newCoinCount);
+            if (!creditCoinCounts.isCompatibleWith(coinDenominations) || !debitCoinCounts.isCompatibleWith(coinDenominations)) {
+                String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+                Logger.error(TAG, errorMessage);
+                throw new IllegalArgumentException(errorMessage);
             }
 
-            Logger.info(TAG, "Updated (CREDIT) Coin State: " + coinToCountMap);
+            Logger.info(TAG, () -> "Old Coin State: " + coinToCountMap);
 
-            //Remove debit coins
-            for (Double coin : debitCoinList) {
-                validateCoinSupport(coin);
-                newCoinCount = coinToCountMap.get(coin) - 1;
+            //Check every denomination first, so that an invalid request leaves the coin state untouched
+            for (int i = 0; i < coinDenominations.size(); i++) {
+                int newCoinCount = coinToCountMap.get(coinDenominations.boxedValueAt(i))
+                        + creditCoinCounts.countAt(i) - debitCoinCounts.countAt(i);
                 if (newCoinCount < 0) {
                     String errorMessage = ERROR_MESSAGE_COIN_COUNT_CANNOT_GO_TO_NEGATIVE;
                     Logger.error(TAG, errorMessage);
-                    coinToCountMap = duplicatedCoinToCountMap; //reverse operation
                     throw new IllegalStateException(errorMessage);
                 }
-                coinToCountMap.put(coin, newCoinCount);
             }
 
-            Logger.info(TAG, "Updated (DEBIT) Coin State: " + coinToCountMap);
+            for (int i = 0; i < coinDenominations.size(); i++) {
+                int delta = creditCoinCounts.countAt(i) - debitCoinCounts.countAt(i);
+                if (delta != 0) {
+                    coinToCountMap.merge(coinDenominations.boxedValueAt(i), delta, Integer::sum);
+                }
+            }
+
+            refreshChangeabilityIndex();
+            Logger.info(TAG, () -> "Updated Coin State: " + coinToCountMap);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
         }
     }
 
-    private Collection<Double> prepareAllAvailableCoins() {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
-            List<Double> coinCombination = new ArrayList<>();
-            for (Map.Entry<Double, Integer> coin : coinToCountMap.entrySet()) {
-                for (int i = 0; i < coin.getValue(); i++) {
-                    coinCombination.add(coin.getKey());
-                }
+    @Override
+    public boolean canMakeChange(@NotNull final Money amount) {
+        if (amount == null || amount.isNegative() || amount.getScale() != coinDenominations.getScale()) {
+            String errorMessage = ERROR_MESSAGE_INVALID_AMOUNT_PROVIDED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        COIN_ACCESS_LOCK.lock();
+        try {
+            if (amount.getMinorUnits() <= changeabilityIndex.getCeiling()) {
+                return changeabilityIndex.canMakeChange((int) amount.getMinorUnits());
             }
-            return coinCombination;
+
+            //Beyond the index ceiling: fall back to the solver
+            if (changeSolver == null) {
+                prepareChangeSolver();
+            }
+            for (int i = 0; i < coinDenominations.size(); i++) {
+                solverAvailableCounts[i] = coinToCountMap.get(coinDenominations.boxedValueAt(i));
+            }
+            return changeSolver.canSolve(amount.getMinorUnits(), solverAvailableCounts, solverChangeCounts);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
         }
     }
 
-    private BigDecimal computeAvailableCoinTotalValue(@NotNull final Map<Double, Integer> inputMap) {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
-            if (inputMap == null) {
-                String errorMessage = "Valid input Map is required for this operation";
-                Logger.error(TAG, errorMessage);
-                throw new IllegalArgumentException(errorMessage);
+    @Override
+    public Money maxChangeableAmount() {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            return Money.ofMinorUnits(changeabilityIndex.maxChangeableAmount(), coinDenominations.getScale());
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    private void refreshChangeabilityIndex() {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            for (int i = 0; i < coinDenominations.size(); i++) {
+                changeabilityIndex.setCount(i, coinToCountMap.get(coinDenominations.boxedValueAt(i)));
             }
-            BigDecimal total = BigDecimal.ZERO;
-            for (Map.Entry<Double, Integer> coin : inputMap.entrySet()) {
-                total = total.add(BigDecimal.valueOf(coin.getKey() * coin.getValue()));
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    private CoinCounts prepareAllAvailableCoins(@NotNull final Map<Double, Integer> availableCoins) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            int[] counts = new int[coinDenominations.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = availableCoins.get(coinDenominations.boxedValueAt(i));
+            }
+            return CoinCounts.of(coinDenominations, counts);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    private long computeAvailableCoinTotalValue(@NotNull final Map<Double, Integer> availableCoins) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            long total = 0;
+            for (int i = 0; i < coinDenominations.size(); i++) {
+                total += (long) coinDenominations.minorUnitsAt(i) * availableCoins.get(coinDenominations.boxedValueAt(i));
             }
-            return toDp(total, 2);
+            return total;
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
         }
     }
 
-    private List<Double> generateChangeCoinCombination(final BigDecimal amount) {
-        synchronized (COIN_ACCESS_MONITOR_OBJECT) {
+    /**
+     * @return the change coin(s), null if the available coins cannot pay out {@param amount} exactly
+     */
+    private List<Double> generateChangeCoinCombination(final BigDecimal amount, @NotNull final Map<Double, Integer> availableCoins) {
+        COIN_ACCESS_LOCK.lock();
+        try {
             if (amount == null) {
                 String errorMessage = "Valid amount is required for this operation";
                 Logger.error(TAG, errorMessage);
@@ -190,7 +428,7 @@ public class DefaultCoinManager implements CoinManager {
             }
 
             //Strategy: deplete-highest-denomination-first approach
-            Map<Double, Integer> nonZeroBalanceCoins = getAllNonZeroBalanceCoins(coinToCountMap);
+            Map<Double, Integer> nonZeroBalanceCoins = getAllNonZeroBalanceCoins(availableCoins);
             BigDecimal remainingBalance = toDp(amount, 2);
             List<Double> coinCombination = new ArrayList<>();
             int numberOfCoinValueDeduceable;
@@ -237,20 +475,53 @@ public class DefaultCoinManager implements CoinManager {
                 if (initialCoinCombinationSize == coinCombination.size()) {
                     //First futile loop (a loop that could not add a coin to the combination list) suspected,
                     //subsequent loop will be futile too as nothing has changed. Declare no-coin-combination match
-                    String errorMessage = ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE;
-                    Logger.error(TAG, errorMessage);
-                    throw new IllegalStateException(errorMessage);
+                    return null;
                 }
             }
 
             return coinCombination;
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    private void prepareChangeSolver() {
+        changeSolver = new BoundedCoinChangeSolver(coinDenominations.toMinorUnitsArray());
+        solverAvailableCounts = new int[coinDenominations.size()];
+        solverChangeCounts = new int[coinDenominations.size()];
+    }
+
+    /**
+     * @return the change coin counts, null if the available coins cannot pay out {@param amount} exactly
+     */
+    private CoinCounts solveMinimumCoinCombination(final Money amount, @NotNull final Map<Double, Integer> availableCoins) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            //Strategy: minimum-coin-count bounded knapsack over minor units
+            for (int i = 0; i < coinDenominations.size(); i++) {
+                solverAvailableCounts[i] = availableCoins.get(coinDenominations.boxedValueAt(i));
+            }
+
+            int amountInMinorUnits = Math.toIntExact(amount.getMinorUnits());
+            if (!changeSolver.solve(amountInMinorUnits, solverAvailableCounts, solverChangeCounts)) {
+                return null;
+            }
+
+            return CoinCounts.of(coinDenominations, solverChangeCounts);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
         }
     }
 
-    private void throwInsufficientAvailableCoinForChange() {
-        String errorMessage = ERROR_MESSAGE_INSUFFICIENT_COIN_S_FOR_CHANGE;
-        Logger.error(TAG, errorMessage);
-        throw new IllegalStateException(errorMessage);
+    /**
+     * @return null, the "no change" outcome, unless {@param throwIfNoChange} is set
+     */
+    private CoinCounts noChange(final String errorMessage, final boolean throwIfNoChange) {
+        if (throwIfNoChange) {
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        return null;
     }
 
     private Map<Double, Integer> sortMapByKeyValueInDescendingOrder(Map<Double, Integer> unsortedMap) {
@@ -269,6 +540,14 @@ public class DefaultCoinManager implements CoinManager {
         return resultMap;
     }
 
+    private void validateCoinCount(final Integer coinCount) {
+        if (coinCount == null || coinCount < 0) {
+            String errorMessage = ERROR_MESSAGE_INVALID_COIN_COUNT;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+
     private void validateCoinSupport(double coinValue) {
         if (!coinToCountMap.containsKey(coinValue)) {
             String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
@@ -1,27 +1,52 @@
 package manager;
 
 import com.sun.istack.internal.NotNull;
+import model.Money;
 import model.Product;
+import model.ProductSnapshot;
 import util.Logger;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
 
 import static util.Constants.*;
 
 /**
  * Default implementation of {@link ProductSlotManager}
+ * <p>
+ * The product slots are a fixed-capacity array of atomic references to immutable {@link ProductSnapshot}s, indexed by
+ * a stable slot id; an empty slot holds null. A change builds the slot's next snapshot and publishes it with a single
+ * compare-and-set on that slot (retrying if another change of the same slot won), so:
+ * <ul>
+ *     <li>readers such as {@link #getSlotProductPriceAmount(int)} see a consistent slot without taking any lock,</li>
+ *     <li>updates, removals and lookups by slot id are O(1) and only contend with changes of the same slot,</li>
+ *     <li>removing a product empties its slot and never renumbers the other slots.</li>
+ * </ul>
+ * Adding and removing products (rare, maintenance-only) is serialized on a slot allocation lock that sales never
+ * take.
+ * <p>
+ * A batch of slot changes ({@link #applySlotChanges(List)}) is applied atomically for readers: each slot's changes are
+ * folded into its final product, and the slots are published inside a batch version, a sequence lock that is odd while
+ * a batch runs. Readers and sales wait for a running batch to finish and retry a read the batch overlapped, so they see
+ * either none or all of a restock. A sale that read its slot before the batch can only publish to a slot the batch has
+ * not reached yet (the batch replaces the slot's product, failing the sale's compare-and-set otherwise), so the sale is
+ * ordered before the batch.
  */
 public class DefaultProductSlotManager implements ProductSlotManager {
 
     //#region class constants
-    private final Object PRODUCT_SLOT_ACCESS_MONITOR_OBJECT = new Object();
+    private final ReentrantLock SLOT_ALLOCATION_LOCK = new ReentrantLock();
     private final Class TAG = this.getClass();
     //#end region
 
     private final int PRODUCT_SLOT_SIZE;
-    private volatile List<Product> productSlots;
+    private final AtomicReferenceArray<ProductSnapshot> productSlots;
+
+    //Odd while a batch of slot changes is being published; only written under SLOT_ALLOCATION_LOCK
+    private volatile long batchVersion;
 
     //#region Class Constructor
     private DefaultProductSlotManager() {
@@ -39,17 +64,16 @@ public class DefaultProductSlotManager implements ProductSlotManager {
             throw new IllegalStateException(errorMessage);
         }
         this.PRODUCT_SLOT_SIZE = productSlotSize;
-        this.productSlots = new ArrayList<>(PRODUCT_SLOT_SIZE);
-        Logger.info(TAG, "Product Slot Size = " + productSlotSize);
+        this.productSlots = new AtomicReferenceArray<>(productSlotSize);
+        Logger.info(TAG, () -> "Product Slot Size = " + productSlotSize);
     }
     //#endregion
 
 
     @Override
     public void updateSlotProductInventorySize(final int productSlotIndex, final long newInventorySize) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            Product ctxProduct = getProductAtSlot(productSlotIndex);
-            if (ctxProduct.getPrice() == null) {
+        ProductSnapshot newProduct = publish(productSlotIndex, ctxProduct -> {
+            if (ctxProduct.getPriceAmount() == null) {
                 String errorMsg = ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET;
                 Logger.error(TAG, errorMsg);
                 throw new IllegalStateException(errorMsg);
@@ -58,105 +82,337 @@ public class DefaultProductSlotManager implements ProductSlotManager {
                 Logger.error(TAG, errorMsg);
                 throw new IllegalStateException(errorMsg);
             }
-            ctxProduct.setInventorySize(newInventorySize);
-            updateProductSlot(productSlotIndex, ctxProduct);
+            return ctxProduct.withInventorySize(newInventorySize);
+        });
+        Logger.info(TAG, () -> String.format("Product UPDATED in slot %d: %s", productSlotIndex, newProduct));
+    }
+
+    @Override
+    public long tryClaimInventory(final int productSlotIndex, final long count) {
+        if (count < 1) {
+            String errorMsg = ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE;
+            Logger.error(TAG, errorMsg);
+            throw new IllegalArgumentException(errorMsg);
+        }
+
+        //No logging on the sell path
+        while (true) {
+            ProductSnapshot ctxProduct = getProductAtSlot(productSlotIndex, true);
+            if (ctxProduct.getPriceAmount() == null) {
+                String errorMsg = ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET;
+                Logger.error(TAG, errorMsg);
+                throw new IllegalStateException(errorMsg);
+            }
+            if (ctxProduct.getInventorySize() < count) {
+                return 0;
+            }
+            ProductSnapshot newProduct = ctxProduct.withInventorySize(ctxProduct.getInventorySize() - count);
+            if (productSlots.compareAndSet(productSlotIndex, ctxProduct, newProduct)) {
+                return ctxProduct.getStocking();
+            }
+        }
+    }
+
+    @Override
+    public boolean tryReturnInventory(final int productSlotIndex, final long count, final long stocking) {
+        if (count < 1) {
+            String errorMsg = ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE;
+            Logger.error(TAG, errorMsg);
+            throw new IllegalArgumentException(errorMsg);
+        }
+
+        //No logging on the sell path
+        while (true) {
+            ProductSnapshot ctxProduct = getProductAtSlot(productSlotIndex, false);
+            if (ctxProduct == null || ctxProduct.getStocking() != stocking) {
+                return false;
+            }
+            ProductSnapshot newProduct = ctxProduct.withInventorySize(ctxProduct.getInventorySize() + count);
+            if (productSlots.compareAndSet(productSlotIndex, ctxProduct, newProduct)) {
+                return true;
+            }
         }
     }
 
+    @Override
+    public void incrementInventory(final int productSlotIndex, final long count) {
+        if (count < 1) {
+            String errorMsg = ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE;
+            Logger.error(TAG, errorMsg);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        publish(productSlotIndex, ctxProduct -> ctxProduct.withInventorySize(ctxProduct.getInventorySize() + count));
+    }
+
+    @Override
+    public boolean isProductSlotOccupied(final int productSlotIndex) {
+        return productSlotIndex >= 0 && productSlotIndex < PRODUCT_SLOT_SIZE && readSlot(productSlotIndex) != null;
+    }
+
+    @Override
+    public ProductSnapshot getSlotProduct(final int productSlotIndex) {
+        return productSlotIndex >= 0 && productSlotIndex < PRODUCT_SLOT_SIZE ? readSlot(productSlotIndex) : null;
+    }
+
     @Override
     public long getSlotProductInventorySize(int productSlotIndex) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            validateProductSlotIndex(productSlotIndex);
-            return getProductAtSlot(productSlotIndex).getInventorySize();
+        return getProductAtSlot(productSlotIndex, true).getInventorySize();
+    }
+
+    @Override
+    public void setSlotProductPriceAmount(int productSlotIndex, @NotNull Money productPrice) {
+        ProductSnapshot newProduct = publish(productSlotIndex, ctxProduct -> {
+            validatePrice(productPrice);
+            return ctxProduct.withPriceAmount(productPrice);
+        });
+        Logger.info(TAG, () -> String.format("Product UPDATED in slot %d: %s", productSlotIndex, newProduct));
+    }
+
+    @Override
+    public Money getSlotProductPriceAmount(int productSlotIndex) {
+        return getProductAtSlot(productSlotIndex, true).getPriceAmount();
+    }
+
+    @Override
+    public int addProductToSlot(final Product product) {
+        ProductSnapshot productSnapshot = ProductSnapshot.of(product);
+        //Serializes slot allocation only; sales from occupied slots carry on
+        SLOT_ALLOCATION_LOCK.lock();
+        try {
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                if (productSlots.get(i) == null) {
+                    productSlots.set(i, productSnapshot);
+                    int productSlotIndex = i;
+                    Logger.info(TAG, () -> String.format("Product added to slot %d: %s", productSlotIndex, productSnapshot));
+                    return productSlotIndex;
+                }
+            }
+        } finally {
+            SLOT_ALLOCATION_LOCK.unlock();
         }
+        String errorMessage = ERROR_MESSAGE_NO_MORE_SLOT_FOR_PRODUCT;
+        Logger.error(TAG, errorMessage);
+        throw new IllegalArgumentException(errorMessage);
     }
 
     @Override
-    public void setSlotProductPrice(int productSlotIndex, @NotNull BigDecimal productPrice) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            validateProductSlotIndex(productSlotIndex);
-            Product product = getProductAtSlot(productSlotIndex);
-            product.setPrice(productPrice);
-            updateProductSlot(productSlotIndex, product);
+    public void removeProductAtSlot(final int productSlotIndex) {
+        getProductAtSlot(productSlotIndex, false);
+        ProductSnapshot removedProduct;
+        SLOT_ALLOCATION_LOCK.lock();
+        try {
+            removedProduct = productSlots.getAndSet(productSlotIndex, null);
+        } finally {
+            SLOT_ALLOCATION_LOCK.unlock();
         }
+        if (removedProduct == null) {
+            throwInvalidProductSlot();
+        }
+        Logger.info(TAG, () -> String.format("Product DELETE from slot %d: %s", productSlotIndex, removedProduct));
     }
 
+    /**
+     * The batch is validated and applied under the slot allocation lock, so no product is added or removed in
+     * between. Each touched slot is published once, with all its changes applied, inside one batch version: readers
+     * and sales wait for the batch, so none of them sees it half applied.
+     */
     @Override
-    public BigDecimal getSlotProductPrice(int productSlotIndex) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            validateProductSlotIndex(productSlotIndex);
-            return getProductAtSlot(productSlotIndex).getPrice();
+    public int[] applySlotChanges(@NotNull final List<SlotChange> changes) {
+        SLOT_ALLOCATION_LOCK.lock();
+        try {
+            boolean[] occupied = new boolean[PRODUCT_SLOT_SIZE];
+            boolean[] priceSet = new boolean[PRODUCT_SLOT_SIZE];
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                ProductSnapshot slotProduct = productSlots.get(i);
+                occupied[i] = slotProduct != null;
+                priceSet[i] = occupied[i] && slotProduct.getPriceAmount() != null;
+            }
+            int[] slots = SlotChange.resolveSlots(changes, occupied, priceSet);
+
+            int[] addedSlots = new int[slots.length];
+            int addedSlotCount = 0;
+            for (int i = 0; i < slots.length; i++) {
+                if (changes.get(i).getType() == SlotChange.Type.ADD_PRODUCT) {
+                    addedSlots[addedSlotCount++] = slots[i];
+                }
+            }
+
+            boolean[] published = new boolean[PRODUCT_SLOT_SIZE];
+            batchVersion++;
+            try {
+                for (int i = 0; i < slots.length; i++) {
+                    int slot = slots[i];
+                    if (published[slot]) {
+                        continue;
+                    }
+                    published[slot] = true;
+                    //Sales may still take items off the slot: fold the slot's changes into the product it holds now
+                    while (true) {
+                        ProductSnapshot ctxProduct = productSlots.get(slot);
+                        ProductSnapshot newProduct = ctxProduct;
+                        for (int j = i; j < slots.length; j++) {
+                            if (slots[j] == slot) {
+                                newProduct = applySlotChange(changes.get(j), newProduct);
+                            }
+                        }
+                        if (productSlots.compareAndSet(slot, ctxProduct, newProduct)) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                batchVersion++;
+            }
+            return Arrays.copyOf(addedSlots, addedSlotCount);
+        } finally {
+            SLOT_ALLOCATION_LOCK.unlock();
         }
     }
 
+    /**
+     * Slots hold immutable snapshots: the copy is one reference read per slot, without any lock. A copy a batch of slot
+     * changes overlapped is taken again, so it never holds a batch half applied.
+     */
     @Override
-    public void addProductToSlot(final Product product) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            assertProductSlotAvailabilityForNewProductAddition();
-            productSlots.add(product);
-            Logger.info(TAG, "Product added to slot: " + product.toString());
-            Logger.info(TAG, "New Product Slot: " + productSlots);
+    public ProductSnapshot[] snapshotSlots() {
+        ProductSnapshot[] slots = new ProductSnapshot[PRODUCT_SLOT_SIZE];
+        while (true) {
+            long version = awaitNoBatch();
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                slots[i] = productSlots.get(i);
+            }
+            if (batchVersion == version) {
+                return slots;
+            }
         }
     }
 
     @Override
-    public void removeProductAtSlot(final int productSlotIndex) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            validateProductSlotIndex(productSlotIndex);
-            productSlots.remove(productSlotIndex);
-            Logger.info(TAG, "Product DELETE from slot. New product slots: " + productSlots);
+    public void restoreSlots(@NotNull final ProductSnapshot[] slots) {
+        if (slots == null || slots.length != PRODUCT_SLOT_SIZE) {
+            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT_SIZE;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
         }
+        SLOT_ALLOCATION_LOCK.lock();
+        batchVersion++;
+        try {
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                productSlots.set(i, slots[i]);
+            }
+        } finally {
+            batchVersion++;
+            SLOT_ALLOCATION_LOCK.unlock();
+        }
+        Logger.info(TAG, () -> "Product slots restored: " + Arrays.toString(slots));
     }
 
     public void updateProductSlot(final int productSlotIndex, final Product product) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            validatePrice(product.getPrice());
-            validateProductSlotIndex(productSlotIndex);
-            productSlots.remove(productSlotIndex);
-            productSlots.add(productSlotIndex, product);
-            Logger.info(TAG, "Product UPDATED in slot. New product slots: " + productSlots);
-        }
+        ProductSnapshot productSnapshot = ProductSnapshot.of(product);
+        validatePrice(productSnapshot.getPriceAmount());
+        publish(productSlotIndex, ctxProduct -> productSnapshot);
+        Logger.info(TAG, () -> String.format("Product UPDATED in slot %d: %s", productSlotIndex, productSnapshot));
     }
 
+    /**
+     * @return a copy of the product at slot {@param productSlotIndex}; changing it does not change the slot
+     */
     public Product getProductAtSlot(final int productSlotIndex) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            validateProductSlotIndex(productSlotIndex);
-            return productSlots.get(productSlotIndex);
-        }
+        return getProductAtSlot(productSlotIndex, true).toProduct();
     }
 
+    /**
+     * Linear scan over the slots, comparing price and inventory size
+     *
+     * @return the lowest slot currently holding {@param product}, -1 if none does
+     */
     public int getIndexOfProductInSlot(final Product product) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            return productSlots.indexOf(product);
+        for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+            ProductSnapshot slotProduct = readSlot(i);
+            if (slotProduct != null && slotProduct.matches(product)) {
+                return i;
+            }
         }
+        return -1;
     }
 
-    private void validateProductSlotIndex(final int productSlotIndex) {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            if (productSlotIndex > (productSlots.size() - 1) || productSlotIndex > (PRODUCT_SLOT_SIZE - 1) || productSlotIndex < 0) {
-                String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT;
-                Logger.error(TAG, errorMessage);
-                throw new IllegalArgumentException(errorMessage);
+    /**
+     * Apply {@param change} to the product at slot {@param productSlotIndex} and publish the result, retrying on the
+     * newer product if a concurrent change of the slot was published in between. {@param change} must be free of side
+     * effects as it may run more than once.
+     *
+     * @return the published product
+     */
+    private ProductSnapshot publish(final int productSlotIndex, final UnaryOperator<ProductSnapshot> change) {
+        while (true) {
+            ProductSnapshot ctxProduct = getProductAtSlot(productSlotIndex, true);
+            ProductSnapshot newProduct = change.apply(ctxProduct);
+            if (productSlots.compareAndSet(productSlotIndex, ctxProduct, newProduct)) {
+                return newProduct;
             }
         }
     }
 
-    private void validatePrice(final BigDecimal productPrice) {
-        if (productPrice == null || productPrice.compareTo(BigDecimal.ZERO) < 0) {
-            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_PRICE;
-            Logger.error(TAG, errorMessage);
-            throw new IllegalArgumentException(errorMessage);
+    private ProductSnapshot getProductAtSlot(final int productSlotIndex, final boolean occupiedSlotRequired) {
+        if (productSlotIndex > (PRODUCT_SLOT_SIZE - 1) || productSlotIndex < 0) {
+            throwInvalidProductSlot();
+        }
+        ProductSnapshot ctxProduct = readSlot(productSlotIndex);
+        if (ctxProduct == null && occupiedSlotRequired) {
+            throwInvalidProductSlot();
         }
+        return ctxProduct;
     }
 
-    private void assertProductSlotAvailabilityForNewProductAddition() {
-        synchronized (PRODUCT_SLOT_ACCESS_MONITOR_OBJECT) {
-            if ((productSlots.size() + 1) > PRODUCT_SLOT_SIZE) {
-                String errorMessage = ERROR_MESSAGE_NO_MORE_SLOT_FOR_PRODUCT;
-                Logger.error(TAG, errorMessage);
-                throw new IllegalArgumentException(errorMessage);
+    /**
+     * @return the product of slot {@param productSlotIndex}, read outside of any batch of slot changes
+     */
+    private ProductSnapshot readSlot(final int productSlotIndex) {
+        while (true) {
+            long version = awaitNoBatch();
+            ProductSnapshot ctxProduct = productSlots.get(productSlotIndex);
+            if (batchVersion == version) {
+                return ctxProduct;
             }
         }
     }
 
+    /**
+     * @return the batch version once no batch of slot changes is running
+     */
+    private long awaitNoBatch() {
+        long version;
+        while (((version = batchVersion) & 1) != 0) {
+            //Batches are short and rare maintenance: yield rather than park
+            Thread.yield();
+        }
+        return version;
+    }
+
+    private static ProductSnapshot applySlotChange(final SlotChange change, final ProductSnapshot ctxProduct) {
+        switch (change.getType()) {
+            case ADD_PRODUCT:
+                return ProductSnapshot.of(change.getPrice(), change.getInventorySize());
+            case REMOVE_PRODUCT:
+                return null;
+            case SET_PRICE:
+                return ctxProduct.withPriceAmount(change.getPrice());
+            default:
+                return ctxProduct.withInventorySize(change.getInventorySize());
+        }
+    }
+
+    private void throwInvalidProductSlot() {
+        String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT;
+        Logger.error(TAG, errorMessage);
+        throw new IllegalArgumentException(errorMessage);
+    }
+
+    private void validatePrice(final Money productPrice) {
+        if (productPrice == null || productPrice.isNegative()) {
+            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_PRICE;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
 }
@@ -0,0 +1,407 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+import model.Money;
+import util.Logger;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static util.Constants.*;
+
+/**
+ * {@link CoinManager} that keeps the coin counts in a primitive array indexed by denomination ordinal.
+ * <p>
+ * The supported denominations are fixed, sorted and converted to minor units once in the constructor
+ * (see {@link CoinDenominations}). Every coin handed to the manager is resolved to its ordinal once, so crediting and
+ * debiting coins neither boxes map keys/values nor takes more than the single coin access lock.
+ * Change is computed with the {@link BoundedCoinChangeSolver}.
+ */
+public class IndexedCoinManager implements CoinManager {
+
+    //#region class constants
+    private final ReentrantLock COIN_ACCESS_LOCK = new ReentrantLock();
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final CoinDenominations coinDenominations;
+    private final int[] coinCounts;
+
+    //Guarded by COIN_ACCESS_LOCK, refreshed whenever coinCounts changes
+    private final ChangeabilityIndex changeabilityIndex;
+
+    //#region scratch buffers (guarded by COIN_ACCESS_LOCK)
+    private final BoundedCoinChangeSolver changeSolver;
+    private final int[] changeCounts;
+    private final int[] balanceDeltas;
+    private final int[] escrowCounts;
+    private final int[] combinedCounts;
+    //#endregion
+
+    //#region Class Constructor
+    private IndexedCoinManager() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    public IndexedCoinManager(@NotNull final Collection<Double> allowedCoinList) {
+        this(allowedCoinList, DEFAULT_CHANGEABILITY_CEILING_IN_MINOR_UNITS);
+    }
+
+    /**
+     * @param changeabilityCeiling highest change amount (in minor units) answered by {@link #canMakeChange(Money)}
+     *                             without running the change solver
+     */
+    public IndexedCoinManager(@NotNull final Collection<Double> allowedCoinList, final int changeabilityCeiling) {
+        if (allowedCoinList.isEmpty()) {
+            String errorMessage = "No coin specified";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        this.coinDenominations = new CoinDenominations(allowedCoinList);
+        this.coinCounts = new int[coinDenominations.size()];
+        this.changeabilityIndex = new ChangeabilityIndex(coinDenominations.toMinorUnitsArray(), changeabilityCeiling);
+        this.changeSolver = new BoundedCoinChangeSolver(coinDenominations.toMinorUnitsArray());
+        this.changeCounts = new int[coinDenominations.size()];
+        this.balanceDeltas = new int[coinDenominations.size()];
+        this.escrowCounts = new int[coinDenominations.size()];
+        this.combinedCounts = new int[coinDenominations.size()];
+        Logger.info(TAG, () -> "Allowed coins: " + coinDenominations);
+    }
+    //#endregion
+
+    //#region maintenance
+    @Override
+    public void setCoinAvailableCount(final double coinValue, final int newAvailableCount) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            int ordinal = resolveOrdinal(coinValue);
+            coinCounts[ordinal] = newAvailableCount;
+            changeabilityIndex.setCount(ordinal, newAvailableCount);
+            Logger.info(TAG, () -> "Available coin updated: " + describeCoinCounts());
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public void setCoinAvailableCounts(@NotNull final Map<Double, Integer> newAvailableCounts) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            int[] ordinals = resolveOrdinals(newAvailableCounts);
+            int i = 0;
+            for (Integer newAvailableCount : newAvailableCounts.values()) {
+                int ordinal = ordinals[i++];
+                coinCounts[ordinal] = newAvailableCount;
+                changeabilityIndex.setCount(ordinal, newAvailableCount);
+            }
+            Logger.info(TAG, () -> "Available coin updated: " + describeCoinCounts());
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public int getCoinAvailableCount(final double coinValue) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            return coinCounts[resolveOrdinal(coinValue)];
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+    //#endregion
+
+    @Override
+    public boolean areCoinsSupported(final Collection<Double> coinList) {
+        if (coinList == null || coinList.isEmpty()) {
+            Logger.error(TAG, "Coin list is empty. It is required for operation");
+            throw new IllegalArgumentException(ERROR_MESSAGE_COIN_LIST_IS_REQUIRED);
+        }
+
+        //The denomination table is immutable, no lock required
+        for (Double coin : coinList) {
+            if (coin == null || coinDenominations.ordinalOf(coin) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Money getCoinsValue(@NotNull final Collection<Double> coinList) {
+        if (coinList == null) {
+            Logger.error(TAG, "Coin list is empty. It is required for operation");
+            throw new IllegalArgumentException(ERROR_MESSAGE_COIN_LIST_IS_REQUIRED);
+        }
+        long total = 0;
+        for (Double coin : coinList) {
+            total += coinDenominations.minorUnitsAt(resolveOrdinal(coin));
+        }
+        return Money.ofMinorUnits(total, coinDenominations.getScale());
+    }
+
+    @Override
+    public CoinDenominations getCoinDenominations() {
+        return coinDenominations;
+    }
+
+    @Override
+    public CoinCounts getChangeCoinCounts(@NotNull final Money amount) {
+        validateChangeAmount(amount);
+        if (amount.isZero()) {
+            return CoinCounts.none(coinDenominations);
+        }
+
+        COIN_ACCESS_LOCK.lock();
+        try {
+            solveChange(amount.getMinorUnits(), coinCounts, changeCounts, true);
+            return CoinCounts.of(coinDenominations, changeCounts);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount) {
+        return reserve(amount, null, true);
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount, @NotNull final CoinEscrow escrow) {
+        if (escrow == null) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return reserve(amount, escrow, true);
+    }
+
+    @Override
+    public ChangeReservation tryReserveChange(@NotNull final Money amount, final CoinEscrow escrow) {
+        return reserve(amount, escrow, false);
+    }
+
+    private ChangeReservation reserve(final Money amount, final CoinEscrow escrow, final boolean throwIfNoChange) {
+        validateChangeAmount(amount);
+        COIN_ACCESS_LOCK.lock();
+        try {
+            if (escrow == null) {
+                if (!solveChange(amount.getMinorUnits(), coinCounts, changeCounts, throwIfNoChange)) {
+                    return null;
+                }
+                for (int i = 0; i < coinCounts.length; i++) {
+                    coinCounts[i] -= changeCounts[i];
+                    changeabilityIndex.setCount(i, coinCounts[i]);
+                }
+                Logger.info(TAG, () -> "Updated (RESERVED) Coin State: " + describeCoinCounts());
+                return new ChangeReservation(this, amount, CoinCounts.of(coinDenominations, changeCounts));
+            }
+
+            if (!escrow.countCoins(coinDenominations, escrowCounts)) {
+                String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+                Logger.error(TAG, errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+
+            for (int i = 0; i < coinCounts.length; i++) {
+                combinedCounts[i] = coinCounts[i] + escrowCounts[i];
+            }
+            if (!solveChange(amount.getMinorUnits(), combinedCounts, changeCounts, throwIfNoChange)) {
+                return null;
+            }
+
+            //Draw on the escrow first, the rest is held out of the available coins
+            for (int i = 0; i < coinCounts.length; i++) {
+                escrowCounts[i] = Math.min(changeCounts[i], escrowCounts[i]);
+                combinedCounts[i] = changeCounts[i] - escrowCounts[i];
+                coinCounts[i] -= combinedCounts[i];
+                changeabilityIndex.setCount(i, coinCounts[i]);
+            }
+            Logger.info(TAG, () -> "Updated (RESERVED) Coin State: " + describeCoinCounts());
+            return new ChangeReservation(this, amount, CoinCounts.of(coinDenominations, changeCounts), escrow,
+                    CoinCounts.of(coinDenominations, escrowCounts), CoinCounts.of(coinDenominations, combinedCounts));
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public void balanceCoins(@NotNull final CoinCounts creditCoinCounts, @NotNull final CoinCounts debitCoinCounts) {
+        if (creditCoinCounts == null) {
+            String errorMessage = ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        if (debitCoinCounts == null) {
+            String errorMessage = ERROR_MESSAGE_DEBIT_COIN_LIST_REQUIRED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        if (!creditCoinCounts.isCompatibleWith(coinDenominations) || !debitCoinCounts.isCompatibleWith(coinDenominations)) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        COIN_ACCESS_LOCK.lock();
+        try {
+            //Check every count first, so that an invalid request leaves the counts untouched
+            for (int i = 0; i < balanceDeltas.length; i++) {
+                balanceDeltas[i] = creditCoinCounts.countAt(i) - debitCoinCounts.countAt(i);
+            }
+
+            for (int i = 0; i < balanceDeltas.length; i++) {
+                if (coinCounts[i] + balanceDeltas[i] < 0) {
+                    String errorMessage = ERROR_MESSAGE_COIN_COUNT_CANNOT_GO_TO_NEGATIVE;
+                    Logger.error(TAG, errorMessage);
+                    throw new IllegalStateException(errorMessage);
+                }
+            }
+
+            for (int i = 0; i < balanceDeltas.length; i++) {
+                coinCounts[i] += balanceDeltas[i];
+                changeabilityIndex.setCount(i, coinCounts[i]);
+            }
+
+            Logger.info(TAG, () -> "Updated Coin State: " + describeCoinCounts());
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public boolean canMakeChange(@NotNull final Money amount) {
+        validateChangeAmount(amount);
+        COIN_ACCESS_LOCK.lock();
+        try {
+            if (amount.getMinorUnits() <= changeabilityIndex.getCeiling()) {
+                return changeabilityIndex.canMakeChange((int) amount.getMinorUnits());
+            }
+            //Beyond the index ceiling: fall back to the solver
+            return changeSolver.canSolve(amount.getMinorUnits(), coinCounts, changeCounts);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public Money maxChangeableAmount() {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            return Money.ofMinorUnits(changeabilityIndex.maxChangeableAmount(), coinDenominations.getScale());
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    private void validateChangeAmount(final Money amount) {
+        if (amount == null || amount.isNegative() || amount.getScale() != coinDenominations.getScale()) {
+            String errorMessage = ERROR_MESSAGE_INVALID_AMOUNT_PROVIDED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+
+    /**
+     * Compute the change coin count per ordinal for {@param amountInMinorUnits} out of {@param availableCounts}
+     *
+     * @param throwIfNoChange if false, an amount the coins cannot pay out yields false instead of an exception
+     * @return true if {@param result} holds the change
+     */
+    private boolean solveChange(final long amountInMinorUnits, final int[] availableCounts, final int[] result,
+                                final boolean throwIfNoChange) {
+        COIN_ACCESS_LOCK.lock();
+        try {
+            long totalAvailableCoinValue = 0;
+            for (int i = 0; i < availableCounts.length; i++) {
+                totalAvailableCoinValue += (long) coinDenominations.minorUnitsAt(i) * availableCounts[i];
+            }
+
+            if (amountInMinorUnits == totalAvailableCoinValue) {
+                //Total change amount is EQUAL TO the total value of available coins
+                System.arraycopy(availableCounts, 0, result, 0, availableCounts.length);
+                return true;
+            } else if (amountInMinorUnits > totalAvailableCoinValue) {
+                //Total change amount is MORE THAN the total value of available coins
+                return noChange(ERROR_MESSAGE_INSUFFICIENT_COIN_S_FOR_CHANGE, throwIfNoChange);
+            }
+
+            return changeSolver.solve((int) amountInMinorUnits, availableCounts, result)
+                    || noChange(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, throwIfNoChange);
+        } finally {
+            COIN_ACCESS_LOCK.unlock();
+        }
+    }
+
+    /**
+     * @return false, the "no change" outcome, unless {@param throwIfNoChange} is set
+     */
+    private boolean noChange(final String errorMessage, final boolean throwIfNoChange) {
+        if (throwIfNoChange) {
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        return false;
+    }
+
+    private String describeCoinCounts() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < coinCounts.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(coinDenominations.valueAt(i)).append('=').append(coinCounts[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    private int resolveOrdinal(final Double coinValue) {
+        if (coinValue == null) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return resolveOrdinal(coinValue.doubleValue());
+    }
+
+    /**
+     * @return ordinal of each coin of {@param coinToCountMap}, in the map's iteration order
+     */
+    /**
+     * Validate every entry of {@param coinToCountMap} before any count is set
+     *
+     * @return ordinal of each coin of {@param coinToCountMap}, in iteration order
+     */
+    private int[] resolveOrdinals(final Map<Double, Integer> coinToCountMap) {
+        if (coinToCountMap == null) {
+            String errorMessage = ERROR_MESSAGE_INVALID_COIN_COUNT;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        int[] ordinals = new int[coinToCountMap.size()];
+        int i = 0;
+        for (Map.Entry<Double, Integer> entry : coinToCountMap.entrySet()) {
+            ordinals[i++] = resolveOrdinal(entry.getKey() == null ? Double.NaN : entry.getKey());
+            if (entry.getValue() == null || entry.getValue() < 0) {
+                String errorMessage = ERROR_MESSAGE_INVALID_COIN_COUNT;
+                Logger.error(TAG, errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+        }
+        return ordinals;
+    }
+
+    private int resolveOrdinal(final double coinValue) {
+        int ordinal = coinDenominations.ordinalOf(coinValue);
+        if (ordinal < 0) {
+            String errorMessage = ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return ordinal;
+    }
+}
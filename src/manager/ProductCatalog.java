@@ -0,0 +1,184 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+import model.Product;
+import model.ProductSnapshot;
+import model.Sku;
+import util.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static util.Constants.*;
+
+/**
+ * Product identity layer over a {@link ProductSlotManager}: keeps which {@link Sku} each product slot holds, and a
+ * hashed SKU to slot(s) index, so finding where a SKU is stocked costs the same however many slots the machine has.
+ * <p>
+ * {@link #pickSlot(String)} spreads the sales of a SKU stocked in several slots: it samples two of the SKU's slots at
+ * random and picks the fuller one ("power of two choices"), so concurrent buyers of a hot SKU are dealt different slots
+ * while the slots drain evenly. Only when both samples are empty are all the SKU's slots scanned.
+ * <p>
+ * Catalogued slots must be removed through {@link #removeProductAtSlot(int)} (or {@link #uncatalogSlot(int)} once
+ * emptied), so the index stays in step with the slot manager.
+ */
+public final class ProductCatalog {
+
+    //#region class constants
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final ProductSlotManager productSlotManager;
+    private final ConcurrentHashMap<String, int[]> slotsBySkuCode = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Sku> skuBySlot = new ConcurrentHashMap<>();
+
+    public ProductCatalog(@NotNull final ProductSlotManager productSlotManager) {
+        if (productSlotManager == null) {
+            throw new IllegalArgumentException("Product slot manager is required");
+        }
+        this.productSlotManager = productSlotManager;
+    }
+
+    /**
+     * Add {@param product} to the next available product slot and record it as {@param sku}
+     *
+     * @return slot id of the added product
+     */
+    public int addProductToSlot(@NotNull final Sku sku, @NotNull final Product product) {
+        if (sku == null) {
+            String errorMessage = ERROR_MESSAGE_UNKNOWN_PRODUCT_SKU;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        int productSlotIndex = productSlotManager.addProductToSlot(product);
+        catalogSlot(sku, productSlotIndex);
+        return productSlotIndex;
+    }
+
+    /**
+     * Record the product already held by {@param productSlotIndex} as {@param sku}, e.g. when the slot state is
+     * restored without going through {@link #addProductToSlot(Sku, Product)}
+     */
+    public void catalogSlot(@NotNull final Sku sku, final int productSlotIndex) {
+        if (sku == null) {
+            String errorMessage = ERROR_MESSAGE_UNKNOWN_PRODUCT_SKU;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        skuBySlot.put(productSlotIndex, sku);
+        slotsBySkuCode.compute(sku.getCode(), (code, slots) -> {
+            if (slots == null) {
+                return new int[]{productSlotIndex};
+            }
+            int[] newSlots = Arrays.copyOf(slots, slots.length + 1);
+            newSlots[slots.length] = productSlotIndex;
+            return newSlots;
+        });
+    }
+
+    /**
+     * Remove the product at {@param productSlotIndex} from the slot manager and from the catalog
+     */
+    public void removeProductAtSlot(final int productSlotIndex) {
+        //Uncatalog first: the slot id cannot be handed to another product before the slot manager frees it
+        uncatalogSlot(productSlotIndex);
+        productSlotManager.removeProductAtSlot(productSlotIndex);
+    }
+
+    /**
+     * Forget the SKU of {@param productSlotIndex} without touching the slot manager, for slots emptied by other means
+     * (e.g. {@link ProductSlotManager#applySlotChanges(java.util.List)})
+     */
+    public void uncatalogSlot(final int productSlotIndex) {
+        Sku sku = skuBySlot.remove(productSlotIndex);
+        if (sku == null) {
+            return;
+        }
+        slotsBySkuCode.computeIfPresent(sku.getCode(), (code, slots) -> {
+            int[] newSlots = new int[slots.length - 1];
+            int size = 0;
+            for (int slot : slots) {
+                if (slot != productSlotIndex) {
+                    newSlots[size++] = slot;
+                }
+            }
+            //Returning null drops the SKU once its last slot is gone
+            return size == 0 ? null : newSlots;
+        });
+    }
+
+    /**
+     * @return the SKU stocked in {@param productSlotIndex}, null if the slot is not catalogued
+     */
+    public Sku getSkuAtSlot(final int productSlotIndex) {
+        return skuBySlot.get(productSlotIndex);
+    }
+
+    /**
+     * @return slot id(s) stocking {@param skuCode}, in the order they were added; empty if none
+     */
+    public int[] getSlotsOf(final String skuCode) {
+        int[] slots = skuCode == null ? null : slotsBySkuCode.get(skuCode);
+        return slots == null ? new int[0] : slots.clone();
+    }
+
+    /**
+     * Choose the slot to sell the next {@param skuCode} item from
+     *
+     * @return a slot stocking {@param skuCode} that held at least one item when it was sampled
+     * @throws IllegalArgumentException if no slot stocks {@param skuCode}
+     * @throws IllegalStateException    if every slot stocking {@param skuCode} is out of stock
+     */
+    public int pickSlot(final String skuCode) {
+        int[] slots = skuCode == null ? null : slotsBySkuCode.get(skuCode);
+        if (slots == null) {
+            String errorMessage = ERROR_MESSAGE_UNKNOWN_PRODUCT_SKU;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        int pickedSlot;
+        long pickedInventorySize;
+        if (slots.length == 1) {
+            pickedSlot = slots[0];
+            pickedInventorySize = inventorySizeOf(pickedSlot);
+        } else {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(slots.length);
+            int second = random.nextInt(slots.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            long firstInventorySize = inventorySizeOf(slots[first]);
+            long secondInventorySize = inventorySizeOf(slots[second]);
+            boolean firstIsFuller = firstInventorySize >= secondInventorySize;
+            pickedSlot = firstIsFuller ? slots[first] : slots[second];
+            pickedInventorySize = firstIsFuller ? firstInventorySize : secondInventorySize;
+        }
+        if (pickedInventorySize > 0) {
+            return pickedSlot;
+        }
+
+        //Both samples were empty: fall back to the fullest slot of the SKU
+        for (int slot : slots) {
+            long inventorySize = inventorySizeOf(slot);
+            if (inventorySize > pickedInventorySize) {
+                pickedSlot = slot;
+                pickedInventorySize = inventorySize;
+            }
+        }
+        if (pickedInventorySize < 1) {
+            String errorMessage = ERROR_MESSAGE_SLOT_OUT_OF_STOCK;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        return pickedSlot;
+    }
+
+    private long inventorySizeOf(final int productSlotIndex) {
+        ProductSnapshot product = productSlotManager.getSlotProduct(productSlotIndex);
+        //Null if the slot was removed since the index was read
+        return product == null ? 0 : product.getInventorySize();
+    }
+}
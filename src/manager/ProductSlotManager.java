@@ -1,9 +1,12 @@
 package manager;
 
 import com.sun.istack.internal.NotNull;
+import model.Money;
 import model.Product;
+import model.ProductSnapshot;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * Contract for the component that manages the product slots of the vending machine
@@ -17,6 +20,68 @@ public interface ProductSlotManager {
      * */
     void updateSlotProductInventorySize(final int productSlotIndex, final long newInventorySize);
 
+    /**
+     * Atomically take {@param count} item(s) off a product slot if the slot holds at least that many.
+     * The stock check and the update are one step, so concurrent purchases can never oversell a slot.
+     *
+     * @param productSlotIndex position of product on the product slot
+     * @param count            number of items to take, at least 1
+     *
+     * @return true if the items were taken, false (with the slot untouched) if the slot holds fewer than {@param count} items
+     * */
+    default boolean tryDecrementInventory(final int productSlotIndex, final long count) {
+        return tryClaimInventory(productSlotIndex, count) != 0;
+    }
+
+    /**
+     * {@link #tryDecrementInventory(int, long)} that also tells which product the items were taken from
+     *
+     * @param productSlotIndex position of product on the product slot
+     * @param count            number of items to take, at least 1
+     *
+     * @return stocking id of the product the items were taken from (see {@link ProductSnapshot#getStocking()}), at least
+     * 1, or 0 (with the slot untouched) if the slot holds fewer than {@param count} items
+     * */
+    long tryClaimInventory(final int productSlotIndex, final long count);
+
+    /**
+     * Atomically put {@param count} item(s) back on a product slot if it still holds the product they were taken from,
+     * e.g. to roll back a {@link #tryClaimInventory(int, long)} whose purchase failed at a later step. Items of a
+     * product that has since been removed are dropped: they are never credited to a product added in its place.
+     *
+     * @param productSlotIndex position of product on the product slot
+     * @param count            number of items to put back, at least 1
+     * @param stocking         stocking id returned by the claim of the items
+     *
+     * @return true if the items were put back, false (with the slot untouched) if the slot is empty or holds another product
+     * */
+    boolean tryReturnInventory(final int productSlotIndex, final long count, final long stocking);
+
+    /**
+     * Atomically add {@param count} item(s) to a product slot, e.g. to replay a restock
+     *
+     * @param productSlotIndex position of product on the product slot
+     * @param count            number of items to add, at least 1
+     * */
+    void incrementInventory(final int productSlotIndex, final long count);
+
+    /**
+     * Read the product of a slot in one step, so its price and inventory size belong together. Unlike the accessors
+     * of single fields, it does not throw if the slot is emptied concurrently
+     *
+     * @param productSlotIndex position of product on the product slot
+     *
+     * @return the product at the slot, null if the slot is empty or the machine has no such slot
+     * */
+    ProductSnapshot getSlotProduct(final int productSlotIndex);
+
+    /**
+     * @param productSlotIndex position of product on the product slot
+     *
+     * @return true if {@param productSlotIndex} is a slot of the machine holding a product
+     * */
+    boolean isProductSlotOccupied(final int productSlotIndex);
+
     /**
      * Get the number of items on a product slot
      *
@@ -32,28 +97,69 @@ public interface ProductSlotManager {
      * @param productSlotIndex position of product on the product slot
      * @param productPrice product price after update
      * */
-    void setSlotProductPrice(final int productSlotIndex, @NotNull final BigDecimal productPrice);
+    void setSlotProductPriceAmount(final int productSlotIndex, @NotNull final Money productPrice);
 
     /**
      * Get the price of a product at a slot
      *
      * @param productSlotIndex position of product on the product slot
      *
-     * @return price of item at slot {@param productSlotIndex}
+     * @return price of item at slot {@param productSlotIndex}, null if the price has not been set
      * */
-    BigDecimal getSlotProductPrice(final int productSlotIndex);
+    Money getSlotProductPriceAmount(final int productSlotIndex);
+
+    /**
+     * {@link BigDecimal} adapter of {@link #setSlotProductPriceAmount(int, Money)}
+     * */
+    default void setSlotProductPrice(final int productSlotIndex, @NotNull final BigDecimal productPrice) {
+        setSlotProductPriceAmount(productSlotIndex, productPrice == null ? null : Money.of(productPrice));
+    }
+
+    /**
+     * {@link BigDecimal} adapter of {@link #getSlotProductPriceAmount(int)}
+     * */
+    default BigDecimal getSlotProductPrice(final int productSlotIndex) {
+        Money productPrice = getSlotProductPriceAmount(productSlotIndex);
+        return productPrice == null ? null : productPrice.toBigDecimal();
+    }
 
     /**
      * Add product to the next available product slot
      *
      * @param product to add
+     *
+     * @return slot id of the added product; it stays valid until the product is removed
      * */
-    void addProductToSlot(final Product product);
+    int addProductToSlot(final Product product);
 
     /**
-     * Remove product from the product slot
+     * Remove product from the product slot. The slot becomes empty; no other slot id changes.
      *
      * @param productSlotIndex position of product to remove
      * */
     void removeProductAtSlot(final int productSlotIndex);
+
+    /**
+     * Apply a batch of slot changes, in order, as one maintenance step. Every change is validated against the slots
+     * before any is applied: if one change is invalid, none is applied.
+     *
+     * @param changes slot changes to apply
+     *
+     * @return slot id of the product of each {@link SlotChange.Type#ADD_PRODUCT} change, in order
+     * */
+    int[] applySlotChanges(@NotNull final List<SlotChange> changes);
+
+    /**
+     * Copy the product of every slot, e.g. to persist the slots
+     *
+     * @return the product of each slot, indexed by slot id, null for an empty slot
+     * */
+    ProductSnapshot[] snapshotSlots();
+
+    /**
+     * Replace the product of every slot, e.g. to restore persisted slots
+     *
+     * @param slots product of each slot, indexed by slot id, null for an empty slot; one per slot
+     * */
+    void restoreSlots(@NotNull final ProductSnapshot[] slots);
 }
@@ -0,0 +1,150 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+import model.Money;
+import model.Product;
+import util.Logger;
+
+import java.util.List;
+
+import static util.Constants.*;
+
+/**
+ * One product slot change of a batch applied with {@link ProductSlotManager#applySlotChanges(List)}
+ */
+public final class SlotChange {
+
+    public enum Type {
+        ADD_PRODUCT,
+        REMOVE_PRODUCT,
+        SET_PRICE,
+        SET_INVENTORY_SIZE
+    }
+
+    private final Type type;
+    private final int productSlotIndex;
+    private final Money price;
+    private final long inventorySize;
+
+    private SlotChange(final Type type, final int productSlotIndex, final Money price, final long inventorySize) {
+        this.type = type;
+        this.productSlotIndex = productSlotIndex;
+        this.price = price;
+        this.inventorySize = inventorySize;
+    }
+
+    //#region factories
+    /**
+     * Add {@param product} to the next available product slot
+     */
+    public static SlotChange addProduct(@NotNull final Product product) {
+        if (product.getInventorySize() < 0) {
+            throw invalid(ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE);
+        }
+        if (product.getPriceAmount() != null && product.getPriceAmount().isNegative()) {
+            throw invalid(ERROR_MESSAGE_INVALID_PRODUCT_PRICE);
+        }
+        return new SlotChange(Type.ADD_PRODUCT, -1, product.getPriceAmount(), product.getInventorySize());
+    }
+
+    public static SlotChange removeProduct(final int productSlotIndex) {
+        return new SlotChange(Type.REMOVE_PRODUCT, productSlotIndex, null, 0);
+    }
+
+    public static SlotChange setPrice(final int productSlotIndex, @NotNull final Money price) {
+        if (price == null || price.isNegative()) {
+            throw invalid(ERROR_MESSAGE_INVALID_PRODUCT_PRICE);
+        }
+        return new SlotChange(Type.SET_PRICE, productSlotIndex, price, 0);
+    }
+
+    public static SlotChange setInventorySize(final int productSlotIndex, final long inventorySize) {
+        if (inventorySize < 0) {
+            throw invalid(ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE);
+        }
+        return new SlotChange(Type.SET_INVENTORY_SIZE, productSlotIndex, null, inventorySize);
+    }
+    //#endregion
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return slot the change applies to, -1 for {@link Type#ADD_PRODUCT}
+     */
+    public int getProductSlotIndex() {
+        return productSlotIndex;
+    }
+
+    /**
+     * @return price of {@link Type#ADD_PRODUCT} (may be null) and {@link Type#SET_PRICE} changes
+     */
+    public Money getPrice() {
+        return price;
+    }
+
+    /**
+     * @return inventory size of {@link Type#ADD_PRODUCT} and {@link Type#SET_INVENTORY_SIZE} changes
+     */
+    public long getInventorySize() {
+        return inventorySize;
+    }
+
+    /**
+     * Check {@param changes} against the slot state they will be applied to, in order, and resolve the slot each one
+     * applies to. Nothing is changed: slot managers call this before applying any change of a batch, so a batch that
+     * fails validation leaves the slots untouched.
+     *
+     * @param occupied occupied state of each slot, updated to the state after the batch
+     * @param priceSet whether each slot's product has a price, updated to the state after the batch
+     * @return slot each change applies to, indexed like {@param changes}
+     */
+    static int[] resolveSlots(@NotNull final List<SlotChange> changes, final boolean[] occupied, final boolean[] priceSet) {
+        int[] slots = new int[changes.size()];
+        for (int i = 0; i < slots.length; i++) {
+            SlotChange change = changes.get(i);
+            int slot = change.productSlotIndex;
+            if (change.type == Type.ADD_PRODUCT) {
+                slot = 0;
+                while (slot < occupied.length && occupied[slot]) {
+                    slot++;
+                }
+                if (slot == occupied.length) {
+                    throw invalid(ERROR_MESSAGE_NO_MORE_SLOT_FOR_PRODUCT);
+                }
+                occupied[slot] = true;
+                priceSet[slot] = change.price != null;
+            } else {
+                if (slot < 0 || slot >= occupied.length || !occupied[slot]) {
+                    throw invalid(ERROR_MESSAGE_INVALID_PRODUCT_SLOT);
+                }
+                if (change.type == Type.REMOVE_PRODUCT) {
+                    occupied[slot] = false;
+                } else if (change.type == Type.SET_PRICE) {
+                    priceSet[slot] = true;
+                } else if (!priceSet[slot]) {
+                    Logger.error(SlotChange.class, ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET);
+                    throw new IllegalStateException(ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET);
+                }
+            }
+            slots[i] = slot;
+        }
+        return slots;
+    }
+
+    private static IllegalArgumentException invalid(final String errorMessage) {
+        Logger.error(SlotChange.class, errorMessage);
+        return new IllegalArgumentException(errorMessage);
+    }
+
+    @Override
+    public String toString() {
+        return "SlotChange{" +
+                "type=" + type +
+                ", productSlotIndex=" + productSlotIndex +
+                ", price=" + price +
+                ", inventorySize=" + inventorySize +
+                '}';
+    }
+}
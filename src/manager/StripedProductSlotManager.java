@@ -0,0 +1,476 @@
+package manager;
+
+import com.sun.istack.internal.NotNull;
+import model.Money;
+import model.Product;
+import model.ProductSnapshot;
+import util.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+import static util.Constants.*;
+
+/**
+ * {@link ProductSlotManager} backed by a fixed array of slot records, each guarded by its own {@link StampedLock}.
+ * <p>
+ * Slot-level operations (price read/update, inventory read/update) only contend with operations on the same slot, so
+ * purchases from different slots proceed in parallel. Reads are optimistic and do not write to shared memory unless a
+ * concurrent write forces a retry under the read lock. Each slot record is padded to its own cache line, so updates of
+ * adjacent slots do not false-share.
+ * <p>
+ * As in {@link DefaultProductSlotManager}, slots are physical positions: {@link #addProductToSlot(Product)} fills the
+ * lowest empty slot and {@link #removeProductAtSlot(int)} empties a slot without shifting the products after it.
+ * Inventory updates are not logged, as they are on the purchase path.
+ */
+public class StripedProductSlotManager implements ProductSlotManager {
+
+    //#region class constants
+    private final ReentrantLock SLOT_ALLOCATION_LOCK = new ReentrantLock();
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final Slot[] productSlots;
+
+    //#region Class Constructor
+    private StripedProductSlotManager() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    public StripedProductSlotManager(final int productSlotSize) {
+        if (productSlotSize < 1) {
+            //Minimum of 1 product slot - no vending machine has NO product slot
+            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT_SIZE;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+        this.productSlots = new Slot[productSlotSize];
+        for (int i = 0; i < productSlotSize; i++) {
+            productSlots[i] = new Slot();
+        }
+        Logger.info(TAG, () -> "Product Slot Size = " + productSlotSize);
+    }
+    //#endregion
+
+    @Override
+    public void updateSlotProductInventorySize(final int productSlotIndex, final long newInventorySize) {
+        Slot slot = getSlot(productSlotIndex);
+        long stamp = slot.writeLock();
+        try {
+            assertOccupied(slot);
+            if (slot.price == null) {
+                String errorMsg = ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET;
+                Logger.error(TAG, errorMsg);
+                throw new IllegalStateException(errorMsg);
+            } else if (newInventorySize < 0) {
+                String errorMsg = ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE;
+                Logger.error(TAG, errorMsg);
+                throw new IllegalStateException(errorMsg);
+            }
+            slot.inventorySize = newInventorySize;
+        } finally {
+            slot.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long tryClaimInventory(final int productSlotIndex, final long count) {
+        if (count < 1) {
+            String errorMsg = ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE;
+            Logger.error(TAG, errorMsg);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        Slot slot = getSlot(productSlotIndex);
+
+        //Out of stock is answered without taking the lock
+        long stamp = slot.tryOptimisticRead();
+        if (slot.occupied && slot.price != null && slot.inventorySize < count && slot.validate(stamp)) {
+            return 0;
+        }
+
+        stamp = slot.writeLock();
+        try {
+            assertOccupied(slot);
+            if (slot.price == null) {
+                String errorMsg = ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET;
+                Logger.error(TAG, errorMsg);
+                throw new IllegalStateException(errorMsg);
+            }
+            if (slot.inventorySize < count) {
+                return 0;
+            }
+            slot.inventorySize -= count;
+            return slot.stocking;
+        } finally {
+            slot.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean tryReturnInventory(final int productSlotIndex, final long count, final long stocking) {
+        if (count < 1) {
+            String errorMsg = ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE;
+            Logger.error(TAG, errorMsg);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        Slot slot = getSlot(productSlotIndex);
+        long stamp = slot.writeLock();
+        try {
+            if (!slot.occupied || slot.stocking != stocking) {
+                return false;
+            }
+            slot.inventorySize += count;
+            return true;
+        } finally {
+            slot.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void incrementInventory(final int productSlotIndex, final long count) {
+        if (count < 1) {
+            String errorMsg = ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE;
+            Logger.error(TAG, errorMsg);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        Slot slot = getSlot(productSlotIndex);
+        long stamp = slot.writeLock();
+        try {
+            assertOccupied(slot);
+            slot.inventorySize += count;
+        } finally {
+            slot.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean isProductSlotOccupied(final int productSlotIndex) {
+        if (productSlotIndex < 0 || productSlotIndex >= productSlots.length) {
+            return false;
+        }
+        Slot slot = productSlots[productSlotIndex];
+        long stamp = slot.tryOptimisticRead();
+        boolean occupied = slot.occupied;
+        if (!slot.validate(stamp)) {
+            stamp = slot.readLock();
+            try {
+                occupied = slot.occupied;
+            } finally {
+                slot.unlockRead(stamp);
+            }
+        }
+        return occupied;
+    }
+
+    @Override
+    public ProductSnapshot getSlotProduct(final int productSlotIndex) {
+        if (productSlotIndex < 0 || productSlotIndex >= productSlots.length) {
+            return null;
+        }
+        Slot slot = productSlots[productSlotIndex];
+        long stamp = slot.tryOptimisticRead();
+        boolean occupied = slot.occupied;
+        Money price = slot.price;
+        long inventorySize = slot.inventorySize;
+        long stocking = slot.stocking;
+        if (!slot.validate(stamp)) {
+            stamp = slot.readLock();
+            try {
+                occupied = slot.occupied;
+                price = slot.price;
+                inventorySize = slot.inventorySize;
+                stocking = slot.stocking;
+            } finally {
+                slot.unlockRead(stamp);
+            }
+        }
+        return occupied ? ProductSnapshot.of(price, inventorySize, stocking) : null;
+    }
+
+    @Override
+    public long getSlotProductInventorySize(final int productSlotIndex) {
+        Slot slot = getSlot(productSlotIndex);
+        long stamp = slot.tryOptimisticRead();
+        boolean occupied = slot.occupied;
+        long inventorySize = slot.inventorySize;
+        if (!slot.validate(stamp)) {
+            stamp = slot.readLock();
+            try {
+                occupied = slot.occupied;
+                inventorySize = slot.inventorySize;
+            } finally {
+                slot.unlockRead(stamp);
+            }
+        }
+        if (!occupied) {
+            throwInvalidProductSlot();
+        }
+        return inventorySize;
+    }
+
+    @Override
+    public void setSlotProductPriceAmount(final int productSlotIndex, @NotNull final Money productPrice) {
+        Slot slot = getSlot(productSlotIndex);
+        long stamp = slot.writeLock();
+        try {
+            assertOccupied(slot);
+            validatePrice(productPrice);
+            slot.price = productPrice;
+        } finally {
+            slot.unlockWrite(stamp);
+        }
+        Logger.info(TAG, () -> String.format("Product price UPDATED in slot %d: %s", productSlotIndex, productPrice));
+    }
+
+    @Override
+    public Money getSlotProductPriceAmount(final int productSlotIndex) {
+        Slot slot = getSlot(productSlotIndex);
+        long stamp = slot.tryOptimisticRead();
+        boolean occupied = slot.occupied;
+        Money price = slot.price;
+        if (!slot.validate(stamp)) {
+            stamp = slot.readLock();
+            try {
+                occupied = slot.occupied;
+                price = slot.price;
+            } finally {
+                slot.unlockRead(stamp);
+            }
+        }
+        if (!occupied) {
+            throwInvalidProductSlot();
+        }
+        return price;
+    }
+
+    @Override
+    public int addProductToSlot(@NotNull final Product product) {
+        //Serializes slot allocation only; sales from occupied slots carry on
+        SLOT_ALLOCATION_LOCK.lock();
+        try {
+            for (int i = 0; i < productSlots.length; i++) {
+                Slot slot = productSlots[i];
+                if (slot.occupied) {
+                    continue;
+                }
+                long stamp = slot.writeLock();
+                try {
+                    slot.price = product.getPriceAmount();
+                    slot.inventorySize = product.getInventorySize();
+                    slot.occupied = true;
+                    slot.stocking++;
+                } finally {
+                    slot.unlockWrite(stamp);
+                }
+                int productSlotIndex = i;
+                Logger.info(TAG, () -> String.format("Product added to slot %d: %s", productSlotIndex, product));
+                return productSlotIndex;
+            }
+            String errorMessage = ERROR_MESSAGE_NO_MORE_SLOT_FOR_PRODUCT;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        } finally {
+            SLOT_ALLOCATION_LOCK.unlock();
+        }
+    }
+
+    @Override
+    public void removeProductAtSlot(final int productSlotIndex) {
+        Slot slot = getSlot(productSlotIndex);
+        SLOT_ALLOCATION_LOCK.lock();
+        try {
+            long stamp = slot.writeLock();
+            try {
+                assertOccupied(slot);
+                slot.occupied = false;
+                slot.price = null;
+                slot.inventorySize = 0;
+            } finally {
+                slot.unlockWrite(stamp);
+            }
+        } finally {
+            SLOT_ALLOCATION_LOCK.unlock();
+        }
+        Logger.info(TAG, () -> String.format("Product DELETED from slot %d", productSlotIndex));
+    }
+
+    /**
+     * The batch is validated under the slot allocation lock, then applied holding the write lock of every slot it
+     * touches (taken in ascending slot order), so readers see either none or all of its changes to those slots.
+     */
+    @Override
+    public int[] applySlotChanges(@NotNull final List<SlotChange> changes) {
+        SLOT_ALLOCATION_LOCK.lock();
+        try {
+            //Occupancy only changes under the allocation lock; prices are read under each slot's read lock
+            boolean[] occupied = new boolean[productSlots.length];
+            boolean[] priceSet = new boolean[productSlots.length];
+            for (int i = 0; i < productSlots.length; i++) {
+                Slot slot = productSlots[i];
+                occupied[i] = slot.occupied;
+                if (occupied[i]) {
+                    long stamp = slot.readLock();
+                    try {
+                        priceSet[i] = slot.price != null;
+                    } finally {
+                        slot.unlockRead(stamp);
+                    }
+                }
+            }
+            int[] slots = SlotChange.resolveSlots(changes, occupied, priceSet);
+
+            int[] lockedSlots = Arrays.stream(slots).distinct().sorted().toArray();
+            long[] stamps = new long[lockedSlots.length];
+            for (int i = 0; i < lockedSlots.length; i++) {
+                stamps[i] = productSlots[lockedSlots[i]].writeLock();
+            }
+            int[] addedSlots = new int[slots.length];
+            int addedSlotCount = 0;
+            try {
+                for (int i = 0; i < slots.length; i++) {
+                    SlotChange change = changes.get(i);
+                    Slot slot = productSlots[slots[i]];
+                    switch (change.getType()) {
+                        case ADD_PRODUCT:
+                            slot.price = change.getPrice();
+                            slot.inventorySize = change.getInventorySize();
+                            slot.occupied = true;
+                            slot.stocking++;
+                            addedSlots[addedSlotCount++] = slots[i];
+                            break;
+                        case REMOVE_PRODUCT:
+                            slot.occupied = false;
+                            slot.price = null;
+                            slot.inventorySize = 0;
+                            break;
+                        case SET_PRICE:
+                            slot.price = change.getPrice();
+                            break;
+                        default:
+                            slot.inventorySize = change.getInventorySize();
+                            break;
+                    }
+                }
+            } finally {
+                for (int i = lockedSlots.length - 1; i >= 0; i--) {
+                    productSlots[lockedSlots[i]].unlockWrite(stamps[i]);
+                }
+            }
+            return Arrays.copyOf(addedSlots, addedSlotCount);
+        } finally {
+            SLOT_ALLOCATION_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Takes the read lock of every slot, in ascending slot order as {@link #applySlotChanges(List)} does, so the copy
+     * is a point-in-time image of all the slots
+     */
+    @Override
+    public ProductSnapshot[] snapshotSlots() {
+        ProductSnapshot[] slots = new ProductSnapshot[productSlots.length];
+        long[] stamps = new long[productSlots.length];
+        for (int i = 0; i < productSlots.length; i++) {
+            stamps[i] = productSlots[i].readLock();
+        }
+        try {
+            for (int i = 0; i < productSlots.length; i++) {
+                Slot slot = productSlots[i];
+                slots[i] = slot.occupied ? ProductSnapshot.of(slot.price, slot.inventorySize, slot.stocking) : null;
+            }
+        } finally {
+            for (int i = productSlots.length - 1; i >= 0; i--) {
+                productSlots[i].unlockRead(stamps[i]);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Applied under the slot allocation lock, holding the write lock of every slot (taken in ascending slot order), so
+     * readers see either none or all of the restored slots
+     */
+    @Override
+    public void restoreSlots(@NotNull final ProductSnapshot[] slots) {
+        if (slots == null || slots.length != productSlots.length) {
+            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT_SIZE;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        SLOT_ALLOCATION_LOCK.lock();
+        try {
+            long[] stamps = new long[productSlots.length];
+            for (int i = 0; i < productSlots.length; i++) {
+                stamps[i] = productSlots[i].writeLock();
+            }
+            try {
+                for (int i = 0; i < productSlots.length; i++) {
+                    Slot slot = productSlots[i];
+                    slot.occupied = slots[i] != null;
+                    slot.price = slot.occupied ? slots[i].getPriceAmount() : null;
+                    slot.inventorySize = slot.occupied ? slots[i].getInventorySize() : 0;
+                    slot.stocking++;
+                }
+            } finally {
+                for (int i = productSlots.length - 1; i >= 0; i--) {
+                    productSlots[i].unlockWrite(stamps[i]);
+                }
+            }
+        } finally {
+            SLOT_ALLOCATION_LOCK.unlock();
+        }
+        Logger.info(TAG, () -> "Product slots restored: " + Arrays.toString(slots));
+    }
+
+    private Slot getSlot(final int productSlotIndex) {
+        if (productSlotIndex < 0 || productSlotIndex >= productSlots.length) {
+            throwInvalidProductSlot();
+        }
+        return productSlots[productSlotIndex];
+    }
+
+    private void assertOccupied(final Slot slot) {
+        if (!slot.occupied) {
+            throwInvalidProductSlot();
+        }
+    }
+
+    private void throwInvalidProductSlot() {
+        String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT;
+        Logger.error(TAG, errorMessage);
+        throw new IllegalArgumentException(errorMessage);
+    }
+
+    private void validatePrice(final Money productPrice) {
+        if (productPrice == null || productPrice.isNegative()) {
+            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_PRICE;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+
+    //#region slot record
+    //Superclass fields are laid out first, so the lock state and the slot fields are followed by a full cache line of
+    //padding that keeps them apart from the next slot record (slots are allocated back to back in the constructor)
+
+    private static class SlotFields extends StampedLock {
+        private static final long serialVersionUID = 1L;
+
+        Money price;
+        long inventorySize;
+        boolean occupied;
+        //Bumped whenever a product is put in the slot, so a product added after a removal has another stocking id
+        long stocking;
+    }
+
+    private static final class Slot extends SlotFields {
+        private static final long serialVersionUID = 1L;
+
+        @SuppressWarnings("unused")
+        private long p1, p2, p3, p4, p5, p6, p7, p8;
+    }
+    //#endregion
+}
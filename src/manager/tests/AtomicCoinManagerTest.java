@@ -0,0 +1,64 @@
+package manager.tests;
+
+import manager.AtomicCoinManager;
+import manager.CoinManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every {@link DefaultCoinManagerTest} case against {@link AtomicCoinManager}, plus its concurrency guarantees
+ */
+class AtomicCoinManagerTest extends DefaultCoinManagerTest {
+
+    @Override
+    CoinManager newCoinManager(final Collection<Double> allowedCoinList) {
+        return new AtomicCoinManager(allowedCoinList);
+    }
+
+    @Test
+    void balanceCoins_concurrentDebitsOfScarceCoin_countNeverGoesNegative() throws InterruptedException {
+        final int THREAD_COUNT = 8;
+        final int DEBITS_PER_THREAD = 50;
+        final int AVAILABLE_COUNT = 100;
+        CoinManager coinManager = newCoinManager(SUPPORTED_COINS);
+        coinManager.setCoinAvailableCount(0.1, AVAILABLE_COUNT);
+
+        AtomicInteger successfulDebits = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < DEBITS_PER_THREAD; i++) {
+                    try {
+                        coinManager.balanceCoins(Collections.singletonList(0.2), Collections.singletonList(0.1));
+                        successfulDebits.incrementAndGet();
+                    } catch (IllegalStateException ignored) {
+                        //Ran out of 0.1 coins
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(AVAILABLE_COUNT, successfulDebits.get());
+        Assertions.assertEquals(0, coinManager.getCoinAvailableCount(0.1));
+        Assertions.assertEquals(AVAILABLE_COUNT, coinManager.getCoinAvailableCount(0.2));
+    }
+}
@@ -0,0 +1,78 @@
+package manager.tests;
+
+import manager.ChangeabilityIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class ChangeabilityIndexTest {
+
+    private static final int[] DENOMINATIONS = {10, 20, 50, 100, 200};
+    private static final int CEILING = 1000;
+
+    @Test
+    void canMakeChange_emptyFloat_onlyZeroIsChangeable() {
+        ChangeabilityIndex index = new ChangeabilityIndex(DENOMINATIONS, CEILING);
+        Assertions.assertTrue(index.canMakeChange(0));
+        Assertions.assertFalse(index.canMakeChange(10));
+        Assertions.assertEquals(0, index.maxChangeableAmount());
+    }
+
+    @Test
+    void canMakeChange_boundedFloat_gapsAreReported() {
+        ChangeabilityIndex index = new ChangeabilityIndex(DENOMINATIONS, CEILING);
+        index.setCount(2, 1); //one 50
+        index.setCount(1, 1); //one 20
+        Assertions.assertTrue(index.canMakeChange(70));
+        Assertions.assertTrue(index.canMakeChange(50));
+        Assertions.assertFalse(index.canMakeChange(40));
+        Assertions.assertFalse(index.canMakeChange(60));
+        Assertions.assertEquals(70, index.maxChangeableAmount());
+
+        index.setCount(2, 0);
+        Assertions.assertFalse(index.canMakeChange(50));
+        Assertions.assertEquals(20, index.maxChangeableAmount());
+    }
+
+    @Test
+    void setCount_randomUpdates_matchesExhaustiveSearch() {
+        Random random = new Random(7);
+        ChangeabilityIndex index = new ChangeabilityIndex(DENOMINATIONS, CEILING);
+        int[] counts = new int[DENOMINATIONS.length];
+        for (int step = 0; step < 200; step++) {
+            int ordinal = random.nextInt(DENOMINATIONS.length);
+            counts[ordinal] = random.nextInt(8);
+            index.setCount(ordinal, counts[ordinal]);
+
+            boolean[] expected = reachableAmounts(counts);
+            int expectedMax = 0;
+            for (int amount = 0; amount <= CEILING; amount++) {
+                Assertions.assertEquals(expected[amount], index.canMakeChange(amount));
+                if (expected[amount]) {
+                    expectedMax = amount;
+                }
+            }
+            Assertions.assertEquals(expectedMax, index.maxChangeableAmount());
+        }
+    }
+
+    @Test
+    void canMakeChange_amountAboveCeiling_throwsIllegalArgumentException() {
+        ChangeabilityIndex index = new ChangeabilityIndex(DENOMINATIONS, CEILING);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.canMakeChange(CEILING + 1));
+    }
+
+    private static boolean[] reachableAmounts(final int[] counts) {
+        boolean[] reachable = new boolean[CEILING + 1];
+        reachable[0] = true;
+        for (int i = 0; i < DENOMINATIONS.length; i++) {
+            for (int c = 0; c < counts[i]; c++) {
+                for (int amount = CEILING; amount >= DENOMINATIONS[i]; amount--) {
+                    reachable[amount] |= reachable[amount - DENOMINATIONS[i]];
+                }
+            }
+        }
+        return reachable;
+    }
+}
@@ -0,0 +1,47 @@
+package manager.tests;
+
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import model.Money;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static util.Constants.ERROR_MESSAGE_COIN_NOT_SUPPORTED;
+
+class CoinCountsTest {
+
+    private final CoinDenominations coinDenominations = new CoinDenominations(Arrays.asList(0.1, 0.2, 0.5, 1.0));
+
+    @Test
+    void of_coinList_countsCoinsPerDenomination() {
+        CoinCounts coinCounts = CoinCounts.of(coinDenominations, Arrays.asList(0.5, 0.1, 0.5, 1.0));
+        Assertions.assertEquals(2, coinCounts.countOf(0.5));
+        Assertions.assertEquals(0, coinCounts.countOf(0.2));
+        Assertions.assertEquals(4, coinCounts.totalCoinCount());
+        Assertions.assertEquals(Money.of(2.1), coinCounts.totalValue());
+        Assertions.assertEquals(Arrays.asList(1.0, 0.5, 0.5, 0.1), coinCounts.toCoinList());
+    }
+
+    @Test
+    void of_coinListWithUnsupportedCoin_throwsIllegalArgumentException() {
+        Exception exception = null;
+        try {
+            CoinCounts.of(coinDenominations, Collections.singletonList(2.0));
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_COIN_NOT_SUPPORTED, exception.getLocalizedMessage());
+    }
+
+    @Test
+    void equals_sameCountsOverEqualDenominations_areEqual() {
+        CoinDenominations otherCoinDenominations = new CoinDenominations(Arrays.asList(1.0, 0.5, 0.2, 0.1));
+        Assertions.assertEquals(CoinCounts.of(coinDenominations, new int[]{1, 0, 2, 0}),
+                CoinCounts.of(otherCoinDenominations, Arrays.asList(0.1, 0.5, 0.5)));
+        Assertions.assertTrue(CoinCounts.none(coinDenominations).isEmpty());
+    }
+}
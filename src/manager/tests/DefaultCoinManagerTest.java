@@ -1,6 +1,13 @@
 package manager.tests;
 
+import manager.ChangeReservation;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import manager.CoinEscrow;
+import manager.ChangeStrategy;
+import manager.CoinManager;
 import manager.DefaultCoinManager;
+import model.Money;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,18 +16,24 @@ import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static util.Constants.*;
 import static util.NumbersUtil.getCountOfItem;
 
 class DefaultCoinManagerTest {
 
-    private final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
-    private DefaultCoinManager defaultCoinManager;
+    final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+    private CoinManager defaultCoinManager;
 
     @BeforeEach
     void setUp() {
-        defaultCoinManager = new DefaultCoinManager(SUPPORTED_COINS);
+        defaultCoinManager = newCoinManager(SUPPORTED_COINS);
+    }
+
+    CoinManager newCoinManager(final Collection<Double> allowedCoinList) {
+        return new DefaultCoinManager(allowedCoinList);
     }
 
     @Test
@@ -283,7 +296,7 @@ class DefaultCoinManagerTest {
         Assertions.assertEquals(Arrays.asList(1.0, 0.5, 0.5, 0.5), coinCombination);
 
         //Achieve {1.6=4, 0.4=1, 1.0=0, 0.1=2}
-        defaultCoinManager = new DefaultCoinManager(Arrays.asList(1.6, 0.4, 1.0, 0.1));
+        defaultCoinManager = newCoinManager(Arrays.asList(1.6, 0.4, 1.0, 0.1));
         defaultCoinManager.setCoinAvailableCount(1.6, 4);
         defaultCoinManager.setCoinAvailableCount(0.4, 1);
         defaultCoinManager.setCoinAvailableCount(0.1, 2);
@@ -297,7 +310,7 @@ class DefaultCoinManagerTest {
         Assertions.assertEquals(Arrays.asList(1.6, 0.1, 0.1, 0.1, 0.1), coinCombination);
 
         //Achieve {0.1=2, 0.4=3, 2.04=1, 0.06=1}
-        defaultCoinManager = new DefaultCoinManager(Arrays.asList(0.1, 0.4, 2.04, 0.06));
+        defaultCoinManager = newCoinManager(Arrays.asList(0.1, 0.4, 2.04, 0.06));
         defaultCoinManager.setCoinAvailableCount(0.1, 2);
         defaultCoinManager.setCoinAvailableCount(0.4, 3);
         defaultCoinManager.setCoinAvailableCount(2.04, 1);
@@ -321,7 +334,7 @@ class DefaultCoinManagerTest {
         Assertions.assertEquals(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, exception.getLocalizedMessage());
 
         //Achieve {0.1=2, 0.4=3, 2.04=1, 0.06=1}
-        defaultCoinManager = new DefaultCoinManager(Arrays.asList(0.1, 0.4, 2.04, 0.06));
+        defaultCoinManager = newCoinManager(Arrays.asList(0.1, 0.4, 2.04, 0.06));
         defaultCoinManager.setCoinAvailableCount(0.1, 2);
         defaultCoinManager.setCoinAvailableCount(0.4, 3);
         defaultCoinManager.setCoinAvailableCount(2.04, 1);
@@ -335,4 +348,277 @@ class DefaultCoinManagerTest {
         Assertions.assertTrue(exception instanceof IllegalStateException);
         Assertions.assertEquals(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, exception.getLocalizedMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPossibleCoinCombination_amountOnlyPayableWithoutHighestDenomination_returnsListOfCoinCombination() {
+        //Achieve {0.5=1, 0.2=3, 0.1=0, 1.0=0}
+        defaultCoinManager.setCoinAvailableCount(0.5, 1);
+        defaultCoinManager.setCoinAvailableCount(0.2, 3);
+        Collection<Double> coinCombination = defaultCoinManager.getPossibleCoinCombination(BigDecimal.valueOf(0.6));
+        Assertions.assertEquals(Arrays.asList(0.2, 0.2, 0.2), coinCombination);
+    }
+
+    @Test
+    void getPossibleCoinCombination_amountPayableInManyWays_returnsCombinationWithFewestCoins() {
+        //Achieve {0.5=2, 0.4=3, 0.1=5}
+        defaultCoinManager = newCoinManager(Arrays.asList(0.1, 0.4, 0.5));
+        defaultCoinManager.setCoinAvailableCount(0.1, 5);
+        defaultCoinManager.setCoinAvailableCount(0.4, 3);
+        defaultCoinManager.setCoinAvailableCount(0.5, 2);
+        Collection<Double> coinCombination = defaultCoinManager.getPossibleCoinCombination(BigDecimal.valueOf(0.8));
+        Assertions.assertEquals(Arrays.asList(0.4, 0.4), coinCombination);
+    }
+
+    @Test
+    void getPossibleCoinCombination_greedyStrategyOnAmountOnlyPayableWithoutHighestDenomination_throwsIllegalStateException() {
+        Exception exception = null;
+        defaultCoinManager = new DefaultCoinManager(SUPPORTED_COINS, ChangeStrategy.DEPLETE_HIGHEST_DENOMINATION_FIRST);
+        defaultCoinManager.setCoinAvailableCount(0.5, 1);
+        defaultCoinManager.setCoinAvailableCount(0.2, 3);
+        try {
+            defaultCoinManager.getPossibleCoinCombination(BigDecimal.valueOf(0.6));
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalStateException);
+        Assertions.assertEquals(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, exception.getLocalizedMessage());
+    }
+
+    @Test
+    void tryReserveChange_coinsCannotPayOutAmount_returnsNullAndCoinsAreUntouched() {
+        defaultCoinManager.setCoinAvailableCount(0.2, 2);
+        defaultCoinManager.setCoinAvailableCount(0.5, 1);
+
+        Assertions.assertNull(defaultCoinManager.tryReserveChange(Money.of(0.3), null));
+        Assertions.assertNull(defaultCoinManager.tryReserveChange(Money.of(2.0), null));
+        Assertions.assertEquals(2, defaultCoinManager.getCoinAvailableCount(0.2));
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(0.5));
+
+        ChangeReservation reservation = defaultCoinManager.tryReserveChange(Money.of(0.4), null);
+        Assertions.assertNotNull(reservation);
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.2));
+        defaultCoinManager.releaseChange(reservation);
+    }
+
+    @Test
+    void reserveChange_amountDeduceableFromAvailableCoin_reservedCoinsAreHeldOutUntilReleased() {
+        defaultCoinManager.setCoinAvailableCount(0.5, 2);
+        defaultCoinManager.setCoinAvailableCount(0.2, 1);
+
+        ChangeReservation reservation = defaultCoinManager.reserveChange(Money.of(0.7));
+        Assertions.assertEquals(Arrays.asList(0.5, 0.2), reservation.getCoins());
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.2));
+
+        defaultCoinManager.releaseChange(reservation);
+        Assertions.assertTrue(reservation.isReleased());
+        Assertions.assertEquals(2, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(0.2));
+    }
+
+    @Test
+    void commitChange_pendingReservation_creditCoinsAreAddedAndReservationCannotBeSettledAgain() {
+        Exception exception = null;
+        defaultCoinManager.setCoinAvailableCount(0.5, 1);
+
+        ChangeReservation reservation = defaultCoinManager.reserveChange(Money.of(0.5));
+        defaultCoinManager.commitChange(reservation, Collections.singletonList(1.0));
+        Assertions.assertTrue(reservation.isCommitted());
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(1.0));
+
+        try {
+            defaultCoinManager.releaseChange(reservation);
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalStateException);
+        Assertions.assertEquals(ERROR_MESSAGE_CHANGE_RESERVATION_ALREADY_SETTLED, exception.getLocalizedMessage());
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.5));
+    }
+
+    @Test
+    void commitChange_settlementFails_reservationStaysPendingAndCanBeReleased() {
+        boolean[] settlementFails = {false};
+        DefaultCoinManager coinManager = new DefaultCoinManager(SUPPORTED_COINS) {
+            @Override
+            public void balanceCoins(final CoinCounts creditCoinCounts, final CoinCounts debitCoinCounts) {
+                if (settlementFails[0]) {
+                    throw new IllegalStateException(ERROR_MESSAGE_TECHNICAL_ERROR);
+                }
+                super.balanceCoins(creditCoinCounts, debitCoinCounts);
+            }
+        };
+        coinManager.setCoinAvailableCount(0.5, 1);
+        ChangeReservation reservation = coinManager.reserveChange(Money.of(0.5));
+
+        settlementFails[0] = true;
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> coinManager.commitChange(reservation, Collections.singletonList(1.0)));
+        Assertions.assertTrue(reservation.isPending());
+
+        settlementFails[0] = false;
+        coinManager.releaseChange(reservation);
+        Assertions.assertTrue(reservation.isReleased());
+        Assertions.assertEquals(1, coinManager.getCoinAvailableCount(0.5));
+    }
+
+    @Test
+    void commitChange_reservationIssuedByAnotherCoinManager_throwsIllegalArgumentException() {
+        Exception exception = null;
+        CoinManager otherCoinManager = newCoinManager(SUPPORTED_COINS);
+        ChangeReservation reservation = otherCoinManager.reserveChange(Money.ZERO);
+        try {
+            defaultCoinManager.commitChange(reservation, Collections.singletonList(1.0));
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_INVALID_CHANGE_RESERVATION, exception.getLocalizedMessage());
+        Assertions.assertTrue(reservation.isPending());
+    }
+
+    @Test
+    void reserveChange_escrowHoldsTheMissingCoin_changeIsPaidFromEscrowAndEscrowNeverEntersAvailableCoins() {
+        defaultCoinManager.setCoinAvailableCount(0.2, 1);
+        CoinEscrow escrow = new CoinEscrow(Arrays.asList(1.0, 0.5));
+
+        ChangeReservation reservation = defaultCoinManager.reserveChange(Money.of(0.7), escrow);
+        Assertions.assertEquals(Arrays.asList(0.5, 0.2), reservation.getCoins());
+        Assertions.assertEquals(Collections.singletonList(0.5), reservation.getCoinsFromEscrow());
+        Assertions.assertEquals(Collections.singletonList(0.2), reservation.getCoinsFromAvailableCoins());
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.2));
+
+        defaultCoinManager.commitChange(reservation, escrow.getCoins());
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(1.0));
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.2));
+    }
+
+    @Test
+    void commitChange_escrowOfCoinCounts_settlesAgainstTheSameCounts() {
+        defaultCoinManager.setCoinAvailableCount(0.2, 1);
+        CoinCounts insertedCoins = defaultCoinManager.toCoinCounts(Arrays.asList(1.0, 0.5));
+        CoinEscrow escrow = new CoinEscrow(insertedCoins);
+
+        ChangeReservation reservation = defaultCoinManager.reserveChange(Money.of(0.7), escrow);
+        Assertions.assertTrue(escrow.holds(insertedCoins));
+        Assertions.assertFalse(escrow.holds(defaultCoinManager.toCoinCounts(Collections.singletonList(1.0))));
+        Assertions.assertEquals(Arrays.asList(1.0, 0.5), escrow.getCoins());
+
+        defaultCoinManager.commitChange(reservation, insertedCoins);
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(1.0));
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.2));
+    }
+
+    @Test
+    void releaseChange_escrowReservation_onlyCoinsFromAvailableCoinsAreReturned() {
+        defaultCoinManager.setCoinAvailableCount(0.2, 1);
+        CoinEscrow escrow = new CoinEscrow(Arrays.asList(1.0, 0.5));
+
+        ChangeReservation reservation = defaultCoinManager.reserveChange(Money.of(0.7), escrow);
+        defaultCoinManager.releaseChange(reservation);
+        Assertions.assertTrue(reservation.isReleased());
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(1.0));
+        Assertions.assertEquals(0, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(0.2));
+    }
+
+    @Test
+    void commitChange_creditCoinsDifferFromEscrow_throwsIllegalArgumentException() {
+        Exception exception = null;
+        CoinEscrow escrow = new CoinEscrow(Arrays.asList(1.0, 0.5));
+        ChangeReservation reservation = defaultCoinManager.reserveChange(Money.of(0.5), escrow);
+        try {
+            defaultCoinManager.commitChange(reservation, Collections.singletonList(1.0));
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_CREDIT_COINS_DO_NOT_MATCH_ESCROW, exception.getLocalizedMessage());
+        Assertions.assertTrue(reservation.isPending());
+    }
+
+    @Test
+    void canMakeChange_afterBalanceCoins_reflectsTheUpdatedCoins() {
+        defaultCoinManager.setCoinAvailableCount(0.5, 1);
+        defaultCoinManager.setCoinAvailableCount(0.2, 1);
+        Assertions.assertTrue(defaultCoinManager.canMakeChange(Money.of(0.7)));
+        Assertions.assertFalse(defaultCoinManager.canMakeChange(Money.of(0.4)));
+        Assertions.assertEquals(Money.of(0.7), defaultCoinManager.maxChangeableAmount());
+
+        defaultCoinManager.balanceCoins(Collections.singletonList(0.2), Collections.singletonList(0.5));
+        Assertions.assertTrue(defaultCoinManager.canMakeChange(Money.of(0.4)));
+        Assertions.assertFalse(defaultCoinManager.canMakeChange(Money.of(0.5)));
+        Assertions.assertEquals(Money.of(0.4), defaultCoinManager.maxChangeableAmount());
+
+        ChangeReservation reservation = defaultCoinManager.reserveChange(Money.of(0.2));
+        Assertions.assertFalse(defaultCoinManager.canMakeChange(Money.of(0.4)));
+        defaultCoinManager.releaseChange(reservation);
+        Assertions.assertTrue(defaultCoinManager.canMakeChange(Money.of(0.4)));
+    }
+
+    @Test
+    void canMakeChange_amountAboveChangeabilityCeiling_fallsBackToTheSolver() {
+        defaultCoinManager.setCoinAvailableCount(1.0, 60);
+        Assertions.assertTrue(defaultCoinManager.canMakeChange(Money.of(60.0)));
+        Assertions.assertFalse(defaultCoinManager.canMakeChange(Money.of(60.5)));
+    }
+
+    @Test
+    void balanceCoins_coinCounts_countsAreUpdatedPerDenomination() {
+        CoinDenominations coinDenominations = defaultCoinManager.getCoinDenominations();
+        defaultCoinManager.setCoinAvailableCount(1.0, 1000);
+
+        defaultCoinManager.balanceCoins(CoinCounts.of(coinDenominations, Arrays.asList(0.5, 0.5, 0.2)),
+                CoinCounts.of(coinDenominations, Collections.nCopies(999, 1.0)));
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(1.0));
+        Assertions.assertEquals(2, defaultCoinManager.getCoinAvailableCount(0.5));
+        Assertions.assertEquals(1, defaultCoinManager.getCoinAvailableCount(0.2));
+    }
+
+    @Test
+    void canMakeChange_amountBeyondTheIndexCeiling_answeredAgainstTheFloatValue() {
+        defaultCoinManager.setCoinAvailableCount(1.0, 60);
+        defaultCoinManager.setCoinAvailableCount(0.5, 1);
+
+        //The float holds 60.50, above the default index ceiling of 50.00
+        Assertions.assertTrue(defaultCoinManager.canMakeChange(Money.ofMinorUnits(6_050)));
+        Assertions.assertFalse(defaultCoinManager.canMakeChange(Money.ofMinorUnits(6_020)));
+        Assertions.assertFalse(defaultCoinManager.canMakeChange(Money.ofMinorUnits(6_100)));
+        Assertions.assertFalse(defaultCoinManager.canMakeChange(Money.ofMinorUnits(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void setCoinAvailableCounts_nullOrNegativeCount_throwsIllegalArgumentExceptionAndNothingIsSet() {
+        defaultCoinManager.setCoinAvailableCount(0.1, 4);
+        Map<Double, Integer> nullCount = new LinkedHashMap<>();
+        nullCount.put(0.1, 7);
+        nullCount.put(0.2, null);
+        Map<Double, Integer> negativeCount = new LinkedHashMap<>();
+        negativeCount.put(0.1, 7);
+        negativeCount.put(0.5, -1);
+
+        for (Map<Double, Integer> newAvailableCounts : Arrays.asList(nullCount, negativeCount)) {
+            IllegalArgumentException thrown = Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> defaultCoinManager.setCoinAvailableCounts(newAvailableCounts));
+            Assertions.assertEquals(ERROR_MESSAGE_INVALID_COIN_COUNT, thrown.getMessage());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> defaultCoinManager.setCoinAvailableCounts(Collections.singletonMap(null, 1)));
+        Assertions.assertEquals(4, defaultCoinManager.getCoinAvailableCount(0.1));
+    }
+
+    @Test
+    void getChangeCoinCounts_amountEqualsToTotalSumOfAvailableCoins_returnsCountsOfAllAvailableCoins() {
+        defaultCoinManager.setCoinAvailableCount(1.0, 1000);
+        defaultCoinManager.setCoinAvailableCount(0.1, 3);
+
+        CoinCounts changeCoins = defaultCoinManager.getChangeCoinCounts(Money.of(1000.3));
+        Assertions.assertEquals(1000, changeCoins.countOf(1.0));
+        Assertions.assertEquals(3, changeCoins.countOf(0.1));
+        Assertions.assertEquals(1003, changeCoins.totalCoinCount());
+    }
+}
@@ -1,12 +1,18 @@
 package manager.tests;
 
 import manager.DefaultProductSlotManager;
+import manager.SlotChange;
+import model.Money;
 import model.Product;
+import model.ProductSnapshot;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static util.Constants.*;
 
@@ -236,6 +242,24 @@ class DefaultProductSlotManagerTest {
         Assertions.assertEquals(-1, addedProductIndex);
     }
 
+    @Test
+    void removeProductAtSlot_removeMiddleSlot_otherSlotIdsAreStableAndSlotIsReused() {
+        int firstSlot = defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 1));
+        int secondSlot = defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 2));
+        int thirdSlot = defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.valueOf(5), 3));
+
+        defaultProductSlotManager.removeProductAtSlot(secondSlot);
+
+        Assertions.assertEquals(0, BigDecimal.ONE.compareTo(defaultProductSlotManager.getSlotProductPrice(firstSlot)));
+        Assertions.assertEquals(3, defaultProductSlotManager.getSlotProductInventorySize(thirdSlot));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> defaultProductSlotManager.getSlotProductInventorySize(secondSlot));
+
+        //The emptied slot is the next one filled
+        Assertions.assertEquals(secondSlot, defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 4)));
+        Assertions.assertEquals(3, defaultProductSlotManager.getSlotProductInventorySize(thirdSlot));
+    }
+
     @Test
     void updateProductSlot_updateProductWithProductWithNullPrice_throwsIllegalArgumentException() {
         Exception thrownException = null;
@@ -333,4 +357,130 @@ class DefaultProductSlotManagerTest {
         Assertions.assertEquals(addedProductIndex, defaultProductSlotManager.getIndexOfProductInSlot(product));
     }
 
-}
\ No newline at end of file
+    @Test
+    void tryDecrementInventory_enoughItemsInSlot_itemsAreTaken() {
+        Product product = new Product(BigDecimal.TEN, 3);
+        defaultProductSlotManager.addProductToSlot(product);
+        Assertions.assertTrue(defaultProductSlotManager.tryDecrementInventory(0, 2));
+        Assertions.assertEquals(1, defaultProductSlotManager.getSlotProductInventorySize(0));
+    }
+
+    @Test
+    void tryDecrementInventory_fewerItemsThanRequested_returnsFalseAndSlotIsUntouched() {
+        Product product = new Product(BigDecimal.TEN, 1);
+        defaultProductSlotManager.addProductToSlot(product);
+        Assertions.assertFalse(defaultProductSlotManager.tryDecrementInventory(0, 2));
+        Assertions.assertEquals(1, defaultProductSlotManager.getSlotProductInventorySize(0));
+    }
+
+    @Test
+    void incrementInventory_afterDecrement_itemIsPutBack() {
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 1));
+        Assertions.assertTrue(defaultProductSlotManager.tryDecrementInventory(0, 1));
+        defaultProductSlotManager.incrementInventory(0, 1);
+        Assertions.assertEquals(1, defaultProductSlotManager.getSlotProductInventorySize(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> defaultProductSlotManager.incrementInventory(0, 0));
+    }
+
+    @Test
+    void tryReturnInventory_productReplacedAfterClaim_itemsAreDropped() {
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 3));
+        long stocking = defaultProductSlotManager.tryClaimInventory(0, 1);
+        Assertions.assertNotEquals(0, stocking);
+        defaultProductSlotManager.setSlotProductPrice(0, BigDecimal.ONE);
+        Assertions.assertTrue(defaultProductSlotManager.tryReturnInventory(0, 1, stocking));
+        Assertions.assertEquals(3, defaultProductSlotManager.getSlotProductInventorySize(0));
+
+        stocking = defaultProductSlotManager.tryClaimInventory(0, 1);
+        defaultProductSlotManager.removeProductAtSlot(0);
+        Assertions.assertFalse(defaultProductSlotManager.tryReturnInventory(0, 1, stocking));
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 5));
+        Assertions.assertFalse(defaultProductSlotManager.tryReturnInventory(0, 1, stocking));
+        Assertions.assertEquals(5, defaultProductSlotManager.getSlotProductInventorySize(0));
+    }
+
+    @Test
+    void getProductAtSlot_returnedProductIsChanged_slotIsUnchanged() {
+        Product product = new Product(BigDecimal.TEN, 2);
+        defaultProductSlotManager.addProductToSlot(product);
+        product.setInventorySize(0);
+        defaultProductSlotManager.getProductAtSlot(0).setPrice(BigDecimal.ONE);
+
+        Assertions.assertEquals(2, defaultProductSlotManager.getSlotProductInventorySize(0));
+        Assertions.assertEquals(0, defaultProductSlotManager.getSlotProductPrice(0).compareTo(BigDecimal.TEN));
+    }
+
+    @Test
+    void tryDecrementInventory_concurrentRepricing_noDecrementIsLost() throws InterruptedException {
+        final int INVENTORY_SIZE = 10_000;
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.TEN, INVENTORY_SIZE));
+
+        Thread buyer = new Thread(() -> {
+            while (defaultProductSlotManager.tryDecrementInventory(0, 1)) {
+                //keep buying until the slot is empty
+            }
+        });
+        Thread maintainer = new Thread(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                defaultProductSlotManager.setSlotProductPriceAmount(0, Money.ofMinorUnits(100 + i));
+            }
+        });
+        buyer.start();
+        maintainer.start();
+        buyer.join();
+        maintainer.join();
+
+        Assertions.assertEquals(0, defaultProductSlotManager.getSlotProductInventorySize(0));
+        Assertions.assertEquals(Money.ofMinorUnits(1_099), defaultProductSlotManager.getSlotProductPriceAmount(0));
+    }
+
+    @Test
+    void restoreSlots_snapshotOfAnotherManager_restoresEverySlotAtItsIndex() {
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 3));
+        defaultProductSlotManager.addProductToSlot(new Product(null, 4));
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 5));
+        defaultProductSlotManager.removeProductAtSlot(1);
+
+        ProductSnapshot[] slots = defaultProductSlotManager.snapshotSlots();
+        DefaultProductSlotManager restoredProductSlotManager = new DefaultProductSlotManager(PRODUCT_SLOT_SIZE);
+        restoredProductSlotManager.restoreSlots(slots);
+
+        Assertions.assertEquals(PRODUCT_SLOT_SIZE, slots.length);
+        Assertions.assertEquals(3, restoredProductSlotManager.getSlotProductInventorySize(0));
+        Assertions.assertFalse(restoredProductSlotManager.isProductSlotOccupied(1));
+        Assertions.assertEquals(Money.ofMinorUnits(1_000), restoredProductSlotManager.getSlotProductPriceAmount(2));
+        //The gap is still the first free slot
+        Assertions.assertEquals(1, restoredProductSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 1)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> restoredProductSlotManager.restoreSlots(new ProductSnapshot[PRODUCT_SLOT_SIZE + 1]));
+    }
+
+    @Test
+    void applySlotChanges_concurrentReaders_neverSeeABatchHalfApplied() throws InterruptedException {
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 0));
+        defaultProductSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 0));
+
+        AtomicBoolean restocking = new AtomicBoolean(true);
+        AtomicReference<String> tornRead = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (restocking.get() && tornRead.get() == null) {
+                ProductSnapshot[] slots = defaultProductSlotManager.snapshotSlots();
+                //Every batch sets both slots to the same stock, with the price in pence equal to the stock
+                if (slots[0].getInventorySize() != slots[1].getInventorySize()
+                        || slots[0].getPriceAmount().getMinorUnits() != Math.max(100, slots[0].getInventorySize())) {
+                    tornRead.set(Arrays.toString(slots));
+                }
+            }
+        });
+        reader.start();
+        for (int i = 100; i < 20_100; i++) {
+            defaultProductSlotManager.applySlotChanges(Arrays.asList(
+                    SlotChange.setPrice(0, Money.ofMinorUnits(i)), SlotChange.setInventorySize(0, i),
+                    SlotChange.setPrice(1, Money.ofMinorUnits(i)), SlotChange.setInventorySize(1, i)));
+        }
+        restocking.set(false);
+        reader.join();
+
+        Assertions.assertNull(tornRead.get());
+    }
+}
@@ -0,0 +1,17 @@
+package manager.tests;
+
+import manager.CoinManager;
+import manager.IndexedCoinManager;
+
+import java.util.Collection;
+
+/**
+ * Runs every {@link DefaultCoinManagerTest} case against {@link IndexedCoinManager}
+ */
+class IndexedCoinManagerTest extends DefaultCoinManagerTest {
+
+    @Override
+    CoinManager newCoinManager(final Collection<Double> allowedCoinList) {
+        return new IndexedCoinManager(allowedCoinList);
+    }
+}
@@ -0,0 +1,117 @@
+package manager.tests;
+
+import manager.DefaultProductSlotManager;
+import manager.ProductCatalog;
+import model.Product;
+import model.Sku;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static util.Constants.*;
+
+class ProductCatalogTest {
+
+    private final int PRODUCT_SLOT_SIZE = 6;
+    private final Sku COLA = Sku.of("COLA-33", "Cola 33cl");
+    private final Sku WATER = Sku.of("WATER-50", "Water 50cl");
+
+    private DefaultProductSlotManager productSlotManager;
+    private ProductCatalog productCatalog;
+
+    @BeforeEach
+    void setUp() {
+        productSlotManager = new DefaultProductSlotManager(PRODUCT_SLOT_SIZE);
+        productCatalog = new ProductCatalog(productSlotManager);
+    }
+
+    @Test
+    void addProductToSlot_sameSkuInSeveralSlots_allSlotsAreIndexed() {
+        int firstSlot = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 3));
+        int waterSlot = productCatalog.addProductToSlot(WATER, new Product(BigDecimal.ONE, 3));
+        int secondSlot = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 3));
+
+        Assertions.assertArrayEquals(new int[]{firstSlot, secondSlot}, productCatalog.getSlotsOf(COLA.getCode()));
+        Assertions.assertArrayEquals(new int[]{waterSlot}, productCatalog.getSlotsOf(WATER.getCode()));
+        Assertions.assertEquals(COLA, productCatalog.getSkuAtSlot(secondSlot));
+        Assertions.assertEquals(0, productCatalog.getSlotsOf("UNKNOWN").length);
+    }
+
+    @Test
+    void removeProductAtSlot_lastSlotOfSku_skuIsNoLongerKnown() {
+        int firstSlot = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 3));
+        int secondSlot = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 3));
+
+        productCatalog.removeProductAtSlot(firstSlot);
+        Assertions.assertArrayEquals(new int[]{secondSlot}, productCatalog.getSlotsOf(COLA.getCode()));
+        Assertions.assertNull(productCatalog.getSkuAtSlot(firstSlot));
+
+        productCatalog.removeProductAtSlot(secondSlot);
+        Exception thrownException = null;
+        try {
+            productCatalog.pickSlot(COLA.getCode());
+        } catch (Exception ex) {
+            thrownException = ex;
+        }
+        Assertions.assertTrue(thrownException instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_UNKNOWN_PRODUCT_SKU, thrownException.getLocalizedMessage());
+    }
+
+    @Test
+    void pickSlot_oneSlotEmpty_picksTheSlotInStock() {
+        productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 0));
+        int stockedSlot = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 2));
+        productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 0));
+
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(stockedSlot, productCatalog.pickSlot(COLA.getCode()));
+        }
+    }
+
+    @Test
+    void pickSlot_slotRemovedBehindTheIndex_picksTheSlotStillStocked() {
+        int removedSlot = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 5));
+        int stockedSlot = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 2));
+        //As a concurrent removal seen by a pick that already read the index
+        productSlotManager.removeProductAtSlot(removedSlot);
+
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(stockedSlot, productCatalog.pickSlot(COLA.getCode()));
+        }
+    }
+
+    @Test
+    void pickSlot_everySlotEmpty_throwsIllegalStateException() {
+        productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 0));
+        productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 0));
+
+        Exception thrownException = null;
+        try {
+            productCatalog.pickSlot(COLA.getCode());
+        } catch (Exception ex) {
+            thrownException = ex;
+        }
+        Assertions.assertTrue(thrownException instanceof IllegalStateException);
+        Assertions.assertEquals(ERROR_MESSAGE_SLOT_OUT_OF_STOCK, thrownException.getLocalizedMessage());
+    }
+
+    @Test
+    void pickSlot_sellingFromPickedSlots_drainsSlotsEvenly() {
+        int[] slots = new int[4];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = productCatalog.addProductToSlot(COLA, new Product(BigDecimal.ONE, 10));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertTrue(productSlotManager.tryDecrementInventory(productCatalog.pickSlot(COLA.getCode()), 1));
+        }
+
+        //Every slot took part of the load and none was drained while the others stayed full
+        for (int slot : slots) {
+            long inventorySize = productSlotManager.getSlotProductInventorySize(slot);
+            Assertions.assertTrue(inventorySize >= 1 && inventorySize <= 9, "inventory " + inventorySize);
+        }
+    }
+}
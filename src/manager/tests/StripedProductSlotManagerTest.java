@@ -0,0 +1,279 @@
+package manager.tests;
+
+import manager.SlotChange;
+import manager.StripedProductSlotManager;
+import model.Money;
+import model.Product;
+import model.ProductSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static util.Constants.*;
+
+class StripedProductSlotManagerTest {
+
+    private final int PRODUCT_SLOT_SIZE = 5;
+    private StripedProductSlotManager productSlotManager;
+
+    @BeforeEach
+    void setUp() {
+        productSlotManager = new StripedProductSlotManager(PRODUCT_SLOT_SIZE);
+    }
+
+    @Test
+    void updateSlotProductInventorySize_emptySlot_throwsIllegalArgumentException() {
+        Exception thrownException = null;
+        try {
+            productSlotManager.updateSlotProductInventorySize(0, 3);
+        } catch (Exception ex) {
+            thrownException = ex;
+        }
+        Assertions.assertTrue(thrownException instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_INVALID_PRODUCT_SLOT, thrownException.getLocalizedMessage());
+    }
+
+    @Test
+    void updateSlotProductInventorySize_productPriceNotSet_throwsIllegalStateException() {
+        Exception thrownException = null;
+        productSlotManager.addProductToSlot(new Product(null, 5));
+        try {
+            productSlotManager.updateSlotProductInventorySize(0, 3);
+        } catch (Exception ex) {
+            thrownException = ex;
+        }
+        Assertions.assertTrue(thrownException instanceof IllegalStateException);
+        Assertions.assertEquals(ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET, thrownException.getLocalizedMessage());
+    }
+
+    @Test
+    void setSlotProductPrice_setSlotProductPriceToInvalidValue_throwsIllegalArgumentException() {
+        Exception thrownException = null;
+        productSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 5));
+        try {
+            productSlotManager.setSlotProductPrice(0, BigDecimal.valueOf(-1));
+        } catch (Exception ex) {
+            thrownException = ex;
+        }
+        Assertions.assertTrue(thrownException instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_INVALID_PRODUCT_PRICE, thrownException.getLocalizedMessage());
+        Assertions.assertEquals(Money.of(BigDecimal.TEN), productSlotManager.getSlotProductPriceAmount(0));
+    }
+
+    @Test
+    void addProductToSlot_maxProductSlotExceeded_throwsIllegalArgumentException() {
+        Exception thrownException = null;
+        for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+            productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, i));
+        }
+        try {
+            productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 1));
+        } catch (Exception ex) {
+            thrownException = ex;
+        }
+        Assertions.assertTrue(thrownException instanceof IllegalArgumentException);
+        Assertions.assertEquals(ERROR_MESSAGE_NO_MORE_SLOT_FOR_PRODUCT, thrownException.getLocalizedMessage());
+    }
+
+    @Test
+    void removeProductAtSlot_removeFromValidProductSlot_otherSlotsKeepTheirPosition() {
+        productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 1));
+        productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 2));
+        productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 3));
+
+        productSlotManager.removeProductAtSlot(1);
+        Assertions.assertEquals(3, productSlotManager.getSlotProductInventorySize(2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> productSlotManager.getSlotProductInventorySize(1));
+
+        //The emptied slot is the next one to be filled
+        productSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 7));
+        Assertions.assertEquals(7, productSlotManager.getSlotProductInventorySize(1));
+        Assertions.assertEquals(BigDecimal.TEN.setScale(CURRENCY_DECIMAL_PLACES), productSlotManager.getSlotProductPrice(1));
+    }
+
+    @Test
+    void getSlotProduct_emptyOrMissingSlot_returnsNull() {
+        productSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 3));
+
+        Assertions.assertEquals(ProductSnapshot.of(Money.of(BigDecimal.TEN), 3), productSlotManager.getSlotProduct(0));
+        Assertions.assertNull(productSlotManager.getSlotProduct(1));
+        Assertions.assertNull(productSlotManager.getSlotProduct(PRODUCT_SLOT_SIZE));
+        Assertions.assertNull(productSlotManager.getSlotProduct(-1));
+    }
+
+    @Test
+    void tryReturnInventory_productReplacedAfterClaim_itemsAreDropped() {
+        productSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 3));
+        long stocking = productSlotManager.tryClaimInventory(0, 1);
+        Assertions.assertNotEquals(0, stocking);
+        productSlotManager.setSlotProductPrice(0, BigDecimal.ONE);
+        Assertions.assertTrue(productSlotManager.tryReturnInventory(0, 1, stocking));
+        Assertions.assertEquals(3, productSlotManager.getSlotProductInventorySize(0));
+
+        stocking = productSlotManager.tryClaimInventory(0, 1);
+        productSlotManager.removeProductAtSlot(0);
+        Assertions.assertFalse(productSlotManager.tryReturnInventory(0, 1, stocking));
+        productSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 5));
+        Assertions.assertFalse(productSlotManager.tryReturnInventory(0, 1, stocking));
+        Assertions.assertEquals(5, productSlotManager.getSlotProductInventorySize(0));
+    }
+
+    @Test
+    void restoreSlots_snapshotOfAnotherManager_restoresEverySlotAtItsIndex() {
+        productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 3));
+        productSlotManager.addProductToSlot(new Product(null, 4));
+        productSlotManager.addProductToSlot(new Product(BigDecimal.TEN, 5));
+        productSlotManager.removeProductAtSlot(1);
+
+        ProductSnapshot[] slots = productSlotManager.snapshotSlots();
+        StripedProductSlotManager restoredProductSlotManager = new StripedProductSlotManager(PRODUCT_SLOT_SIZE);
+        restoredProductSlotManager.restoreSlots(slots);
+
+        Assertions.assertEquals(PRODUCT_SLOT_SIZE, slots.length);
+        Assertions.assertArrayEquals(slots, restoredProductSlotManager.snapshotSlots());
+        Assertions.assertEquals(3, restoredProductSlotManager.getSlotProductInventorySize(0));
+        Assertions.assertFalse(restoredProductSlotManager.isProductSlotOccupied(1));
+        Assertions.assertEquals(BigDecimal.TEN.setScale(CURRENCY_DECIMAL_PLACES), restoredProductSlotManager.getSlotProductPrice(2));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> restoredProductSlotManager.restoreSlots(new ProductSnapshot[PRODUCT_SLOT_SIZE + 1]));
+    }
+
+    @Test
+    void restoreSlots_itemsClaimedBeforeTheRestore_areNotReturned() {
+        productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, 3));
+        long stocking = productSlotManager.tryClaimInventory(0, 1);
+
+        productSlotManager.restoreSlots(productSlotManager.snapshotSlots());
+
+        Assertions.assertFalse(productSlotManager.tryReturnInventory(0, 1, stocking));
+        Assertions.assertEquals(2, productSlotManager.getSlotProductInventorySize(0));
+    }
+
+    @Test
+    void applySlotChanges_changesDependOnEarlierChanges_appliedInOrder() {
+        productSlotManager.addProductToSlot(new Product(null, 0));
+
+        int[] addedSlots = productSlotManager.applySlotChanges(Arrays.asList(
+                SlotChange.setPrice(0, Money.of(BigDecimal.ONE)),
+                SlotChange.setInventorySize(0, 7),
+                SlotChange.addProduct(new Product(BigDecimal.TEN, 3)),
+                SlotChange.removeProduct(1),
+                SlotChange.addProduct(new Product(BigDecimal.TEN, 4))
+        ));
+
+        Assertions.assertArrayEquals(new int[]{1, 1}, addedSlots);
+        Assertions.assertEquals(7, productSlotManager.getSlotProductInventorySize(0));
+        Assertions.assertEquals(4, productSlotManager.getSlotProductInventorySize(1));
+    }
+
+    @Test
+    void applySlotChanges_inventoryOfUnpricedSlot_nothingIsApplied() {
+        productSlotManager.addProductToSlot(new Product(null, 0));
+        Exception thrownException = null;
+        try {
+            productSlotManager.applySlotChanges(Arrays.asList(
+                    SlotChange.addProduct(new Product(BigDecimal.TEN, 3)),
+                    SlotChange.setInventorySize(0, 7)
+            ));
+        } catch (Exception ex) {
+            thrownException = ex;
+        }
+        Assertions.assertTrue(thrownException instanceof IllegalStateException);
+        Assertions.assertEquals(ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET, thrownException.getLocalizedMessage());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> productSlotManager.getSlotProductInventorySize(1));
+    }
+
+    @Test
+    void tryDecrementInventory_concurrentBuyersOnOneSlot_slotIsNeverOversold() throws InterruptedException {
+        final int INVENTORY_SIZE = 1_000;
+        final int THREAD_COUNT = 8;
+        productSlotManager.addProductToSlot(new Product(BigDecimal.ONE, INVENTORY_SIZE));
+
+        AtomicInteger itemsSold = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            Thread thread = new Thread(() -> {
+                while (productSlotManager.tryDecrementInventory(0, 1)) {
+                    itemsSold.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(INVENTORY_SIZE, itemsSold.get());
+        Assertions.assertEquals(0, productSlotManager.getSlotProductInventorySize(0));
+    }
+
+    @Test
+    void updateSlotProductInventorySize_concurrentDecrementsOnDistinctSlots_noUpdateIsLostAndThroughputIsReported() throws InterruptedException {
+        final int DECREMENTS_PER_THREAD = 200_000;
+        double singleThreadThroughput = 0;
+        double maxThreadThroughput = 0;
+        int maxThreadCount = Math.min(PRODUCT_SLOT_SIZE, Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+        for (int threadCount = 1; threadCount <= maxThreadCount; threadCount *= 2) {
+            StripedProductSlotManager slotManager = new StripedProductSlotManager(PRODUCT_SLOT_SIZE);
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                slotManager.addProductToSlot(new Product(BigDecimal.ONE, DECREMENTS_PER_THREAD));
+            }
+
+            double throughput = runDecrements(slotManager, threadCount, DECREMENTS_PER_THREAD);
+            Logger.info(String.format("%d thread(s): %.0f slot updates/s", threadCount, throughput));
+            if (threadCount == 1) {
+                singleThreadThroughput = throughput;
+            }
+            maxThreadThroughput = throughput;
+
+            for (int slot = 0; slot < threadCount; slot++) {
+                Assertions.assertEquals(0, slotManager.getSlotProductInventorySize(slot));
+            }
+        }
+
+        //Only meaningful with enough cores for the slots to actually run in parallel
+        if (Runtime.getRuntime().availableProcessors() >= 4) {
+            Assertions.assertTrue(maxThreadThroughput > singleThreadThroughput);
+        }
+    }
+
+    private static double runDecrements(final StripedProductSlotManager slotManager, final int threadCount,
+                                        final int decrementsPerThread) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int slot = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < decrementsPerThread; i++) {
+                    long inventorySize = slotManager.getSlotProductInventorySize(slot);
+                    slotManager.getSlotProductPriceAmount(slot);
+                    slotManager.updateSlotProductInventorySize(slot, inventorySize - 1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (double) threadCount * decrementsPerThread * 1_000_000_000L / elapsed;
+    }
+}
@@ -0,0 +1,151 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static util.Constants.CURRENCY_DECIMAL_PLACES;
+
+/**
+ * Immutable fixed-point amount of money held as a whole number of minor currency units (e.g. pence)
+ * <p>
+ * The vending machine works in a single fixed currency scale (number of minor-unit decimal places),
+ * {@link util.Constants#CURRENCY_DECIMAL_PLACES}: coin denominations, product prices and totals all use it. Amounts of
+ * another scale can be built, but never mix with the machine's amounts.
+ * Arithmetic and comparison are plain {@code long} operations; {@link BigDecimal} and {@code double} only appear
+ * in the adapters used at the edges of the machine.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0, CURRENCY_DECIMAL_PLACES);
+
+    private final long minorUnits;
+    private final int scale;
+
+    private Money(final long minorUnits, final int scale) {
+        this.minorUnits = minorUnits;
+        this.scale = scale;
+    }
+
+    //#region factories
+    public static Money ofMinorUnits(final long minorUnits) {
+        return ofMinorUnits(minorUnits, CURRENCY_DECIMAL_PLACES);
+    }
+
+    public static Money ofMinorUnits(final long minorUnits, final int scale) {
+        if (scale < 0 || scale > 18) {
+            throw new IllegalArgumentException("Invalid currency scale");
+        }
+        if (minorUnits == 0 && scale == CURRENCY_DECIMAL_PLACES) {
+            return ZERO;
+        }
+        return new Money(minorUnits, scale);
+    }
+
+    /**
+     * @param value amount to convert, rounded HALF_UP to the default currency scale
+     */
+    public static Money of(final BigDecimal value) {
+        return of(value, CURRENCY_DECIMAL_PLACES);
+    }
+
+    /**
+     * @param value amount to convert, rounded HALF_UP to {@param scale}
+     * @param scale number of minor-unit decimal places of the currency
+     */
+    public static Money of(final BigDecimal value, final int scale) {
+        if (value == null) {
+            throw new IllegalArgumentException("Provide correct input");
+        }
+        return ofMinorUnits(value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(), scale);
+    }
+
+    public static Money of(final double value) {
+        return of(BigDecimal.valueOf(value));
+    }
+
+    public static Money of(final double value, final int scale) {
+        return of(BigDecimal.valueOf(value), scale);
+    }
+    //#endregion
+
+    //#region accessors
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+    //#endregion
+
+    //#region arithmetic
+    public Money plus(final Money other) {
+        assertSameScale(other);
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits), scale);
+    }
+
+    public Money minus(final Money other) {
+        assertSameScale(other);
+        return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits), scale);
+    }
+
+    public Money times(final long multiplier) {
+        return ofMinorUnits(Math.multiplyExact(minorUnits, multiplier), scale);
+    }
+
+    @Override
+    public int compareTo(final Money other) {
+        assertSameScale(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+    //#endregion
+
+    //#region adapters
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    public double toDouble() {
+        return toBigDecimal().doubleValue();
+    }
+    //#endregion
+
+    private void assertSameScale(final Money other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Provide correct input");
+        }
+        if (other.scale != scale) {
+            throw new IllegalArgumentException("Currency scale mismatch");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return minorUnits == money.minorUnits && scale == money.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + scale;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -4,19 +4,35 @@ import java.math.BigDecimal;
 import java.util.Objects;
 
 public class Product {
-    private BigDecimal price;
+    private Money price;
     private long inventorySize;
 
     public Product(BigDecimal price, long inventorySize) {
+        this(price == null ? null : Money.of(price), inventorySize);
+    }
+
+    private Product(Money price, long inventorySize) {
         this.price = price;
         this.inventorySize = inventorySize;
     }
 
+    public static Product of(Money price, long inventorySize) {
+        return new Product(price, inventorySize);
+    }
+
     public BigDecimal getPrice() {
-        return price;
+        return price == null ? null : price.toBigDecimal();
     }
 
     public void setPrice(BigDecimal price) {
+        this.price = price == null ? null : Money.of(price);
+    }
+
+    public Money getPriceAmount() {
+        return price;
+    }
+
+    public void setPriceAmount(Money price) {
         this.price = price;
     }
 
@@ -33,7 +49,7 @@ public class Product {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Product product = (Product) o;
-        return inventorySize == product.inventorySize && price.equals(product.price);
+        return inventorySize == product.inventorySize && Objects.equals(price, product.price);
     }
 
     @Override
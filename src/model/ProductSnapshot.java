@@ -0,0 +1,113 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable state of the product held by a product slot.
+ * <p>
+ * Slot managers keep snapshots rather than {@link Product} instances, so a reader can never observe a half-applied
+ * update and a caller's {@link Product} is never shared with the vending machine. Changes produce a new snapshot.
+ * <p>
+ * Each new product gets its own stocking id, which the snapshots of its later changes keep: a slot whose stocking id
+ * is unchanged still holds the same product, however often its price or inventory changed. Stocking ids take no part
+ * in equality.
+ */
+public final class ProductSnapshot {
+
+    private static final AtomicLong STOCKING_SEQUENCE = new AtomicLong();
+
+    private final Money price;
+    private final long inventorySize;
+    private final long stocking;
+
+    private ProductSnapshot(final Money price, final long inventorySize, final long stocking) {
+        this.price = price;
+        this.inventorySize = inventorySize;
+        this.stocking = stocking;
+    }
+
+    public static ProductSnapshot of(final Money price, final long inventorySize) {
+        return new ProductSnapshot(price, inventorySize, STOCKING_SEQUENCE.incrementAndGet());
+    }
+
+    /**
+     * @param stocking stocking id the caller keeps for the product, e.g. a slot manager that does not store snapshots
+     */
+    public static ProductSnapshot of(final Money price, final long inventorySize, final long stocking) {
+        return new ProductSnapshot(price, inventorySize, stocking);
+    }
+
+    /**
+     * @return snapshot of the current state of {@param product}
+     */
+    public static ProductSnapshot of(final Product product) {
+        return of(product.getPriceAmount(), product.getInventorySize());
+    }
+
+    /**
+     * @return price of the product, null if the price has not been set
+     */
+    public Money getPriceAmount() {
+        return price;
+    }
+
+    public BigDecimal getPrice() {
+        return price == null ? null : price.toBigDecimal();
+    }
+
+    public long getInventorySize() {
+        return inventorySize;
+    }
+
+    /**
+     * @return stocking id of the product, at least 1
+     */
+    public long getStocking() {
+        return stocking;
+    }
+
+    public ProductSnapshot withPriceAmount(final Money newPrice) {
+        return Objects.equals(price, newPrice) ? this : new ProductSnapshot(newPrice, inventorySize, stocking);
+    }
+
+    public ProductSnapshot withInventorySize(final long newInventorySize) {
+        return inventorySize == newInventorySize ? this : new ProductSnapshot(price, newInventorySize, stocking);
+    }
+
+    /**
+     * @return a new, caller-owned {@link Product} holding this state
+     */
+    public Product toProduct() {
+        return Product.of(price, inventorySize);
+    }
+
+    /**
+     * @return true if {@param product} currently holds this state
+     */
+    public boolean matches(final Product product) {
+        return product != null && inventorySize == product.getInventorySize() && Objects.equals(price, product.getPriceAmount());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductSnapshot that = (ProductSnapshot) o;
+        return inventorySize == that.inventorySize && Objects.equals(price, that.price);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(price, inventorySize);
+    }
+
+    @Override
+    public String toString() {
+        return "Product{" +
+                "price=" + price +
+                ", inventorySize=" + inventorySize +
+                '}';
+    }
+}
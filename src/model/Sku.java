@@ -0,0 +1,59 @@
+package model;
+
+import java.util.Objects;
+
+/**
+ * Identity of a product in the catalog (stock keeping unit): the same SKU may be stocked in several product slots.
+ * <p>
+ * Two SKUs are equal if their codes are equal; the name is descriptive only.
+ */
+public final class Sku {
+
+    private final String code;
+    private final String name;
+
+    private Sku(final String code, final String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    /**
+     * @param code unique, non-blank code of the product
+     * @param name display name of the product, may be null
+     */
+    public static Sku of(final String code, final String name) {
+        if (code == null || code.trim().isEmpty()) {
+            throw new IllegalArgumentException("SKU code is required");
+        }
+        return new Sku(code, name);
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Sku sku = (Sku) o;
+        return code.equals(sku.code);
+    }
+
+    @Override
+    public int hashCode() {
+        return code.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Sku{" +
+                "code=" + code +
+                ", name=" + Objects.toString(name) +
+                '}';
+    }
+}
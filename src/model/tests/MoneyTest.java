@@ -0,0 +1,46 @@
+package model.tests;
+
+import model.Money;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class MoneyTest {
+
+    @Test
+    void of_doubleValue_isHeldAsExactMinorUnits() {
+        Assertions.assertEquals(30, Money.of(0.1).plus(Money.of(0.2)).getMinorUnits());
+        Assertions.assertEquals(Money.of(0.3), Money.of(0.1).plus(Money.of(0.2)));
+    }
+
+    @Test
+    void of_bigDecimalWithMoreDecimalPlacesThanScale_isRoundedHalfUp() {
+        Assertions.assertEquals(101, Money.of(new BigDecimal("1.005")).getMinorUnits());
+        Assertions.assertEquals(1005, Money.of(new BigDecimal("1.005"), 3).getMinorUnits());
+    }
+
+    @Test
+    void toBigDecimal_returnsValueAtCurrencyScale() {
+        Assertions.assertEquals(new BigDecimal("12.90"), Money.ofMinorUnits(1290).toBigDecimal());
+        Assertions.assertEquals(0, BigDecimal.valueOf(12.9).compareTo(Money.of(12.9).toBigDecimal()));
+    }
+
+    @Test
+    void plus_amountsOfDifferentScale_throwsIllegalArgumentException() {
+        Exception exception = null;
+        try {
+            Money.ofMinorUnits(100, 2).plus(Money.ofMinorUnits(100, 3));
+        } catch (Exception ex) {
+            exception = ex;
+        }
+        Assertions.assertTrue(exception instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void compareTo_comparesMinorUnits() {
+        Assertions.assertTrue(Money.of(2.0).compareTo(Money.of(1.99)) > 0);
+        Assertions.assertEquals(0, Money.of(2.0).compareTo(Money.ofMinorUnits(200)));
+        Assertions.assertTrue(Money.of(2.0).minus(Money.of(2.5)).isNegative());
+    }
+}
@@ -0,0 +1,49 @@
+package operation;
+
+import util.Logger;
+
+import static util.Constants.ERROR_MESSAGE_INVALID_PURCHASE_QUANTITY;
+
+/**
+ * One line of a multi-item purchase (see {@link ConsumerOperation#buyProducts(java.util.List, java.util.Collection)}):
+ * a number of items taken from one product slot
+ */
+public final class BasketItem {
+
+    private final int productSlotId;
+    private final long quantity;
+
+    private BasketItem(final int productSlotId, final long quantity) {
+        this.productSlotId = productSlotId;
+        this.quantity = quantity;
+    }
+
+    /**
+     * @param productSlotId identifier of the slot of the product
+     * @param quantity      number of items to take from the slot, at least 1
+     */
+    public static BasketItem of(final int productSlotId, final long quantity) {
+        if (quantity < 1) {
+            String errorMessage = ERROR_MESSAGE_INVALID_PURCHASE_QUANTITY;
+            Logger.error(BasketItem.class, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return new BasketItem(productSlotId, quantity);
+    }
+
+    public int getProductSlotId() {
+        return productSlotId;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "BasketItem{" +
+                "productSlotId=" + productSlotId +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
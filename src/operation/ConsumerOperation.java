@@ -1,7 +1,11 @@
 package operation;
 
+import manager.CoinCounts;
+import manager.CoinDenominations;
+
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Contract for the component that performs consumer-related operations
@@ -23,4 +27,64 @@ public interface ConsumerOperation {
      * @return list of coin(s) combination of the change the customer is entitled to after deducting the product price from the sum of coins in {@param coinCollection}
      */
     Collection<Double> buyProduct(final int productSlotId, final Collection<Double> coinCollection);
+
+    /**
+     * Process customer product purchase request, with the coins counted per denomination
+     *
+     * @param productSlotId identifier of the slot of the product to purchase
+     * @param coinCounts    number of coins per denomination submitted by the customer to purchase the product
+     * @return number of coins per denomination of the change the customer is entitled to
+     */
+    CoinCounts buyProductWithCoinCounts(final int productSlotId, final CoinCounts coinCounts);
+
+    /**
+     * Process customer product purchase request without raising an exception when the purchase is turned down
+     * (e.g. out of stock, not enough money, no change): {@link #buyProductWithCoinCounts(int, CoinCounts)} is this
+     * method plus an exception for a {@link PurchaseResult.Rejection}
+     *
+     * @param productSlotId identifier of the slot of the product to purchase
+     * @param coinCounts    number of coins per denomination submitted by the customer to purchase the product
+     * @return the change, or the reason the purchase was turned down
+     */
+    PurchaseResult tryBuyProduct(final int productSlotId, final CoinCounts coinCounts);
+
+    /**
+     * Process customer purchase request for several items at once (e.g. a kiosk basket), paid with one set of coins.
+     * The items are all taken or none is, and the change is worked out and paid once for the whole basket.
+     *
+     * @param basketItems    slot(s) and number of items to purchase; a slot listed more than once is bought from once,
+     *                       for the total quantity
+     * @param coinCollection coins/money submitted by the customer to purchase the items
+     * @return list of coin(s) combination of the change the customer is entitled to after deducting the total price of
+     * {@param basketItems} from the sum of coins in {@param coinCollection}
+     */
+    Collection<Double> buyProducts(final List<BasketItem> basketItems, final Collection<Double> coinCollection);
+
+    /**
+     * Exception-free variant of {@link #buyProducts(List, Collection)}, see {@link #tryBuyProduct(int, CoinCounts)}
+     *
+     * @param basketItems slot(s) and number of items to purchase
+     * @param coinCounts  number of coins per denomination submitted by the customer to purchase the items
+     * @return the change, or the reason the purchase was turned down
+     */
+    PurchaseResult tryBuyProducts(final List<BasketItem> basketItems, final CoinCounts coinCounts);
+
+    /**
+     * Start a purchase whose coins are inserted one at a time
+     */
+    PurchaseSession beginSession();
+
+    /**
+     * Process customer purchase request for a product identified by SKU, sold from one of the slots stocking it
+     *
+     * @param skuCode        code of the product to purchase
+     * @param coinCollection coins/money submitted by the customer to purchase the product
+     * @return list of coin(s) combination of the change the customer is entitled to
+     */
+    Collection<Double> buyBySku(final String skuCode, final Collection<Double> coinCollection);
+
+    /**
+     * @return the coin denomination(s) the vending machine accepts, used to build {@link CoinCounts}
+     */
+    CoinDenominations getCoinDenominations();
 }
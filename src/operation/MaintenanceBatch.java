@@ -0,0 +1,108 @@
+package operation;
+
+import com.sun.istack.internal.NotNull;
+import manager.SlotChange;
+import model.Money;
+import model.Product;
+import util.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static util.Constants.*;
+
+/**
+ * Changes of one maintenance visit (restock, repricing, coin refill), applied together with
+ * {@link MaintenanceOperation#applyMaintenanceBatch(MaintenanceBatch)}.
+ * <p>
+ * Slot changes are applied in the order they were added to the {@link Builder}. A coin count set more than once keeps
+ * the last count.
+ */
+public final class MaintenanceBatch {
+
+    private final List<SlotChange> slotChanges;
+    private final Map<Double, Integer> coinAvailableCounts;
+
+    private MaintenanceBatch(final Builder builder) {
+        this.slotChanges = Collections.unmodifiableList(new ArrayList<>(builder.slotChanges));
+        this.coinAvailableCounts = Collections.unmodifiableMap(new LinkedHashMap<>(builder.coinAvailableCounts));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<SlotChange> getSlotChanges() {
+        return slotChanges;
+    }
+
+    public Map<Double, Integer> getCoinAvailableCounts() {
+        return coinAvailableCounts;
+    }
+
+    public boolean isEmpty() {
+        return slotChanges.isEmpty() && coinAvailableCounts.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "MaintenanceBatch{" +
+                "slotChanges=" + slotChanges.size() +
+                ", coinAvailableCounts=" + coinAvailableCounts +
+                '}';
+    }
+
+    /**
+     * Collects the changes of a {@link MaintenanceBatch}. Each change is checked on its own as it is added; checks
+     * against the vending machine state happen when the batch is applied.
+     */
+    public static final class Builder {
+
+        private final List<SlotChange> slotChanges = new ArrayList<>();
+        private final Map<Double, Integer> coinAvailableCounts = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Add a product to the next available slot
+         */
+        public Builder addProduct(final BigDecimal price, final long inventorySize) {
+            slotChanges.add(SlotChange.addProduct(new Product(price, inventorySize)));
+            return this;
+        }
+
+        public Builder removeProduct(final int productSlotId) {
+            slotChanges.add(SlotChange.removeProduct(productSlotId));
+            return this;
+        }
+
+        public Builder setProductPrice(final int productSlotId, @NotNull final BigDecimal productPrice) {
+            slotChanges.add(SlotChange.setPrice(productSlotId, productPrice == null ? null : Money.of(productPrice)));
+            return this;
+        }
+
+        public Builder setProductInventorySize(final int productSlotId, final long newInventorySize) {
+            slotChanges.add(SlotChange.setInventorySize(productSlotId, newInventorySize));
+            return this;
+        }
+
+        public Builder setCoinAvailableCount(final double coinValue, final int newAvailableCount) {
+            if (newAvailableCount < 0) {
+                String errorMessage = ERROR_MESSAGE_COIN_COUNT_CANNOT_GO_TO_NEGATIVE;
+                Logger.error(getClass(), errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+            coinAvailableCounts.put(coinValue, newAvailableCount);
+            return this;
+        }
+
+        public MaintenanceBatch build() {
+            return new MaintenanceBatch(this);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package operation;
 
 import com.sun.istack.internal.NotNull;
+import model.Sku;
 
 import java.math.BigDecimal;
 
@@ -13,11 +14,24 @@ public interface MaintenanceOperation {
      *
      * @param price price of the product
      * @param inventorySize available count of the product item
+     *
+     * @return slot id of the added product; it stays valid until the product is removed
      * */
-    void addProductToSlot(final BigDecimal price, final int inventorySize);
+    int addProductToSlot(final BigDecimal price, final int inventorySize);
 
     /**
-     * Remove product from the product slot
+     * Add a catalogued product to the next available slot in the vending machine. A SKU may be added to several slots.
+     *
+     * @param sku identity of the product
+     * @param price price of the product
+     * @param inventorySize available count of the product item
+     *
+     * @return slot id of the added product
+     * */
+    int addProductToSlot(@NotNull final Sku sku, final BigDecimal price, final int inventorySize);
+
+    /**
+     * Remove product from the product slot. Other product slot ids are not affected.
      *
      * @param productSlotId position of product to remove
      * */
@@ -70,4 +84,14 @@ public interface MaintenanceOperation {
      * @return available count of {@param coinValue}
      */
     long getCoinAvailableCount(final double coinValue);
+
+    /**
+     * Apply all the changes of a maintenance visit. The whole batch is validated before anything is changed; slot
+     * changes are applied as one step of the product slot manager and coin counts as one step of the coin manager.
+     *
+     * @param maintenanceBatch changes to apply
+     *
+     * @return slot id of each product added by the batch, in order
+     * */
+    int[] applyMaintenanceBatch(@NotNull final MaintenanceBatch maintenanceBatch);
 }
@@ -0,0 +1,143 @@
+package operation;
+
+import manager.CoinCounts;
+
+import static util.Constants.*;
+
+/**
+ * Outcome of {@link ConsumerOperation#tryBuyProduct(int, CoinCounts)} and
+ * {@link ConsumerOperation#tryBuyProducts(java.util.List, CoinCounts)}: either {@link Success} with the change, or
+ * {@link Rejection} with the {@link Reason} the purchase was turned down.
+ * <p>
+ * The two subclasses are the only ones (the constructor is private), so a result is always one or the other.
+ * Rejections are preallocated, one per reason: turning a purchase down allocates nothing.
+ */
+public abstract class PurchaseResult {
+
+    /**
+     * Why a purchase was turned down. A rejected purchase leaves the product slots and the coins as they were.
+     */
+    public enum Reason {
+        COIN_REQUIRED(ERROR_MESSAGE_COIN_IS_REQUIRED_FOR_PURCHASE_OPERATION, true),
+        PRODUCT_REQUIRED(ERROR_MESSAGE_PRODUCT_IS_REQUIRED_FOR_PURCHASE_OPERATION, true),
+        COIN_NOT_SUPPORTED(ERROR_MESSAGE_COIN_NOT_SUPPORTED, true),
+        INVALID_PRODUCT_SLOT(ERROR_MESSAGE_INVALID_PRODUCT_SLOT, true),
+        OUT_OF_STOCK(ERROR_MESSAGE_SLOT_OUT_OF_STOCK, false),
+        PRICE_NOT_SET(ERROR_MESSAGE_TECHNICAL_ERROR, false),
+        INSUFFICIENT_MONEY(ERROR_MESSAGE_PRODUCT_PRICE_MORE_THAN_CUSTOMER_MONEY, true),
+        NO_CHANGE(ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE, false),
+        CANCELLED(ERROR_MESSAGE_PURCHASE_CANCELLED, false);
+
+        private final String errorMessage;
+        private final boolean invalidRequest;
+
+        Reason(final String errorMessage, final boolean invalidRequest) {
+            this.errorMessage = errorMessage;
+            this.invalidRequest = invalidRequest;
+        }
+
+        /**
+         * @return message of the exception the throwing purchase methods raise for this reason
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        /**
+         * @return true if the request itself is at fault ({@link IllegalArgumentException} in the throwing purchase
+         * methods), false if the machine state is ({@link IllegalStateException})
+         */
+        public boolean isInvalidRequest() {
+            return invalidRequest;
+        }
+    }
+
+    private static final Rejection[] REJECTIONS = new Rejection[Reason.values().length];
+
+    static {
+        for (Reason reason : Reason.values()) {
+            REJECTIONS[reason.ordinal()] = new Rejection(reason);
+        }
+    }
+
+    private PurchaseResult() {
+    }
+
+    public static PurchaseResult success(final CoinCounts change) {
+        return new Success(change);
+    }
+
+    public static PurchaseResult rejected(final Reason reason) {
+        return REJECTIONS[reason.ordinal()];
+    }
+
+    public abstract boolean isSuccessful();
+
+    /**
+     * @return change the customer is entitled to, null if the purchase was rejected
+     */
+    public abstract CoinCounts getChange();
+
+    /**
+     * @return why the purchase was rejected, null if it succeeded
+     */
+    public abstract Reason getReason();
+
+    public static final class Success extends PurchaseResult {
+
+        private final CoinCounts change;
+
+        private Success(final CoinCounts change) {
+            this.change = change;
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return true;
+        }
+
+        @Override
+        public CoinCounts getChange() {
+            return change;
+        }
+
+        @Override
+        public Reason getReason() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "Success{change=" + change + '}';
+        }
+    }
+
+    public static final class Rejection extends PurchaseResult {
+
+        private final Reason reason;
+
+        private Rejection(final Reason reason) {
+            this.reason = reason;
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return false;
+        }
+
+        @Override
+        public CoinCounts getChange() {
+            return null;
+        }
+
+        @Override
+        public Reason getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Rejection{reason=" + reason + '}';
+        }
+    }
+}
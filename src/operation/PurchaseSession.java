@@ -0,0 +1,53 @@
+package operation;
+
+import manager.CoinCounts;
+import model.Money;
+
+/**
+ * Purchase built up the way a coin panel sees it: coins are inserted one at a time, then a product is selected.
+ * <p>
+ * Each coin is checked as it is inserted, and the session keeps the running total, so selecting the product only has
+ * to take the item and settle the coins. A session belongs to one customer at a time and is not thread-safe.
+ */
+public interface PurchaseSession {
+
+    /**
+     * Insert one coin
+     *
+     * @param coinValue value of the coin
+     * @return true if the coin was accepted, false if it is not supported (and goes back to the customer)
+     * @throws IllegalStateException if the session is closed
+     */
+    boolean insertCoin(final double coinValue);
+
+    /**
+     * @return value of the coin(s) inserted so far
+     */
+    Money getInsertedAmount();
+
+    /**
+     * Check, without taking anything, whether selecting {@param productSlotId} now would succeed as far as money goes:
+     * the inserted amount covers the price and the available coin(s) can pay the change out exactly. Meant to be asked
+     * after each coin, e.g. to light up the products the customer can already buy.
+     */
+    boolean canBuy(final int productSlotId);
+
+    /**
+     * Purchase the product at {@param productSlotId} with the inserted coin(s). A successful purchase closes the
+     * session; a rejected one leaves it open, so the customer can insert more coins, select again or cancel.
+     *
+     * @return the change, or the reason the purchase was turned down
+     * @throws IllegalStateException if the session is closed
+     */
+    PurchaseResult select(final int productSlotId);
+
+    /**
+     * Close the session without a purchase
+     *
+     * @return the inserted coin(s), to hand back to the customer
+     * @throws IllegalStateException if the session is closed
+     */
+    CoinCounts cancel();
+
+    boolean isOpen();
+}
@@ -0,0 +1,23 @@
+package persistence;
+
+/**
+ * When a {@link Journal} record is safe from a crash, relative to the operation that wrote it returning
+ */
+public enum Durability {
+    /**
+     * The operation returns once its record is forced to the storage device. Concurrent operations share one force
+     * (group commit): the records appended while a force is in progress are forced together by the next one.
+     */
+    SYNC,
+    /**
+     * The operation returns as soon as its record is queued; the queued records are written and forced together at
+     * every group commit interval. A crash loses at most the records of the last interval.
+     */
+    BATCHED,
+    /**
+     * The operation returns as soon as its record is queued; records are written at every group commit interval but
+     * only forced when the journal rolls to a new segment or is closed. A process crash loses nothing written, a
+     * power loss may lose what the operating system had not flushed yet.
+     */
+    ASYNC
+}
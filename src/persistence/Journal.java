@@ -0,0 +1,499 @@
+package persistence;
+
+import com.sun.istack.internal.NotNull;
+import manager.CoinDenominations;
+import util.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static util.Constants.*;
+
+/**
+ * Append-only write-ahead journal of the machine state changes, kept as a directory of segment files (see
+ * {@link JournalSegment} for the format).
+ * <p>
+ * {@link #append(JournalEntry)} copies the encoded record into an in-memory batch under a short lock and assigns its
+ * sequence; it never touches the file. One writer thread swaps the batch for an empty one, frames the records (CRCs
+ * are computed there, off the callers' path), writes the whole batch with one {@link FileChannel#write(ByteBuffer)} and
+ * forces it as the {@link Durability} requires. Every record appended while a batch is being written and forced goes
+ * into the next batch, so concurrent {@link Durability#SYNC} callers share one force (group commit).
+ * <p>
+ * If the journal cannot be written, or the writer stops on any other failure, the failure is kept: every later append
+ * or wait throws an {@link IllegalStateException}, so no change is acknowledged that would be lost.
+ */
+public final class Journal implements AutoCloseable {
+
+    //#region class constants
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_GROUP_COMMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int INITIAL_BATCH_CAPACITY = 64 * 1024;
+    //Appenders wait for the writer beyond this many pending bytes
+    private static final int MAX_PENDING_BYTES = 8 * 1024 * 1024;
+    private final Class TAG = this.getClass();
+    //#end region
+
+    //#region Class Variables
+    private final Path directory;
+    private final CoinDenominations coinDenominations;
+    private final Durability durability;
+    private final long segmentSize;
+    private final long groupCommitIntervalNanos;
+    private final Thread writer;
+    //#endregion
+
+    //#region append state (guarded by appendLock)
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition writeRequested = appendLock.newCondition();
+    private final Condition batchWritten = appendLock.newCondition();
+    private ByteBuffer pendingBatch = ByteBuffer.allocate(INITIAL_BATCH_CAPACITY);
+    private ByteBuffer writingBatch = ByteBuffer.allocate(INITIAL_BATCH_CAPACITY);
+    private long appendedSequence;
+    //Sequence of the last record written, and forced unless the durability is ASYNC
+    private volatile long writtenSequence;
+    //Sequence callers of sync() want forced, whatever the durability
+    private long forceRequestedSequence;
+    private long forcedSequence;
+    private boolean writeNow;
+    //The next record starts a new segment
+    private boolean rollRequested;
+    private boolean closed;
+    private Throwable failure;
+    //#endregion
+
+    //#region writer state (writer thread only)
+    private FileChannel segment;
+    private long segmentBytes;
+    //#endregion
+
+    //#region Class Constructor
+    private Journal() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    private Journal(final Path directory, final CoinDenominations coinDenominations, final Durability durability,
+                    final long segmentSize, final long groupCommitIntervalNanos, final FileChannel segment,
+                    final long lastSequence) throws IOException {
+        this.directory = directory;
+        this.coinDenominations = coinDenominations;
+        this.durability = durability;
+        this.segmentSize = segmentSize;
+        this.groupCommitIntervalNanos = groupCommitIntervalNanos;
+        this.segment = segment;
+        this.segmentBytes = segment.size();
+        this.appendedSequence = lastSequence;
+        this.writtenSequence = lastSequence;
+        this.forcedSequence = lastSequence;
+        this.writer = new Thread(this::writeBatches, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static Journal open(@NotNull final Path directory, @NotNull final CoinDenominations coinDenominations,
+                               @NotNull final Durability durability) throws IOException {
+        return open(directory, coinDenominations, durability, DEFAULT_SEGMENT_SIZE, DEFAULT_GROUP_COMMIT_INTERVAL_NANOS);
+    }
+
+    /**
+     * Open the journal of {@param directory}, created if it does not exist, to append after its last record. A torn
+     * record left at the end by a crash is cut off.
+     *
+     * @param segmentSize              size past which the journal rolls to a new segment file
+     * @param groupCommitIntervalNanos how often {@link Durability#BATCHED} and {@link Durability#ASYNC} records are
+     *                                 written
+     * @throws IllegalStateException if the journal is corrupted or was written for other coin denominations
+     */
+    public static Journal open(@NotNull final Path directory, @NotNull final CoinDenominations coinDenominations,
+                               @NotNull final Durability durability, final long segmentSize,
+                               final long groupCommitIntervalNanos) throws IOException {
+        if (directory == null || coinDenominations == null || durability == null) {
+            String errorMessage = "Journal directory, coin denominations and durability are required";
+            Logger.error(Journal.class, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        if (segmentSize < 1 || groupCommitIntervalNanos < 1) {
+            String errorMessage = "Journal segment size and group commit interval must be positive";
+            Logger.error(Journal.class, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        Files.createDirectories(directory);
+
+        List<Path> segments = JournalSegment.list(directory);
+        FileChannel segment;
+        long lastSequence;
+        if (segments.isEmpty()) {
+            lastSequence = 0;
+            segment = JournalSegment.create(directory, coinDenominations, 1);
+        } else {
+            Path lastSegment = segments.get(segments.size() - 1);
+            JournalSegment.Scan scan = JournalSegment.scan(lastSegment, coinDenominations, 0, null, true);
+            lastSequence = scan.lastSequence;
+            if (scan.validEnd == 0) {
+                //The header itself is torn: start the segment over
+                segment = JournalSegment.create(directory, coinDenominations, scan.firstSequence);
+            } else {
+                segment = FileChannel.open(lastSegment, StandardOpenOption.WRITE);
+                if (!scan.complete) {
+                    Logger.warn(Journal.class, "Journal " + lastSegment + " has a torn end, cut at offset " + scan.validEnd);
+                    segment.truncate(scan.validEnd);
+                    segment.force(true);
+                }
+                segment.position(scan.validEnd);
+            }
+        }
+        return new Journal(directory, coinDenominations, durability, segmentSize, groupCommitIntervalNanos,
+                segment, lastSequence);
+    }
+    //#endregion
+
+    /**
+     * Queue {@param entry} as the next record. The entry is copied: it may be cleared and reused once this returns.
+     * The record is not durable yet, see {@link #awaitDurable(long)}.
+     *
+     * @return sequence of the record
+     * @throws IllegalStateException if the journal is closed or failed
+     */
+    public long append(@NotNull final JournalEntry entry) {
+        if (entry == null || entry.isEmpty()) {
+            String errorMessage = "Journal entry with at least one operation is required";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        int payloadSize = JournalSegment.PAYLOAD_HEADER_SIZE + entry.getEncodedSize();
+        if (payloadSize > JournalSegment.MAX_PAYLOAD_SIZE || entry.getOperationCount() > 0xFFFF) {
+            String errorMessage = "Journal entry is too large";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        int frameSize = JournalSegment.FRAME_HEADER_SIZE + payloadSize;
+
+        appendLock.lock();
+        try {
+            //Back-pressure: let the writer catch up rather than buffer without bound
+            while (pendingBatch.position() > MAX_PENDING_BYTES && !closed && failure == null) {
+                writeNow = true;
+                writeRequested.signal();
+                batchWritten.awaitUninterruptibly();
+            }
+            assertWritable();
+            if (pendingBatch.remaining() < frameSize) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pendingBatch.capacity() * 2, pendingBatch.position() + frameSize));
+                pendingBatch.flip();
+                grown.put(pendingBatch);
+                pendingBatch = grown;
+            }
+            long sequence = ++appendedSequence;
+            //The CRC is filled in by the writer
+            pendingBatch.putInt(payloadSize).putInt(0).putLong(sequence).putShort((short) entry.getOperationCount());
+            entry.copyTo(pendingBatch);
+            if (durability == Durability.SYNC) {
+                writeRequested.signal();
+            }
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Check that records can still be appended, so a change can be refused before it is applied rather than found
+     * unjournaled after
+     *
+     * @throws IllegalStateException if the journal is closed or failed
+     */
+    public void ensureWritable() {
+        appendLock.lock();
+        try {
+            assertWritable();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Wait until record {@param sequence} is as durable as the journal's {@link Durability} promises on return: forced
+     * for {@link Durability#SYNC}, nothing to wait for otherwise
+     *
+     * @throws IllegalStateException if the journal failed before the record was written
+     */
+    public void awaitDurable(final long sequence) {
+        if (durability != Durability.SYNC || writtenSequence >= sequence) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            while (writtenSequence < sequence) {
+                if (failure != null) {
+                    throw failed();
+                }
+                batchWritten.awaitUninterruptibly();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Shorthand for {@link #append(JournalEntry)} then {@link #awaitDurable(long)}
+     */
+    public long commit(@NotNull final JournalEntry entry) {
+        long sequence = append(entry);
+        awaitDurable(sequence);
+        return sequence;
+    }
+
+    /**
+     * Write and force every record appended so far, whatever the durability
+     *
+     * @throws IllegalStateException if the journal is closed or failed
+     */
+    public void sync() {
+        appendLock.lock();
+        try {
+            assertWritable();
+            long sequence = appendedSequence;
+            forceRequestedSequence = Math.max(forceRequestedSequence, sequence);
+            writeNow = true;
+            writeRequested.signal();
+            while (forcedSequence < sequence) {
+                if (failure != null) {
+                    throw failed();
+                }
+                batchWritten.awaitUninterruptibly();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Write and force the records appended so far, then close the journal. Appending afterwards throws.
+     */
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            closed = true;
+            writeRequested.signal();
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Start a new segment with the next record appended, so the records before it can later be deleted as a whole
+     * (see {@link #deleteSegmentsUpTo(long)})
+     */
+    public void rollSegment() {
+        appendLock.lock();
+        try {
+            rollRequested = true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Delete the segments whose records are all at or below {@param sequence}, e.g. once a {@link MachineSnapshot}
+     * covers them. The segment being written to is never deleted.
+     *
+     * @return number of segments deleted
+     */
+    public int deleteSegmentsUpTo(final long sequence) throws IOException {
+        List<Path> segments = JournalSegment.list(directory);
+        int deletedCount = 0;
+        //A segment ends where the next one starts
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (JournalSegment.firstSequenceOf(segments.get(i + 1)) > sequence + 1) {
+                break;
+            }
+            Files.delete(segments.get(i));
+            deletedCount++;
+        }
+        return deletedCount;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public CoinDenominations getCoinDenominations() {
+        return coinDenominations;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return sequence of the last record appended, 0 if none
+     */
+    public long getLastSequence() {
+        appendLock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return sequence of the last record written to the segment files
+     */
+    public long getWrittenSequence() {
+        return writtenSequence;
+    }
+
+    /**
+     * Body of the writer thread
+     */
+    private void writeBatches() {
+        try {
+            while (true) {
+                ByteBuffer batch;
+                long batchSequence;
+                boolean force;
+                boolean roll;
+                appendLock.lock();
+                try {
+                    long deadline = System.nanoTime() + groupCommitIntervalNanos;
+                    while (!closed && !writeNow) {
+                        if (durability == Durability.SYNC) {
+                            if (pendingBatch.position() > 0) {
+                                break;
+                            }
+                            writeRequested.awaitUninterruptibly();
+                        } else {
+                            long remainingNanos = deadline - System.nanoTime();
+                            if (remainingNanos <= 0) {
+                                break;
+                            }
+                            try {
+                                writeRequested.awaitNanos(remainingNanos);
+                            } catch (InterruptedException ex) {
+                                //The writer is only stopped through close()
+                            }
+                        }
+                    }
+                    writeNow = false;
+                    if (pendingBatch.position() == 0 && forceRequestedSequence <= forcedSequence) {
+                        if (closed) {
+                            break;
+                        }
+                        continue;
+                    }
+                    roll = rollRequested && pendingBatch.position() > 0;
+                    rollRequested &= !roll;
+                    //Swap: callers fill the other batch while this one is written
+                    batch = pendingBatch;
+                    pendingBatch = writingBatch;
+                    writingBatch = batch;
+                    batchSequence = appendedSequence;
+                    force = durability != Durability.ASYNC || closed || forceRequestedSequence > forcedSequence;
+                } finally {
+                    appendLock.unlock();
+                }
+
+                batch.flip();
+                write(batch, force, roll);
+                batch.clear();
+
+                appendLock.lock();
+                try {
+                    writtenSequence = batchSequence;
+                    if (force) {
+                        forcedSequence = batchSequence;
+                    }
+                    batchWritten.signalAll();
+                } finally {
+                    appendLock.unlock();
+                }
+            }
+        } catch (Throwable ex) {
+            //Whatever stops the writer fails the journal, so no caller waits for a batch that is never written
+            Logger.error(TAG, ERROR_MESSAGE_JOURNAL_WRITE_FAILED + ": " + ex);
+            appendLock.lock();
+            try {
+                failure = ex;
+                batchWritten.signalAll();
+            } finally {
+                appendLock.unlock();
+            }
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+        } finally {
+            try {
+                segment.close();
+            } catch (IOException ex) {
+                Logger.error(TAG, "Journal segment could not be closed: " + ex);
+            }
+        }
+    }
+
+    /**
+     * Frame and write {@param batch} (positioned on its first record) to the current segment, rolling to a new segment
+     * first if the current one is full or {@param roll} is set
+     */
+    private void write(final ByteBuffer batch, final boolean force, final boolean roll) throws IOException {
+        if (!batch.hasRemaining()) {
+            if (force) {
+                segment.force(false);
+            }
+            return;
+        }
+        if (segmentBytes >= segmentSize || roll) {
+            segment.force(false);
+            segment.close();
+            long firstSequence = batch.getLong(batch.position() + JournalSegment.FRAME_HEADER_SIZE);
+            segment = JournalSegment.create(directory, coinDenominations, firstSequence);
+            segmentBytes = segment.size();
+        }
+
+        byte[] bytes = batch.array();
+        for (int frame = batch.position(); frame < batch.limit(); ) {
+            int payloadSize = batch.getInt(frame);
+            batch.putInt(frame + 4, JournalSegment.crc(bytes, frame + JournalSegment.FRAME_HEADER_SIZE, payloadSize));
+            frame += JournalSegment.FRAME_HEADER_SIZE + payloadSize;
+        }
+        segmentBytes += batch.remaining();
+        while (batch.hasRemaining()) {
+            segment.write(batch);
+        }
+        if (force) {
+            //Data only (fdatasync), which still persists the grown file length the records are read back with
+            segment.force(false);
+        }
+    }
+
+    private void assertWritable() {
+        if (failure != null) {
+            throw failed();
+        }
+        if (closed) {
+            String errorMessage = ERROR_MESSAGE_JOURNAL_CLOSED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+    }
+
+    private IllegalStateException failed() {
+        String errorMessage = ERROR_MESSAGE_JOURNAL_WRITE_FAILED;
+        Logger.error(TAG, errorMessage);
+        return new IllegalStateException(errorMessage, failure);
+    }
+}
@@ -0,0 +1,175 @@
+package persistence;
+
+import com.sun.istack.internal.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The operations of one journal record, applied together on replay (a transaction). Operations are encoded as they are
+ * added, so {@link Journal#append(JournalEntry)} only copies bytes.
+ * <p>
+ * Encoding of an operation: a one-byte code followed by its fields, big-endian. Slots and coin ordinals are ints,
+ * prices (in currency minor units, -1 for no price) and inventory sizes are longs, coin counts are ints, strings are a
+ * short byte length followed by their UTF-8 bytes.
+ * <p>
+ * An entry is not thread-safe; it may be reused after {@link #clear()}.
+ */
+public final class JournalEntry {
+
+    //#region operation codes
+    static final byte ADD_PRODUCT = 1;
+    static final byte REMOVE_PRODUCT = 2;
+    static final byte SET_PRICE = 3;
+    static final byte SET_INVENTORY_SIZE = 4;
+    static final byte ADJUST_INVENTORY = 5;
+    static final byte SET_COIN_COUNT = 6;
+    static final byte ADJUST_COIN_COUNT = 7;
+    static final byte CATALOG_SKU = 8;
+    //#end region
+
+    private ByteBuffer operations = ByteBuffer.allocate(64);
+    private int operationCount;
+
+    /**
+     * Product added to {@param productSlotIndex}
+     *
+     * @param priceMinorUnits price in currency minor units, -1 if not set
+     */
+    public JournalEntry addProduct(final int productSlotIndex, final long priceMinorUnits, final long inventorySize) {
+        ensureCapacity(1 + 4 + 8 + 8).put(ADD_PRODUCT).putInt(productSlotIndex).putLong(priceMinorUnits).putLong(inventorySize);
+        operationCount++;
+        return this;
+    }
+
+    /**
+     * SKU of the product added to {@param productSlotIndex}
+     */
+    public JournalEntry catalogSku(final int productSlotIndex, @NotNull final String skuCode, @NotNull final String skuName) {
+        byte[] code = skuCode.getBytes(StandardCharsets.UTF_8);
+        byte[] name = skuName.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(1 + 4 + 2 + code.length + 2 + name.length).put(CATALOG_SKU).putInt(productSlotIndex)
+                .putShort((short) code.length).put(code).putShort((short) name.length).put(name);
+        operationCount++;
+        return this;
+    }
+
+    public JournalEntry removeProduct(final int productSlotIndex) {
+        ensureCapacity(1 + 4).put(REMOVE_PRODUCT).putInt(productSlotIndex);
+        operationCount++;
+        return this;
+    }
+
+    public JournalEntry setPrice(final int productSlotIndex, final long priceMinorUnits) {
+        ensureCapacity(1 + 4 + 8).put(SET_PRICE).putInt(productSlotIndex).putLong(priceMinorUnits);
+        operationCount++;
+        return this;
+    }
+
+    public JournalEntry setInventorySize(final int productSlotIndex, final long inventorySize) {
+        ensureCapacity(1 + 4 + 8).put(SET_INVENTORY_SIZE).putInt(productSlotIndex).putLong(inventorySize);
+        operationCount++;
+        return this;
+    }
+
+    /**
+     * Items taken off (negative {@param delta}) or put back on {@param productSlotIndex}
+     */
+    public JournalEntry adjustInventory(final int productSlotIndex, final long delta) {
+        ensureCapacity(1 + 4 + 8).put(ADJUST_INVENTORY).putInt(productSlotIndex).putLong(delta);
+        operationCount++;
+        return this;
+    }
+
+    public JournalEntry setCoinCount(final int coinOrdinal, final int count) {
+        ensureCapacity(1 + 4 + 4).put(SET_COIN_COUNT).putInt(coinOrdinal).putInt(count);
+        operationCount++;
+        return this;
+    }
+
+    /**
+     * Coins of {@param coinOrdinal} taken in (positive {@param delta}) or paid out
+     */
+    public JournalEntry adjustCoinCount(final int coinOrdinal, final int delta) {
+        ensureCapacity(1 + 4 + 4).put(ADJUST_COIN_COUNT).putInt(coinOrdinal).putInt(delta);
+        operationCount++;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return operationCount == 0;
+    }
+
+    public void clear() {
+        operations.clear();
+        operationCount = 0;
+    }
+
+    int getOperationCount() {
+        return operationCount;
+    }
+
+    int getEncodedSize() {
+        return operations.position();
+    }
+
+    void copyTo(final ByteBuffer target) {
+        target.put(operations.array(), 0, operations.position());
+    }
+
+    /**
+     * Hand the operations of a record payload to {@param handler}
+     *
+     * @param payload positioned on the first operation, limited to the end of the record
+     * @throws IllegalArgumentException if an operation is unknown or truncated
+     */
+    static void decode(final ByteBuffer payload, final int operationCount, final JournalHandler handler) {
+        for (int i = 0; i < operationCount; i++) {
+            byte code = payload.get();
+            switch (code) {
+                case ADD_PRODUCT:
+                    handler.addProduct(payload.getInt(), payload.getLong(), payload.getLong());
+                    break;
+                case CATALOG_SKU:
+                    handler.catalogSku(payload.getInt(), getString(payload), getString(payload));
+                    break;
+                case REMOVE_PRODUCT:
+                    handler.removeProduct(payload.getInt());
+                    break;
+                case SET_PRICE:
+                    handler.setPrice(payload.getInt(), payload.getLong());
+                    break;
+                case SET_INVENTORY_SIZE:
+                    handler.setInventorySize(payload.getInt(), payload.getLong());
+                    break;
+                case ADJUST_INVENTORY:
+                    handler.adjustInventory(payload.getInt(), payload.getLong());
+                    break;
+                case SET_COIN_COUNT:
+                    handler.setCoinCount(payload.getInt(), payload.getInt());
+                    break;
+                case ADJUST_COIN_COUNT:
+                    handler.adjustCoinCount(payload.getInt(), payload.getInt());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown journal operation " + code);
+            }
+        }
+    }
+
+    private static String getString(final ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer ensureCapacity(final int size) {
+        if (operations.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(operations.capacity() * 2, operations.position() + size));
+            operations.flip();
+            grown.put(operations);
+            operations = grown;
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,31 @@
+package persistence;
+
+/**
+ * Receives the operations of the records replayed by {@link JournalReader#replay(java.nio.file.Path, manager.CoinDenominations, long, JournalHandler)},
+ * one transaction at a time, in the order they were journaled. See {@link JournalEntry} for the meaning of each operation.
+ */
+public interface JournalHandler {
+
+    void beginTransaction(final long sequence);
+
+    /**
+     * @param priceMinorUnits price of the product in currency minor units, -1 if not set
+     */
+    void addProduct(final int productSlotIndex, final long priceMinorUnits, final long inventorySize);
+
+    void catalogSku(final int productSlotIndex, final String skuCode, final String skuName);
+
+    void removeProduct(final int productSlotIndex);
+
+    void setPrice(final int productSlotIndex, final long priceMinorUnits);
+
+    void setInventorySize(final int productSlotIndex, final long inventorySize);
+
+    void adjustInventory(final int productSlotIndex, final long delta);
+
+    void setCoinCount(final int coinOrdinal, final int count);
+
+    void adjustCoinCount(final int coinOrdinal, final int delta);
+
+    void endTransaction(final long sequence);
+}
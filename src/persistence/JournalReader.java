@@ -0,0 +1,56 @@
+package persistence;
+
+import com.sun.istack.internal.NotNull;
+import manager.CoinDenominations;
+import util.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static util.Constants.*;
+
+/**
+ * Replays the records of a {@link Journal} directory, oldest first. Replay stops at a torn end of the last segment
+ * (what a crash leaves behind) and fails on any other damage.
+ */
+public final class JournalReader {
+
+    //#region Class Constructor
+    private JournalReader() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+    //#endregion
+
+    /**
+     * Hand every record of {@param directory} whose sequence is above {@param afterSequence} to {@param handler}
+     *
+     * @param afterSequence sequence of the last record already applied, 0 to replay the whole journal
+     * @return sequence of the last record of the journal, or {@param afterSequence} if it is above
+     * @throws IllegalStateException if the journal is corrupted, misses records after {@param afterSequence} or was
+     *                               written for other coin denominations
+     */
+    public static long replay(@NotNull final Path directory, @NotNull final CoinDenominations coinDenominations,
+                              final long afterSequence, @NotNull final JournalHandler handler) throws IOException {
+        List<Path> segments = JournalSegment.list(directory);
+        long lastSequence = afterSequence;
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            if (!last && JournalSegment.firstSequenceOf(segments.get(i + 1)) <= afterSequence + 1) {
+                //Every record of this segment is already applied
+                continue;
+            }
+            JournalSegment.Scan scan = JournalSegment.scan(segment, coinDenominations, afterSequence, handler, last);
+            if (scan.firstSequence > lastSequence + 1) {
+                String errorMessage = ERROR_MESSAGE_JOURNAL_CORRUPTED;
+                Logger.error(JournalReader.class, errorMessage + ": records " + (lastSequence + 1) + " to "
+                        + (scan.firstSequence - 1) + " are missing");
+                throw new IllegalStateException(errorMessage);
+            }
+            lastSequence = Math.max(lastSequence, scan.lastSequence);
+        }
+        return lastSequence;
+    }
+}
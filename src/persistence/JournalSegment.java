@@ -0,0 +1,240 @@
+package persistence;
+
+import manager.CoinDenominations;
+import util.Logger;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static util.Constants.*;
+
+/**
+ * On-disk layout of a journal segment, one file of consecutive records named after the sequence of its first record.
+ * <p>
+ * Header: magic, format version, coin scale, coin count, minor units of each coin, sequence of the first record and a
+ * CRC32 of the preceding header bytes. It is followed by the records, each framed as
+ * {@code [int payload length][int CRC32 of the payload][payload]} with payload
+ * {@code [long sequence][short operation count][operations]} (see {@link JournalEntry}).
+ * <p>
+ * A crash can only tear the end of the last segment: the first frame that is cut short or fails its CRC ends the
+ * journal there. The same damage in any earlier segment is corruption.
+ */
+final class JournalSegment {
+
+    //#region class constants
+    static final int MAGIC = 0x564D4A4C; //"VMJL"
+    static final short FORMAT_VERSION = 1;
+    static final int FRAME_HEADER_SIZE = 4 + 4;
+    static final int PAYLOAD_HEADER_SIZE = 8 + 2;
+    static final int MAX_PAYLOAD_SIZE = 1 << 20;
+    private static final String FILE_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".log";
+    //#end region
+
+    //#region Class Constructor
+    private JournalSegment() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+    //#endregion
+
+    /**
+     * Result of {@link #scan(Path, CoinDenominations, long, JournalHandler, boolean)}
+     */
+    static final class Scan {
+        //Header sequence of the segment's first record
+        final long firstSequence;
+        //Sequence of the last valid record, firstSequence - 1 if there is none
+        final long lastSequence;
+        //Offset right after the last valid record
+        final long validEnd;
+        //False if the segment ends with a torn header or record (validEnd is then where it should be cut)
+        final boolean complete;
+
+        Scan(final long firstSequence, final long lastSequence, final long validEnd, final boolean complete) {
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+            this.validEnd = validEnd;
+            this.complete = complete;
+        }
+    }
+
+    static Path pathOf(final Path directory, final long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", FILE_PREFIX, firstSequence, FILE_SUFFIX));
+    }
+
+    /**
+     * @return sequence of the first record of {@param segment}, as named
+     */
+    static long firstSequenceOf(final Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+    }
+
+    /**
+     * @return the segment files of {@param directory}, oldest first
+     */
+    static List<Path> list(final Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        //Names are zero-padded sequences: lexical order is sequence order
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static int headerSize(final CoinDenominations coinDenominations) {
+        return 4 + 2 + 2 + 2 + 4 * coinDenominations.size() + 8 + 4;
+    }
+
+    /**
+     * Create the segment starting at {@param firstSequence} and force its header
+     *
+     * @return the segment, positioned after its header
+     */
+    static FileChannel create(final Path directory, final CoinDenominations coinDenominations, final long firstSequence)
+            throws IOException {
+        FileChannel channel = FileChannel.open(pathOf(directory, firstSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(headerSize(coinDenominations));
+            header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) coinDenominations.getScale())
+                    .putShort((short) coinDenominations.size());
+            for (int minorUnits : coinDenominations.toMinorUnitsArray()) {
+                header.putInt(minorUnits);
+            }
+            header.putLong(firstSequence);
+            header.putInt(crc(header.array(), 0, header.position()));
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return channel;
+    }
+
+    /**
+     * Read the records of {@param segment}
+     *
+     * @param afterSequence records up to this sequence are read but not handed to {@param handler}
+     * @param handler       receives the records, may be null to only find where the segment ends
+     * @param last          whether this is the last segment, whose end may be torn
+     * @throws IllegalStateException if the segment is corrupted or written for other coin denominations
+     */
+    static Scan scan(final Path segment, final CoinDenominations coinDenominations, final long afterSequence,
+                     final JournalHandler handler, final boolean last) throws IOException {
+        long namedFirstSequence = firstSequenceOf(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw corrupted(segment, "segment too large");
+            }
+            ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            //Header, sized by the coin count it holds so other denominations are reported as such
+            int headerSize = size >= 10 ? 4 + 2 + 2 + 2 + 4 * (content.getShort(8) & 0xFFFF) + 8 + 4 : Integer.MAX_VALUE;
+            if (size < headerSize || crc(content, 0, headerSize - 4) != content.getInt(headerSize - 4)) {
+                if (last && size <= headerSize) {
+                    //Crashed while the segment was being created
+                    return new Scan(namedFirstSequence, namedFirstSequence - 1, 0, false);
+                }
+                throw corrupted(segment, "invalid header");
+            }
+            if (content.getInt(0) != MAGIC || content.getShort(4) != FORMAT_VERSION) {
+                throw corrupted(segment, "not a journal segment");
+            }
+            int[] minorUnits = new int[content.getShort(8) & 0xFFFF];
+            for (int i = 0; i < minorUnits.length; i++) {
+                minorUnits[i] = content.getInt(10 + 4 * i);
+            }
+            if (content.getShort(6) != coinDenominations.getScale()
+                    || !Arrays.equals(minorUnits, coinDenominations.toMinorUnitsArray())) {
+                String errorMessage = ERROR_MESSAGE_JOURNAL_DENOMINATIONS_MISMATCH;
+                Logger.error(JournalSegment.class, errorMessage + ": " + segment);
+                throw new IllegalStateException(errorMessage);
+            }
+            long firstSequence = content.getLong(headerSize - 12);
+            if (firstSequence != namedFirstSequence) {
+                throw corrupted(segment, "header first sequence " + firstSequence + " does not match the file name");
+            }
+
+            //Records
+            long sequence = firstSequence - 1;
+            int position = headerSize;
+            while (position < size) {
+                int payloadSize = size - position >= FRAME_HEADER_SIZE ? content.getInt(position) : -1;
+                if (payloadSize < PAYLOAD_HEADER_SIZE || payloadSize > MAX_PAYLOAD_SIZE
+                        || payloadSize > size - position - FRAME_HEADER_SIZE
+                        || crc(content, position + FRAME_HEADER_SIZE, payloadSize) != content.getInt(position + 4)) {
+                    if (last) {
+                        return new Scan(firstSequence, sequence, position, false);
+                    }
+                    throw corrupted(segment, "invalid record at offset " + position);
+                }
+                int payloadStart = position + FRAME_HEADER_SIZE;
+                long recordSequence = content.getLong(payloadStart);
+                if (recordSequence != sequence + 1) {
+                    throw corrupted(segment, "expected sequence " + (sequence + 1) + ", found " + recordSequence);
+                }
+                sequence = recordSequence;
+                if (handler != null && sequence > afterSequence) {
+                    ByteBuffer payload = content.duplicate();
+                    payload.limit(payloadStart + payloadSize).position(payloadStart + PAYLOAD_HEADER_SIZE);
+                    handler.beginTransaction(sequence);
+                    try {
+                        JournalEntry.decode(payload, content.getShort(payloadStart + 8) & 0xFFFF, handler);
+                    } catch (IllegalArgumentException | BufferUnderflowException ex) {
+                        throw corrupted(segment, "undecodable record " + sequence + ": " + ex.getMessage());
+                    }
+                    handler.endTransaction(sequence);
+                }
+                position = payloadStart + payloadSize;
+            }
+            return new Scan(firstSequence, sequence, position, true);
+        }
+    }
+
+    /**
+     * @return the CRC32 of {@param length} bytes of {@param bytes} from {@param offset}, as an int
+     */
+    static int crc(final byte[] bytes, final int offset, final int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(final ByteBuffer buffer, final int offset, final int length) {
+        ByteBuffer range = buffer.duplicate();
+        range.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(range);
+        return (int) crc.getValue();
+    }
+
+    private static IllegalStateException corrupted(final Path segment, final String detail) {
+        String errorMessage = ERROR_MESSAGE_JOURNAL_CORRUPTED;
+        Logger.error(JournalSegment.class, errorMessage + ": " + segment + ", " + detail);
+        return new IllegalStateException(errorMessage);
+    }
+}
@@ -0,0 +1,265 @@
+package persistence;
+
+import com.sun.istack.internal.NotNull;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import model.Money;
+import model.ProductSnapshot;
+import model.Sku;
+import util.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static util.Constants.*;
+
+/**
+ * Point-in-time image of the machine state - coin counts, the product of every slot and the SKU catalogued for it -
+ * as of a {@link Journal} record: recovery loads the latest snapshot and only replays the records after it.
+ * <p>
+ * A snapshot file is named after the sequence it was taken at and holds: magic, format version, sequence, coin scale,
+ * then minor units and count of each coin, then each slot (occupied/SKU flags, price in minor units or -1, inventory
+ * size, SKU code and name), and a CRC32 of all the preceding bytes. It is written to a temporary file, forced, then
+ * renamed into place, so a crash never leaves a partial snapshot behind.
+ */
+public final class MachineSnapshot {
+
+    //#region class constants
+    private static final int MAGIC = 0x564D534E; //"VMSN"
+    private static final short FORMAT_VERSION = 1;
+    private static final byte OCCUPIED = 1;
+    private static final byte CATALOGUED = 2;
+    private static final String FILE_PREFIX = "snapshot-";
+    private static final String FILE_SUFFIX = ".snap";
+    //#end region
+
+    private final long sequence;
+    private final CoinCounts coinCounts;
+    private final ProductSnapshot[] slots;
+    private final Sku[] skus;
+
+    //#region Class Constructor
+    private MachineSnapshot() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    private MachineSnapshot(final long sequence, final CoinCounts coinCounts, final ProductSnapshot[] slots, final Sku[] skus) {
+        this.sequence = sequence;
+        this.coinCounts = coinCounts;
+        this.slots = slots;
+        this.skus = skus;
+    }
+
+    /**
+     * @param sequence   sequence of the last journal record the state includes
+     * @param coinCounts available coin count of each denomination
+     * @param slots      product of each slot, null for an empty slot (copied)
+     * @param skus       SKU catalogued for each slot, null for none; indexed like {@param slots} (copied)
+     */
+    public static MachineSnapshot of(final long sequence, @NotNull final CoinCounts coinCounts,
+                                     @NotNull final ProductSnapshot[] slots, @NotNull final Sku[] skus) {
+        if (sequence < 0 || coinCounts == null || slots == null || skus == null || skus.length != slots.length) {
+            String errorMessage = "Snapshot sequence, coin counts and one product and SKU entry per slot are required";
+            Logger.error(MachineSnapshot.class, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return new MachineSnapshot(sequence, coinCounts, slots.clone(), skus.clone());
+    }
+    //#endregion
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public CoinCounts getCoinCounts() {
+        return coinCounts;
+    }
+
+    public ProductSnapshot[] getSlots() {
+        return slots.clone();
+    }
+
+    public Sku[] getSkus() {
+        return skus.clone();
+    }
+
+    /**
+     * Write the snapshot to {@param directory} and force it
+     *
+     * @return the snapshot file
+     */
+    public Path writeTo(@NotNull final Path directory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + slots.length * 32);
+        DataOutputStream output = new DataOutputStream(bytes);
+        CoinDenominations coinDenominations = coinCounts.getDenominations();
+        output.writeInt(MAGIC);
+        output.writeShort(FORMAT_VERSION);
+        output.writeLong(sequence);
+        output.writeShort(coinDenominations.getScale());
+        output.writeShort(coinDenominations.size());
+        for (int ordinal = 0; ordinal < coinDenominations.size(); ordinal++) {
+            output.writeInt(coinDenominations.minorUnitsAt(ordinal));
+            output.writeInt(coinCounts.countAt(ordinal));
+        }
+        output.writeInt(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            output.writeByte((slots[i] != null ? OCCUPIED : 0) | (skus[i] != null ? CATALOGUED : 0));
+            if (slots[i] != null) {
+                Money price = slots[i].getPriceAmount();
+                output.writeLong(price == null ? -1 : price.getMinorUnits());
+                output.writeLong(slots[i].getInventorySize());
+            }
+            if (skus[i] != null) {
+                writeString(output, skus[i].getCode());
+                writeString(output, skus[i].getName());
+            }
+        }
+        output.flush();
+        byte[] content = bytes.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(content.length + 4);
+        buffer.put(content).putInt(JournalSegment.crc(content, 0, content.length));
+        buffer.flip();
+
+        Path file = pathOf(directory, sequence);
+        Path temporaryFile = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * @return the snapshot of {@param directory} taken at the highest sequence, null if there is none
+     * @throws IllegalStateException if that snapshot is corrupted or was taken with other coin denominations
+     */
+    public static MachineSnapshot readLatest(@NotNull final Path directory, @NotNull final CoinDenominations coinDenominations)
+            throws IOException {
+        List<Path> snapshots = list(directory);
+        return snapshots.isEmpty() ? null : read(snapshots.get(snapshots.size() - 1), coinDenominations);
+    }
+
+    /**
+     * Delete the snapshots of {@param directory} taken before {@param sequence}
+     *
+     * @return number of snapshots deleted
+     */
+    public static int deleteOlderThan(@NotNull final Path directory, final long sequence) throws IOException {
+        int deletedCount = 0;
+        for (Path snapshot : list(directory)) {
+            if (sequenceOf(snapshot) < sequence) {
+                Files.delete(snapshot);
+                deletedCount++;
+            }
+        }
+        return deletedCount;
+    }
+
+    private static MachineSnapshot read(final Path file, final CoinDenominations coinDenominations) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        int size = content.remaining() - 4;
+        if (size < 0 || JournalSegment.crc(content.array(), 0, size) != content.getInt(size)) {
+            throw corrupted(file, "checksum mismatch");
+        }
+        content.limit(size);
+        try {
+            if (content.getInt() != MAGIC || content.getShort() != FORMAT_VERSION) {
+                throw corrupted(file, "not a snapshot");
+            }
+            long sequence = content.getLong();
+            int scale = content.getShort();
+            int[] minorUnits = new int[content.getShort() & 0xFFFF];
+            int[] counts = new int[minorUnits.length];
+            for (int ordinal = 0; ordinal < minorUnits.length; ordinal++) {
+                minorUnits[ordinal] = content.getInt();
+                counts[ordinal] = content.getInt();
+            }
+            if (scale != coinDenominations.getScale() || !Arrays.equals(minorUnits, coinDenominations.toMinorUnitsArray())) {
+                String errorMessage = ERROR_MESSAGE_JOURNAL_DENOMINATIONS_MISMATCH;
+                Logger.error(MachineSnapshot.class, errorMessage + ": " + file);
+                throw new IllegalStateException(errorMessage);
+            }
+
+            ProductSnapshot[] slots = new ProductSnapshot[content.getInt()];
+            Sku[] skus = new Sku[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                byte flags = content.get();
+                if ((flags & OCCUPIED) != 0) {
+                    long priceMinorUnits = content.getLong();
+                    slots[i] = ProductSnapshot.of(priceMinorUnits < 0 ? null : Money.ofMinorUnits(priceMinorUnits),
+                            content.getLong());
+                }
+                if ((flags & CATALOGUED) != 0) {
+                    skus[i] = Sku.of(readString(content), readString(content));
+                }
+            }
+            return new MachineSnapshot(sequence, CoinCounts.of(coinDenominations, counts), slots, skus);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw corrupted(file, ex.toString());
+        }
+    }
+
+    private static Path pathOf(final Path directory, final long sequence) {
+        return directory.resolve(String.format("%s%020d%s", FILE_PREFIX, sequence, FILE_SUFFIX));
+    }
+
+    private static long sequenceOf(final Path snapshot) {
+        String fileName = snapshot.getFileName().toString();
+        return Long.parseLong(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+    }
+
+    /**
+     * @return the snapshot files of {@param directory}, oldest first
+     */
+    private static List<Path> list(final Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path snapshot : stream) {
+                snapshots.add(snapshot);
+            }
+        }
+        //Names are zero-padded sequences: lexical order is sequence order
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer content) {
+        byte[] bytes = new byte[content.getShort() & 0xFFFF];
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static IllegalStateException corrupted(final Path file, final String detail) {
+        String errorMessage = ERROR_MESSAGE_JOURNAL_CORRUPTED;
+        Logger.error(MachineSnapshot.class, errorMessage + ": " + file + ", " + detail);
+        return new IllegalStateException(errorMessage);
+    }
+}
@@ -0,0 +1,242 @@
+package persistence;
+
+import com.sun.istack.internal.NotNull;
+import manager.ChangeReservation;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import manager.CoinEscrow;
+import manager.CoinManager;
+import model.Money;
+import util.Logger;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static util.Constants.*;
+
+/**
+ * {@link CoinManager} whose coin counts are kept in a {@link MappedStateFile}: every change is made by the wrapped coin
+ * manager, then its counts are written to the file.
+ * <p>
+ * On construction, the wrapped coin manager is set to the counts last written to the file. Each change and the write
+ * of the counts it leaves are one step under a lock, so the file always holds the counts after a whole operation, such
+ * as the credit and debit of a purchase. Coins held out by a change reservation still count as available in the file:
+ * reserving and releasing change write nothing, and only the commit writes the counts the purchase leaves. Reads go
+ * straight to the wrapped coin manager.
+ * <p>
+ * The coin counts and the slots are separate records of the file, each written on its own: a purchase writes its
+ * slot(s) when it claims the items (see {@link MappedProductSlotManager}), then the coin counts when it commits. A
+ * crash in between is read back as the items gone and the coins as before the purchase: no coin is ever lost, but
+ * the stock may be short by the items of the purchase that was under way.
+ */
+public class MappedCoinManager implements CoinManager {
+
+    //#region class constants
+    private final ReentrantLock COIN_STATE_LOCK = new ReentrantLock();
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final CoinManager coinManager;
+    private final MappedStateFile stateFile;
+    private final CoinDenominations coinDenominations;
+
+    //Guarded by COIN_STATE_LOCK: the counts last written, the counts after the current change, and the coins held out
+    //of the wrapped coin manager by pending change reservations
+    private final int[] storedCounts;
+    private final int[] counts;
+    private final int[] heldCounts;
+
+    //#region Class Constructor
+    private MappedCoinManager() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    /**
+     * @param coinManager coin manager making the changes; its counts are replaced by the ones of {@param stateFile}
+     * @param stateFile   file the counts are kept in, created for the coin denominations of {@param coinManager}
+     */
+    public MappedCoinManager(@NotNull final CoinManager coinManager, @NotNull final MappedStateFile stateFile) {
+        if (coinManager == null || stateFile == null) {
+            String errorMessage = "Coin manager and state file are required";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        if (!coinManager.getCoinDenominations().equals(stateFile.getCoinDenominations())) {
+            String errorMessage = ERROR_MESSAGE_STATE_FILE_LAYOUT_MISMATCH;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        this.coinManager = coinManager;
+        this.stateFile = stateFile;
+        this.coinDenominations = coinManager.getCoinDenominations();
+        this.storedCounts = new int[coinDenominations.size()];
+        this.counts = new int[coinDenominations.size()];
+        this.heldCounts = new int[coinDenominations.size()];
+
+        CoinCounts restoredCounts = stateFile.readCoinCounts();
+        Map<Double, Integer> newAvailableCounts = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < coinDenominations.size(); ordinal++) {
+            newAvailableCounts.put(coinDenominations.valueAt(ordinal), restoredCounts.countAt(ordinal));
+        }
+        coinManager.setCoinAvailableCounts(newAvailableCounts);
+        restoredCounts.copyTo(storedCounts);
+        Logger.info(TAG, () -> "Coin counts restored: " + restoredCounts);
+    }
+    //#endregion
+
+    //#region maintenance
+    @Override
+    public void setCoinAvailableCount(final double coinValue, final int newAvailableCount) {
+        store(() -> {
+            coinManager.setCoinAvailableCount(coinValue, newAvailableCount);
+            return true;
+        });
+    }
+
+    @Override
+    public void setCoinAvailableCounts(@NotNull final Map<Double, Integer> newAvailableCounts) {
+        store(() -> {
+            coinManager.setCoinAvailableCounts(newAvailableCounts);
+            return true;
+        });
+    }
+
+    @Override
+    public int getCoinAvailableCount(final double coinValue) {
+        return coinManager.getCoinAvailableCount(coinValue);
+    }
+    //#endregion
+
+    @Override
+    public CoinDenominations getCoinDenominations() {
+        return coinDenominations;
+    }
+
+    @Override
+    public boolean areCoinsSupported(@NotNull final Collection<Double> coinList) {
+        return coinManager.areCoinsSupported(coinList);
+    }
+
+    @Override
+    public Money getCoinsValue(@NotNull final Collection<Double> coinList) {
+        return coinManager.getCoinsValue(coinList);
+    }
+
+    @Override
+    public CoinCounts getChangeCoinCounts(@NotNull final Money amount) {
+        return coinManager.getChangeCoinCounts(amount);
+    }
+
+    @Override
+    public boolean canMakeChange(@NotNull final Money amount) {
+        return coinManager.canMakeChange(amount);
+    }
+
+    @Override
+    public Money maxChangeableAmount() {
+        return coinManager.maxChangeableAmount();
+    }
+
+    @Override
+    public void balanceCoins(@NotNull final CoinCounts creditCoinCounts, @NotNull final CoinCounts debitCoinCounts) {
+        store(() -> {
+            coinManager.balanceCoins(creditCoinCounts, debitCoinCounts);
+            return true;
+        });
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount) {
+        return hold(() -> coinManager.reserveChange(amount));
+    }
+
+    @Override
+    public ChangeReservation reserveChange(@NotNull final Money amount, @NotNull final CoinEscrow escrow) {
+        return hold(() -> coinManager.reserveChange(amount, escrow));
+    }
+
+    @Override
+    public ChangeReservation tryReserveChange(@NotNull final Money amount, final CoinEscrow escrow) {
+        return hold(() -> coinManager.tryReserveChange(amount, escrow));
+    }
+
+    /**
+     * Reservations are issued by the wrapped coin manager, which settles them. The counts the purchase leaves are
+     * written here.
+     */
+    @Override
+    public void commitChange(@NotNull final ChangeReservation reservation, @NotNull final CoinCounts creditCoinCounts) {
+        store(() -> {
+            coinManager.commitChange(reservation, creditCoinCounts);
+            addHeldCounts(reservation, -1);
+            return true;
+        });
+    }
+
+    /**
+     * The coins go back to where the file already counts them: nothing is written
+     */
+    @Override
+    public void releaseChange(@NotNull final ChangeReservation reservation) {
+        COIN_STATE_LOCK.lock();
+        try {
+            coinManager.releaseChange(reservation);
+            addHeldCounts(reservation, -1);
+        } finally {
+            COIN_STATE_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Run {@param reserve} on the wrapped coin manager and count the coins its reservation holds out, without writing
+     * anything
+     */
+    private ChangeReservation hold(final Supplier<ChangeReservation> reserve) {
+        COIN_STATE_LOCK.lock();
+        try {
+            ChangeReservation reservation = reserve.get();
+            if (reservation != null) {
+                addHeldCounts(reservation, 1);
+            }
+            return reservation;
+        } finally {
+            COIN_STATE_LOCK.unlock();
+        }
+    }
+
+    private void addHeldCounts(final ChangeReservation reservation, final int sign) {
+        CoinCounts coinCountsFromAvailableCoins = reservation.getCoinCountsFromAvailableCoins();
+        for (int ordinal = 0; ordinal < heldCounts.length; ordinal++) {
+            heldCounts[ordinal] += sign * coinCountsFromAvailableCoins.countAt(ordinal);
+        }
+    }
+
+    /**
+     * Run {@param change} on the wrapped coin manager, then write its counts, with the coins held out by pending
+     * reservations counted back in, to the state file, as one step. Counts the change left as they were are not
+     * written again.
+     *
+     * @return the result of {@param change}
+     */
+    private <T> T store(final Supplier<T> change) {
+        COIN_STATE_LOCK.lock();
+        try {
+            T result = change.get();
+            for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+                counts[ordinal] = coinManager.getCoinAvailableCount(coinDenominations.valueAt(ordinal)) + heldCounts[ordinal];
+            }
+            if (!Arrays.equals(counts, storedCounts)) {
+                stateFile.writeCoinCounts(counts);
+                System.arraycopy(counts, 0, storedCounts, 0, counts.length);
+            }
+            return result;
+        } finally {
+            COIN_STATE_LOCK.unlock();
+        }
+    }
+}
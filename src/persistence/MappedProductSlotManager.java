@@ -0,0 +1,243 @@
+package persistence;
+
+import com.sun.istack.internal.NotNull;
+import manager.ProductSlotManager;
+import manager.SlotChange;
+import model.Money;
+import model.Product;
+import model.ProductSnapshot;
+import util.Logger;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static util.Constants.*;
+
+/**
+ * {@link ProductSlotManager} whose slots are kept in a {@link MappedStateFile}: every change is made by the wrapped
+ * slot manager, then the product it leaves in the slot is written to the slot's record of the file.
+ * <p>
+ * On construction, the wrapped slot manager is restored to the slots last written to the file (see
+ * {@link ProductSlotManager#restoreSlots(ProductSnapshot[])}). Each slot has its own lock, held over a change of the
+ * slot and the write of its record: purchases from different slots do not wait on each other, and a slot's record
+ * always holds the product after a whole change. Batches of slot changes take every slot lock. Reads go straight to
+ * the wrapped slot manager.
+ * <p>
+ * A purchase writes its slot(s) when it claims the items, before {@link MappedCoinManager} writes the coin counts at
+ * its commit. The two writes are not one step: a crash in between reads back the items as gone but no coin taken in.
+ */
+public class MappedProductSlotManager implements ProductSlotManager {
+
+    //#region class constants
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final ProductSlotManager productSlotManager;
+    private final MappedStateFile stateFile;
+    private final ReentrantLock[] slotLocks;
+
+    //#region Class Constructor
+    private MappedProductSlotManager() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    /**
+     * @param productSlotManager slot manager making the changes; its slots are replaced by the ones of {@param stateFile}
+     * @param stateFile          file the slots are kept in, created for the slot count of {@param productSlotManager}
+     */
+    public MappedProductSlotManager(@NotNull final ProductSlotManager productSlotManager, @NotNull final MappedStateFile stateFile) {
+        if (productSlotManager == null || stateFile == null) {
+            String errorMessage = "Product slot manager and state file are required";
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        this.productSlotManager = productSlotManager;
+        this.stateFile = stateFile;
+        this.slotLocks = new ReentrantLock[stateFile.getProductSlotSize()];
+        for (int i = 0; i < slotLocks.length; i++) {
+            slotLocks[i] = new ReentrantLock();
+        }
+        productSlotManager.restoreSlots(stateFile.readSlots());
+    }
+    //#endregion
+
+    @Override
+    public void updateSlotProductInventorySize(final int productSlotIndex, final long newInventorySize) {
+        ReentrantLock slotLock = lockSlot(productSlotIndex);
+        try {
+            productSlotManager.updateSlotProductInventorySize(productSlotIndex, newInventorySize);
+            store(productSlotIndex);
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public long tryClaimInventory(final int productSlotIndex, final long count) {
+        ReentrantLock slotLock = lockSlot(productSlotIndex);
+        try {
+            long stocking = productSlotManager.tryClaimInventory(productSlotIndex, count);
+            if (stocking == 0) {
+                return 0;
+            }
+            store(productSlotIndex);
+            return stocking;
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryReturnInventory(final int productSlotIndex, final long count, final long stocking) {
+        ReentrantLock slotLock = lockSlot(productSlotIndex);
+        try {
+            if (!productSlotManager.tryReturnInventory(productSlotIndex, count, stocking)) {
+                return false;
+            }
+            store(productSlotIndex);
+            return true;
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public void incrementInventory(final int productSlotIndex, final long count) {
+        ReentrantLock slotLock = lockSlot(productSlotIndex);
+        try {
+            productSlotManager.incrementInventory(productSlotIndex, count);
+            store(productSlotIndex);
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isProductSlotOccupied(final int productSlotIndex) {
+        return productSlotManager.isProductSlotOccupied(productSlotIndex);
+    }
+
+    @Override
+    public ProductSnapshot getSlotProduct(final int productSlotIndex) {
+        return productSlotManager.getSlotProduct(productSlotIndex);
+    }
+
+    @Override
+    public long getSlotProductInventorySize(final int productSlotIndex) {
+        return productSlotManager.getSlotProductInventorySize(productSlotIndex);
+    }
+
+    @Override
+    public void setSlotProductPriceAmount(final int productSlotIndex, @NotNull final Money productPrice) {
+        ReentrantLock slotLock = lockSlot(productSlotIndex);
+        try {
+            productSlotManager.setSlotProductPriceAmount(productSlotIndex, productPrice);
+            store(productSlotIndex);
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public Money getSlotProductPriceAmount(final int productSlotIndex) {
+        return productSlotManager.getSlotProductPriceAmount(productSlotIndex);
+    }
+
+    /**
+     * The slot is only known once the product is added, so its lock is taken afterwards; a change of the slot made in
+     * between writes the record itself, and the record is written again from the slot's current product
+     */
+    @Override
+    public int addProductToSlot(final Product product) {
+        int productSlotIndex = productSlotManager.addProductToSlot(product);
+        ReentrantLock slotLock = lockSlot(productSlotIndex);
+        try {
+            store(productSlotIndex);
+        } finally {
+            slotLock.unlock();
+        }
+        return productSlotIndex;
+    }
+
+    @Override
+    public void removeProductAtSlot(final int productSlotIndex) {
+        ReentrantLock slotLock = lockSlot(productSlotIndex);
+        try {
+            productSlotManager.removeProductAtSlot(productSlotIndex);
+            store(productSlotIndex);
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] applySlotChanges(@NotNull final List<SlotChange> changes) {
+        lockAllSlots();
+        try {
+            int[] addedSlots = productSlotManager.applySlotChanges(changes);
+            storeAllSlots();
+            return addedSlots;
+        } finally {
+            unlockAllSlots();
+        }
+    }
+
+    @Override
+    public ProductSnapshot[] snapshotSlots() {
+        return productSlotManager.snapshotSlots();
+    }
+
+    @Override
+    public void restoreSlots(@NotNull final ProductSnapshot[] slots) {
+        lockAllSlots();
+        try {
+            productSlotManager.restoreSlots(slots);
+            storeAllSlots();
+        } finally {
+            unlockAllSlots();
+        }
+    }
+
+    /**
+     * Write the product the wrapped slot manager holds at {@param productSlotIndex} to the slot's record
+     */
+    private void store(final int productSlotIndex) {
+        stateFile.writeSlot(productSlotIndex, productSlotManager.isProductSlotOccupied(productSlotIndex)
+                ? ProductSnapshot.of(productSlotManager.getSlotProductPriceAmount(productSlotIndex),
+                productSlotManager.getSlotProductInventorySize(productSlotIndex))
+                : null);
+    }
+
+    private void storeAllSlots() {
+        for (int i = 0; i < slotLocks.length; i++) {
+            store(i);
+        }
+    }
+
+    private ReentrantLock lockSlot(final int productSlotIndex) {
+        if (productSlotIndex < 0 || productSlotIndex >= slotLocks.length) {
+            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        ReentrantLock slotLock = slotLocks[productSlotIndex];
+        slotLock.lock();
+        return slotLock;
+    }
+
+    /**
+     * Slot locks are always taken in slot order, so batches never deadlock with each other
+     */
+    private void lockAllSlots() {
+        for (ReentrantLock slotLock : slotLocks) {
+            slotLock.lock();
+        }
+    }
+
+    private void unlockAllSlots() {
+        for (int i = slotLocks.length - 1; i >= 0; i--) {
+            slotLocks[i].unlock();
+        }
+    }
+}
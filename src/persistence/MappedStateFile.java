@@ -0,0 +1,398 @@
+package persistence;
+
+import com.sun.istack.internal.NotNull;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import model.Money;
+import model.ProductSnapshot;
+import util.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static util.Constants.*;
+
+/**
+ * Machine state - the available count of each coin and the product of each slot - kept in a fixed-layout
+ * memory-mapped file, so a restarted process resumes from the exact counts without parsing or replaying anything.
+ * <p>
+ * The file holds a header (magic, format version, coin scale, coin count, product slot count, minor units of each coin
+ * and a CRC32 of the preceding header bytes), the coin counts record, then one record per product slot, each slot on
+ * its own 64-byte line. Every record is kept as two copies, each holding a sequence, the record and a CRC32 of both.
+ * A write goes to the copy holding the older sequence: a write torn by a crash fails its CRC and the other copy still
+ * holds the previous state. Opening the file takes the valid copy with the higher sequence of each record.
+ * <p>
+ * A write reaches the page cache as soon as it is made, so it survives a crash of the process; {@link #force()}
+ * flushes it to the storage device against an operating system crash or power loss. Writes of one record must not run
+ * concurrently: {@link MappedCoinManager} and {@link MappedProductSlotManager} serialize them.
+ */
+public final class MappedStateFile implements AutoCloseable {
+
+    //#region class constants
+    private static final int MAGIC = 0x564D4D53; //"VMMS"
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_FIXED_SIZE = 16;
+    private static final int SLOT_LINE_SIZE = 64;
+    private static final int SLOT_RECORD_SIZE = 32;
+    private static final int OCCUPIED = 1;
+    private static final int PRICE_SET = 2;
+    private final Class TAG = this.getClass();
+    //#end region
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CoinDenominations coinDenominations;
+    private final int productSlotSize;
+    private final int coinRecordOffset;
+    private final int coinRecordSize;
+    private final int slotRecordOffset;
+
+    //Sequence of the latest copy of each record; its parity is the copy holding it
+    private long coinSequence;
+    private final long[] slotSequences;
+
+    //Views and encoding buffers are per thread: records are written through absolute positions of a private view
+    private final ThreadLocal<Scratch> scratch;
+    private volatile boolean closed;
+
+    //#region Class Constructor
+    private MappedStateFile() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    private MappedStateFile(final Path file, final FileChannel channel, final MappedByteBuffer buffer,
+                            final CoinDenominations coinDenominations, final int productSlotSize) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.coinDenominations = coinDenominations;
+        this.productSlotSize = productSlotSize;
+        this.coinRecordOffset = headerSize(coinDenominations);
+        this.coinRecordSize = coinRecordSize(coinDenominations);
+        this.slotRecordOffset = slotRecordOffset(coinDenominations);
+        this.slotSequences = new long[productSlotSize];
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(buffer.duplicate(), Math.max(coinRecordSize, SLOT_RECORD_SIZE)));
+
+        this.coinSequence = buffer.getLong(latestCopy(coinRecordOffset, coinRecordSize));
+        for (int i = 0; i < productSlotSize; i++) {
+            slotSequences[i] = buffer.getLong(latestCopy(slotRecordOffset + i * SLOT_LINE_SIZE, SLOT_RECORD_SIZE));
+        }
+    }
+
+    /**
+     * Open the state file {@param file}, creating it with no coins and empty slots if it does not exist
+     *
+     * @throws IllegalStateException if the file is corrupted or was created for other coin denominations or another
+     *                               product slot size
+     */
+    public static MappedStateFile open(@NotNull final Path file, @NotNull final CoinDenominations coinDenominations,
+                                       final int productSlotSize) throws IOException {
+        if (file == null || coinDenominations == null || productSlotSize < 1) {
+            String errorMessage = "State file, coin denominations and a positive product slot size are required";
+            Logger.error(MappedStateFile.class, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        if (!Files.exists(file)) {
+            create(file, coinDenominations, productSlotSize);
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            validateHeader(file, channel, coinDenominations, productSlotSize);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            MappedStateFile stateFile = new MappedStateFile(file, channel, buffer, coinDenominations, productSlotSize);
+            Logger.info(MappedStateFile.class, () -> "State file opened: " + file);
+            return stateFile;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    //#endregion
+
+    public Path getFile() {
+        return file;
+    }
+
+    public CoinDenominations getCoinDenominations() {
+        return coinDenominations;
+    }
+
+    public int getProductSlotSize() {
+        return productSlotSize;
+    }
+
+    /**
+     * @return the coin counts last written
+     */
+    public CoinCounts readCoinCounts() {
+        int offset = coinRecordOffset + (int) (coinSequence & 1) * coinRecordSize + 8;
+        int[] counts = new int[coinDenominations.size()];
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            counts[ordinal] = buffer.getInt(offset + ordinal * 4);
+        }
+        return CoinCounts.of(coinDenominations, counts);
+    }
+
+    /**
+     * @param counts available count of each coin, indexed by ordinal of {@link #getCoinDenominations()}
+     */
+    public void writeCoinCounts(@NotNull final int[] counts) {
+        checkOpen();
+        long sequence = coinSequence + 1;
+        Scratch buffers = scratch.get();
+        ByteBuffer record = buffers.record;
+        record.clear();
+        encodeCoinCounts(record, sequence, counts);
+        put(buffers.view, coinRecordOffset + (int) (sequence & 1) * coinRecordSize, record, buffers.crc);
+        coinSequence = sequence;
+    }
+
+    /**
+     * @return the product of each slot last written, null for an empty slot
+     */
+    public ProductSnapshot[] readSlots() {
+        ProductSnapshot[] slots = new ProductSnapshot[productSlotSize];
+        for (int i = 0; i < productSlotSize; i++) {
+            int offset = slotRecordOffset + i * SLOT_LINE_SIZE + (int) (slotSequences[i] & 1) * SLOT_RECORD_SIZE;
+            int flags = buffer.getInt(offset + 24);
+            if ((flags & OCCUPIED) != 0) {
+                slots[i] = ProductSnapshot.of((flags & PRICE_SET) != 0 ? Money.ofMinorUnits(buffer.getLong(offset + 8)) : null,
+                        buffer.getLong(offset + 16));
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * @param product product of slot {@param productSlotIndex}, null for an empty slot
+     */
+    public void writeSlot(final int productSlotIndex, final ProductSnapshot product) {
+        checkOpen();
+        if (productSlotIndex < 0 || productSlotIndex >= productSlotSize) {
+            String errorMessage = ERROR_MESSAGE_INVALID_PRODUCT_SLOT;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        long sequence = slotSequences[productSlotIndex] + 1;
+        Scratch buffers = scratch.get();
+        ByteBuffer record = buffers.record;
+        record.clear();
+        encodeSlot(record, sequence, product);
+        put(buffers.view, slotRecordOffset + productSlotIndex * SLOT_LINE_SIZE + (int) (sequence & 1) * SLOT_RECORD_SIZE,
+                record, buffers.crc);
+        slotSequences[productSlotIndex] = sequence;
+    }
+
+    /**
+     * Flush every write to the storage device
+     */
+    public void force() {
+        checkOpen();
+        buffer.force();
+    }
+
+    /**
+     * Flush every write to the storage device and close the file. The state already written stays in the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        channel.close();
+        Logger.info(TAG, () -> "State file closed: " + file);
+    }
+
+    //#region layout
+    private static int headerSize(final CoinDenominations coinDenominations) {
+        return HEADER_FIXED_SIZE + coinDenominations.size() * 4 + 4;
+    }
+
+    private static int coinRecordSize(final CoinDenominations coinDenominations) {
+        return 8 + coinDenominations.size() * 4 + 4;
+    }
+
+    private static int slotRecordOffset(final CoinDenominations coinDenominations) {
+        int coinRecordsEnd = headerSize(coinDenominations) + 2 * coinRecordSize(coinDenominations);
+        return (coinRecordsEnd + SLOT_LINE_SIZE - 1) / SLOT_LINE_SIZE * SLOT_LINE_SIZE;
+    }
+
+    private static int fileSize(final CoinDenominations coinDenominations, final int productSlotSize) {
+        return slotRecordOffset(coinDenominations) + productSlotSize * SLOT_LINE_SIZE;
+    }
+    //#end region
+
+    /**
+     * Write a file holding no coins and empty slots, as copy 0 of every record at sequence 0. It is written to a
+     * temporary file, forced, then renamed into place, so a crash never leaves a partial state file behind.
+     */
+    private static void create(final Path file, final CoinDenominations coinDenominations, final int productSlotSize)
+            throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(fileSize(coinDenominations, productSlotSize));
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(headerSize(coinDenominations));
+        encodeHeader(header, coinDenominations, productSlotSize);
+        put(content, 0, header, crc);
+
+        ByteBuffer record = ByteBuffer.allocate(Math.max(coinRecordSize(coinDenominations), SLOT_RECORD_SIZE));
+        encodeCoinCounts(record, 0, new int[coinDenominations.size()]);
+        put(content, headerSize(coinDenominations), record, crc);
+        for (int i = 0; i < productSlotSize; i++) {
+            record.clear();
+            encodeSlot(record, 0, null);
+            put(content, slotRecordOffset(coinDenominations) + i * SLOT_LINE_SIZE, record, crc);
+        }
+        content.clear();
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void validateHeader(final Path file, final FileChannel channel,
+                                       final CoinDenominations coinDenominations, final int productSlotSize) throws IOException {
+        ByteBuffer fixedHeader = ByteBuffer.allocate(HEADER_FIXED_SIZE);
+        readFully(channel, fixedHeader, 0);
+        if (fixedHeader.hasRemaining() || fixedHeader.getInt(0) != MAGIC || fixedHeader.getShort(4) != FORMAT_VERSION) {
+            throw corrupted(file, "not a state file");
+        }
+        //Sized from the file's own coin count, so a file of other denominations is reported as such, not as corrupted
+        int headerSize = HEADER_FIXED_SIZE + (fixedHeader.getShort(8) & 0xFFFF) * 4 + 4;
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        readFully(channel, header, 0);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, headerSize - 4);
+        if (header.hasRemaining() || (int) crc.getValue() != header.getInt(headerSize - 4)) {
+            throw corrupted(file, "header checksum mismatch");
+        }
+
+        ByteBuffer expectedHeader = ByteBuffer.allocate(headerSize(coinDenominations));
+        encodeHeader(expectedHeader, coinDenominations, productSlotSize);
+        expectedHeader.flip();
+        header.flip().limit(headerSize - 4);
+        if (!header.equals(expectedHeader)) {
+            String errorMessage = ERROR_MESSAGE_STATE_FILE_LAYOUT_MISMATCH;
+            Logger.error(MappedStateFile.class, errorMessage + ": " + file);
+            throw new IllegalStateException(errorMessage);
+        }
+        if (channel.size() != fileSize(coinDenominations, productSlotSize)) {
+            throw corrupted(file, "file size " + channel.size());
+        }
+    }
+
+    /**
+     * @return offset of the valid copy of the record at {@param offset} holding the higher sequence
+     * @throws IllegalStateException if neither copy is valid
+     */
+    private int latestCopy(final int offset, final int recordSize) {
+        ByteBuffer view = buffer.duplicate();
+        CRC32 crc = new CRC32();
+        int latestOffset = -1;
+        for (int copy = 0; copy < 2; copy++) {
+            int copyOffset = offset + copy * recordSize;
+            long sequence = buffer.getLong(copyOffset);
+            view.limit(copyOffset + recordSize - 4).position(copyOffset);
+            crc.reset();
+            crc.update(view);
+            boolean valid = (int) crc.getValue() == buffer.getInt(copyOffset + recordSize - 4) && (sequence & 1) == copy;
+            if (valid && (latestOffset < 0 || sequence > buffer.getLong(latestOffset))) {
+                latestOffset = copyOffset;
+            }
+        }
+        if (latestOffset < 0) {
+            throw corrupted(file, "both copies of the record at offset " + offset + " are torn");
+        }
+        return latestOffset;
+    }
+
+    //#region encoding
+    private static void encodeHeader(final ByteBuffer header, final CoinDenominations coinDenominations,
+                                     final int productSlotSize) {
+        header.putInt(MAGIC);
+        header.putShort(FORMAT_VERSION);
+        header.putShort((short) coinDenominations.getScale());
+        header.putShort((short) coinDenominations.size());
+        header.putShort((short) 0);
+        header.putInt(productSlotSize);
+        for (int ordinal = 0; ordinal < coinDenominations.size(); ordinal++) {
+            header.putInt(coinDenominations.minorUnitsAt(ordinal));
+        }
+    }
+
+    private static void encodeCoinCounts(final ByteBuffer record, final long sequence, final int[] counts) {
+        record.putLong(sequence);
+        for (int count : counts) {
+            record.putInt(count);
+        }
+    }
+
+    private static void encodeSlot(final ByteBuffer record, final long sequence, final ProductSnapshot product) {
+        Money price = product == null ? null : product.getPriceAmount();
+        record.putLong(sequence);
+        record.putLong(price == null ? 0 : price.getMinorUnits());
+        record.putLong(product == null ? 0 : product.getInventorySize());
+        record.putInt((product != null ? OCCUPIED : 0) | (price != null ? PRICE_SET : 0));
+    }
+
+    /**
+     * Append the CRC32 of the bytes encoded in {@param record} and copy it to {@param target} at {@param offset}
+     */
+    private static void put(final ByteBuffer target, final int offset, final ByteBuffer record, final CRC32 crc) {
+        crc.reset();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        target.position(offset);
+        target.put(record);
+    }
+    //#end region
+
+    private static void readFully(final FileChannel channel, final ByteBuffer target, final long position) throws IOException {
+        while (target.hasRemaining() && channel.read(target, position + target.position()) > 0) {
+            //Read until full or end of file
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            String errorMessage = ERROR_MESSAGE_STATE_FILE_CLOSED;
+            Logger.error(TAG, errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+    }
+
+    private static IllegalStateException corrupted(final Path file, final String detail) {
+        String errorMessage = ERROR_MESSAGE_STATE_FILE_CORRUPTED;
+        Logger.error(MappedStateFile.class, errorMessage + ": " + file + ", " + detail);
+        return new IllegalStateException(errorMessage);
+    }
+
+    private static final class Scratch {
+        private final ByteBuffer view;
+        private final ByteBuffer record;
+        private final CRC32 crc = new CRC32();
+
+        private Scratch(final ByteBuffer view, final int recordSize) {
+            this.view = view;
+            this.record = ByteBuffer.allocate(recordSize);
+        }
+    }
+}
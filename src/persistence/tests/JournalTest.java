@@ -0,0 +1,271 @@
+package persistence.tests;
+
+import application.VendingMachine;
+import manager.CoinDenominations;
+import manager.DefaultCoinManager;
+import manager.DefaultProductSlotManager;
+import model.Sku;
+import operation.BasketItem;
+import operation.MaintenanceBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.Durability;
+import persistence.Journal;
+import persistence.JournalEntry;
+import persistence.JournalHandler;
+import persistence.JournalReader;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class JournalTest {
+
+    private final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+    private final CoinDenominations COIN_DENOMINATIONS = new CoinDenominations(SUPPORTED_COINS);
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("vending-machine-journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void replay_appendedRecords_areReplayedInOrder() throws IOException {
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC)) {
+            Assertions.assertEquals(1, journal.commit(new JournalEntry().addProduct(0, 150, 10).catalogSku(0, "COLA", "Cola")));
+            Assertions.assertEquals(2, journal.commit(new JournalEntry().adjustInventory(0, -1).adjustCoinCount(3, 2).adjustCoinCount(1, -1)));
+            Assertions.assertEquals(3, journal.commit(new JournalEntry().setPrice(0, 120).setInventorySize(0, 4).setCoinCount(2, 7)));
+            Assertions.assertEquals(4, journal.commit(new JournalEntry().removeProduct(0)));
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        Assertions.assertEquals(4, JournalReader.replay(directory, COIN_DENOMINATIONS, 0, handler));
+        Assertions.assertEquals(Arrays.asList(
+                "begin 1", "addProduct 0 150 10", "catalogSku 0 COLA Cola", "end 1",
+                "begin 2", "adjustInventory 0 -1", "adjustCoinCount 3 2", "adjustCoinCount 1 -1", "end 2",
+                "begin 3", "setPrice 0 120", "setInventorySize 0 4", "setCoinCount 2 7", "end 3",
+                "begin 4", "removeProduct 0", "end 4"), handler.operations);
+
+        //Records already applied are skipped
+        handler = new RecordingHandler();
+        Assertions.assertEquals(4, JournalReader.replay(directory, COIN_DENOMINATIONS, 3, handler));
+        Assertions.assertEquals(Arrays.asList("begin 4", "removeProduct 0", "end 4"), handler.operations);
+    }
+
+    @Test
+    void open_tornLastRecord_isCutOffAndSequenceContinues() throws IOException {
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.ASYNC)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(new JournalEntry().setInventorySize(i, i));
+            }
+        }
+        //Crash in the middle of the last record
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.BATCHED)) {
+            Assertions.assertEquals(2, journal.getLastSequence());
+            Assertions.assertEquals(3, journal.append(new JournalEntry().setInventorySize(7, 7)));
+            journal.sync();
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        Assertions.assertEquals(3, JournalReader.replay(directory, COIN_DENOMINATIONS, 0, handler));
+        Assertions.assertTrue(handler.operations.contains("setInventorySize 7 7"));
+        Assertions.assertFalse(handler.operations.contains("setInventorySize 2 2"));
+    }
+
+    @Test
+    void replay_damagedRecordBeforeTheLastSegment_throwsIllegalStateException() throws IOException {
+        //A one-byte segment size rolls to a new segment at every batch
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC, 1, 1_000_000)) {
+            for (int i = 0; i < 3; i++) {
+                journal.commit(new JournalEntry().setInventorySize(i, i));
+            }
+        }
+        List<Path> segments = segments();
+        Assertions.assertEquals(3, segments.size());
+        Assertions.assertEquals(3, JournalReader.replay(directory, COIN_DENOMINATIONS, 0, new RecordingHandler()));
+
+        try (FileChannel channel = FileChannel.open(segments.get(1), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> JournalReader.replay(directory, COIN_DENOMINATIONS, 0, new RecordingHandler()));
+    }
+
+    @Test
+    void open_otherCoinDenominations_throwsIllegalStateException() throws IOException {
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC)) {
+            journal.commit(new JournalEntry().setCoinCount(0, 1));
+        }
+
+        Assertions.assertThrows(IllegalStateException.class, () -> Journal.open(directory,
+                new CoinDenominations(Arrays.asList(0.1, 0.5)), Durability.SYNC));
+    }
+
+    @Test
+    void commit_concurrentSyncCommits_everyRecordIsDurable() throws Exception {
+        int threadCount = 8;
+        int commitsPerThread = 200;
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int slot = t;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < commitsPerThread; i++) {
+                        long sequence = journal.commit(new JournalEntry().adjustInventory(slot, -1));
+                        Assertions.assertTrue(journal.getWrittenSequence() >= sequence);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assertions.assertEquals(threadCount * commitsPerThread, journal.getLastSequence());
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        Assertions.assertEquals(threadCount * commitsPerThread, JournalReader.replay(directory, COIN_DENOMINATIONS, 0, handler));
+        Assertions.assertEquals(commitsPerThread, Collections.frequency(handler.operations, "adjustInventory 3 -1"));
+    }
+
+    @Test
+    void append_closedJournal_throwsIllegalStateException() throws IOException {
+        Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.ASYNC);
+        journal.close();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> journal.append(new JournalEntry().removeProduct(0)));
+    }
+
+    @Test
+    void recover_afterPurchasesAndMaintenance_restoresTheMachineState() throws IOException {
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC)) {
+            VendingMachine vendingMachine = VendingMachine.recover(new DefaultCoinManager(SUPPORTED_COINS),
+                    new DefaultProductSlotManager(5), false, journal);
+            vendingMachine.setCoinAvailableCount(0.2, 5);
+            vendingMachine.setCoinAvailableCount(0.1, 3);
+            vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 10);
+            vendingMachine.addProductToSlot(Sku.of("WATER", "Water"), BigDecimal.valueOf(0.3), 4);
+            vendingMachine.addProductToSlot(null, 2);
+            vendingMachine.setProductPrice(2, BigDecimal.valueOf(0.5));
+            vendingMachine.buyProduct(0, Collections.singletonList(1.0));
+            vendingMachine.buyProducts(Arrays.asList(BasketItem.of(1, 2), BasketItem.of(2, 1)), Arrays.asList(1.0, 0.2));
+            vendingMachine.applyMaintenanceBatch(MaintenanceBatch.builder()
+                    .removeProduct(0)
+                    .addProduct(BigDecimal.valueOf(0.8), 6)
+                    .setCoinAvailableCount(0.5, 2)
+                    .build());
+            vendingMachine.removeProductFromSlot(2);
+        }
+
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC)) {
+            VendingMachine recovered = VendingMachine.recover(new DefaultCoinManager(SUPPORTED_COINS),
+                    new DefaultProductSlotManager(5), false, journal);
+
+            //Slot 0 was refilled by the batch, slot 2 removed
+            Assertions.assertEquals(BigDecimal.valueOf(0.8).setScale(2), recovered.getProductPrice(0));
+            Assertions.assertEquals(6, recovered.getProductInventorySize(0));
+            Assertions.assertEquals(2, recovered.getProductInventorySize(1));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> recovered.getProductInventorySize(2));
+            //In: 1.0, 1.0, 0.2; out: 0.2 + 0.2 then 0.1 change
+            Assertions.assertEquals(2, recovered.getCoinAvailableCount(1.0));
+            Assertions.assertEquals(4, recovered.getCoinAvailableCount(0.2));
+            Assertions.assertEquals(2, recovered.getCoinAvailableCount(0.1));
+            Assertions.assertEquals(2, recovered.getCoinAvailableCount(0.5));
+            //The SKU catalog is restored too
+            Collection<Double> change = recovered.buyBySku("WATER", Collections.singletonList(1.0));
+            Assertions.assertEquals(0.7, change.stream().mapToDouble(Double::doubleValue).sum(), 1e-9);
+            Assertions.assertEquals(1, recovered.getProductInventorySize(1));
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static final class RecordingHandler implements JournalHandler {
+
+        private final List<String> operations = new ArrayList<>();
+
+        @Override
+        public void beginTransaction(final long sequence) {
+            operations.add("begin " + sequence);
+        }
+
+        @Override
+        public void addProduct(final int productSlotIndex, final long priceMinorUnits, final long inventorySize) {
+            operations.add("addProduct " + productSlotIndex + " " + priceMinorUnits + " " + inventorySize);
+        }
+
+        @Override
+        public void catalogSku(final int productSlotIndex, final String skuCode, final String skuName) {
+            operations.add("catalogSku " + productSlotIndex + " " + skuCode + " " + skuName);
+        }
+
+        @Override
+        public void removeProduct(final int productSlotIndex) {
+            operations.add("removeProduct " + productSlotIndex);
+        }
+
+        @Override
+        public void setPrice(final int productSlotIndex, final long priceMinorUnits) {
+            operations.add("setPrice " + productSlotIndex + " " + priceMinorUnits);
+        }
+
+        @Override
+        public void setInventorySize(final int productSlotIndex, final long inventorySize) {
+            operations.add("setInventorySize " + productSlotIndex + " " + inventorySize);
+        }
+
+        @Override
+        public void adjustInventory(final int productSlotIndex, final long delta) {
+            operations.add("adjustInventory " + productSlotIndex + " " + delta);
+        }
+
+        @Override
+        public void setCoinCount(final int coinOrdinal, final int count) {
+            operations.add("setCoinCount " + coinOrdinal + " " + count);
+        }
+
+        @Override
+        public void adjustCoinCount(final int coinOrdinal, final int delta) {
+            operations.add("adjustCoinCount " + coinOrdinal + " " + delta);
+        }
+
+        @Override
+        public void endTransaction(final long sequence) {
+            operations.add("end " + sequence);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package persistence.tests;
+
+import application.VendingMachine;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import manager.DefaultCoinManager;
+import manager.DefaultProductSlotManager;
+import model.Money;
+import model.ProductSnapshot;
+import model.Sku;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.Durability;
+import persistence.Journal;
+import persistence.JournalEntry;
+import persistence.MachineSnapshot;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class MachineSnapshotTest {
+
+    private final int PRODUCT_SLOT_SIZE = 4;
+    private final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+    private final CoinDenominations COIN_DENOMINATIONS = new CoinDenominations(SUPPORTED_COINS);
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("vending-machine-snapshot");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void readLatest_writtenSnapshot_readsTheSameState() throws IOException {
+        ProductSnapshot[] slots = {ProductSnapshot.of(Money.ofMinorUnits(150), 3), null, ProductSnapshot.of(null, 2)};
+        Sku[] skus = {Sku.of("COLA", "Cola"), null, null};
+        MachineSnapshot.of(7, CoinCounts.of(COIN_DENOMINATIONS, new int[]{1, 2, 3, 4}), slots, skus).writeTo(directory);
+        MachineSnapshot.of(3, CoinCounts.none(COIN_DENOMINATIONS), new ProductSnapshot[3], new Sku[3]).writeTo(directory);
+
+        MachineSnapshot snapshot = MachineSnapshot.readLatest(directory, COIN_DENOMINATIONS);
+
+        Assertions.assertEquals(7, snapshot.getSequence());
+        Assertions.assertEquals(CoinCounts.of(COIN_DENOMINATIONS, new int[]{1, 2, 3, 4}), snapshot.getCoinCounts());
+        Assertions.assertEquals(Money.ofMinorUnits(150), snapshot.getSlots()[0].getPriceAmount());
+        Assertions.assertNull(snapshot.getSlots()[1]);
+        Assertions.assertNull(snapshot.getSlots()[2].getPriceAmount());
+        Assertions.assertEquals(Sku.of("COLA", "Cola"), snapshot.getSkus()[0]);
+
+        Assertions.assertEquals(1, MachineSnapshot.deleteOlderThan(directory, 7));
+        Assertions.assertEquals(7, MachineSnapshot.readLatest(directory, COIN_DENOMINATIONS).getSequence());
+    }
+
+    @Test
+    void readLatest_damagedSnapshot_throwsIllegalStateException() throws IOException {
+        Path file = MachineSnapshot.of(1, CoinCounts.none(COIN_DENOMINATIONS), new ProductSnapshot[2], new Sku[2])
+                .writeTo(directory);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), 12);
+        }
+
+        Assertions.assertThrows(IllegalStateException.class, () -> MachineSnapshot.readLatest(directory, COIN_DENOMINATIONS));
+    }
+
+    @Test
+    void recover_afterSnapshot_replaysOnlyTheTailAndDeletesCoveredSegments() throws IOException {
+        //One segment per batch: every synchronous change rolls to a new segment
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC, 1, 1_000_000)) {
+            VendingMachine vendingMachine = newVendingMachine(journal);
+            vendingMachine.setCoinAvailableCount(0.2, 5);
+            vendingMachine.addProductToSlot(Sku.of("COLA", "Cola"), BigDecimal.valueOf(0.6), 10);
+            vendingMachine.addProductToSlot(BigDecimal.valueOf(0.5), 10);
+            vendingMachine.removeProductFromSlot(1);
+            vendingMachine.buyProduct(0, Collections.singletonList(1.0));
+            Assertions.assertEquals(5, vendingMachine.takeSnapshot());
+
+            vendingMachine.buyProduct(0, Collections.singletonList(1.0));
+            vendingMachine.setProductPrice(0, BigDecimal.valueOf(0.8));
+            Assertions.assertEquals(7, vendingMachine.takeSnapshot());
+            vendingMachine.buyProduct(0, Collections.singletonList(1.0));
+        }
+        //The second snapshot covers every segment before the one it rolled to
+        Assertions.assertEquals(Arrays.asList("journal-00000000000000000007.log", "journal-00000000000000000008.log",
+                "snapshot-00000000000000000007.snap"), fileNames());
+
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC)) {
+            VendingMachine recovered = newVendingMachine(journal);
+
+            Assertions.assertEquals(7, recovered.getProductInventorySize(0));
+            Assertions.assertEquals(BigDecimal.valueOf(0.8).setScale(2), recovered.getProductPrice(0));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> recovered.getProductInventorySize(1));
+            //0.4 + 0.4 + 0.2 paid out of five 0.2 coins
+            Assertions.assertEquals(0, recovered.getCoinAvailableCount(0.2));
+            Assertions.assertEquals(3, recovered.getCoinAvailableCount(1.0));
+            //The catalog is restored from the snapshot
+            recovered.buyBySku("COLA", Arrays.asList(0.5, 0.2, 0.1));
+            Assertions.assertEquals(9, journal.getLastSequence());
+        }
+    }
+
+    @Test
+    void takeSnapshot_concurrentPurchases_recoveredStateMatchesTheLiveState() throws Exception {
+        long[] liveCounts = new long[COIN_DENOMINATIONS.size()];
+        long[] liveInventorySizes = new long[PRODUCT_SLOT_SIZE];
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.ASYNC, 4096, 1_000_000)) {
+            VendingMachine vendingMachine = newVendingMachine(journal);
+            vendingMachine.setCoinAvailableCount(0.1, 1_000_000);
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                vendingMachine.addProductToSlot(BigDecimal.valueOf(0.9), 1_000_000);
+            }
+
+            AtomicBoolean purchasing = new AtomicBoolean(true);
+            List<Thread> buyers = new ArrayList<>();
+            for (int b = 0; b < PRODUCT_SLOT_SIZE; b++) {
+                final int productSlotIndex = b;
+                Thread buyer = new Thread(() -> {
+                    while (purchasing.get()) {
+                        vendingMachine.buyProduct(productSlotIndex, Collections.singletonList(1.0));
+                    }
+                });
+                buyers.add(buyer);
+                buyer.start();
+            }
+            for (int i = 0; i < 20; i++) {
+                vendingMachine.takeSnapshot();
+            }
+            purchasing.set(false);
+            for (Thread buyer : buyers) {
+                buyer.join();
+            }
+            //Records after the last snapshot, replayed on top of it
+            vendingMachine.setCoinAvailableCount(0.5, 1);
+
+            for (int ordinal = 0; ordinal < liveCounts.length; ordinal++) {
+                liveCounts[ordinal] = vendingMachine.getCoinAvailableCount(COIN_DENOMINATIONS.valueAt(ordinal));
+            }
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                liveInventorySizes[i] = vendingMachine.getProductInventorySize(i);
+            }
+        }
+
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.ASYNC)) {
+            VendingMachine recovered = newVendingMachine(journal);
+            for (int ordinal = 0; ordinal < liveCounts.length; ordinal++) {
+                Assertions.assertEquals(liveCounts[ordinal], recovered.getCoinAvailableCount(COIN_DENOMINATIONS.valueAt(ordinal)));
+            }
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                Assertions.assertEquals(liveInventorySizes[i], recovered.getProductInventorySize(i));
+            }
+        }
+    }
+
+    @Test
+    void takeSnapshot_machineWithoutJournal_throwsIllegalStateException() {
+        VendingMachine vendingMachine = new VendingMachine(PRODUCT_SLOT_SIZE, SUPPORTED_COINS);
+
+        Assertions.assertThrows(IllegalStateException.class, vendingMachine::takeSnapshot);
+    }
+
+    @Test
+    void buyProduct_closedJournal_throwsIllegalStateExceptionBeforeAnythingChanges() throws IOException {
+        Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC);
+        VendingMachine vendingMachine = newVendingMachine(journal);
+        vendingMachine.setCoinAvailableCount(0.2, 5);
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 10);
+        journal.close();
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> vendingMachine.buyProduct(0, Collections.singletonList(1.0)));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> vendingMachine.setProductPrice(0, BigDecimal.valueOf(0.8)));
+
+        Assertions.assertEquals(10, vendingMachine.getProductInventorySize(0));
+        Assertions.assertEquals(BigDecimal.valueOf(0.6).setScale(2), vendingMachine.getProductPrice(0));
+        Assertions.assertEquals(5, vendingMachine.getCoinAvailableCount(0.2));
+        Assertions.assertEquals(0, vendingMachine.getCoinAvailableCount(1.0));
+    }
+
+    @Test
+    void deleteSegmentsUpTo_activeSegment_isKept() throws IOException {
+        try (Journal journal = Journal.open(directory, COIN_DENOMINATIONS, Durability.SYNC)) {
+            journal.commit(new JournalEntry().setCoinCount(0, 1));
+
+            Assertions.assertEquals(0, journal.deleteSegmentsUpTo(Long.MAX_VALUE - 1));
+        }
+        Assertions.assertEquals(Collections.singletonList("journal-00000000000000000001.log"), fileNames());
+    }
+
+    private VendingMachine newVendingMachine(final Journal journal) throws IOException {
+        return VendingMachine.recover(new DefaultCoinManager(SUPPORTED_COINS),
+                new DefaultProductSlotManager(PRODUCT_SLOT_SIZE), false, journal);
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package persistence.tests;
+
+import application.VendingMachine;
+import manager.AtomicCoinManager;
+import manager.ChangeReservation;
+import manager.CoinCounts;
+import manager.CoinDenominations;
+import manager.DefaultCoinManager;
+import manager.DefaultProductSlotManager;
+import manager.StripedProductSlotManager;
+import model.Money;
+import model.ProductSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.MappedCoinManager;
+import persistence.MappedProductSlotManager;
+import persistence.MappedStateFile;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class MappedStateFileTest {
+
+    private final int PRODUCT_SLOT_SIZE = 4;
+    private final Collection<Double> SUPPORTED_COINS = Arrays.asList(0.1, 0.2, 0.5, 1.0);
+    private final CoinDenominations COIN_DENOMINATIONS = new CoinDenominations(SUPPORTED_COINS);
+    //Header of four coins: 16 fixed bytes, 4 per coin and the CRC; copy 0 of the coin counts follows it
+    private final int COIN_RECORD_OFFSET = 36;
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("vending-machine-state");
+        file = directory.resolve("state.map");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void open_writtenState_isReadBackAfterReopening() throws IOException {
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            Assertions.assertEquals(CoinCounts.none(COIN_DENOMINATIONS), stateFile.readCoinCounts());
+            Assertions.assertArrayEquals(new ProductSnapshot[PRODUCT_SLOT_SIZE], stateFile.readSlots());
+
+            stateFile.writeCoinCounts(new int[]{1, 2, 3, 4});
+            stateFile.writeCoinCounts(new int[]{5, 6, 7, 8});
+            stateFile.writeSlot(0, ProductSnapshot.of(Money.ofMinorUnits(150), 3));
+            stateFile.writeSlot(2, ProductSnapshot.of(null, 7));
+        }
+
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            Assertions.assertEquals(CoinCounts.of(COIN_DENOMINATIONS, new int[]{5, 6, 7, 8}), stateFile.readCoinCounts());
+            Assertions.assertArrayEquals(new ProductSnapshot[]{ProductSnapshot.of(Money.ofMinorUnits(150), 3), null,
+                    ProductSnapshot.of(null, 7), null}, stateFile.readSlots());
+        }
+    }
+
+    @Test
+    void open_tornLatestCopy_readsThePreviousState() throws IOException {
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            stateFile.writeCoinCounts(new int[]{1, 2, 3, 4});
+            //Sequence 2 is written to copy 0
+            stateFile.writeCoinCounts(new int[]{5, 6, 7, 8});
+        }
+        //A crash part way through the write: the first count of copy 0 is new, the CRC is not
+        overwrite(COIN_RECORD_OFFSET + 8, (byte) 0x7F);
+
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            Assertions.assertEquals(CoinCounts.of(COIN_DENOMINATIONS, new int[]{1, 2, 3, 4}), stateFile.readCoinCounts());
+
+            //The torn copy is the one written next
+            stateFile.writeCoinCounts(new int[]{9, 9, 9, 9});
+        }
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            Assertions.assertEquals(CoinCounts.of(COIN_DENOMINATIONS, new int[]{9, 9, 9, 9}), stateFile.readCoinCounts());
+        }
+    }
+
+    @Test
+    void open_damagedHeader_throwsIllegalStateException() throws IOException {
+        MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE).close();
+        overwrite(20, (byte) 0x7F);
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE));
+    }
+
+    @Test
+    void open_otherLayout_throwsIllegalStateException() throws IOException {
+        MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE).close();
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> MappedStateFile.open(file, new CoinDenominations(Arrays.asList(0.5, 1.0)), PRODUCT_SLOT_SIZE));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE + 1));
+    }
+
+    @Test
+    void writeCoinCounts_closedFile_throwsIllegalStateException() throws IOException {
+        MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE);
+        stateFile.close();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> stateFile.writeCoinCounts(new int[]{1, 2, 3, 4}));
+    }
+
+    @Test
+    void vendingMachine_restartedOnTheStateFile_resumesWithTheSameState() throws IOException {
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            VendingMachine vendingMachine = newVendingMachine(stateFile);
+            vendingMachine.setCoinAvailableCount(0.2, 5);
+            vendingMachine.addProductToSlot(BigDecimal.valueOf(0.6), 10);
+            vendingMachine.addProductToSlot(BigDecimal.valueOf(0.5), 10);
+            vendingMachine.removeProductFromSlot(1);
+            vendingMachine.buyProduct(0, Collections.singletonList(1.0));
+            vendingMachine.setProductPrice(0, BigDecimal.valueOf(0.8));
+        }
+
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            VendingMachine restarted = newVendingMachine(stateFile);
+
+            Assertions.assertEquals(9, restarted.getProductInventorySize(0));
+            Assertions.assertEquals(BigDecimal.valueOf(0.8).setScale(2), restarted.getProductPrice(0));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> restarted.getProductInventorySize(1));
+            //0.4 paid out of five 0.2 coins
+            Assertions.assertEquals(3, restarted.getCoinAvailableCount(0.2));
+            Assertions.assertEquals(1, restarted.getCoinAvailableCount(1.0));
+        }
+    }
+
+    @Test
+    void mappedCoinManager_pendingChangeReservation_isOnlyWrittenWhenCommitted() throws IOException {
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            MappedCoinManager coinManager = new MappedCoinManager(new DefaultCoinManager(SUPPORTED_COINS), stateFile);
+            coinManager.setCoinAvailableCount(0.2, 5);
+
+            ChangeReservation released = coinManager.reserveChange(Money.ofMinorUnits(40));
+            Assertions.assertEquals(3, coinManager.getCoinAvailableCount(0.2));
+            Assertions.assertEquals(5, stateFile.readCoinCounts().countOf(0.2));
+            coinManager.releaseChange(released);
+            Assertions.assertEquals(5, stateFile.readCoinCounts().countOf(0.2));
+
+            ChangeReservation committed = coinManager.reserveChange(Money.ofMinorUnits(40));
+            //A change made while the reservation is pending still counts its coins as available
+            coinManager.setCoinAvailableCount(0.5, 2);
+            Assertions.assertEquals(CoinCounts.of(COIN_DENOMINATIONS, new int[]{0, 5, 2, 0}), stateFile.readCoinCounts());
+            coinManager.commitChange(committed, CoinCounts.of(COIN_DENOMINATIONS, Collections.singletonList(1.0)));
+            Assertions.assertEquals(CoinCounts.of(COIN_DENOMINATIONS, new int[]{0, 3, 2, 1}), stateFile.readCoinCounts());
+        }
+    }
+
+    @Test
+    void mappedProductSlotManager_stripedSlotManager_isRestoredFromTheStateFile() throws IOException {
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            stateFile.writeSlot(1, ProductSnapshot.of(Money.ofMinorUnits(150), 3));
+        }
+
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            MappedProductSlotManager productSlotManager =
+                    new MappedProductSlotManager(new StripedProductSlotManager(PRODUCT_SLOT_SIZE), stateFile);
+
+            Assertions.assertFalse(productSlotManager.isProductSlotOccupied(0));
+            Assertions.assertEquals(3, productSlotManager.getSlotProductInventorySize(1));
+            Assertions.assertEquals(Money.ofMinorUnits(150), productSlotManager.getSlotProductPriceAmount(1));
+        }
+    }
+
+    @Test
+    void vendingMachine_concurrentPurchases_stateFileMatchesTheLiveState() throws Exception {
+        long[] liveCounts = new long[COIN_DENOMINATIONS.size()];
+        long[] liveInventorySizes = new long[PRODUCT_SLOT_SIZE];
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            VendingMachine vendingMachine = new VendingMachine(
+                    new MappedCoinManager(new AtomicCoinManager(SUPPORTED_COINS), stateFile),
+                    new MappedProductSlotManager(new DefaultProductSlotManager(PRODUCT_SLOT_SIZE), stateFile));
+            vendingMachine.setCoinAvailableCount(0.1, 100_000);
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                vendingMachine.addProductToSlot(BigDecimal.valueOf(0.9), 100_000);
+            }
+
+            List<Thread> buyers = new ArrayList<>();
+            for (int b = 0; b < 2 * PRODUCT_SLOT_SIZE; b++) {
+                final int productSlotIndex = b % PRODUCT_SLOT_SIZE;
+                Thread buyer = new Thread(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        vendingMachine.buyProduct(productSlotIndex, Collections.singletonList(1.0));
+                    }
+                });
+                buyers.add(buyer);
+                buyer.start();
+            }
+            for (Thread buyer : buyers) {
+                buyer.join();
+            }
+
+            for (int ordinal = 0; ordinal < liveCounts.length; ordinal++) {
+                liveCounts[ordinal] = vendingMachine.getCoinAvailableCount(COIN_DENOMINATIONS.valueAt(ordinal));
+            }
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                liveInventorySizes[i] = vendingMachine.getProductInventorySize(i);
+            }
+        }
+        Assertions.assertEquals(100_000 - 16_000, liveCounts[0]);
+
+        try (MappedStateFile stateFile = MappedStateFile.open(file, COIN_DENOMINATIONS, PRODUCT_SLOT_SIZE)) {
+            CoinCounts counts = stateFile.readCoinCounts();
+            for (int ordinal = 0; ordinal < liveCounts.length; ordinal++) {
+                Assertions.assertEquals(liveCounts[ordinal], counts.countAt(ordinal));
+            }
+            ProductSnapshot[] slots = stateFile.readSlots();
+            for (int i = 0; i < PRODUCT_SLOT_SIZE; i++) {
+                Assertions.assertEquals(liveInventorySizes[i], slots[i].getInventorySize());
+            }
+        }
+    }
+
+    private VendingMachine newVendingMachine(final MappedStateFile stateFile) {
+        return new VendingMachine(new MappedCoinManager(new DefaultCoinManager(SUPPORTED_COINS), stateFile),
+                new MappedProductSlotManager(new DefaultProductSlotManager(PRODUCT_SLOT_SIZE), stateFile));
+    }
+
+    private void overwrite(final long position, final byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{value}), position);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package util;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link LogBackend} that takes logging off the calling thread: a record is queued in a bounded {@link MpscRingBuffer}
+ * and a background writer formats the queued records in batches into one buffer, written through a
+ * {@link FileChannel} once per batch (or whenever the buffer fills up).
+ * <p>
+ * Logging a record allocates the record and does one compare-and-set on the queue; the caller never formats, encodes,
+ * writes or wakes the writer (the writer polls the queue). When the queue is full the {@link OverflowPolicy} decides
+ * whether the record is dropped (and counted, see {@link #getDroppedRecordCount()}) or the caller waits for room.
+ * <p>
+ * Messages are rendered on the writer thread: log immutable values (e.g. strings), not live state. A message whose
+ * rendering throws is written as a placeholder line.
+ */
+public final class AsyncLogBackend implements LogBackend, AutoCloseable {
+
+    public enum OverflowPolicy {
+        /**
+         * Discard the record: logging never waits
+         */
+        DROP,
+        /**
+         * Wait for the writer to make room: no record is lost
+         */
+        BLOCK
+    }
+
+    //#region class constants
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_POLL_NANOS = 1_000_000;
+    private static final long FULL_QUEUE_BACKOFF_NANOS = 10_000;
+    //#end region
+
+    private final MpscRingBuffer<LogRecord> records;
+    private final OverflowPolicy overflowPolicy;
+    private final FileChannel channel;
+    private final boolean channelOwned;
+    private final AtomicLong droppedRecordCount = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    //#region writer state (writer thread only)
+    private final StringBuilder text = new StringBuilder(256);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private volatile long writtenRecordCount;
+    //#endregion
+
+    //#region Class Constructor
+    private AsyncLogBackend() {
+        //Added in case an instantiation is attempted using reflection
+        throw new UnsupportedOperationException("Cannot instantiate class with this constructor");
+    }
+
+    private AsyncLogBackend(final FileChannel channel, final boolean channelOwned, final int queueCapacity,
+                            final OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("Overflow policy is required");
+        }
+        this.records = new MpscRingBuffer<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.channel = channel;
+        this.channelOwned = channelOwned;
+        this.writer = new Thread(this::writeRecords, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Append the records to {@param file}, created if it does not exist
+     */
+    public static AsyncLogBackend toFile(@NotNull final Path file, final int queueCapacity,
+                                         @NotNull final OverflowPolicy overflowPolicy) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new AsyncLogBackend(channel, true, queueCapacity, overflowPolicy);
+    }
+
+    /**
+     * Write the records to the standard output (bypassing {@link System#out}, which stays open)
+     */
+    public static AsyncLogBackend toStandardOutput(final int queueCapacity, @NotNull final OverflowPolicy overflowPolicy) {
+        return new AsyncLogBackend(new FileOutputStream(FileDescriptor.out).getChannel(), false, queueCapacity, overflowPolicy);
+    }
+    //#endregion
+
+    @Override
+    public void log(final Class<?> klass, final String logLevel, final int numOfVSpace, final Object object) {
+        if (!running) {
+            droppedRecordCount.incrementAndGet();
+            return;
+        }
+        LogRecord record = new LogRecord(klass, logLevel, numOfVSpace, object);
+        while (!records.offer(record)) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                droppedRecordCount.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(FULL_QUEUE_BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * Write the records still queued, then stop the writer (closing the file it writes to, if any). Records logged
+     * afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of records discarded because the queue was full (or the backend closed)
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecordCount.get();
+    }
+
+    public long getWrittenRecordCount() {
+        return writtenRecordCount;
+    }
+
+    /**
+     * @return approximate number of records waiting for the writer
+     */
+    public int getQueueDepth() {
+        return records.size();
+    }
+
+    /**
+     * Body of the writer thread
+     */
+    private void writeRecords() {
+        int batchLimit = records.capacity();
+        try {
+            while (running) {
+                if (writeBatch(batchLimit) == 0) {
+                    LockSupport.parkNanos(IDLE_POLL_NANOS);
+                }
+            }
+            //Closed: write what was queued before close()
+            while (writeBatch(batchLimit) > 0) {
+                //keep draining
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            //Nowhere left to log to: report once on the standard error and give up
+            System.err.println("Log writer stopped: " + ex);
+        } finally {
+            //Callers waiting for room drop their records from now on
+            running = false;
+            if (channelOwned) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    System.err.println("Log file could not be closed: " + ex);
+                }
+            }
+        }
+    }
+
+    private int writeBatch(final int batchLimit) throws IOException {
+        int batchSize = records.drain(this::bufferRecord, batchLimit);
+        if (batchSize > 0) {
+            flushWriteBuffer();
+            writtenRecordCount += batchSize;
+        }
+        return batchSize;
+    }
+
+    private void bufferRecord(final LogRecord record) {
+        text.setLength(0);
+        try {
+            Logger.format(text, record.klass, record.logLevel, record.numOfVSpace, record.object);
+        } catch (RuntimeException | StackOverflowError ex) {
+            //A message that cannot be rendered (e.g. its toString() throws) is written as a placeholder: one bad
+            //message never stops the writer
+            text.setLength(0);
+            Logger.format(text, record.klass, record.logLevel, record.numOfVSpace,
+                    "<message could not be rendered: " + ex.getClass().getName() + ">");
+        }
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        try {
+            while (encoder.encode(chars, writeBuffer, true) == CoderResult.OVERFLOW) {
+                flushWriteBuffer();
+            }
+            while (encoder.flush(writeBuffer) == CoderResult.OVERFLOW) {
+                flushWriteBuffer();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private static final class LogRecord {
+
+        private final Class<?> klass;
+        private final String logLevel;
+        private final int numOfVSpace;
+        private final Object object;
+
+        LogRecord(final Class<?> klass, final String logLevel, final int numOfVSpace, final Object object) {
+            this.klass = klass;
+            this.logLevel = logLevel;
+            this.numOfVSpace = numOfVSpace;
+            this.object = object;
+        }
+    }
+}
@@ -1,21 +1,42 @@
 package util;
 
 public class Constants {
+    public static final int CURRENCY_DECIMAL_PLACES = 2;
+    public static final int DEFAULT_CHANGEABILITY_CEILING_IN_MINOR_UNITS = 5000;
+
     public static final String ERROR_MESSAGE_INVALID_PRODUCT_SLOT_SIZE = "Invalid product slot size";
     public static final String ERROR_MESSAGE_INVALID_PRODUCT_SLOT = "Invalid product slot";
     public static final String ERROR_MESSAGE_INVALID_PRODUCT_INVENTORY_SIZE = "Invalid inventory size";
     public static final String ERROR_MESSAGE_INVALID_PRODUCT_PRICE = "Invalid product price";
     public static final String ERROR_MESSAGE_PRODUCT_PRICE_NOT_SET = "Product price not set";
     public static final String ERROR_MESSAGE_NO_MORE_SLOT_FOR_PRODUCT = "Max machine product slot size reached";
+    public static final String ERROR_MESSAGE_UNKNOWN_PRODUCT_SKU = "No product slot holds this SKU";
     public static final String ERROR_MESSAGE_COIN_NOT_SUPPORTED = "Coin not supported";
     public static final String ERROR_MESSAGE_COIN_LIST_IS_REQUIRED = "Coin list is required";
     public static final String ERROR_MESSAGE_COIN_COUNT_CANNOT_GO_TO_NEGATIVE = "Coin count cannot go to negative";
+    public static final String ERROR_MESSAGE_INVALID_COIN_COUNT = "Coin count is required and cannot be negative";
     public static final String ERROR_MESSAGE_CREDIT_COIN_LIST_REQUIRED = "Credit coin list is required for this operation";
     public static final String ERROR_MESSAGE_DEBIT_COIN_LIST_REQUIRED = "Debit coin list is required for this operation";
     public static final String ERROR_MESSAGE_INVALID_AMOUNT_PROVIDED = "Invalid amount provided";
     public static final String ERROR_MESSAGE_INSUFFICIENT_COIN_S_FOR_CHANGE = "No sufficient coin(s) for change amount";
     public static final String ERROR_MESSAGE_AVAILABLE_COIN_S_CANNOT_PROVIDE_CHANGE = "Available coin(s) cannot provide change";
+    public static final String ERROR_MESSAGE_INVALID_CHANGE_RESERVATION = "Change reservation was not issued by this coin manager";
+    public static final String ERROR_MESSAGE_CHANGE_RESERVATION_ALREADY_SETTLED = "Change reservation is already committed or released";
+    public static final String ERROR_MESSAGE_CREDIT_COINS_DO_NOT_MATCH_ESCROW = "Credit coin list does not match the escrowed coins";
     public static final String ERROR_MESSAGE_COIN_IS_REQUIRED_FOR_PURCHASE_OPERATION = "Coin for purchase action is required";
+    public static final String ERROR_MESSAGE_PRODUCT_IS_REQUIRED_FOR_PURCHASE_OPERATION = "Product for purchase action is required";
+    public static final String ERROR_MESSAGE_INVALID_PURCHASE_QUANTITY = "Purchase quantity must be at least 1";
+    public static final String ERROR_MESSAGE_PURCHASE_CANCELLED = "Purchase was cancelled before it was settled";
+    public static final String ERROR_MESSAGE_PURCHASE_SESSION_CLOSED = "Purchase session is closed";
+    public static final String ERROR_MESSAGE_JOURNAL_CLOSED = "Journal is closed";
+    public static final String ERROR_MESSAGE_JOURNAL_WRITE_FAILED = "Journal could not be written";
+    public static final String ERROR_MESSAGE_JOURNAL_CORRUPTED = "Journal is corrupted";
+    public static final String ERROR_MESSAGE_JOURNAL_DENOMINATIONS_MISMATCH = "Journal was written for other coin denominations";
+    public static final String ERROR_MESSAGE_JOURNAL_REPLAY_MISMATCH = "Journal replay does not match the machine state";
+    public static final String ERROR_MESSAGE_JOURNAL_RECORD_LOST = "Change was applied but its journal record could not be written";
+    public static final String ERROR_MESSAGE_STATE_FILE_CLOSED = "Machine state file is closed";
+    public static final String ERROR_MESSAGE_STATE_FILE_CORRUPTED = "Machine state file is corrupted";
+    public static final String ERROR_MESSAGE_STATE_FILE_LAYOUT_MISMATCH = "Machine state file was written for other coin denominations or product slot size";
     public static final String ERROR_MESSAGE_SLOT_OUT_OF_STOCK = "Product slot is out of stock";
     public static final String ERROR_MESSAGE_TECHNICAL_ERROR = "Technical error. Machine maintainer has been notified";
     public static final String ERROR_MESSAGE_PRODUCT_PRICE_MORE_THAN_CUSTOMER_MONEY = "Product price is more than the coin(s) provided";
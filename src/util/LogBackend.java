@@ -0,0 +1,15 @@
+package util;
+
+/**
+ * Destination of the records of {@link Logger}, see {@link Logger#setBackend(LogBackend)}
+ */
+public interface LogBackend {
+
+    /**
+     * @param klass       class the record is logged for, may be null
+     * @param logLevel    level suffix printed after the class name (e.g. "/INFO")
+     * @param numOfVSpace number of blank lines printed after the record
+     * @param object      message of the record
+     */
+    void log(final Class<?> klass, final String logLevel, final int numOfVSpace, final Object object);
+}
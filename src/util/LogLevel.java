@@ -0,0 +1,29 @@
+package util;
+
+/**
+ * Severity of a {@link Logger} record, lowest first. A record is written if its level is at least the level set for
+ * its class (see {@link Logger#setLevel(Class, LogLevel)}).
+ */
+public enum LogLevel {
+    DEBUG("/DEBUG"),
+    INFO("/INFO"),
+    WARN("/WARN"),
+    ERROR("/ERROR"),
+    /**
+     * Threshold only: no record is written
+     */
+    OFF("/OFF");
+
+    private final String label;
+
+    LogLevel(final String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return suffix printed after the class name of a record
+     */
+    public String getLabel() {
+        return label;
+    }
+}
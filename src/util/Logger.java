@@ -1,8 +1,41 @@
 package util;
 
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Records are filtered by {@link LogLevel}: a root level, overridable per class tag at runtime. A record below the
+ * lowest level enabled anywhere is turned down with a single comparison; only when some class enables it is the
+ * record's own class looked up.
+ * <p>
+ * The {@link Supplier} overloads build the message only if the record is written, on the calling thread. Use them
+ * wherever the message is built from state (e.g. whole coin or slot tables), so a disabled record costs nothing.
+ */
 public class Logger {
 
+    //Writes each record to the standard output on the calling thread
+    private static final LogBackend CONSOLE_BACKEND = (klass, logLevel, numOfVSpace, object) -> {
+        StringBuilder sb = new StringBuilder();
+        format(sb, klass, logLevel, numOfVSpace, object);
+        System.out.print(sb);
+    };
+
+    private static volatile LogBackend backend = CONSOLE_BACKEND;
+
+    //#region levels
+    private static final Object LEVEL_CONFIGURATION_LOCK = new Object();
+    private static final Map<Class<?>, LogLevel> levelsByTag = new ConcurrentHashMap<>();
+    private static volatile LogLevel rootLevel = LogLevel.INFO;
+    //Ordinal of the lowest level enabled for any class: the single comparison disabled records cost
+    private static volatile int lowestEnabledOrdinal = LogLevel.INFO.ordinal();
+    //#endregion
+
+    public static void debug(final Class<?> klass, final Supplier<?> messageSupplier) {
+        log(klass, LogLevel.DEBUG, 0, messageSupplier);
+    }
+
     public static void info(final Object object) {
         info(null, 0, object);
     }
@@ -16,7 +49,19 @@ public class Logger {
     }
 
     public static void info(final Class<?> klass, final int numOfVSpace, final Object object) {
-        log(klass, "/INFO", numOfVSpace, object);
+        log(klass, LogLevel.INFO, numOfVSpace, object);
+    }
+
+    public static void info(final Class<?> klass, final Supplier<?> messageSupplier) {
+        log(klass, LogLevel.INFO, 0, messageSupplier);
+    }
+
+    public static void warn(final Class<?> klass, final Object object) {
+        log(klass, LogLevel.WARN, 0, object);
+    }
+
+    public static void warn(final Class<?> klass, final Supplier<?> messageSupplier) {
+        log(klass, LogLevel.WARN, 0, messageSupplier);
     }
 
     public static void error(final Class<?> klass, final Object object) {
@@ -24,20 +69,100 @@ public class Logger {
     }
 
     public static void error(final Class<?> klass, final int numOfVSpace, final Object object) {
-        log(klass, "/ERROR", numOfVSpace, object);
+        log(klass, LogLevel.ERROR, numOfVSpace, object);
     }
 
-    private static void log(final Class<?> klass, final String logLevel, final int numOfVSpace, final Object object) {
-        StringBuilder sb = new StringBuilder();
+    public static void error(final Class<?> klass, final Supplier<?> messageSupplier) {
+        log(klass, LogLevel.ERROR, 0, messageSupplier);
+    }
+
+    /**
+     * @return true if a record of {@param level} logged for {@param klass} would be written
+     */
+    public static boolean isEnabled(final Class<?> klass, final LogLevel level) {
+        if (level.ordinal() < lowestEnabledOrdinal) {
+            return false;
+        }
+        LogLevel threshold = klass == null ? null : levelsByTag.get(klass);
+        return level.ordinal() >= (threshold == null ? rootLevel : threshold).ordinal();
+    }
+
+    /**
+     * Set the level of the classes without a level of their own (INFO by default)
+     */
+    public static void setLevel(final LogLevel level) {
+        if (level == null) {
+            throw new IllegalArgumentException("Log level is required");
+        }
+        synchronized (LEVEL_CONFIGURATION_LOCK) {
+            rootLevel = level;
+            refreshLowestEnabledOrdinal();
+        }
+    }
+
+    /**
+     * Set the level of the records logged for {@param klass}, or make it follow the root level again if null
+     */
+    public static void setLevel(final Class<?> klass, final LogLevel level) {
+        if (klass == null) {
+            throw new IllegalArgumentException("Log tag is required");
+        }
+        synchronized (LEVEL_CONFIGURATION_LOCK) {
+            if (level == null) {
+                levelsByTag.remove(klass);
+            } else {
+                levelsByTag.put(klass, level);
+            }
+            refreshLowestEnabledOrdinal();
+        }
+    }
+
+    /**
+     * Send the records logged from now on to {@param newBackend} (e.g. an {@link AsyncLogBackend}), or back to the
+     * standard output if null
+     *
+     * @return the backend replaced
+     */
+    public static LogBackend setBackend(final LogBackend newBackend) {
+        LogBackend previousBackend = backend;
+        backend = newBackend == null ? CONSOLE_BACKEND : newBackend;
+        return previousBackend;
+    }
+
+    private static void log(final Class<?> klass, final LogLevel level, final int numOfVSpace, final Object object) {
+        if (isEnabled(klass, level)) {
+            backend.log(klass, level.getLabel(), numOfVSpace, object);
+        }
+    }
+
+    private static void log(final Class<?> klass, final LogLevel level, final int numOfVSpace, final Supplier<?> messageSupplier) {
+        if (isEnabled(klass, level)) {
+            backend.log(klass, level.getLabel(), numOfVSpace, String.valueOf(messageSupplier.get()));
+        }
+    }
+
+    private static void refreshLowestEnabledOrdinal() {
+        int lowestOrdinal = rootLevel.ordinal();
+        for (LogLevel level : levelsByTag.values()) {
+            lowestOrdinal = Math.min(lowestOrdinal, level.ordinal());
+        }
+        lowestEnabledOrdinal = lowestOrdinal;
+    }
+
+    /**
+     * Append the text of a record, line separators included, to {@param sb}
+     */
+    static void format(final StringBuilder sb, final Class<?> klass, final String logLevel, final int numOfVSpace,
+                       final Object object) {
         if (klass != null) {
             sb.append(klass.getSimpleName());
             sb.append(logLevel);
             sb.append(" ---> ");
         }
         sb.append(object);
-        System.out.println(sb);
+        sb.append(System.lineSeparator());
         for (int i = 0; i < numOfVSpace; i++) {
-            System.out.println();
+            sb.append(System.lineSeparator());
         }
     }
 
@@ -0,0 +1,117 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer/single-consumer queue over a power-of-two ring of slots.
+ * <p>
+ * Every slot carries a sequence number telling whose turn it is: a producer claims the next position with one
+ * compare-and-set on the tail, stores its element and publishes it by advancing the slot's sequence; the consumer takes
+ * published elements in order and hands the slot back by advancing its sequence by one lap. Producers never wait on
+ * each other beyond the tail compare-and-set, and the consumer never writes what producers contend on.
+ * <p>
+ * {@link #offer(Object)} may be called from any thread. {@link #drain(Consumer, int)} must only ever be called from one
+ * thread at a time.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    //Slot i is free for position p when sequences[i] == p, and holds the element of position p when it is p + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    //Written by the consumer only
+    private volatile long head;
+
+    /**
+     * @param capacity number of elements the queue holds, rounded up to a power of two
+     */
+    public MpscRingBuffer(final int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            String errorMessage = "Ring buffer capacity must be between 1 and 2^30";
+            Logger.error(MpscRingBuffer.class, errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.elements = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return true if {@param element} was queued, false if the queue is full
+     */
+    public boolean offer(final E element) {
+        if (element == null) {
+            throw new NullPointerException("Ring buffer element is required");
+        }
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    //Full write, not lazySet: a consumer about to park re-reads the slot after announcing it, and the
+                    //producer reads that announcement right after publishing (see the callers' wake-up protocols)
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                //The slot still holds the element of the previous lap
+                return false;
+            }
+            //Another producer claimed this position: retry with the new tail
+        }
+    }
+
+    /**
+     * Hand up to {@param maxElements} queued elements, oldest first, to {@param consumer}
+     *
+     * @return number of elements drained
+     */
+    public int drain(final Consumer<? super E> consumer, final int maxElements) {
+        long position = head;
+        int drained = 0;
+        while (drained < maxElements) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            E element = elements.get(index);
+            elements.lazySet(index, null);
+            sequences.lazySet(index, position + capacity);
+            position++;
+            drained++;
+            head = position;
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    /**
+     * @return true if no element is queued (a queued element may not be visible to the consumer yet)
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    /**
+     * @return approximate number of queued elements
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return size < 0 ? 0 : (int) Math.min(size, capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,91 @@
+package util.tests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import util.AsyncLogBackend;
+import util.LogBackend;
+import util.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class AsyncLogBackendTest {
+
+    private LogBackend previousBackend;
+    private Path logFile;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (previousBackend != null) {
+            Logger.setBackend(previousBackend);
+        }
+        if (logFile != null) {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    @Test
+    void log_blockPolicy_everyRecordIsWrittenInOrder() throws IOException {
+        logFile = Files.createTempFile("vending-machine", ".log");
+        AsyncLogBackend backend = AsyncLogBackend.toFile(logFile, 16, AsyncLogBackend.OverflowPolicy.BLOCK);
+        previousBackend = Logger.setBackend(backend);
+
+        for (int i = 0; i < 1000; i++) {
+            Logger.info(AsyncLogBackendTest.class, "record " + i);
+        }
+        Logger.error(AsyncLogBackendTest.class, 1, "last");
+        backend.close();
+
+        List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+        Assertions.assertEquals(1002, lines.size());
+        Assertions.assertEquals("AsyncLogBackendTest/INFO ---> record 0", lines.get(0));
+        Assertions.assertEquals("AsyncLogBackendTest/INFO ---> record 999", lines.get(999));
+        Assertions.assertEquals("AsyncLogBackendTest/ERROR ---> last", lines.get(1000));
+        Assertions.assertEquals("", lines.get(1001));
+        Assertions.assertEquals(1001, backend.getWrittenRecordCount());
+        Assertions.assertEquals(0, backend.getDroppedRecordCount());
+    }
+
+    @Test
+    void log_messageRenderingThrows_placeholderIsWrittenAndLoggingCarriesOn() throws IOException {
+        logFile = Files.createTempFile("vending-machine", ".log");
+        AsyncLogBackend backend = AsyncLogBackend.toFile(logFile, 16, AsyncLogBackend.OverflowPolicy.BLOCK);
+
+        backend.log(null, "/INFO", 0, "first");
+        backend.log(null, "/INFO", 0, new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("not renderable");
+            }
+        });
+        backend.log(null, "/INFO", 0, "last");
+        backend.close();
+
+        List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+        Assertions.assertEquals(3, lines.size());
+        Assertions.assertEquals("first", lines.get(0));
+        Assertions.assertEquals("<message could not be rendered: java.lang.IllegalStateException>", lines.get(1));
+        Assertions.assertEquals("last", lines.get(2));
+        Assertions.assertEquals(3, backend.getWrittenRecordCount());
+    }
+
+    @Test
+    void log_dropPolicy_everyRecordIsWrittenOrCountedAsDropped() throws IOException {
+        logFile = Files.createTempFile("vending-machine", ".log");
+        AsyncLogBackend backend = AsyncLogBackend.toFile(logFile, 2, AsyncLogBackend.OverflowPolicy.DROP);
+
+        for (int i = 0; i < 10_000; i++) {
+            backend.log(null, "/INFO", 0, "record " + i);
+        }
+        backend.close();
+        backend.log(null, "/INFO", 0, "after close");
+
+        long writtenLines = Files.readAllLines(logFile, StandardCharsets.UTF_8).size();
+        Assertions.assertEquals(backend.getWrittenRecordCount(), writtenLines);
+        Assertions.assertEquals(10_001, writtenLines + backend.getDroppedRecordCount());
+    }
+}
@@ -0,0 +1,76 @@
+package util.tests;
+
+import application.VendingMachine;
+import manager.DefaultCoinManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.LogBackend;
+import util.LogLevel;
+import util.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class LoggerTest {
+
+    private final List<String> records = Collections.synchronizedList(new ArrayList<>());
+    private LogBackend previousBackend;
+
+    @BeforeEach
+    void setUp() {
+        previousBackend = Logger.setBackend((klass, logLevel, numOfVSpace, object) ->
+                records.add((klass == null ? "" : klass.getSimpleName()) + logLevel + " " + object));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.setBackend(previousBackend);
+        Logger.setLevel(LogLevel.INFO);
+        Logger.setLevel(LoggerTest.class, null);
+        Logger.setLevel(DefaultCoinManager.class, null);
+    }
+
+    @Test
+    void info_belowRootLevel_supplierIsNotEvaluated() {
+        AtomicInteger evaluations = new AtomicInteger();
+        Logger.setLevel(LogLevel.WARN);
+
+        Logger.info(LoggerTest.class, () -> "state " + evaluations.incrementAndGet());
+        Logger.warn(LoggerTest.class, () -> "warning " + evaluations.incrementAndGet());
+
+        Assertions.assertEquals(1, evaluations.get());
+        Assertions.assertEquals(Collections.singletonList("LoggerTest/WARN warning 1"), records);
+        Assertions.assertFalse(Logger.isEnabled(LoggerTest.class, LogLevel.INFO));
+    }
+
+    @Test
+    void setLevel_perClassTag_overridesTheRootLevel() {
+        Logger.setLevel(LogLevel.ERROR);
+        Logger.setLevel(LoggerTest.class, LogLevel.DEBUG);
+
+        Logger.debug(LoggerTest.class, () -> "debug");
+        Logger.info(DefaultCoinManager.class, () -> "filtered");
+        Logger.setLevel(LoggerTest.class, null);
+        Logger.debug(LoggerTest.class, () -> "filtered");
+
+        Assertions.assertEquals(Collections.singletonList("LoggerTest/DEBUG debug"), records);
+    }
+
+    @Test
+    void buyProduct_warnLevel_successfulPurchaseLogsNothing() {
+        Logger.setLevel(LogLevel.WARN);
+        VendingMachine vendingMachine = new VendingMachine(2, Arrays.asList(0.5, 1.0));
+        vendingMachine.addProductToSlot(BigDecimal.valueOf(0.5), 1);
+        vendingMachine.setCoinAvailableCount(0.5, 1);
+
+        vendingMachine.buyProduct(0, Collections.singletonList(1.0));
+
+        Assertions.assertEquals(Collections.emptyList(), records);
+    }
+}
@@ -0,0 +1,78 @@
+package util.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import util.MpscRingBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class MpscRingBufferTest {
+
+    @Test
+    void constructor_capacityNotPowerOfTwo_isRoundedUp() {
+        Assertions.assertEquals(8, new MpscRingBuffer<Integer>(5).capacity());
+        Assertions.assertEquals(1, new MpscRingBuffer<Integer>(1).capacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<Integer>(0));
+    }
+
+    @Test
+    void offer_queueFull_returnsFalseUntilDrained() {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(ringBuffer.offer(i));
+        }
+        Assertions.assertFalse(ringBuffer.offer(4));
+        Assertions.assertEquals(4, ringBuffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        Assertions.assertEquals(3, ringBuffer.drain(drained::add, 3));
+        Assertions.assertTrue(ringBuffer.offer(4));
+        Assertions.assertEquals(2, ringBuffer.drain(drained::add, 10));
+
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+        Assertions.assertTrue(ringBuffer.isEmpty());
+    }
+
+    @Test
+    void offer_concurrentProducers_everyElementIsDrainedOnceInPerProducerOrder() throws InterruptedException {
+        int producerCount = 4;
+        int elementsPerProducer = 20_000;
+        MpscRingBuffer<long[]> ringBuffer = new MpscRingBuffer<>(64);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < elementsPerProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!ringBuffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+
+        long[] nextExpected = new long[producerCount];
+        int total = 0;
+        while (total < producerCount * elementsPerProducer) {
+            int drained = ringBuffer.drain(element -> {
+                Assertions.assertEquals(nextExpected[(int) element[0]], element[1]);
+                nextExpected[(int) element[0]]++;
+            }, 16);
+            if (drained == 0) {
+                Thread.yield();
+            }
+            total += drained;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        Assertions.assertTrue(ringBuffer.isEmpty());
+        for (long count : nextExpected) {
+            Assertions.assertEquals(elementsPerProducer, count);
+        }
+    }
+}